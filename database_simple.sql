@@ -53,7 +53,7 @@ CREATE TABLE caracteristicas_faciales (
     usuario_id BIGINT NOT NULL,
     
     -- Datos biométricos principales
-    vector_caracteristicas TEXT NOT NULL,
+    vector_caracteristicas BLOB NOT NULL, -- float32 little-endian (4 bytes por componente)
     hash_facial VARCHAR(64) NOT NULL,
     confianza_registro DECIMAL(5,4) DEFAULT 0.0000,
     
@@ -75,6 +75,7 @@ CREATE TABLE caracteristicas_faciales (
     
     -- Índices
     INDEX idx_usuario_activo (usuario_id, activo),
+    INDEX idx_version_usuario (version_algoritmo, activo, usuario_id),
     INDEX idx_hash_facial (hash_facial),
     INDEX idx_confianza (confianza_registro)
 ) ENGINE=InnoDB;
@@ -20,7 +20,7 @@ echo ⚠️  NOTA: La inicializacion de camara puede tomar 30-60 segundos
 echo    El progreso se mostrara en la interfaz
 echo.
 
-java -cp "target/classes;target/dependency/*" com.reconocimiento.facial.AplicacionPrincipal
+java --add-modules jdk.incubator.vector -cp "target/classes;target/dependency/*" com.reconocimiento.facial.AplicacionPrincipal
 
 echo.
 echo 👋 Aplicacion cerrada
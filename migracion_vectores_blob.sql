@@ -0,0 +1,16 @@
+-- =============================================
+-- MIGRACIÓN: vectores faciales de TEXT (JSON) a BLOB float32
+-- Para bases creadas con una versión anterior de database_simple.sql
+-- =============================================
+
+USE sistema_reconocimiento_facial;
+
+-- El cambio de tipo conserva los bytes: las filas JSON quedan como texto dentro del BLOB.
+-- La aplicación las sigue leyendo y las reescribe como float32 (con su hash_facial)
+-- la primera vez que precarga la galería.
+ALTER TABLE caracteristicas_faciales
+    MODIFY vector_caracteristicas BLOB NOT NULL;
+
+-- La precarga lee la galería por tramos de usuario_id sobre este índice
+ALTER TABLE caracteristicas_faciales
+    ADD INDEX idx_version_usuario (version_algoritmo, activo, usuario_id);
@@ -3,6 +3,6 @@ echo 🎥 PROBADOR DE CÁMARA - Sistema de Reconocimiento Facial
 echo ========================================================
 
 REM Usar Java para ejecutar la clase de pruebas de cámara
-java -cp "target\classes;target\dependency\*" com.reconocimiento.facial.utilidades.ProbadorCamaraMejorado
+java --add-modules jdk.incubator.vector -cp "target\classes;target\dependency\*" com.reconocimiento.facial.utilidades.ProbadorCamaraMejorado
 
 pause
\ No newline at end of file
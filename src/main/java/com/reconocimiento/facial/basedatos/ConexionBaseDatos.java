@@ -27,7 +27,7 @@ public class ConexionBaseDatos {
     private static final String DB_NOMBRE = GestorConfiguracion.obtenerString("bd.nombre", "sistema_reconocimiento_facial");
     private static final String DB_USER = GestorConfiguracion.obtenerString("bd.usuario", "root");
     private static final String DB_PASSWORD = GestorConfiguracion.obtenerString("bd.password", "");
-    private static final String DB_URL = String.format("jdbc:mysql://%s:%s/%s?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC", 
+    private static final String DB_URL = String.format("jdbc:mysql://%s:%s/%s?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&useCursorFetch=true", 
                                                        DB_HOST, DB_PUERTO, DB_NOMBRE);
     private static final String DB_DRIVER = "com.mysql.cj.jdbc.Driver";
     
@@ -1,6 +1,7 @@
 package com.reconocimiento.facial.controladores;
 
 import com.reconocimiento.facial.configuracion.ConfiguracionSistema;
+import com.reconocimiento.facial.servicios.RegistroComponentes;
 import com.reconocimiento.facial.servicios.ServicioUsuarioMejorado;
 import com.reconocimiento.facial.modelos.Usuario;
 import com.reconocimiento.facial.formularios.FormularioLoginNuevo;
@@ -36,7 +37,7 @@ public class ControladorPrincipal {
             
             // Inicializar componentes
             this.configuracion = ConfiguracionSistema.obtenerInstancia();
-            this.servicioUsuario = new ServicioUsuarioMejorado();
+            this.servicioUsuario = RegistroComponentes.obtenerInstancia().obtenerServicioUsuario();
             
             this.sistemaInicializado = true;
             
@@ -190,6 +191,7 @@ public class ControladorPrincipal {
     public void salirDelSistema() {
         try {
             System.out.println("🚪 Saliendo del sistema...");
+            RegistroComponentes.obtenerInstancia().liberarRecursos();
             System.out.println("✅ Sistema cerrado correctamente");
             System.exit(0);
             
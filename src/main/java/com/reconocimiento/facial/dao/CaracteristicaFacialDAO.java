@@ -0,0 +1,417 @@
+package com.reconocimiento.facial.dao;
+
+import com.reconocimiento.facial.basedatos.ConexionBaseDatos;
+import com.reconocimiento.facial.excepciones.ExcepcionBaseDatos;
+import com.reconocimiento.facial.modelos.CaracteristicaFacial;
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Data Access Object para la tabla caracteristicas_faciales
+ * Los vectores se guardan como BLOB float32 little-endian (ver {@link CaracteristicaFacial#codificarVector})
+ * y la galería se precarga en paralelo leyendo la tabla por tramos de usuario_id con cursor de servidor.
+ * Las filas de antes de la migración a BLOB (texto JSON) se leen igual y se convierten tras la precarga.
+ */
+public class CaracteristicaFacialDAO {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaracteristicaFacialDAO.class);
+
+    private final ConexionBaseDatos conexionBaseDatos;
+
+    // Consultas SQL preparadas
+    private static final String SQL_INSERTAR_CARACTERISTICA =
+        "INSERT INTO caracteristicas_faciales (usuario_id, vector_caracteristicas, hash_facial, " +
+        "ruta_imagen_original, calidad_imagen, version_algoritmo, numero_muestra) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_DESACTIVAR_POR_USUARIO =
+        "UPDATE caracteristicas_faciales SET activo = FALSE WHERE usuario_id = ? AND activo = TRUE";
+
+    // Extremos de usuario_id para repartir la precarga en tramos (lee solo idx_version_usuario)
+    private static final String SQL_RANGO_USUARIOS =
+        "SELECT MIN(usuario_id), MAX(usuario_id) FROM caracteristicas_faciales " +
+        "WHERE version_algoritmo = ? AND activo = TRUE";
+
+    // Cada hilo lee un tramo contiguo de usuario_id: recorrido de rango sobre idx_version_usuario,
+    // que además entrega las muestras de un usuario juntas
+    private static final String SQL_PRECARGAR_PARTICION =
+        "SELECT cf.usuario_id, u.nombre_usuario, cf.vector_caracteristicas " +
+        "FROM caracteristicas_faciales cf JOIN usuarios u ON u.id = cf.usuario_id " +
+        "WHERE cf.version_algoritmo = ? AND cf.activo = TRUE AND u.activo = TRUE " +
+        "AND cf.usuario_id BETWEEN ? AND ? ORDER BY cf.usuario_id";
+
+    // Filas guardadas como texto JSON antes de la migración a BLOB
+    private static final String SQL_VECTORES_JSON =
+        "SELECT id, vector_caracteristicas FROM caracteristicas_faciales WHERE vector_caracteristicas LIKE '[%'";
+
+    private static final String SQL_ACTUALIZAR_VECTOR =
+        "UPDATE caracteristicas_faciales SET vector_caracteristicas = ?, hash_facial = ? WHERE id = ?";
+
+    private static final String SQL_CONTAR_CARACTERISTICAS =
+        "SELECT COUNT(*) FROM caracteristicas_faciales WHERE version_algoritmo = ? AND activo = TRUE";
+
+    // Configuración de la precarga
+    private static final int HILOS_PRECARGA = GestorConfiguracion.obtenerInt("bd.hilos_precarga", 4);
+    private static final int TAMANO_LOTE_LECTURA = GestorConfiguracion.obtenerInt("bd.tamano_lote_lectura", 5000);
+
+    public CaracteristicaFacialDAO() {
+        try {
+            this.conexionBaseDatos = ConexionBaseDatos.obtenerInstancia();
+        } catch (SQLException e) {
+            logger.error("Error inicializando CaracteristicaFacialDAO: {}", e.getMessage());
+            throw new RuntimeException("No se pudo inicializar CaracteristicaFacialDAO", e);
+        }
+    }
+
+    /**
+     * Guarda el vector de un usuario, desactivando los anteriores
+     */
+    public void guardarCaracteristica(CaracteristicaFacial caracteristica) throws ExcepcionBaseDatos {
+        logger.debug("Guardando características del usuario: {}", caracteristica.getIdUsuario());
+
+        Connection conexion = null;
+        PreparedStatement statement = null;
+        boolean autoCommitOriginal = true;
+
+        try {
+            conexion = conexionBaseDatos.obtenerConexion();
+            autoCommitOriginal = conexion.getAutoCommit();
+            conexion.setAutoCommit(false);
+
+            try (PreparedStatement desactivar = conexion.prepareStatement(SQL_DESACTIVAR_POR_USUARIO)) {
+                desactivar.setInt(1, caracteristica.getIdUsuario());
+                desactivar.executeUpdate();
+            }
+
+            byte[] vector = caracteristica.vectorABytes();
+            statement = conexion.prepareStatement(SQL_INSERTAR_CARACTERISTICA);
+            statement.setInt(1, caracteristica.getIdUsuario());
+            statement.setBytes(2, vector);
+            statement.setString(3, calcularHash(vector));
+            statement.setString(4, caracteristica.getRutaImagen());
+            statement.setDouble(5, caracteristica.getCalidadImagen());
+            statement.setString(6, caracteristica.getVersionAlgoritmo());
+            statement.setInt(7, 1);
+            statement.executeUpdate();
+
+            conexion.commit();
+            logger.info("Características guardadas para el usuario {} ({} bytes)",
+                        caracteristica.getIdUsuario(), vector.length);
+
+        } catch (SQLException e) {
+            revertir(conexion);
+            logger.error("Error guardando características del usuario {}: {}",
+                         caracteristica.getIdUsuario(), e.getMessage());
+            throw new ExcepcionBaseDatos("Error al guardar características faciales", e);
+        } finally {
+            // La conexión vuelve al pool: el siguiente que la tome espera el modo original
+            restaurarAutoCommit(conexion, autoCommitOriginal);
+            cerrarRecursos(conexion, statement, null);
+        }
+    }
+
+    /**
+     * Cuenta los vectores activos de una versión de modelo
+     */
+    public int contarCaracteristicas(String versionAlgoritmo) throws ExcepcionBaseDatos {
+        Connection conexion = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            conexion = conexionBaseDatos.obtenerConexion();
+            statement = conexion.prepareStatement(SQL_CONTAR_CARACTERISTICAS);
+            statement.setString(1, versionAlgoritmo);
+            resultSet = statement.executeQuery();
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+
+        } catch (SQLException e) {
+            logger.error("Error contando características: {}", e.getMessage());
+            throw new ExcepcionBaseDatos("Error al contar características faciales", e);
+        } finally {
+            cerrarRecursos(conexion, statement, resultSet);
+        }
+    }
+
+    /**
+     * Precarga la galería leyendo la tabla en paralelo
+     * Solo se leen vectores de la versión de modelo indicada: los de otros modelos no son comparables.
+     * Las muestras de un mismo usuario se promedian antes de entregarse al destino.
+     *
+     * @param versionAlgoritmo Versión del modelo en memoria
+     * @param destino Recibe (nombre de usuario, perfil); se invoca desde varios hilos
+     * @return Número de perfiles entregados
+     */
+    public int precargarGaleria(String versionAlgoritmo, BiConsumer<String, double[]> destino) throws ExcepcionBaseDatos {
+        long inicio = System.currentTimeMillis();
+        long[] rango = leerRangoUsuarios(versionAlgoritmo);
+        if (rango == null) {
+            logger.info("Galería precargada: sin vectores de la versión {}", versionAlgoritmo);
+            return 0;
+        }
+
+        // Tramos del mismo ancho entre el menor y el mayor usuario_id (nunca más que ids posibles)
+        long ancho = rango[1] - rango[0] + 1;
+        int hilos = (int) Math.max(1, Math.min(HILOS_PRECARGA, ancho));
+        long paso = ancho / hilos;
+        long sobrante = ancho % hilos;
+        AtomicInteger legados = new AtomicInteger();
+        ExecutorService ejecutor = Executors.newFixedThreadPool(hilos, tarea -> {
+            Thread hilo = new Thread(tarea, "precarga-galeria");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+        try {
+            List<Future<Integer>> particiones = new ArrayList<>();
+            long desde = rango[0];
+            for (int tramo = 0; tramo < hilos; tramo++) {
+                long hasta = desde + paso - 1 + (tramo < sobrante ? 1 : 0);
+                final long primero = desde;
+                final long ultimo = hasta;
+                particiones.add(ejecutor.submit(() -> leerParticion(versionAlgoritmo, primero, ultimo, destino, legados)));
+                desde = hasta + 1;
+            }
+
+            int total = 0;
+            for (Future<Integer> particion : particiones) {
+                total += particion.get();
+            }
+            logger.info("Galería precargada: {} perfiles en {} ms con {} hilos",
+                        total, System.currentTimeMillis() - inicio, hilos);
+            if (legados.get() > 0) {
+                logger.warn("{} vectores siguen en formato JSON; se convierten a float32", legados.get());
+                migrarVectoresJson();
+            }
+            return total;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExcepcionBaseDatos("Precarga de galería interrumpida", e);
+        } catch (ExecutionException e) {
+            logger.error("Error precargando galería: {}", e.getCause().getMessage());
+            throw new ExcepcionBaseDatos("Error al precargar la galería", e.getCause());
+        } finally {
+            ejecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Menor y mayor usuario_id con vectores activos de la versión (null si no hay ninguno)
+     */
+    private long[] leerRangoUsuarios(String versionAlgoritmo) throws ExcepcionBaseDatos {
+        Connection conexion = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            conexion = conexionBaseDatos.obtenerConexion();
+            statement = conexion.prepareStatement(SQL_RANGO_USUARIOS);
+            statement.setString(1, versionAlgoritmo);
+            resultSet = statement.executeQuery();
+            if (!resultSet.next()) {
+                return null;
+            }
+            long minimo = resultSet.getLong(1);
+            if (resultSet.wasNull()) {
+                return null;
+            }
+            return new long[] {minimo, resultSet.getLong(2)};
+
+        } catch (SQLException e) {
+            logger.error("Error leyendo el rango de usuarios: {}", e.getMessage());
+            throw new ExcepcionBaseDatos("Error al precargar la galería", e);
+        } finally {
+            cerrarRecursos(conexion, statement, resultSet);
+        }
+    }
+
+    /**
+     * Lee un tramo [desde, hasta] de usuario_id con cursor de servidor (requiere useCursorFetch=true en la URL)
+     * @param legados Cuenta las filas que aún están en JSON
+     */
+    private int leerParticion(String versionAlgoritmo, long desde, long hasta,
+                              BiConsumer<String, double[]> destino, AtomicInteger legados) throws SQLException {
+        Connection conexion = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            conexion = conexionBaseDatos.obtenerConexion();
+            statement = conexion.prepareStatement(SQL_PRECARGAR_PARTICION,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(TAMANO_LOTE_LECTURA);
+            statement.setString(1, versionAlgoritmo);
+            statement.setLong(2, desde);
+            statement.setLong(3, hasta);
+            resultSet = statement.executeQuery();
+
+            int entregados = 0;
+            long usuarioActual = -1;
+            String nombreActual = null;
+            double[] suma = null;
+            int muestras = 0;
+
+            while (resultSet.next()) {
+                long usuario = resultSet.getLong(1);
+                if (usuario != usuarioActual && suma != null) {
+                    destino.accept(nombreActual, promediar(suma, muestras));
+                    entregados++;
+                    suma = null;
+                }
+
+                byte[] datos = resultSet.getBytes(3);
+                if (CaracteristicaFacial.esVectorJson(datos)) {
+                    legados.incrementAndGet();
+                }
+                double[] vector = CaracteristicaFacial.decodificarVectorAlmacenado(datos);
+                if (suma == null) {
+                    usuarioActual = usuario;
+                    nombreActual = resultSet.getString(2);
+                    suma = vector;
+                    muestras = 1;
+                } else if (vector.length == suma.length) {
+                    for (int i = 0; i < suma.length; i++) {
+                        suma[i] += vector[i];
+                    }
+                    muestras++;
+                }
+            }
+            if (suma != null) {
+                destino.accept(nombreActual, promediar(suma, muestras));
+                entregados++;
+            }
+            return entregados;
+
+        } finally {
+            cerrarRecursos(conexion, statement, resultSet);
+        }
+    }
+
+    /**
+     * Reescribe como float32 los vectores que aún están en JSON (una transacción)
+     * @return Filas convertidas
+     */
+    public int migrarVectoresJson() throws ExcepcionBaseDatos {
+        Connection conexion = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        boolean autoCommitOriginal = true;
+
+        try {
+            conexion = conexionBaseDatos.obtenerConexion();
+            autoCommitOriginal = conexion.getAutoCommit();
+            conexion.setAutoCommit(false);
+
+            int convertidos = 0;
+            statement = conexion.prepareStatement(SQL_VECTORES_JSON);
+            resultSet = statement.executeQuery();
+            try (PreparedStatement actualizar = conexion.prepareStatement(SQL_ACTUALIZAR_VECTOR)) {
+                while (resultSet.next()) {
+                    byte[] datos = resultSet.getBytes(2);
+                    if (!CaracteristicaFacial.esVectorJson(datos)) {
+                        continue; // Un float32 que empieza por '[' por casualidad
+                    }
+                    byte[] vector = CaracteristicaFacial.codificarVector(
+                        CaracteristicaFacial.decodificarVectorAlmacenado(datos));
+                    actualizar.setBytes(1, vector);
+                    actualizar.setString(2, calcularHash(vector));
+                    actualizar.setLong(3, resultSet.getLong(1));
+                    actualizar.addBatch();
+                    convertidos++;
+                }
+                actualizar.executeBatch();
+            }
+
+            conexion.commit();
+            logger.info("Vectores JSON convertidos a float32: {}", convertidos);
+            return convertidos;
+
+        } catch (SQLException | IllegalArgumentException e) {
+            revertir(conexion);
+            logger.error("Error migrando vectores JSON: {}", e.getMessage());
+            throw new ExcepcionBaseDatos("Error al migrar vectores faciales", e);
+        } finally {
+            restaurarAutoCommit(conexion, autoCommitOriginal);
+            cerrarRecursos(conexion, statement, resultSet);
+        }
+    }
+
+    private static double[] promediar(double[] suma, int muestras) {
+        if (muestras > 1) {
+            for (int i = 0; i < suma.length; i++) {
+                suma[i] /= muestras;
+            }
+        }
+        return suma;
+    }
+
+    /**
+     * SHA-256 hexadecimal del BLOB (columna hash_facial)
+     */
+    private static String calcularHash(byte[] datos) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(datos));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private void revertir(Connection conexion) {
+        if (conexion != null) {
+            try {
+                conexion.rollback();
+            } catch (SQLException e) {
+                logger.warn("Error revirtiendo transacción: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void restaurarAutoCommit(Connection conexion, boolean autoCommit) {
+        if (conexion != null) {
+            try {
+                conexion.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                logger.warn("Error restaurando autocommit: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Cierra los recursos de base de datos
+     */
+    private void cerrarRecursos(Connection conexion, PreparedStatement statement, ResultSet resultSet) {
+        if (resultSet != null) {
+            try {
+                resultSet.close();
+            } catch (SQLException e) {
+                logger.warn("Error cerrando ResultSet: {}", e.getMessage());
+            }
+        }
+
+        if (statement != null) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.warn("Error cerrando PreparedStatement: {}", e.getMessage());
+            }
+        }
+
+        if (conexion != null) {
+            conexionBaseDatos.liberarConexion(conexion);
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package com.reconocimiento.facial.formularios;
 
 import com.reconocimiento.facial.neural.RedNeuronalReconocimiento;
+import com.reconocimiento.facial.procesamiento.AutenticadorMultiFotograma;
+import com.reconocimiento.facial.procesamiento.FotogramaCapturado;
 import com.reconocimiento.facial.procesamiento.ManejadorCamara;
+import com.reconocimiento.facial.procesamiento.PlanificadorFotogramas;
+import com.reconocimiento.facial.procesamiento.ProcesadorOpenCV;
+import com.reconocimiento.facial.servicios.RegistroComponentes;
 import com.reconocimiento.facial.servicios.ServicioUsuarioMejorado;
 import com.reconocimiento.facial.modelos.Usuario;
+import org.bytedeco.opencv.opencv_core.Mat;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
+import java.util.List;
 import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 🎯 FORMULARIO PRINCIPAL DE AUTENTICACIÓN
@@ -37,7 +46,8 @@ public class FormularioLoginNuevo extends JFrame {
     private JButton btnActivarCamara;
     private JButton btnLoginFacial;
     private JPanel panelVideoContainer; // Contenedor del video
-    private Timer videoTimer; // Timer para actualizar frames
+    private PlanificadorFotogramas planificadorVista; // Vista previa al ritmo del planificador
+    private VistaPreviaCamara vistaPrevia;
     
     // Componentes generales
     private JLabel lblTitulo;
@@ -66,6 +76,10 @@ public class FormularioLoginNuevo extends JFrame {
     private static final Font FONT_TITULO = new Font("Segoe UI", Font.BOLD, 28);
     private static final Font FONT_SUBTITULO = new Font("Segoe UI", Font.PLAIN, 14);
     private static final Font FONT_LABEL = new Font("Segoe UI", Font.PLAIN, 12);
+
+    // ========== RECONOCIMIENTO EN VIVO ==========
+    // Una coincidencia neuronal al 100% vale un fotograma de evidencia: se necesitan al menos dos
+    private static final double CONFIANZA_REFERENCIA_NEURONAL = 100.0;
     @SuppressWarnings("unused") private static final Font FONT_BOTON = new Font("Segoe UI", Font.BOLD, 13);
 
     /**
@@ -111,9 +125,10 @@ public class FormularioLoginNuevo extends JFrame {
      */
     private void inicializarServicios() {
         try {
-            this.servicioUsuario = new ServicioUsuarioMejorado();
-            this.redNeuronal = new RedNeuronalReconocimiento();
-            this.manejadorCamara = new ManejadorCamara();
+            RegistroComponentes registro = RegistroComponentes.obtenerInstancia();
+            this.servicioUsuario = registro.obtenerServicioUsuario();
+            this.redNeuronal = registro.obtenerRedNeuronal();
+            this.manejadorCamara = registro.obtenerManejadorCamara();
             
             System.out.println("Servicios inicializados correctamente");
         } catch (Exception e) {
@@ -360,8 +375,8 @@ public class FormularioLoginNuevo extends JFrame {
         
         panelVideoContainer.add(lblVistaPrevia, BorderLayout.CENTER);
         
-        // Inicializar timer para actualización de video
-        inicializarTimerVideo();
+        // Etapa de vista previa (el planificador se crea al activar la cámara)
+        vistaPrevia = new VistaPreviaCamara(lblVistaPrevia, 274, 174);
     }
     
     /**
@@ -373,38 +388,20 @@ public class FormularioLoginNuevo extends JFrame {
         lblVistaPrevia.setIcon(null);
     }
     
-    /**
-     * Inicializar timer para actualización de video en tiempo real
-     */
-    private void inicializarTimerVideo() {
-        videoTimer = new Timer(33, e -> { // ~30 FPS
-            if (camaraActiva && manejadorCamara != null) {
-                try {
-                    BufferedImage frame = manejadorCamara.capturarImagenBuffered();
-                    if (frame != null) {
-                        // Redimensionar imagen para el contenedor compacto
-                        Image imagenEscalada = frame.getScaledInstance(274, 174, Image.SCALE_SMOOTH);
-                        ImageIcon icono = new ImageIcon(imagenEscalada);
-                        
-                        SwingUtilities.invokeLater(() -> {
-                            lblVistaPrevia.setIcon(icono);
-                            lblVistaPrevia.setText("");
-                        });
-                    }
-                } catch (Exception ex) {
-                    // Si hay error, no actualizar frame pero mantener el timer
-                }
-            }
-        });
-    }
-    
     /**
      * Iniciar stream de video
+     * El planificador toma los fotogramas del hilo de captura y los escala fuera del EDT
      */
     private void iniciarStreamVideo() {
-        if (videoTimer != null && !videoTimer.isRunning()) {
-            videoTimer.start();
+        if (manejadorCamara == null) {
+            return;
+        }
+        if (planificadorVista == null) {
+            planificadorVista = new PlanificadorFotogramas(manejadorCamara, List.of(vistaPrevia));
+        }
+        if (!planificadorVista.isActivo()) {
             mostrarEstadoCamara("* Transmisión Activa", new Color(46, 204, 113));
+            planificadorVista.iniciar();
         }
     }
     
@@ -412,9 +409,10 @@ public class FormularioLoginNuevo extends JFrame {
      * Detener stream de video  
      */
     private void detenerStreamVideo() {
-        if (videoTimer != null && videoTimer.isRunning()) {
-            videoTimer.stop();
+        if (planificadorVista != null) {
+            planificadorVista.detener();
         }
+        vistaPrevia.descartar();
         mostrarEstadoCamara("* Cámara Desconectada", new Color(231, 76, 60));
         lblCamara.setAlignmentX(Component.CENTER_ALIGNMENT);
         btnActivarCamara.setAlignmentX(Component.CENTER_ALIGNMENT);
@@ -860,14 +858,38 @@ public class FormularioLoginNuevo extends JFrame {
         SwingWorker<Optional<Usuario>, Void> worker = new SwingWorker<Optional<Usuario>, Void>() {
             @Override
             protected Optional<Usuario> doInBackground() throws Exception {
-                // Capturar imagen
-                imagenCapturada = manejadorCamara.capturarImagenBuffered();
-                if (imagenCapturada == null) {
+                // Con reconocedores OpenCV entrenados decide el test secuencial multifotograma
+                if (servicioUsuario.isAutenticacionEnVivoDisponible()) {
+                    return servicioUsuario.autenticarConReconocimientoFacialEnVivo();
+                }
+
+                // Sin ellos, la red neuronal con el mismo test secuencial: hace falta la misma
+                // identidad en varios fotogramas, no basta con que uno solo coincida
+                Map<Integer, Usuario> candidatos = new ConcurrentHashMap<>();
+                AutenticadorMultiFotograma autenticador = new AutenticadorMultiFotograma(
+                    Mat::clone,
+                    rostro -> {
+                        BufferedImage imagen = FotogramaCapturado.convertirAImagen(rostro);
+                        Optional<Usuario> usuario = imagen != null ? redNeuronal.reconocerUsuario(imagen) : Optional.empty();
+                        if (imagen != null) {
+                            imagenCapturada = imagen;
+                        }
+                        if (usuario.isEmpty()) {
+                            return new ProcesadorOpenCV.ResultadoReconocimiento(-1, 0.0, false);
+                        }
+                        candidatos.put(usuario.get().getIdUsuario(), usuario.get());
+                        return new ProcesadorOpenCV.ResultadoReconocimiento(usuario.get().getIdUsuario(),
+                            redNeuronal.getUltimaConfianza() * 100, true);
+                    },
+                    CONFIANZA_REFERENCIA_NEURONAL);
+                AutenticadorMultiFotograma.Resultado resultado =
+                    autenticador.autenticar(manejadorCamara::esperarFotogramaPosterior);
+                System.out.println("🎬 " + resultado);
+                if (resultado.getFotogramas() == 0) {
                     throw new Exception("No se pudo capturar la imagen");
                 }
-                
-                // Procesar con red neuronal
-                return redNeuronal.reconocerUsuario(imagenCapturada);
+                return resultado.isAceptado() ? Optional.ofNullable(candidatos.get(resultado.getEtiqueta()))
+                                              : Optional.empty();
             }
             
             @Override
@@ -894,6 +916,7 @@ public class FormularioLoginNuevo extends JFrame {
      * 👥 Abrir formulario de registro
      */
     private void abrirFormularioRegistro() {
+        detenerStreamVideo();
         this.setVisible(false);
         SwingUtilities.invokeLater(() -> {
             new FormularioRegistroCompleto().setVisible(true);
@@ -905,6 +928,7 @@ public class FormularioLoginNuevo extends JFrame {
      * 🏠 Abrir ventana principal después de login exitoso
      */
     private void abrirVentanaPrincipal(Usuario usuario, String metodoAcceso) {
+        detenerStreamVideo();
         this.setVisible(false);
         SwingUtilities.invokeLater(() -> {
             VentanaBienvenida ventana = new VentanaBienvenida(usuario);
@@ -945,10 +969,8 @@ public class FormularioLoginNuevo extends JFrame {
             "Confirmar Salida", JOptionPane.YES_NO_OPTION);
         
         if (opcion == JOptionPane.YES_OPTION) {
-            // Limpiar recursos
-            if (manejadorCamara != null) {
-                manejadorCamara.liberarRecursos();
-            }
+            // Limpiar recursos compartidos (cámara y OpenCV)
+            RegistroComponentes.obtenerInstancia().liberarRecursos();
             System.exit(0);
         }
     }
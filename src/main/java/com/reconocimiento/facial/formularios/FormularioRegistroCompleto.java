@@ -1,6 +1,8 @@
 package com.reconocimiento.facial.formularios;
 
 import com.reconocimiento.facial.procesamiento.ManejadorCamara;
+import com.reconocimiento.facial.procesamiento.PlanificadorFotogramas;
+import com.reconocimiento.facial.servicios.RegistroComponentes;
 import com.reconocimiento.facial.servicios.ServicioUsuarioMejorado;
 import com.reconocimiento.facial.dto.UsuarioDTO;
 import javax.swing.*;
@@ -57,7 +59,8 @@ public class FormularioRegistroCompleto extends JFrame {
     private static final int MUESTRAS_REQUERIDAS = 5;
     private boolean camaraActiva = false;
     private boolean capturaEnProceso = false;
-    private javax.swing.Timer videoTimer; // Timer para actualizar video en tiempo real
+    private PlanificadorFotogramas planificadorVista; // Vista previa al ritmo del planificador
+    private VistaPreviaCamara vistaPrevia;
 
     // ========== CONSTANTES DE DISEÑO PROFESIONAL ==========
     private static final Color COLOR_PRINCIPAL = new Color(52, 73, 94);      // Azul oscuro profesional
@@ -121,8 +124,9 @@ public class FormularioRegistroCompleto extends JFrame {
      */
     private void inicializarServicios() {
         try {
-            this.servicioUsuario = new ServicioUsuarioMejorado();
-            this.manejadorCamara = new ManejadorCamara();
+            RegistroComponentes registro = RegistroComponentes.obtenerInstancia();
+            this.servicioUsuario = registro.obtenerServicioUsuario();
+            this.manejadorCamara = registro.obtenerManejadorCamara();
             this.muestrasFaciales = new ArrayList<>();
             
             System.out.println("Servicios de registro inicializados");
@@ -552,8 +556,8 @@ public class FormularioRegistroCompleto extends JFrame {
         panelVideoContainer.revalidate();
         panelVideoContainer.repaint();
         
-        // Inicializar timer para actualización de video HD
-        inicializarTimerVideoHD();
+        // Etapa de vista previa HD (el planificador se crea al activar la cámara)
+        vistaPrevia = new VistaPreviaCamara(lblVistaPrevia, 390, 290);
         
         // Crear label de estado (compatible con código existente) - INVISIBLE
         lblCamara = new JLabel();
@@ -584,38 +588,20 @@ public class FormularioRegistroCompleto extends JFrame {
         System.out.println("DEBUG REGISTRO: Area camara actualizada correctamente");
     }
     
-    /**
-     * ⚡ Inicializar timer para actualización de video HD
-     */
-    private void inicializarTimerVideoHD() {
-        videoTimer = new Timer(33, e -> { // ~30 FPS para fluidez premium
-            if (camaraActiva && manejadorCamara != null) {
-                try {
-                    BufferedImage frame = manejadorCamara.capturarImagenBuffered();
-                    if (frame != null) {
-                        // Redimensionar imagen para contenedor HD (mejorado)
-                        Image imagenEscalada = frame.getScaledInstance(390, 290, Image.SCALE_SMOOTH);
-                        ImageIcon icono = new ImageIcon(imagenEscalada);
-                        
-                        SwingUtilities.invokeLater(() -> {
-                            lblVistaPrevia.setIcon(icono);
-                            lblVistaPrevia.setText("");
-                        });
-                    }
-                } catch (Exception ex) {
-                    // Si hay error, mantener el estado pero no actualizar frame
-                }
-            }
-        });
-    }
-    
     /**
      * Iniciar stream de video premium
+     * El planificador toma los fotogramas del hilo de captura y los escala fuera del EDT
      */
     private void iniciarStreamVideoHD() {
-        if (videoTimer != null && !videoTimer.isRunning()) {
-            videoTimer.start();
+        if (manejadorCamara == null) {
+            return;
+        }
+        if (planificadorVista == null) {
+            planificadorVista = new PlanificadorFotogramas(manejadorCamara, List.of(vistaPrevia));
+        }
+        if (!planificadorVista.isActivo()) {
             mostrarEstadoCamaraModerno("Transmision Activa", new Color(46, 204, 113));
+            planificadorVista.iniciar();
         }
     }
     
@@ -623,12 +609,19 @@ public class FormularioRegistroCompleto extends JFrame {
      * Detener stream de video  
      */
     private void detenerStreamVideoHD() {
-        if (videoTimer != null && videoTimer.isRunning()) {
-            videoTimer.stop();
-        }
+        detenerPlanificadorVista();
         mostrarEstadoCamaraModerno("Camara Desconectada", new Color(231, 76, 60));
     }
 
+    private void detenerPlanificadorVista() {
+        if (planificadorVista != null) {
+            planificadorVista.detener();
+        }
+        if (vistaPrevia != null) {
+            vistaPrevia.descartar();
+        }
+    }
+
     /**
      * 🧹 Limpiar recursos antes de cerrar
      */
@@ -1076,68 +1069,11 @@ public class FormularioRegistroCompleto extends JFrame {
         });
     }
 
-    /**
-     * 🎥 Iniciar stream de video en tiempo real
-     */
-    private void iniciarStreamVideo() {
-        if (videoTimer != null) {
-            videoTimer.stop();
-        }
-        
-        // Timer para actualizar el video cada 50ms (20 FPS)
-        videoTimer = new javax.swing.Timer(50, e -> actualizarFrameVideo());
-        videoTimer.start();
-        
-        System.out.println("🎥 Stream de video iniciado");
-    }
-    
-    /**
-     * 🔄 Actualizar frame de video
-     */
-    private void actualizarFrameVideo() {
-        if (!camaraActiva) {
-            return;
-        }
-        
-        SwingUtilities.invokeLater(() -> {
-            try {
-                BufferedImage imagen = manejadorCamara.capturarImagenBuffered();
-                if (imagen != null) {
-                    // Escalar imagen para mostrar en el label
-                    Image imagenEscalada = imagen.getScaledInstance(
-                        lblCamara.getWidth() - 10, 
-                        lblCamara.getHeight() - 10, 
-                        Image.SCALE_FAST
-                    );
-                    
-                    // Crear ImageIcon y asignarlo al label
-                    ImageIcon icon = new ImageIcon(imagenEscalada);
-                    lblCamara.setIcon(icon);
-                    lblCamara.setText(""); // Quitar el texto para mostrar solo la imagen
-                    
-                } else {
-                    // Si no hay imagen, mostrar mensaje de error
-                    lblCamara.setIcon(null);
-                    lblCamara.setText("❌ ERROR EN CÁMARA");
-                    lblCamara.setBackground(COLOR_PELIGRO);
-                }
-                
-            } catch (Exception ex) {
-                System.err.println("❌ Error actualizando video: " + ex.getMessage());
-                lblCamara.setIcon(null);
-                lblCamara.setText("⚠️ ERROR VIDEO");
-            }
-        });
-    }
-    
     /**
      * Detener stream de video
      */
     private void detenerStreamVideo() {
-        if (videoTimer != null) {
-            videoTimer.stop();
-            videoTimer = null;
-        }
+        detenerPlanificadorVista();
         
         // Limpiar el label
         lblCamara.setIcon(null);
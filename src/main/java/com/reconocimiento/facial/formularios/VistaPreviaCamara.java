@@ -0,0 +1,73 @@
+package com.reconocimiento.facial.formularios;
+
+import com.reconocimiento.facial.procesamiento.FotogramaCapturado;
+import com.reconocimiento.facial.procesamiento.PlanificadorFotogramas;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 🖥️ VISTA PREVIA DE LA CÁMARA
+ * Etapa del {@link PlanificadorFotogramas} que muestra los fotogramas en una etiqueta.
+ * La conversión y el escalado se hacen en el hilo del planificador, al ritmo que este
+ * decide (camara.fps, carga de CPU); el EDT solo recibe la imagen ya lista. Si el EDT
+ * todavía no pintó la anterior, la nueva la reemplaza: nunca se acumulan repintados.
+ */
+public class VistaPreviaCamara implements PlanificadorFotogramas.Etapa {
+
+    private final JLabel destino;
+    private final int ancho;
+    private final int alto;
+    private final AtomicReference<BufferedImage> pendiente = new AtomicReference<>();
+
+    /**
+     * @param destino Etiqueta donde se pinta
+     * @param ancho Ancho de la imagen mostrada
+     * @param alto Alto de la imagen mostrada
+     */
+    public VistaPreviaCamara(JLabel destino, int ancho, int alto) {
+        this.destino = destino;
+        this.ancho = ancho;
+        this.alto = alto;
+    }
+
+    @Override
+    public String getNombre() {
+        return "vista previa";
+    }
+
+    @Override
+    public boolean procesar(FotogramaCapturado fotograma) {
+        BufferedImage imagen = fotograma.getImagen();
+        if (imagen == null) {
+            return true;
+        }
+        BufferedImage escalada = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = escalada.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(imagen, 0, 0, ancho, alto, null);
+        g2d.dispose();
+
+        if (pendiente.getAndSet(escalada) == null) {
+            SwingUtilities.invokeLater(this::pintar);
+        }
+        return true;
+    }
+
+    /**
+     * Olvidar la imagen aún no pintada (tras detener el planificador, antes de mostrar otro estado)
+     */
+    public void descartar() {
+        pendiente.set(null);
+    }
+
+    private void pintar() {
+        BufferedImage imagen = pendiente.getAndSet(null);
+        if (imagen != null) {
+            destino.setIcon(new ImageIcon(imagen));
+            destino.setText("");
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package com.reconocimiento.facial.modelos;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reconocimiento.facial.neural.KernelesSimilitud;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
 import java.time.LocalDateTime;
 
 /**
@@ -8,6 +13,9 @@ import java.time.LocalDateTime;
  * Contiene el vector de características y métodos de comparación
  */
 public class CaracteristicaFacial {
+    // ObjectMapper es seguro entre hilos una vez configurado: una sola instancia para todo el proceso
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     private int idCaracteristica;
     private int idUsuario;
     private double[] vectorCaracteristicas;
@@ -16,6 +24,7 @@ public class CaracteristicaFacial {
     private LocalDateTime fechaCreacion;
     private double calidadImagen;
     private String metodoExtraccion;
+    private String versionAlgoritmo;
 
     // Constructor vacío
     public CaracteristicaFacial() {
@@ -23,6 +32,7 @@ public class CaracteristicaFacial {
         this.esImagenEntrenamiento = true;
         this.calidadImagen = 0.0;
         this.metodoExtraccion = "OpenCV";
+        this.versionAlgoritmo = "v2.0";
     }
 
     // Constructor principal
@@ -79,6 +89,10 @@ public class CaracteristicaFacial {
         return metodoExtraccion;
     }
 
+    public String getVersionAlgoritmo() {
+        return versionAlgoritmo;
+    }
+
     // Métodos setter
     public void setIdCaracteristica(int idCaracteristica) {
         this.idCaracteristica = idCaracteristica;
@@ -112,6 +126,10 @@ public class CaracteristicaFacial {
         this.metodoExtraccion = metodoExtraccion;
     }
 
+    public void setVersionAlgoritmo(String versionAlgoritmo) {
+        this.versionAlgoritmo = versionAlgoritmo;
+    }
+
     // Métodos de comparación y similitud
 
     /**
@@ -124,13 +142,7 @@ public class CaracteristicaFacial {
             throw new IllegalArgumentException("Los vectores deben tener la misma dimensión");
         }
 
-        double sumaCuadrados = 0.0;
-        for (int i = 0; i < this.vectorCaracteristicas.length; i++) {
-            double diferencia = this.vectorCaracteristicas[i] - otroVector[i];
-            sumaCuadrados += diferencia * diferencia;
-        }
-
-        double distancia = Math.sqrt(sumaCuadrados);
+        double distancia = KernelesSimilitud.distanciaEuclidiana(this.vectorCaracteristicas, otroVector);
         // Convertir distancia a similitud (0-1, donde 1 es más similar)
         return 1.0 / (1.0 + distancia);
     }
@@ -145,18 +157,7 @@ public class CaracteristicaFacial {
             throw new IllegalArgumentException("Los vectores deben tener la misma dimensión");
         }
 
-        double productoEscalar = 0.0;
-        double normaA = 0.0;
-        double normaB = 0.0;
-
-        for (int i = 0; i < this.vectorCaracteristicas.length; i++) {
-            productoEscalar += this.vectorCaracteristicas[i] * otroVector[i];
-            normaA += this.vectorCaracteristicas[i] * this.vectorCaracteristicas[i];
-            normaB += otroVector[i] * otroVector[i];
-        }
-
-        double denominador = Math.sqrt(normaA) * Math.sqrt(normaB);
-        return denominador != 0 ? productoEscalar / denominador : 0.0;
+        return KernelesSimilitud.similitudCoseno(this.vectorCaracteristicas, otroVector);
     }
 
     /**
@@ -169,11 +170,7 @@ public class CaracteristicaFacial {
             throw new IllegalArgumentException("Los vectores deben tener la misma dimensión");
         }
 
-        double suma = 0.0;
-        for (int i = 0; i < this.vectorCaracteristicas.length; i++) {
-            suma += Math.abs(this.vectorCaracteristicas[i] - otroVector[i]);
-        }
-        return suma;
+        return KernelesSimilitud.distanciaManhattan(this.vectorCaracteristicas, otroVector);
     }
 
     /**
@@ -208,13 +205,99 @@ public class CaracteristicaFacial {
     }
 
     /**
-     * Convierte el vector de características a JSON para almacenamiento
+     * Convierte el vector a float32 little-endian para la columna BLOB
+     * @return 4 bytes por componente
+     */
+    public byte[] vectorABytes() {
+        return codificarVector(vectorCaracteristicas != null ? vectorCaracteristicas : new double[0]);
+    }
+
+    /**
+     * Carga el vector desde la columna BLOB (float32 little-endian o JSON de filas antiguas)
+     * @param datos Contenido de la columna BLOB
+     */
+    public void cargarVectorDesdeBytes(byte[] datos) {
+        this.vectorCaracteristicas = decodificarVectorAlmacenado(datos);
+    }
+
+    /**
+     * Codifica un vector como float32 little-endian (4 bytes por componente)
+     */
+    public static byte[] codificarVector(double[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        for (double valor : vector) {
+            buffer.putFloat((float) valor);
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Decodifica un vector float32 little-endian
+     * @throws IllegalArgumentException si la longitud no es múltiplo de 4
+     */
+    public static double[] decodificarVector(byte[] datos) {
+        if (datos == null || datos.length % Float.BYTES != 0) {
+            throw new IllegalArgumentException("El BLOB del vector debe tener un múltiplo de 4 bytes");
+        }
+        FloatBuffer floats = ByteBuffer.wrap(datos).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        double[] vector = new double[floats.remaining()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = floats.get(i);
+        }
+        return vector;
+    }
+
+    /**
+     * Decodifica el contenido de la columna: float32 o, en filas de antes de la migración a
+     * BLOB, el texto JSON que guardaba la columna TEXT (MODIFY conserva sus bytes)
+     */
+    public static double[] decodificarVectorAlmacenado(byte[] datos) {
+        if (esVectorJson(datos)) {
+            try {
+                return MAPPER.readValue(datos, double[].class);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Vector JSON antiguo ilegible", e);
+            }
+        }
+        return decodificarVector(datos);
+    }
+
+    /**
+     * true si los bytes son un arreglo JSON de números (formato anterior a la columna BLOB)
+     * Un vector float32 real casi nunca empieza por '[' y termina en ']' con solo dígitos en medio
+     */
+    public static boolean esVectorJson(byte[] datos) {
+        if (datos == null || datos.length < 2) {
+            return false;
+        }
+        int inicio = 0;
+        int fin = datos.length - 1;
+        while (inicio < fin && Character.isWhitespace(datos[inicio])) {
+            inicio++;
+        }
+        while (fin > inicio && Character.isWhitespace(datos[fin])) {
+            fin--;
+        }
+        if (datos[inicio] != '[' || datos[fin] != ']') {
+            return false;
+        }
+        for (int i = inicio + 1; i < fin; i++) {
+            byte b = datos[i];
+            if (!(b >= '0' && b <= '9') && b != '.' && b != ',' && b != '-' && b != '+' &&
+                b != 'e' && b != 'E' && b != ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Convierte el vector de características a JSON (formato anterior a la columna BLOB)
      * @return String JSON del vector
      */
     public String vectorAJson() {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            return mapper.writeValueAsString(vectorCaracteristicas);
+            return MAPPER.writeValueAsString(vectorCaracteristicas);
         } catch (Exception e) {
             System.err.println("Error convirtiendo vector a JSON: " + e.getMessage());
             return "[]";
@@ -227,8 +310,7 @@ public class CaracteristicaFacial {
      */
     public void cargarVectorDesdeJson(String jsonVector) {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            this.vectorCaracteristicas = mapper.readValue(jsonVector, double[].class);
+            this.vectorCaracteristicas = MAPPER.readValue(jsonVector, double[].class);
         } catch (Exception e) {
             System.err.println("Error cargando vector desde JSON: " + e.getMessage());
             this.vectorCaracteristicas = new double[0];
@@ -245,6 +327,7 @@ public class CaracteristicaFacial {
                 ", esImagenEntrenamiento=" + esImagenEntrenamiento +
                 ", calidadImagen=" + calidadImagen +
                 ", metodoExtraccion='" + metodoExtraccion + '\'' +
+                ", versionAlgoritmo='" + versionAlgoritmo + '\'' +
                 ", fechaCreacion=" + fechaCreacion +
                 '}';
     }
@@ -0,0 +1,215 @@
+package com.reconocimiento.facial.neural;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * 💾 ARCHIVO DE MODELO BINARIO
+ * Formato versionado para los pesos de {@link MotorInferenciaPlano}, pensado para cargarse
+ * con {@link FileChannel#map} y copiarse en bloque a los arreglos del motor sin interpretar
+ * texto. Todos los valores son little-endian.
+ *
+ * Cabecera (64 bytes):
+ *   int    mágico "RNRF"
+ *   int    versión del formato
+ *   byte[20] versión del modelo (ASCII, rellena con ceros; cabe en version_algoritmo VARCHAR(20))
+ *   int    número de capas (3)
+ *   int[2] entradas, salidas por capa
+ * Datos: por cada capa, pesos float32 fila-mayor [salidas][entradas] seguidos del bias [salidas]
+ */
+public final class ArchivoModelo {
+
+    private static final int MAGICO = 0x46524E52; // "RNRF" en little-endian
+    private static final int VERSION_FORMATO = 1;
+    private static final int LONGITUD_VERSION = 20;
+    private static final int NUMERO_CAPAS = 3;
+    private static final int TAMANO_CABECERA = 64;
+
+    private ArchivoModelo() {
+    }
+
+    /**
+     * 🏷️ Versión de modelo derivada del contenido: "RN3-" + CRC32 de los pesos
+     * Dos archivos con los mismos pesos producen la misma versión
+     */
+    public static String calcularVersion(MotorInferenciaPlano motor) {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        for (int capa = 0; capa < NUMERO_CAPAS; capa++) {
+            actualizarCrc(crc, buffer, motor.getPesosCapa(capa));
+            actualizarCrc(crc, buffer, motor.getBiasCapa(capa));
+        }
+        return String.format("RN3-%08x", crc.getValue());
+    }
+
+    /**
+     * 💾 Guardar el motor en disco (escritura a archivo temporal y movimiento atómico)
+     */
+    public static void guardar(Path archivo, String versionModelo, MotorInferenciaPlano motor) throws IOException {
+        byte[] version = versionModelo.getBytes(StandardCharsets.US_ASCII);
+        if (version.length > LONGITUD_VERSION) {
+            throw new IllegalArgumentException("La versión del modelo admite como máximo " + LONGITUD_VERSION + " caracteres");
+        }
+
+        Path directorio = archivo.toAbsolutePath().getParent();
+        if (directorio != null) {
+            Files.createDirectories(directorio);
+        }
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer cabecera = ByteBuffer.allocate(TAMANO_CABECERA).order(ByteOrder.LITTLE_ENDIAN);
+            cabecera.putInt(MAGICO);
+            cabecera.putInt(VERSION_FORMATO);
+            cabecera.put(version);
+            cabecera.position(8 + LONGITUD_VERSION);
+            cabecera.putInt(NUMERO_CAPAS);
+            cabecera.putInt(motor.getDimensionEntrada()).putInt(motor.getNeuronasOculta1());
+            cabecera.putInt(motor.getNeuronasOculta1()).putInt(motor.getNeuronasOculta2());
+            cabecera.putInt(motor.getNeuronasOculta2()).putInt(motor.getDimensionSalida());
+            cabecera.clear();
+            escribirCompleto(canal, cabecera);
+
+            ByteBuffer buffer = ByteBuffer.allocate(256 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            for (int capa = 0; capa < NUMERO_CAPAS; capa++) {
+                escribirFloats(canal, buffer, motor.getPesosCapa(capa));
+                escribirFloats(canal, buffer, motor.getBiasCapa(capa));
+            }
+            canal.force(true);
+        }
+
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 📂 Cargar un modelo mapeando el archivo en memoria
+     * @throws IOException si el archivo no existe, está truncado o no tiene el formato esperado
+     */
+    public static ModeloCargado cargar(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano < TAMANO_CABECERA) {
+                throw new IOException("Archivo de modelo truncado: " + archivo);
+            }
+
+            MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamano);
+            mapa.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (mapa.getInt(0) != MAGICO) {
+                throw new IOException("El archivo no es un modelo de red neuronal: " + archivo);
+            }
+            int formato = mapa.getInt(4);
+            if (formato != VERSION_FORMATO) {
+                throw new IOException("Versión de formato de modelo no soportada: " + formato);
+            }
+
+            byte[] version = new byte[LONGITUD_VERSION];
+            mapa.get(8, version);
+            int longitudVersion = 0;
+            while (longitudVersion < LONGITUD_VERSION && version[longitudVersion] != 0) {
+                longitudVersion++;
+            }
+            String versionModelo = new String(version, 0, longitudVersion, StandardCharsets.US_ASCII);
+
+            int posicion = 8 + LONGITUD_VERSION;
+            int capas = mapa.getInt(posicion);
+            if (capas != NUMERO_CAPAS) {
+                throw new IOException("Número de capas no soportado: " + capas);
+            }
+            int[] entradas = new int[NUMERO_CAPAS];
+            int[] salidas = new int[NUMERO_CAPAS];
+            for (int capa = 0; capa < NUMERO_CAPAS; capa++) {
+                entradas[capa] = mapa.getInt(posicion + 4 + capa * 8);
+                salidas[capa] = mapa.getInt(posicion + 8 + capa * 8);
+            }
+            if (entradas[1] != salidas[0] || entradas[2] != salidas[1]) {
+                throw new IOException("Formas de capa inconsistentes en " + archivo);
+            }
+
+            long floatsEsperados = 0;
+            for (int capa = 0; capa < NUMERO_CAPAS; capa++) {
+                floatsEsperados += (long) entradas[capa] * salidas[capa] + salidas[capa];
+            }
+            if (tamano != TAMANO_CABECERA + floatsEsperados * Float.BYTES) {
+                throw new IOException("Tamaño de archivo de modelo inesperado: " + tamano + " bytes");
+            }
+
+            // Copia en bloque desde la región mapeada a los arreglos del motor
+            FloatBuffer datos = mapa.slice(TAMANO_CABECERA, (int) (tamano - TAMANO_CABECERA))
+                                    .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+            float[][] pesos = new float[NUMERO_CAPAS][];
+            float[][] bias = new float[NUMERO_CAPAS][];
+            for (int capa = 0; capa < NUMERO_CAPAS; capa++) {
+                pesos[capa] = new float[entradas[capa] * salidas[capa]];
+                bias[capa] = new float[salidas[capa]];
+                datos.get(pesos[capa]);
+                datos.get(bias[capa]);
+            }
+
+            MotorInferenciaPlano motor = new MotorInferenciaPlano(entradas[0], salidas[0], salidas[1], salidas[2],
+                pesos[0], bias[0], pesos[1], bias[1], pesos[2], bias[2]);
+            return new ModeloCargado(versionModelo, motor);
+        }
+    }
+
+    /**
+     * 🔧 UTILIDADES DE ESCRITURA
+     */
+
+    private static void escribirFloats(FileChannel canal, ByteBuffer buffer, float[] valores) throws IOException {
+        int i = 0;
+        while (i < valores.length) {
+            buffer.clear();
+            int cantidad = Math.min(buffer.capacity() / Float.BYTES, valores.length - i);
+            buffer.asFloatBuffer().put(valores, i, cantidad);
+            buffer.limit(cantidad * Float.BYTES);
+            escribirCompleto(canal, buffer);
+            i += cantidad;
+        }
+    }
+
+    private static void escribirCompleto(FileChannel canal, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            canal.write(buffer);
+        }
+    }
+
+    private static void actualizarCrc(CRC32 crc, ByteBuffer buffer, float[] valores) {
+        int i = 0;
+        while (i < valores.length) {
+            buffer.clear();
+            int cantidad = Math.min(buffer.capacity() / Float.BYTES, valores.length - i);
+            buffer.asFloatBuffer().put(valores, i, cantidad);
+            buffer.limit(cantidad * Float.BYTES);
+            crc.update(buffer);
+            i += cantidad;
+        }
+    }
+
+    /**
+     * 📋 Resultado de la carga: versión del modelo y motor listo para inferencia
+     */
+    public static final class ModeloCargado {
+        private final String versionModelo;
+        private final MotorInferenciaPlano motor;
+
+        ModeloCargado(String versionModelo, MotorInferenciaPlano motor) {
+            this.versionModelo = versionModelo;
+            this.motor = motor;
+        }
+
+        public String getVersionModelo() { return versionModelo; }
+        public MotorInferenciaPlano getMotor() { return motor; }
+    }
+}
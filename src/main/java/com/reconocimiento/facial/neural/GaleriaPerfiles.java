@@ -0,0 +1,313 @@
+package com.reconocimiento.facial.neural;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 🗂️ GALERÍA DE PERFILES FACIALES
+ * Mantiene todos los perfiles registrados normalizados (norma 1) en un único float[]
+ * contiguo, con un int[] paralelo de ids y la norma original de cada perfil.
+ * La similitud coseno se reduce a un producto escalar recorrido linealmente en memoria
+ * y la distancia euclidiana se deriva de ese mismo producto y de las normas.
+ *
+ * Concurrencia: las búsquedas leen una instantánea publicada por un campo volatile y no
+ * toman bloqueos. Las filas escritas no se modifican nunca: las altas escriben a
+ * continuación de la última fila (invisible para las instantáneas anteriores) y las
+ * actualizaciones y bajas solo marcan la fila anterior como libre, un único int que las
+ * búsquedas comprueban antes de puntuar. Las filas libres se descartan al ampliar o cuando
+ * superan a las vivas, copiando solo las vivas a arreglos nuevos (coste amortizado O(1)).
+ */
+public class GaleriaPerfiles {
+
+    // ========== CONFIGURACIÓN ==========
+    private static final int CAPACIDAD_INICIAL = 64;
+    private static final double PESO_COSENO = 0.7;
+    private static final double PESO_EUCLIDIANO = 0.3;
+    private static final int FILA_LIBRE = Integer.MIN_VALUE; // Id de una fila reemplazada o eliminada
+
+    private final int dimension;
+    private final Object bloqueoEscritura = new Object();
+    private final Map<Integer, Integer> filasPorId = new HashMap<>(); // Protegido por bloqueoEscritura
+    private final ThreadLocal<float[]> bufferConsulta;
+
+    private volatile Instantanea instantanea;
+
+    /**
+     * Estado publicado de la galería; de las filas [0, cantidad) solo cambia el id, a FILA_LIBRE
+     */
+    private static final class Instantanea {
+        final float[] perfiles; // [capacidad][dimension] fila-mayor, filas normalizadas
+        final int[] ids;
+        final float[] normas;   // Norma original de cada perfil
+        final int cantidad;     // Filas ocupadas, libres incluidas
+        final int vivos;
+
+        Instantanea(float[] perfiles, int[] ids, float[] normas, int cantidad, int vivos) {
+            this.perfiles = perfiles;
+            this.ids = ids;
+            this.normas = normas;
+            this.cantidad = cantidad;
+            this.vivos = vivos;
+        }
+
+        int capacidad() {
+            return ids.length;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param dimension Número de valores de cada perfil
+     */
+    public GaleriaPerfiles(int dimension) {
+        if (dimension <= 0) {
+            throw new IllegalArgumentException("La dimensión debe ser positiva");
+        }
+        this.dimension = dimension;
+        this.bufferConsulta = ThreadLocal.withInitial(() -> new float[dimension]);
+        this.instantanea = new Instantanea(new float[CAPACIDAD_INICIAL * dimension],
+                                           new int[CAPACIDAD_INICIAL], new float[CAPACIDAD_INICIAL], 0, 0);
+    }
+
+    /**
+     * 📦 Reservar espacio para al menos {@code perfiles} perfiles antes de una carga masiva
+     * (una sola copia en lugar de las duplicaciones sucesivas)
+     */
+    public void reservar(int perfiles) {
+        synchronized (bloqueoEscritura) {
+            Instantanea actual = instantanea;
+            if (perfiles > actual.capacidad() - actual.cantidad + actual.vivos) {
+                instantanea = compactar(actual, perfiles);
+            }
+        }
+    }
+
+    /**
+     * ➕ Registrar un perfil nuevo o reemplazar el existente con el mismo id
+     */
+    public void agregarOActualizar(int id, double[] perfil) {
+        validarDimension(perfil);
+
+        synchronized (bloqueoEscritura) {
+            Instantanea actual = instantanea;
+            int vivos = actual.vivos;
+            Integer fila = filasPorId.get(id);
+            if (fila != null) {
+                // La fila puede estar leyéndose: se libera y el perfil nuevo va al final
+                actual.ids[fila] = FILA_LIBRE;
+                vivos--;
+            }
+
+            Instantanea destino = actual.cantidad < actual.capacidad()
+                ? actual
+                : compactar(actual, Math.max(CAPACIDAD_INICIAL, (vivos + 1) * 2));
+            int nuevaFila = destino.cantidad;
+            destino.normas[nuevaFila] = escribirNormalizado(perfil, destino.perfiles, nuevaFila * dimension);
+            destino.ids[nuevaFila] = id;
+            filasPorId.put(id, nuevaFila);
+            instantanea = new Instantanea(destino.perfiles, destino.ids, destino.normas, nuevaFila + 1, vivos + 1);
+        }
+    }
+
+    /**
+     * ➖ Eliminar un perfil; su fila queda libre hasta la siguiente compactación
+     * @return true si el id estaba registrado
+     */
+    public boolean eliminar(int id) {
+        synchronized (bloqueoEscritura) {
+            Integer fila = filasPorId.remove(id);
+            if (fila == null) {
+                return false;
+            }
+
+            Instantanea actual = instantanea;
+            actual.ids[fila] = FILA_LIBRE;
+            Instantanea sinFila = new Instantanea(actual.perfiles, actual.ids, actual.normas,
+                                                  actual.cantidad, actual.vivos - 1);
+            // Las búsquedas recorren también las filas libres: compactar cuando sean mayoría
+            instantanea = sinFila.cantidad - sinFila.vivos > sinFila.vivos
+                ? compactar(sinFila, Math.max(CAPACIDAD_INICIAL, sinFila.vivos * 2))
+                : sinFila;
+            return true;
+        }
+    }
+
+    /**
+     * 🔍 Buscar el perfil con mayor confianza combinada (0.7·coseno + 0.3·1/(1+euclidiana))
+     * @return Mejor coincidencia o null si la galería está vacía o ninguna confianza es positiva
+     */
+    public Coincidencia buscarMejor(double[] consulta) {
+        validarDimension(consulta);
+
+        Instantanea vista = instantanea;
+        float[] consultaNormalizada = bufferConsulta.get();
+        double normaConsulta = escribirNormalizado(consulta, consultaNormalizada, 0);
+
+        int mejorId = FILA_LIBRE;
+        double mejorConfianza = 0.0;
+        double mejorCoseno = 0.0;
+        double mejorDistancia = 0.0;
+
+        float[] perfiles = vista.perfiles;
+        float[] normas = vista.normas;
+        int[] ids = vista.ids;
+        for (int fila = 0, desplazamiento = 0; fila < vista.cantidad; fila++, desplazamiento += dimension) {
+            int id = ids[fila];
+            if (id == FILA_LIBRE) {
+                continue;
+            }
+            double coseno = KernelesSimilitud.productoEscalar(consultaNormalizada, perfiles, desplazamiento);
+            double normaPerfil = normas[fila];
+            double distanciaCuadrada = normaConsulta * normaConsulta + normaPerfil * normaPerfil
+                                     - 2.0 * normaConsulta * normaPerfil * coseno;
+            double distancia = Math.sqrt(Math.max(0.0, distanciaCuadrada));
+            double confianza = combinarConfianza(coseno, distancia);
+
+            if (confianza > mejorConfianza) {
+                mejorConfianza = confianza;
+                mejorId = id;
+                mejorCoseno = coseno;
+                mejorDistancia = distancia;
+            }
+        }
+
+        if (mejorId == FILA_LIBRE) {
+            return null;
+        }
+        return new Coincidencia(mejorId, mejorConfianza, mejorCoseno, mejorDistancia);
+    }
+
+    /**
+     * 📋 Ids de los k perfiles con mayor similitud coseno (búsqueda exhaustiva)
+     * Sirve de referencia para medir el recall del índice aproximado
+     */
+    public int[] buscarMasSimilares(double[] consulta, int k) {
+        validarDimension(consulta);
+
+        Instantanea vista = instantanea;
+        float[] consultaNormalizada = bufferConsulta.get();
+        escribirNormalizado(consulta, consultaNormalizada, 0);
+
+        int limite = Math.min(k, vista.vivos);
+        int[] encontrados = new int[limite];
+        float[] similitudes = new float[limite];
+        int usados = 0;
+
+        // Inserción ordenada en un arreglo pequeño de tamaño k
+        for (int fila = 0, desplazamiento = 0; fila < vista.cantidad; fila++, desplazamiento += dimension) {
+            int id = vista.ids[fila];
+            if (id == FILA_LIBRE) {
+                continue;
+            }
+            float similitud = KernelesSimilitud.productoEscalar(consultaNormalizada, vista.perfiles, desplazamiento);
+            if (usados == limite && (limite == 0 || similitud <= similitudes[limite - 1])) {
+                continue;
+            }
+            int posicion = usados < limite ? usados++ : limite - 1;
+            while (posicion > 0 && similitudes[posicion - 1] < similitud) {
+                similitudes[posicion] = similitudes[posicion - 1];
+                encontrados[posicion] = encontrados[posicion - 1];
+                posicion--;
+            }
+            similitudes[posicion] = similitud;
+            encontrados[posicion] = id;
+        }
+
+        return usados == limite ? encontrados : Arrays.copyOf(encontrados, usados);
+    }
+
+    /**
+     * Confianza combinada usada en la identificación: 0.7·coseno + 0.3·1/(1+euclidiana)
+     */
+    public static double combinarConfianza(double similitudCoseno, double distanciaEuclidiana) {
+        return PESO_COSENO * similitudCoseno + PESO_EUCLIDIANO / (1.0 + distanciaEuclidiana);
+    }
+
+    /**
+     * 🔧 UTILIDADES INTERNAS
+     */
+
+    /**
+     * Escribe el vector normalizado en destino[desplazamiento..] y devuelve su norma original
+     */
+    private float escribirNormalizado(double[] vector, float[] destino, int desplazamiento) {
+        double suma = 0.0;
+        for (double valor : vector) {
+            suma += valor * valor;
+        }
+        double norma = Math.sqrt(suma);
+        double inversa = norma > 0.0 ? 1.0 / norma : 0.0;
+        for (int i = 0; i < dimension; i++) {
+            destino[desplazamiento + i] = (float) (vector[i] * inversa);
+        }
+        return (float) norma;
+    }
+
+    /**
+     * Copia las filas vivas a arreglos nuevos con al menos {@code capacidad} filas
+     * y recoloca filasPorId (se llama con bloqueoEscritura tomado)
+     */
+    private Instantanea compactar(Instantanea actual, int capacidad) {
+        int nuevaCapacidad = Math.max(capacidad, actual.vivos);
+        float[] perfiles = new float[nuevaCapacidad * dimension];
+        int[] ids = new int[nuevaCapacidad];
+        float[] normas = new float[nuevaCapacidad];
+        int destino = 0;
+        for (int fila = 0; fila < actual.cantidad; fila++) {
+            int id = actual.ids[fila];
+            if (id == FILA_LIBRE) {
+                continue;
+            }
+            System.arraycopy(actual.perfiles, fila * dimension, perfiles, destino * dimension, dimension);
+            ids[destino] = id;
+            normas[destino] = actual.normas[fila];
+            filasPorId.put(id, destino);
+            destino++;
+        }
+        return new Instantanea(perfiles, ids, normas, destino, destino);
+    }
+
+    private void validarDimension(double[] vector) {
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("El perfil debe tener " + dimension + " valores");
+        }
+    }
+
+    // ========== GETTERS ==========
+    public int getDimension() { return dimension; }
+    public int getCantidad() { return instantanea.vivos; }
+    public boolean estaVacia() { return instantanea.vivos == 0; }
+
+    /**
+     * Memoria reservada por el bloque de perfiles, ids y normas en bytes
+     */
+    public long getTamanoBytes() {
+        Instantanea vista = instantanea;
+        return (long) vista.perfiles.length * Float.BYTES
+             + (long) vista.ids.length * Integer.BYTES
+             + (long) vista.normas.length * Float.BYTES;
+    }
+
+    /**
+     * 📋 Resultado de una búsqueda en la galería
+     */
+    public static final class Coincidencia {
+        private final int idUsuario;
+        private final double confianza;
+        private final double similitudCoseno;
+        private final double distanciaEuclidiana;
+
+        public Coincidencia(int idUsuario, double confianza, double similitudCoseno, double distanciaEuclidiana) {
+            this.idUsuario = idUsuario;
+            this.confianza = confianza;
+            this.similitudCoseno = similitudCoseno;
+            this.distanciaEuclidiana = distanciaEuclidiana;
+        }
+
+        public int getIdUsuario() { return idUsuario; }
+        public double getConfianza() { return confianza; }
+        public double getSimilitudCoseno() { return similitudCoseno; }
+        public double getDistanciaEuclidiana() { return distanciaEuclidiana; }
+    }
+}
@@ -0,0 +1,701 @@
+package com.reconocimiento.facial.neural;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 🕸️ ÍNDICE HNSW (HIERARCHICAL NAVIGABLE SMALL WORLD)
+ * Grafo de proximidad en varios niveles para búsqueda aproximada de vecinos más cercanos.
+ * Los vectores se guardan normalizados y la distancia es 1 − coseno, de modo que el orden
+ * coincide con el de la similitud coseno usada por la galería exacta.
+ *
+ * - Inserción incremental con selección heurística de vecinos
+ * - Eliminación por marca (los nodos eliminados o reemplazados siguen sirviendo de paso, pero no
+ *   se devuelven) y compactación automática cuando las marcas superan la mitad del grafo
+ * - Persistencia binaria con {@link #guardar(Path)} y {@link #cargar(Path)}; el archivo se
+ *   sustituye de forma atómica y {@link #coincideCon(Map)} permite validarlo contra la galería
+ *
+ * Las búsquedas comparten un bloqueo de lectura; inserciones y eliminaciones toman el de escritura.
+ */
+public class IndiceHNSW {
+
+    // ========== FORMATO DE ARCHIVO ==========
+    private static final int MAGICO = 0x484E5357; // "HNSW"
+    private static final int VERSION_FORMATO = 1;
+    private static final int NIVEL_MAXIMO_ARCHIVO = 64;        // Cota de cordura al cargar
+    private static final int DIMENSION_MAXIMA_ARCHIVO = 1 << 16;
+
+    // ========== PARÁMETROS ==========
+    private final int dimension;
+    private final int m;              // Vecinos por nodo en niveles superiores
+    private final int mNivelCero;     // Vecinos por nodo en el nivel 0 (2·M)
+    private final int efConstruccion;
+    private volatile int efBusqueda;
+    private final double factorNivel; // 1 / ln(M)
+    private final Random random = new Random(42);
+
+    // ========== GRAFO ==========
+    private final List<Nodo> nodos = new ArrayList<>();
+    private final Map<Integer, Integer> nodoPorId = new HashMap<>();
+    private int puntoEntrada = -1;
+    private int nivelMaximo = -1;
+    private int eliminados = 0;
+
+    private final ReentrantReadWriteLock bloqueo = new ReentrantReadWriteLock();
+
+    // Marcas de visita por hilo: una época nueva por búsqueda evita reservar y limpiar un arreglo
+    private final ThreadLocal<Visitados> visitados = ThreadLocal.withInitial(Visitados::new);
+
+    /**
+     * Nodos visitados en la búsqueda en curso: marcas[n] == epoca
+     */
+    private static final class Visitados {
+        int[] marcas = new int[0];
+        int epoca;
+
+        /**
+         * Prepara una búsqueda sobre {@code nodos} nodos
+         */
+        void iniciar(int nodos) {
+            if (marcas.length < nodos) {
+                marcas = new int[Math.max(nodos, marcas.length * 2)];
+            }
+            if (++epoca == 0) {
+                // Vuelta completa del contador: las marcas antiguas podrían coincidir
+                Arrays.fill(marcas, 0);
+                epoca = 1;
+            }
+        }
+
+        /**
+         * @return true si el nodo no se había visitado (y lo marca)
+         */
+        boolean marcar(int nodo) {
+            if (marcas[nodo] == epoca) {
+                return false;
+            }
+            marcas[nodo] = epoca;
+            return true;
+        }
+    }
+
+    /**
+     * Nodo del grafo: vector normalizado y listas de vecinos por nivel
+     */
+    private static final class Nodo {
+        final int id;
+        final float[] vector;
+        final int[][] vecinos;   // [nivel][capacidad]
+        final int[] cantidades;  // vecinos usados por nivel
+        boolean eliminado;
+
+        Nodo(int id, float[] vector, int nivel, int m, int mNivelCero) {
+            this.id = id;
+            this.vector = vector;
+            this.vecinos = new int[nivel + 1][];
+            this.cantidades = new int[nivel + 1];
+            for (int l = 0; l <= nivel; l++) {
+                vecinos[l] = new int[l == 0 ? mNivelCero : m];
+            }
+        }
+
+        int nivel() {
+            return vecinos.length - 1;
+        }
+    }
+
+    /**
+     * Candidato de búsqueda: nodo y distancia a la consulta
+     */
+    private static final class Candidato {
+        final int nodo;
+        final float distancia;
+
+        Candidato(int nodo, float distancia) {
+            this.nodo = nodo;
+            this.distancia = distancia;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param dimension Valores por vector
+     * @param m Vecinos por nodo (12-48 habitual)
+     * @param efConstruccion Ancho de la búsqueda al insertar
+     * @param efBusqueda Ancho de la búsqueda al consultar
+     */
+    public IndiceHNSW(int dimension, int m, int efConstruccion, int efBusqueda) {
+        if (dimension <= 0 || m < 2 || efConstruccion < 1 || efBusqueda < 1) {
+            throw new IllegalArgumentException("Parámetros HNSW inválidos");
+        }
+        this.dimension = dimension;
+        this.m = m;
+        this.mNivelCero = 2 * m;
+        this.efConstruccion = efConstruccion;
+        this.efBusqueda = efBusqueda;
+        this.factorNivel = 1.0 / Math.log(m);
+    }
+
+    /**
+     * ➕ Insertar un vector; si el id ya existía se reemplaza
+     */
+    public void insertar(int id, double[] vector) {
+        float[] normalizado = normalizar(vector);
+
+        bloqueo.writeLock().lock();
+        try {
+            Integer anterior = nodoPorId.get(id);
+            if (anterior != null) {
+                // Reemplazar deja el nodo viejo como marca: también cuenta para compactar
+                marcarEliminado(anterior);
+                if (eliminados > nodos.size() / 2) {
+                    compactar();
+                }
+            }
+
+            int nivel = (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * factorNivel);
+            int nuevo = nodos.size();
+            nodos.add(new Nodo(id, normalizado, nivel, m, mNivelCero));
+            nodoPorId.put(id, nuevo);
+
+            if (puntoEntrada < 0) {
+                puntoEntrada = nuevo;
+                nivelMaximo = nivel;
+                return;
+            }
+
+            // Descenso voraz por los niveles superiores al del nuevo nodo
+            int actual = puntoEntrada;
+            for (int l = nivelMaximo; l > nivel; l--) {
+                actual = descensoVoraz(normalizado, actual, l);
+            }
+
+            // Conectar en cada nivel compartido
+            List<Candidato> entradas = new ArrayList<>();
+            entradas.add(new Candidato(actual, distancia(normalizado, nodos.get(actual).vector)));
+            for (int l = Math.min(nivel, nivelMaximo); l >= 0; l--) {
+                List<Candidato> cercanos = buscarEnNivel(normalizado, entradas, efConstruccion, l);
+                List<Candidato> seleccion = seleccionarVecinos(cercanos, l == 0 ? mNivelCero : m);
+
+                Nodo nodoNuevo = nodos.get(nuevo);
+                for (Candidato vecino : seleccion) {
+                    nodoNuevo.vecinos[l][nodoNuevo.cantidades[l]++] = vecino.nodo;
+                    conectar(vecino.nodo, nuevo, l);
+                }
+                entradas = cercanos;
+            }
+
+            if (nivel > nivelMaximo) {
+                nivelMaximo = nivel;
+                puntoEntrada = nuevo;
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * ➖ Eliminar un id (marca; el nodo deja de aparecer en los resultados)
+     * @return true si el id estaba en el índice
+     */
+    public boolean eliminar(int id) {
+        bloqueo.writeLock().lock();
+        try {
+            Integer nodo = nodoPorId.get(id);
+            if (nodo == null) {
+                return false;
+            }
+            marcarEliminado(nodo);
+            if (eliminados > nodos.size() / 2) {
+                compactar();
+            }
+            return true;
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 🔍 Buscar los k vecinos aproximados más cercanos
+     * @return Pares (id, similitud coseno) ordenados de mayor a menor similitud
+     */
+    public List<Resultado> buscar(double[] consulta, int k) {
+        float[] normalizada = normalizar(consulta);
+
+        bloqueo.readLock().lock();
+        try {
+            List<Resultado> resultados = new ArrayList<>(k);
+            if (puntoEntrada < 0) {
+                return resultados;
+            }
+
+            int actual = puntoEntrada;
+            for (int l = nivelMaximo; l > 0; l--) {
+                actual = descensoVoraz(normalizada, actual, l);
+            }
+
+            List<Candidato> entradas = new ArrayList<>();
+            entradas.add(new Candidato(actual, distancia(normalizada, nodos.get(actual).vector)));
+            List<Candidato> cercanos = buscarEnNivel(normalizada, entradas, Math.max(efBusqueda, k), 0);
+
+            for (Candidato candidato : cercanos) {
+                Nodo nodo = nodos.get(candidato.nodo);
+                if (!nodo.eliminado) {
+                    resultados.add(new Resultado(nodo.id, 1.0 - candidato.distancia));
+                    if (resultados.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return resultados;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * 🔧 ALGORITMOS DEL GRAFO
+     */
+
+    /**
+     * Avanza hacia el vecino más cercano hasta que ninguno mejora (ef = 1)
+     */
+    private int descensoVoraz(float[] consulta, int inicio, int nivel) {
+        int actual = inicio;
+        float mejor = distancia(consulta, nodos.get(actual).vector);
+        boolean mejoro = true;
+        while (mejoro) {
+            mejoro = false;
+            Nodo nodo = nodos.get(actual);
+            for (int i = 0; i < nodo.cantidades[nivel]; i++) {
+                int vecino = nodo.vecinos[nivel][i];
+                float d = distancia(consulta, nodos.get(vecino).vector);
+                if (d < mejor) {
+                    mejor = d;
+                    actual = vecino;
+                    mejoro = true;
+                }
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Búsqueda en anchura limitada por ef dentro de un nivel
+     * @return Los ef candidatos más cercanos ordenados por distancia creciente
+     */
+    private List<Candidato> buscarEnNivel(float[] consulta, List<Candidato> entradas, int ef, int nivel) {
+        PriorityQueue<Candidato> porExplorar = new PriorityQueue<>((a, b) -> Float.compare(a.distancia, b.distancia));
+        PriorityQueue<Candidato> mejores = new PriorityQueue<>((a, b) -> Float.compare(b.distancia, a.distancia));
+        Visitados visitados = this.visitados.get();
+        visitados.iniciar(nodos.size());
+
+        for (Candidato entrada : entradas) {
+            visitados.marcar(entrada.nodo);
+            porExplorar.add(entrada);
+            mejores.add(entrada);
+            if (mejores.size() > ef) {
+                mejores.poll();
+            }
+        }
+
+        while (!porExplorar.isEmpty()) {
+            Candidato actual = porExplorar.poll();
+            if (mejores.size() >= ef && actual.distancia > mejores.peek().distancia) {
+                break;
+            }
+
+            Nodo nodo = nodos.get(actual.nodo);
+            for (int i = 0; i < nodo.cantidades[nivel]; i++) {
+                int vecino = nodo.vecinos[nivel][i];
+                if (!visitados.marcar(vecino)) {
+                    continue;
+                }
+
+                float d = distancia(consulta, nodos.get(vecino).vector);
+                if (mejores.size() < ef || d < mejores.peek().distancia) {
+                    Candidato candidato = new Candidato(vecino, d);
+                    porExplorar.add(candidato);
+                    mejores.add(candidato);
+                    if (mejores.size() > ef) {
+                        mejores.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidato> resultado = new ArrayList<>(mejores);
+        resultado.sort((a, b) -> Float.compare(a.distancia, b.distancia));
+        return resultado;
+    }
+
+    /**
+     * Heurística de selección: descarta candidatos más cercanos a un vecino ya elegido
+     * que a la consulta, para mantener conexiones en varias direcciones
+     */
+    private List<Candidato> seleccionarVecinos(List<Candidato> candidatos, int maximo) {
+        List<Candidato> seleccion = new ArrayList<>(maximo);
+        for (Candidato candidato : candidatos) {
+            if (seleccion.size() >= maximo) {
+                break;
+            }
+            float[] vector = nodos.get(candidato.nodo).vector;
+            boolean diverso = true;
+            for (Candidato elegido : seleccion) {
+                if (distancia(vector, nodos.get(elegido.nodo).vector) < candidato.distancia) {
+                    diverso = false;
+                    break;
+                }
+            }
+            if (diverso) {
+                seleccion.add(candidato);
+            }
+        }
+        // Completar con los más cercanos descartados si la heurística dejó huecos
+        for (Candidato candidato : candidatos) {
+            if (seleccion.size() >= maximo) {
+                break;
+            }
+            if (!seleccion.contains(candidato)) {
+                seleccion.add(candidato);
+            }
+        }
+        return seleccion;
+    }
+
+    /**
+     * Añade la arista origen → destino, podando la lista de origen si se llena
+     */
+    private void conectar(int origen, int destino, int nivel) {
+        Nodo nodo = nodos.get(origen);
+        int maximo = nivel == 0 ? mNivelCero : m;
+
+        if (nodo.cantidades[nivel] < maximo) {
+            nodo.vecinos[nivel][nodo.cantidades[nivel]++] = destino;
+            return;
+        }
+
+        List<Candidato> candidatos = new ArrayList<>(maximo + 1);
+        for (int i = 0; i < maximo; i++) {
+            int vecino = nodo.vecinos[nivel][i];
+            candidatos.add(new Candidato(vecino, distancia(nodo.vector, nodos.get(vecino).vector)));
+        }
+        candidatos.add(new Candidato(destino, distancia(nodo.vector, nodos.get(destino).vector)));
+        candidatos.sort((a, b) -> Float.compare(a.distancia, b.distancia));
+
+        List<Candidato> seleccion = seleccionarVecinos(candidatos, maximo);
+        nodo.cantidades[nivel] = seleccion.size();
+        for (int i = 0; i < seleccion.size(); i++) {
+            nodo.vecinos[nivel][i] = seleccion.get(i).nodo;
+        }
+    }
+
+    private void marcarEliminado(int nodo) {
+        Nodo marcado = nodos.get(nodo);
+        if (!marcado.eliminado) {
+            marcado.eliminado = true;
+            eliminados++;
+        }
+        nodoPorId.remove(marcado.id);
+    }
+
+    /**
+     * 🧹 Reconstruir el grafo solo con los nodos vivos (requiere bloqueo de escritura)
+     */
+    private void compactar() {
+        List<Nodo> vivos = new ArrayList<>();
+        for (Nodo nodo : nodos) {
+            if (!nodo.eliminado) {
+                vivos.add(nodo);
+            }
+        }
+        System.out.println("🧹 Compactando índice HNSW: " + vivos.size() + " nodos vivos de " + nodos.size());
+
+        nodos.clear();
+        nodoPorId.clear();
+        puntoEntrada = -1;
+        nivelMaximo = -1;
+        eliminados = 0;
+
+        // insertar() vuelve a tomar el bloqueo de escritura, que es reentrante
+        for (Nodo nodo : vivos) {
+            double[] vector = new double[dimension];
+            for (int i = 0; i < dimension; i++) {
+                vector[i] = nodo.vector[i];
+            }
+            insertar(nodo.id, vector);
+        }
+    }
+
+    /**
+     * Distancia coseno entre vectores normalizados
+     */
+    private static float distancia(float[] a, float[] b) {
+        return 1.0f - KernelesSimilitud.productoEscalar(a, b, 0);
+    }
+
+    private float[] normalizar(double[] vector) {
+        if (vector == null || vector.length != dimension) {
+            throw new IllegalArgumentException("El vector debe tener " + dimension + " valores");
+        }
+        double suma = 0.0;
+        for (double valor : vector) {
+            suma += valor * valor;
+        }
+        double inversa = suma > 0.0 ? 1.0 / Math.sqrt(suma) : 0.0;
+        float[] normalizado = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            normalizado[i] = (float) (vector[i] * inversa);
+        }
+        return normalizado;
+    }
+
+    /**
+     * 💾 PERSISTENCIA
+     */
+
+    /**
+     * Guardar el índice completo en formato binario
+     * Se escribe a un temporal junto al destino y se renombra: un cierre a mitad no deja un índice truncado
+     */
+    public void guardar(Path archivo) throws IOException {
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        bloqueo.readLock().lock();
+        try {
+            escribir(temporal);
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            bloqueo.readLock().unlock();
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private void escribir(Path archivo) throws IOException {
+        try (DataOutputStream salida = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(archivo)))) {
+            salida.writeInt(MAGICO);
+            salida.writeInt(VERSION_FORMATO);
+            salida.writeInt(dimension);
+            salida.writeInt(m);
+            salida.writeInt(efConstruccion);
+            salida.writeInt(efBusqueda);
+            salida.writeInt(nodos.size());
+            salida.writeInt(puntoEntrada);
+            salida.writeInt(nivelMaximo);
+
+            for (Nodo nodo : nodos) {
+                salida.writeInt(nodo.id);
+                salida.writeBoolean(nodo.eliminado);
+                salida.writeInt(nodo.nivel());
+                for (float valor : nodo.vector) {
+                    salida.writeFloat(valor);
+                }
+                for (int l = 0; l <= nodo.nivel(); l++) {
+                    salida.writeInt(nodo.cantidades[l]);
+                    for (int i = 0; i < nodo.cantidades[l]; i++) {
+                        salida.writeInt(nodo.vecinos[l][i]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Cargar un índice guardado con {@link #guardar(Path)}
+     * Valida la estructura (niveles, listas de vecinos y punto de entrada) al leer: un archivo
+     * truncado o dañado se rechaza aquí y no con un índice fuera de rango durante una búsqueda
+     */
+    public static IndiceHNSW cargar(Path archivo) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(archivo)))) {
+            if (entrada.readInt() != MAGICO) {
+                throw new IOException("El archivo no es un índice HNSW: " + archivo);
+            }
+            int version = entrada.readInt();
+            if (version != VERSION_FORMATO) {
+                throw new IOException("Versión de índice HNSW no soportada: " + version);
+            }
+
+            int dimension = entrada.readInt();
+            if (dimension > DIMENSION_MAXIMA_ARCHIVO) {
+                throw new IOException("Dimensión de índice HNSW inválida en " + archivo + ": " + dimension);
+            }
+            int m = entrada.readInt();
+            int efConstruccion = entrada.readInt();
+            int efBusqueda = entrada.readInt();
+            IndiceHNSW indice;
+            try {
+                indice = new IndiceHNSW(dimension, m, efConstruccion, efBusqueda);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Cabecera de índice HNSW inválida en " + archivo, e);
+            }
+
+            int cantidad = entrada.readInt();
+            indice.puntoEntrada = entrada.readInt();
+            indice.nivelMaximo = entrada.readInt();
+            if (cantidad < 0 || indice.nivelMaximo < -1 || indice.nivelMaximo > NIVEL_MAXIMO_ARCHIVO
+                    || (cantidad == 0) != (indice.puntoEntrada < 0) || indice.puntoEntrada >= cantidad) {
+                throw new IOException("Índice HNSW dañado en " + archivo + ": cabecera incoherente");
+            }
+
+            for (int n = 0; n < cantidad; n++) {
+                int id = entrada.readInt();
+                boolean eliminado = entrada.readBoolean();
+                int nivel = entrada.readInt();
+                if (nivel < 0 || nivel > indice.nivelMaximo) {
+                    throw new IOException("Índice HNSW dañado en " + archivo + ": nivel " + nivel + " del nodo " + n);
+                }
+                float[] vector = new float[dimension];
+                for (int i = 0; i < dimension; i++) {
+                    vector[i] = entrada.readFloat();
+                }
+
+                Nodo nodo = new Nodo(id, vector, nivel, m, indice.mNivelCero);
+                for (int l = 0; l <= nivel; l++) {
+                    int vecinos = entrada.readInt();
+                    if (vecinos < 0 || vecinos > nodo.vecinos[l].length) {
+                        throw new IOException("Índice HNSW dañado en " + archivo + ": " + vecinos
+                                            + " vecinos en el nivel " + l + " del nodo " + n);
+                    }
+                    nodo.cantidades[l] = vecinos;
+                    for (int i = 0; i < vecinos; i++) {
+                        int vecino = entrada.readInt();
+                        if (vecino < 0 || vecino >= cantidad) {
+                            throw new IOException("Índice HNSW dañado en " + archivo + ": vecino " + vecino
+                                                + " fuera de [0, " + cantidad + ") en el nodo " + n);
+                        }
+                        nodo.vecinos[l][i] = vecino;
+                    }
+                }
+                nodo.eliminado = eliminado;
+                indice.nodos.add(nodo);
+                if (eliminado) {
+                    indice.eliminados++;
+                } else {
+                    indice.nodoPorId.put(id, n);
+                }
+            }
+
+            // Los vecinos de un nivel deben existir en ese nivel y la entrada, en el más alto
+            for (int n = 0; n < cantidad; n++) {
+                Nodo nodo = indice.nodos.get(n);
+                for (int l = 0; l <= nodo.nivel(); l++) {
+                    for (int i = 0; i < nodo.cantidades[l]; i++) {
+                        if (indice.nodos.get(nodo.vecinos[l][i]).nivel() < l) {
+                            throw new IOException("Índice HNSW dañado en " + archivo + ": el nodo " + n
+                                                + " enlaza en el nivel " + l + " con un nodo de nivel inferior");
+                        }
+                    }
+                }
+            }
+            if (cantidad > 0 && indice.nodos.get(indice.puntoEntrada).nivel() != indice.nivelMaximo) {
+                throw new IOException("Índice HNSW dañado en " + archivo + ": punto de entrada fuera del nivel máximo");
+            }
+            return indice;
+        }
+    }
+
+    /**
+     * ✔️ ¿Contiene el índice exactamente estos perfiles (mismos ids y mismos vectores)?
+     * Un índice guardado antes de altas, bajas o actualizaciones de la galería no coincide
+     */
+    public boolean coincideCon(Map<Integer, double[]> perfiles) {
+        bloqueo.readLock().lock();
+        try {
+            if (perfiles.size() != nodoPorId.size()) {
+                return false;
+            }
+            for (Map.Entry<Integer, double[]> perfil : perfiles.entrySet()) {
+                Integer nodo = nodoPorId.get(perfil.getKey());
+                if (nodo == null || perfil.getValue().length != dimension) {
+                    return false;
+                }
+                // Vectores normalizados: coseno ~1 si son el mismo perfil
+                if (distancia(normalizar(perfil.getValue()), nodos.get(nodo).vector) > 1e-4f) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    // ========== GETTERS Y SETTERS ==========
+    public int getDimension() { return dimension; }
+    public int getM() { return m; }
+    public int getEfConstruccion() { return efConstruccion; }
+    public int getEfBusqueda() { return efBusqueda; }
+
+    public void setEfBusqueda(int efBusqueda) {
+        if (efBusqueda < 1) {
+            throw new IllegalArgumentException("efBusqueda debe ser positivo");
+        }
+        this.efBusqueda = efBusqueda;
+    }
+
+    public int getCantidad() {
+        bloqueo.readLock().lock();
+        try {
+            return nodoPorId.size();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Nodos marcados (eliminados o reemplazados) que aún ocupan el grafo
+     */
+    public int getEliminados() {
+        bloqueo.readLock().lock();
+        try {
+            return eliminados;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    public int getNivelMaximo() { return nivelMaximo; }
+
+    /**
+     * 📋 Resultado de búsqueda: id y similitud coseno
+     */
+    public static final class Resultado {
+        private final int id;
+        private final double similitud;
+
+        public Resultado(int id, double similitud) {
+            this.id = id;
+            this.similitud = similitud;
+        }
+
+        public int getId() { return id; }
+        public double getSimilitud() { return similitud; }
+
+        @Override
+        public String toString() {
+            return id + "=" + String.format("%.4f", similitud);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IndiceHNSW{dimension=" + dimension + ", m=" + m + ", efConstruccion=" + efConstruccion
+             + ", efBusqueda=" + efBusqueda + ", nodos=" + nodos.size() + ", eliminados=" + eliminados
+             + ", niveles=" + (nivelMaximo + 1) + "}";
+    }
+}
@@ -0,0 +1,116 @@
+package com.reconocimiento.facial.neural;
+
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+
+/**
+ * 📐 KERNELES DE SIMILITUD
+ * Punto único para comparar vectores de características. Usa la implementación SIMD
+ * del JDK Vector API cuando el módulo jdk.incubator.vector está cargado
+ * (--add-modules jdk.incubator.vector) y vuelve a bucles escalares en caso contrario.
+ * El producto escalar, ambas normas y la distancia L2 se obtienen en una única pasada.
+ */
+public final class KernelesSimilitud {
+
+    private static final String CLASE_SIMD = "com.reconocimiento.facial.neural.OperacionesVectorialesSIMD";
+
+    private static final OperacionesVectoriales OPERACIONES = seleccionarImplementacion();
+
+    // Buffer de métricas por hilo para no asignar memoria en cada comparación
+    private static final ThreadLocal<double[]> METRICAS = ThreadLocal.withInitial(() -> new double[4]);
+
+    private KernelesSimilitud() {
+    }
+
+    /**
+     * 🔍 Elegir implementación: SIMD si el módulo está presente y habilitado, si no escalar
+     */
+    private static OperacionesVectoriales seleccionarImplementacion() {
+        if (!GestorConfiguracion.obtenerBoolean("neural.kernel_simd", true)) {
+            System.out.println("ℹ️ Kernels de similitud SIMD deshabilitados por configuración");
+            return new OperacionesVectorialesEscalares();
+        }
+        try {
+            OperacionesVectoriales simd = (OperacionesVectoriales) Class.forName(CLASE_SIMD)
+                .getDeclaredConstructor().newInstance();
+            // Forzar la inicialización de la Vector API antes de darla por buena
+            simd.calcularMetricas(new double[] {1.0}, new double[] {1.0}, new double[4]);
+            System.out.println("🚀 Kernels de similitud: " + simd.getNombre());
+            return simd;
+        } catch (Throwable e) {
+            System.out.println("ℹ️ Vector API no disponible, usando kernels escalares");
+            return new OperacionesVectorialesEscalares();
+        }
+    }
+
+    /**
+     * Calcula producto escalar, ‖a‖², ‖b‖² y ‖a − b‖² en una pasada
+     * @param metricas Arreglo de 4 posiciones: [producto, normaA², normaB², distanciaL2²]
+     */
+    public static void calcularMetricas(double[] a, double[] b, double[] metricas) {
+        validar(a, b);
+        OPERACIONES.calcularMetricas(a, b, metricas);
+    }
+
+    /**
+     * Similitud coseno en [-1, 1]; 0 si alguno de los vectores es nulo
+     */
+    public static double similitudCoseno(double[] a, double[] b) {
+        double[] metricas = METRICAS.get();
+        calcularMetricas(a, b, metricas);
+        return coseno(metricas);
+    }
+
+    /**
+     * Distancia euclidiana ‖a − b‖
+     */
+    public static double distanciaEuclidiana(double[] a, double[] b) {
+        double[] metricas = METRICAS.get();
+        calcularMetricas(a, b, metricas);
+        return Math.sqrt(metricas[OperacionesVectoriales.DISTANCIA_L2]);
+    }
+
+    /**
+     * Distancia Manhattan Σ |a[i] − b[i]|
+     */
+    public static double distanciaManhattan(double[] a, double[] b) {
+        validar(a, b);
+        return OPERACIONES.distanciaManhattan(a, b);
+    }
+
+    /**
+     * Producto escalar float32 entre la consulta y la fila que empieza en desplazamiento
+     * dentro de un bloque contiguo (sin validación: pensado para bucles de búsqueda)
+     */
+    public static float productoEscalar(float[] consulta, float[] bloque, int desplazamiento) {
+        return OPERACIONES.productoEscalar(consulta, bloque, desplazamiento);
+    }
+
+    /**
+     * Similitud coseno a partir de métricas ya calculadas
+     */
+    public static double coseno(double[] metricas) {
+        double denominador = Math.sqrt(metricas[OperacionesVectoriales.NORMA_A])
+                           * Math.sqrt(metricas[OperacionesVectoriales.NORMA_B]);
+        return denominador != 0.0 ? metricas[OperacionesVectoriales.PRODUCTO] / denominador : 0.0;
+    }
+
+    /**
+     * Distancia euclidiana a partir de métricas ya calculadas
+     */
+    public static double euclidiana(double[] metricas) {
+        return Math.sqrt(metricas[OperacionesVectoriales.DISTANCIA_L2]);
+    }
+
+    /**
+     * Nombre de la implementación activa
+     */
+    public static String getImplementacion() {
+        return OPERACIONES.getNombre();
+    }
+
+    private static void validar(double[] a, double[] b) {
+        if (a == null || b == null || a.length != b.length) {
+            throw new IllegalArgumentException("Los vectores deben tener la misma dimensión");
+        }
+    }
+}
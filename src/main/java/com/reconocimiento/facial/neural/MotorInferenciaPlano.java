@@ -0,0 +1,309 @@
+package com.reconocimiento.facial.neural;
+
+import java.util.stream.IntStream;
+
+/**
+ * ⚡ MOTOR DE INFERENCIA PLANO (FLOAT32)
+ * Guarda cada capa de la red como un único float[] contiguo en orden fila-mayor:
+ * una fila por neurona de salida, con los pesos de todas sus entradas seguidos.
+ * El bucle interno de la propagación recorre así la memoria de forma secuencial,
+ * en lugar de saltar entre filas como ocurre con las matrices double[entrada][salida].
+ */
+public class MotorInferenciaPlano {
+
+    // ========== PARÁMETROS DEL PRODUCTO POR LOTES ==========
+    private static final int BLOQUE_LOTE = 4;       // Imágenes que comparten cada lectura de pesos
+    private static final int BLOQUE_NEURONAS = 16;  // Filas de pesos por tarea paralela
+    private static final long UMBRAL_PARALELO = 1L << 20; // Multiplicaciones mínimas para paralelizar
+
+    // ========== DIMENSIONES ==========
+    private final int dimensionEntrada;
+    private final int neuronasOculta1;
+    private final int neuronasOculta2;
+    private final int dimensionSalida;
+
+    // ========== PESOS Y BIAS (FILA-MAYOR) ==========
+    private final float[] pesosCapa1; // [neuronasOculta1][dimensionEntrada]
+    private final float[] pesosCapa2; // [neuronasOculta2][neuronasOculta1]
+    private final float[] pesosCapa3; // [dimensionSalida][neuronasOculta2]
+    private final float[] biasCapa1;
+    private final float[] biasCapa2;
+    private final float[] biasCapa3;
+
+    // Activaciones intermedias reutilizables por hilo: [oculta1, oculta2, salidaLineal]
+    private final ThreadLocal<float[][]> activacionesHilo;
+
+    /**
+     * Constructor a partir de capas ya aplanadas
+     */
+    public MotorInferenciaPlano(int dimensionEntrada, int neuronasOculta1, int neuronasOculta2, int dimensionSalida,
+                                float[] pesosCapa1, float[] biasCapa1,
+                                float[] pesosCapa2, float[] biasCapa2,
+                                float[] pesosCapa3, float[] biasCapa3) {
+        validarLongitud(pesosCapa1, neuronasOculta1 * dimensionEntrada, "pesosCapa1");
+        validarLongitud(pesosCapa2, neuronasOculta2 * neuronasOculta1, "pesosCapa2");
+        validarLongitud(pesosCapa3, dimensionSalida * neuronasOculta2, "pesosCapa3");
+        validarLongitud(biasCapa1, neuronasOculta1, "biasCapa1");
+        validarLongitud(biasCapa2, neuronasOculta2, "biasCapa2");
+        validarLongitud(biasCapa3, dimensionSalida, "biasCapa3");
+
+        this.dimensionEntrada = dimensionEntrada;
+        this.neuronasOculta1 = neuronasOculta1;
+        this.neuronasOculta2 = neuronasOculta2;
+        this.dimensionSalida = dimensionSalida;
+        this.pesosCapa1 = pesosCapa1;
+        this.pesosCapa2 = pesosCapa2;
+        this.pesosCapa3 = pesosCapa3;
+        this.biasCapa1 = biasCapa1;
+        this.biasCapa2 = biasCapa2;
+        this.biasCapa3 = biasCapa3;
+        this.activacionesHilo = ThreadLocal.withInitial(() -> new float[][] {
+            new float[neuronasOculta1], new float[neuronasOculta2], new float[dimensionSalida]
+        });
+    }
+
+    /**
+     * 🔄 Construir el motor a partir de las matrices clásicas double[entrada][salida]
+     * Transpone cada matriz al orden en que la leen los bucles de propagación
+     */
+    public static MotorInferenciaPlano desdeMatrices(double[][] pesos1, double[] bias1,
+                                                     double[][] pesos2, double[] bias2,
+                                                     double[][] pesos3, double[] bias3) {
+        int entrada = pesos1.length;
+        int oculta1 = bias1.length;
+        int oculta2 = bias2.length;
+        int salida = bias3.length;
+
+        return new MotorInferenciaPlano(entrada, oculta1, oculta2, salida,
+            transponer(pesos1, oculta1), aFloat(bias1),
+            transponer(pesos2, oculta2), aFloat(bias2),
+            transponer(pesos3, salida), aFloat(bias3));
+    }
+
+    /**
+     * ➡️ Propagación hacia adelante sobre una entrada ya normalizada
+     * @param entrada Vector de dimensionEntrada valores
+     * @return Vector de características de dimensionSalida valores
+     */
+    public double[] propagar(float[] entrada) {
+        if (entrada == null || entrada.length != dimensionEntrada) {
+            throw new IllegalArgumentException("La entrada debe tener " + dimensionEntrada + " valores");
+        }
+
+        float[][] activaciones = activacionesHilo.get();
+        float[] oculta1 = activaciones[0];
+        capaDensa(entrada, pesosCapa1, biasCapa1, oculta1, dimensionEntrada);
+        aplicarReLU(oculta1);
+
+        float[] oculta2 = activaciones[1];
+        capaDensa(oculta1, pesosCapa2, biasCapa2, oculta2, neuronasOculta1);
+        aplicarReLU(oculta2);
+
+        float[] salidaLineal = activaciones[2];
+        capaDensa(oculta2, pesosCapa3, biasCapa3, salidaLineal, neuronasOculta2);
+
+        double[] salida = new double[dimensionSalida];
+        for (int i = 0; i < dimensionSalida; i++) {
+            salida[i] = Math.tanh(salidaLineal[i]); // Tanh para características normalizadas [-1, 1]
+        }
+        return salida;
+    }
+
+    /**
+     * 📦 Propagación por lotes: cada capa se calcula como un producto matriz-matriz
+     * Salida[n][i] = bias[i] + Σ Entrada[n][j] * Pesos[i][j], recorriendo cada fila de
+     * pesos una sola vez por bloque de imágenes. El orden de suma por imagen es el mismo
+     * que en {@link #propagar(float[])}, por lo que los resultados coinciden exactamente.
+     * @param entradas Entradas normalizadas, una por imagen
+     * @return Vectores de características en el mismo orden
+     */
+    public double[][] propagarLote(float[][] entradas) {
+        if (entradas == null) {
+            throw new IllegalArgumentException("El lote de entradas no puede ser null");
+        }
+        for (float[] entrada : entradas) {
+            if (entrada == null || entrada.length != dimensionEntrada) {
+                throw new IllegalArgumentException("Cada entrada debe tener " + dimensionEntrada + " valores");
+            }
+        }
+
+        float[][] oculta1 = capaDensaLote(entradas, pesosCapa1, biasCapa1, neuronasOculta1, dimensionEntrada);
+        for (float[] fila : oculta1) aplicarReLU(fila);
+
+        float[][] oculta2 = capaDensaLote(oculta1, pesosCapa2, biasCapa2, neuronasOculta2, neuronasOculta1);
+        for (float[] fila : oculta2) aplicarReLU(fila);
+
+        float[][] salidaLineal = capaDensaLote(oculta2, pesosCapa3, biasCapa3, dimensionSalida, neuronasOculta2);
+
+        double[][] salidas = new double[entradas.length][dimensionSalida];
+        for (int n = 0; n < entradas.length; n++) {
+            for (int i = 0; i < dimensionSalida; i++) {
+                salidas[n][i] = Math.tanh(salidaLineal[n][i]);
+            }
+        }
+        return salidas;
+    }
+
+    /**
+     * Capa densa sobre un lote, bloqueada por neuronas (tareas paralelas) y por imágenes
+     * (cada peso cargado se reutiliza para BLOQUE_LOTE imágenes)
+     */
+    private static float[][] capaDensaLote(float[][] entradas, float[] pesos, float[] bias,
+                                           int salidas, int entradasPorNeurona) {
+        int lote = entradas.length;
+        float[][] resultado = new float[lote][salidas];
+        int bloques = (salidas + BLOQUE_NEURONAS - 1) / BLOQUE_NEURONAS;
+
+        IntStream rango = IntStream.range(0, bloques);
+        if ((long) lote * salidas * entradasPorNeurona >= UMBRAL_PARALELO) {
+            rango = rango.parallel();
+        }
+
+        rango.forEach(bloque -> {
+            int inicio = bloque * BLOQUE_NEURONAS;
+            int fin = Math.min(salidas, inicio + BLOQUE_NEURONAS);
+            for (int i = inicio; i < fin; i++) {
+                int fila = i * entradasPorNeurona;
+                int n = 0;
+                for (; n + BLOQUE_LOTE <= lote; n += BLOQUE_LOTE) {
+                    float[] x0 = entradas[n], x1 = entradas[n + 1], x2 = entradas[n + 2], x3 = entradas[n + 3];
+                    float s0 = bias[i], s1 = bias[i], s2 = bias[i], s3 = bias[i];
+                    for (int j = 0; j < entradasPorNeurona; j++) {
+                        float w = pesos[fila + j];
+                        s0 += x0[j] * w;
+                        s1 += x1[j] * w;
+                        s2 += x2[j] * w;
+                        s3 += x3[j] * w;
+                    }
+                    resultado[n][i] = s0;
+                    resultado[n + 1][i] = s1;
+                    resultado[n + 2][i] = s2;
+                    resultado[n + 3][i] = s3;
+                }
+                for (; n < lote; n++) {
+                    float[] x = entradas[n];
+                    float suma = bias[i];
+                    for (int j = 0; j < entradasPorNeurona; j++) {
+                        suma += x[j] * pesos[fila + j];
+                    }
+                    resultado[n][i] = suma;
+                }
+            }
+        });
+        return resultado;
+    }
+
+    /**
+     * Capa totalmente conectada: salida[i] = bias[i] + Σ entrada[j] * pesos[i][j]
+     */
+    private static void capaDensa(float[] entrada, float[] pesos, float[] bias, float[] salida, int entradas) {
+        for (int i = 0, fila = 0; i < salida.length; i++, fila += entradas) {
+            float suma = bias[i];
+            for (int j = 0; j < entradas; j++) {
+                suma += entrada[j] * pesos[fila + j];
+            }
+            salida[i] = suma;
+        }
+    }
+
+    private static void aplicarReLU(float[] vector) {
+        for (int i = 0; i < vector.length; i++) {
+            if (vector[i] < 0f) {
+                vector[i] = 0f;
+            }
+        }
+    }
+
+    /**
+     * 🔧 UTILIDADES DE CONVERSIÓN
+     */
+
+    private static float[] transponer(double[][] matriz, int columnas) {
+        int filas = matriz.length;
+        float[] plano = new float[filas * columnas];
+        for (int j = 0; j < filas; j++) {
+            double[] fila = matriz[j];
+            for (int i = 0; i < columnas; i++) {
+                plano[i * filas + j] = (float) fila[i];
+            }
+        }
+        return plano;
+    }
+
+    private static float[] aFloat(double[] vector) {
+        float[] resultado = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            resultado[i] = (float) vector[i];
+        }
+        return resultado;
+    }
+
+    /**
+     * Reconstruir la matriz clásica double[entrada][salida] de una capa (0, 1 o 2)
+     */
+    double[][] aMatrizClasica(int capa) {
+        float[] pesos = getPesosCapa(capa);
+        int salidas = getBiasCapa(capa).length;
+        int entradas = pesos.length / salidas;
+        double[][] matriz = new double[entradas][salidas];
+        for (int i = 0; i < salidas; i++) {
+            int fila = i * entradas;
+            for (int j = 0; j < entradas; j++) {
+                matriz[j][i] = pesos[fila + j];
+            }
+        }
+        return matriz;
+    }
+
+    /**
+     * Bias de una capa en double
+     */
+    double[] aBiasClasico(int capa) {
+        float[] bias = getBiasCapa(capa);
+        double[] resultado = new double[bias.length];
+        for (int i = 0; i < bias.length; i++) {
+            resultado[i] = bias[i];
+        }
+        return resultado;
+    }
+
+    private static void validarLongitud(float[] arreglo, int esperada, String nombre) {
+        if (arreglo == null || arreglo.length != esperada) {
+            throw new IllegalArgumentException(nombre + " debe tener " + esperada + " elementos");
+        }
+    }
+
+    // ========== GETTERS ==========
+    public int getDimensionEntrada() { return dimensionEntrada; }
+    public int getDimensionSalida() { return dimensionSalida; }
+    public int getNeuronasOculta1() { return neuronasOculta1; }
+    public int getNeuronasOculta2() { return neuronasOculta2; }
+
+    // Acceso directo a los arreglos internos para serialización (sin copia)
+    float[] getPesosCapa(int capa) {
+        switch (capa) {
+            case 0: return pesosCapa1;
+            case 1: return pesosCapa2;
+            case 2: return pesosCapa3;
+            default: throw new IllegalArgumentException("Capa inexistente: " + capa);
+        }
+    }
+
+    float[] getBiasCapa(int capa) {
+        switch (capa) {
+            case 0: return biasCapa1;
+            case 1: return biasCapa2;
+            case 2: return biasCapa3;
+            default: throw new IllegalArgumentException("Capa inexistente: " + capa);
+        }
+    }
+
+    /**
+     * Memoria ocupada por pesos y bias en bytes
+     */
+    public long getTamanoBytes() {
+        long elementos = (long) pesosCapa1.length + pesosCapa2.length + pesosCapa3.length
+                       + biasCapa1.length + biasCapa2.length + biasCapa3.length;
+        return elementos * Float.BYTES;
+    }
+}
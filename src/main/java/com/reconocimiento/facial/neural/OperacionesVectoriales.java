@@ -0,0 +1,36 @@
+package com.reconocimiento.facial.neural;
+
+/**
+ * 🧮 OPERACIONES VECTORIALES DE SIMILITUD
+ * Contrato común de las implementaciones escalar y SIMD usadas por {@link KernelesSimilitud}
+ */
+interface OperacionesVectoriales {
+
+    // Posiciones del arreglo de métricas fusionadas
+    int PRODUCTO = 0;
+    int NORMA_A = 1;
+    int NORMA_B = 2;
+    int DISTANCIA_L2 = 3;
+
+    /**
+     * Calcula en una sola pasada: producto escalar, ‖a‖², ‖b‖² y ‖a − b‖²
+     * @param metricas Arreglo de al menos 4 posiciones donde se escriben los resultados
+     */
+    void calcularMetricas(double[] a, double[] b, double[] metricas);
+
+    /**
+     * Suma de diferencias absolutas Σ |a[i] − b[i]|
+     */
+    double distanciaManhattan(double[] a, double[] b);
+
+    /**
+     * Producto escalar en float32 entre la consulta y una fila de un bloque contiguo
+     * @param desplazamiento Posición del primer valor de la fila dentro del bloque
+     */
+    float productoEscalar(float[] consulta, float[] bloque, int desplazamiento);
+
+    /**
+     * Nombre descriptivo para estadísticas y registros
+     */
+    String getNombre();
+}
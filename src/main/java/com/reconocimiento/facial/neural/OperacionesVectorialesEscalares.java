@@ -0,0 +1,54 @@
+package com.reconocimiento.facial.neural;
+
+/**
+ * 🔢 IMPLEMENTACIÓN ESCALAR
+ * Bucles simples usados cuando el módulo jdk.incubator.vector no está disponible
+ */
+final class OperacionesVectorialesEscalares implements OperacionesVectoriales {
+
+    @Override
+    public void calcularMetricas(double[] a, double[] b, double[] metricas) {
+        double producto = 0.0;
+        double normaA = 0.0;
+        double normaB = 0.0;
+        double distancia = 0.0;
+
+        for (int i = 0; i < a.length; i++) {
+            double va = a[i];
+            double vb = b[i];
+            double diferencia = va - vb;
+            producto += va * vb;
+            normaA += va * va;
+            normaB += vb * vb;
+            distancia += diferencia * diferencia;
+        }
+
+        metricas[PRODUCTO] = producto;
+        metricas[NORMA_A] = normaA;
+        metricas[NORMA_B] = normaB;
+        metricas[DISTANCIA_L2] = distancia;
+    }
+
+    @Override
+    public double distanciaManhattan(double[] a, double[] b) {
+        double suma = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            suma += Math.abs(a[i] - b[i]);
+        }
+        return suma;
+    }
+
+    @Override
+    public float productoEscalar(float[] consulta, float[] bloque, int desplazamiento) {
+        float suma = 0f;
+        for (int i = 0; i < consulta.length; i++) {
+            suma += consulta[i] * bloque[desplazamiento + i];
+        }
+        return suma;
+    }
+
+    @Override
+    public String getNombre() {
+        return "Escalar";
+    }
+}
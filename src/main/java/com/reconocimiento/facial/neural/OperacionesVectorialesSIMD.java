@@ -0,0 +1,100 @@
+package com.reconocimiento.facial.neural;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 🚀 IMPLEMENTACIÓN SIMD (JDK VECTOR API)
+ * Procesa tantos valores por instrucción como permita el ancho de registro de la CPU.
+ * Solo se instancia por reflexión desde {@link KernelesSimilitud}, de modo que la
+ * ausencia del módulo jdk.incubator.vector en tiempo de ejecución no rompe la carga.
+ */
+final class OperacionesVectorialesSIMD implements OperacionesVectoriales {
+
+    private static final VectorSpecies<Double> ESPECIE = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> ESPECIE_FLOAT = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void calcularMetricas(double[] a, double[] b, double[] metricas) {
+        DoubleVector producto = DoubleVector.zero(ESPECIE);
+        DoubleVector normaA = DoubleVector.zero(ESPECIE);
+        DoubleVector normaB = DoubleVector.zero(ESPECIE);
+        DoubleVector distancia = DoubleVector.zero(ESPECIE);
+
+        int i = 0;
+        int limite = ESPECIE.loopBound(a.length);
+        for (; i < limite; i += ESPECIE.length()) {
+            DoubleVector va = DoubleVector.fromArray(ESPECIE, a, i);
+            DoubleVector vb = DoubleVector.fromArray(ESPECIE, b, i);
+            DoubleVector diferencia = va.sub(vb);
+            producto = va.fma(vb, producto);
+            normaA = va.fma(va, normaA);
+            normaB = vb.fma(vb, normaB);
+            distancia = diferencia.fma(diferencia, distancia);
+        }
+
+        double sumaProducto = producto.reduceLanes(VectorOperators.ADD);
+        double sumaNormaA = normaA.reduceLanes(VectorOperators.ADD);
+        double sumaNormaB = normaB.reduceLanes(VectorOperators.ADD);
+        double sumaDistancia = distancia.reduceLanes(VectorOperators.ADD);
+
+        // Cola escalar para longitudes que no son múltiplo del ancho vectorial
+        for (; i < a.length; i++) {
+            double diferencia = a[i] - b[i];
+            sumaProducto += a[i] * b[i];
+            sumaNormaA += a[i] * a[i];
+            sumaNormaB += b[i] * b[i];
+            sumaDistancia += diferencia * diferencia;
+        }
+
+        metricas[PRODUCTO] = sumaProducto;
+        metricas[NORMA_A] = sumaNormaA;
+        metricas[NORMA_B] = sumaNormaB;
+        metricas[DISTANCIA_L2] = sumaDistancia;
+    }
+
+    @Override
+    public double distanciaManhattan(double[] a, double[] b) {
+        DoubleVector suma = DoubleVector.zero(ESPECIE);
+
+        int i = 0;
+        int limite = ESPECIE.loopBound(a.length);
+        for (; i < limite; i += ESPECIE.length()) {
+            DoubleVector va = DoubleVector.fromArray(ESPECIE, a, i);
+            DoubleVector vb = DoubleVector.fromArray(ESPECIE, b, i);
+            suma = suma.add(va.sub(vb).abs());
+        }
+
+        double total = suma.reduceLanes(VectorOperators.ADD);
+        for (; i < a.length; i++) {
+            total += Math.abs(a[i] - b[i]);
+        }
+        return total;
+    }
+
+    @Override
+    public float productoEscalar(float[] consulta, float[] bloque, int desplazamiento) {
+        FloatVector suma = FloatVector.zero(ESPECIE_FLOAT);
+
+        int i = 0;
+        int limite = ESPECIE_FLOAT.loopBound(consulta.length);
+        for (; i < limite; i += ESPECIE_FLOAT.length()) {
+            FloatVector va = FloatVector.fromArray(ESPECIE_FLOAT, consulta, i);
+            FloatVector vb = FloatVector.fromArray(ESPECIE_FLOAT, bloque, desplazamiento + i);
+            suma = va.fma(vb, suma);
+        }
+
+        float total = suma.reduceLanes(VectorOperators.ADD);
+        for (; i < consulta.length; i++) {
+            total += consulta[i] * bloque[desplazamiento + i];
+        }
+        return total;
+    }
+
+    @Override
+    public String getNombre() {
+        return "SIMD (" + ESPECIE.length() + " x double)";
+    }
+}
@@ -0,0 +1,273 @@
+package com.reconocimiento.facial.neural;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * 🖼️ PREPROCESADOR DE IMÁGENES PARA LA RED
+ * Redimensiona (bilineal), convierte a escala de grises y normaliza (z-score) en una sola
+ * etapa, leyendo directamente el DataBuffer del raster y escribiendo en un float[] del
+ * llamador o del hilo. No crea BufferedImage, Color ni streams por fotograma.
+ *
+ * Formatos leídos sin copia: TYPE_INT_RGB/ARGB/ARGB_PRE/BGR, TYPE_3BYTE_BGR,
+ * TYPE_4BYTE_ABGR/ABGR_PRE y TYPE_BYTE_GRAY. Cualquier otro usa getRGB píxel a píxel.
+ */
+public final class PreprocesadorImagen {
+
+    private static final float PESO_ROJO = 0.299f / 255f;
+    private static final float PESO_VERDE = 0.587f / 255f;
+    private static final float PESO_AZUL = 0.114f / 255f;
+
+    private static final ThreadLocal<ContextoLectura> CONTEXTO = ThreadLocal.withInitial(ContextoLectura::new);
+
+    private final int lado;
+    private final ThreadLocal<float[]> bufferHilo;
+
+    /**
+     * Constructor
+     * @param lado Ancho y alto de la imagen de salida (64 para la red actual)
+     */
+    public PreprocesadorImagen(int lado) {
+        if (lado <= 0) {
+            throw new IllegalArgumentException("El lado debe ser positivo");
+        }
+        this.lado = lado;
+        this.bufferHilo = ThreadLocal.withInitial(() -> new float[lado * lado]);
+    }
+
+    /**
+     * ⚡ Preprocesar en el buffer del hilo actual
+     * El arreglo devuelto se reutiliza en la siguiente llamada del mismo hilo
+     */
+    public float[] preprocesar(BufferedImage imagen) {
+        return preprocesar(imagen, bufferHilo.get());
+    }
+
+    /**
+     * ⚡ Preprocesar en un buffer del llamador
+     * @param destino Arreglo de lado·lado posiciones
+     * @return El mismo destino, con valores de media 0 y desviación 1
+     */
+    public float[] preprocesar(BufferedImage imagen, float[] destino) {
+        if (imagen == null) {
+            throw new IllegalArgumentException("La imagen no puede ser null");
+        }
+        if (destino == null || destino.length != lado * lado) {
+            throw new IllegalArgumentException("El destino debe tener " + (lado * lado) + " valores");
+        }
+
+        ContextoLectura contexto = CONTEXTO.get();
+        contexto.preparar(imagen, lado);
+
+        // Redimensionado bilineal + escala de grises, acumulando momentos para el z-score
+        double suma = 0.0;
+        double sumaCuadrados = 0.0;
+        int indice = 0;
+        for (int y = 0; y < lado; y++) {
+            int y0 = contexto.filaOrigen0[y];
+            int y1 = contexto.filaOrigen1[y];
+            float pesoY = contexto.pesoFila[y];
+
+            for (int x = 0; x < lado; x++) {
+                int x0 = contexto.columnaOrigen0[x];
+                int x1 = contexto.columnaOrigen1[x];
+                float pesoX = contexto.pesoColumna[x];
+
+                float g00 = contexto.gris(x0, y0);
+                float g10 = contexto.gris(x1, y0);
+                float g01 = contexto.gris(x0, y1);
+                float g11 = contexto.gris(x1, y1);
+                float superior = g00 + (g10 - g00) * pesoX;
+                float inferior = g01 + (g11 - g01) * pesoX;
+                float valor = superior + (inferior - superior) * pesoY;
+
+                destino[indice++] = valor;
+                suma += valor;
+                sumaCuadrados += (double) valor * valor;
+            }
+        }
+        contexto.liberar();
+
+        int total = lado * lado;
+        double media = suma / total;
+        double varianza = Math.max(0.0, sumaCuadrados / total - media * media);
+        double desviacion = Math.sqrt(varianza);
+        float inversa = (float) (desviacion == 0.0 ? 1.0 : 1.0 / desviacion); // Evitar división por cero
+        float mediaF = (float) media;
+
+        for (int i = 0; i < total; i++) {
+            destino[i] = (destino[i] - mediaF) * inversa;
+        }
+        return destino;
+    }
+
+    public int getLado() { return lado; }
+
+    /**
+     * 🔍 Estado de lectura reutilizable por hilo: acceso directo al DataBuffer y
+     * tablas de interpolación de la última geometría procesada
+     */
+    private static final class ContextoLectura {
+        private static final int MODO_INT_RGB = 0;
+        private static final int MODO_INT_BGR = 1;
+        private static final int MODO_BYTE_COMPONENTES = 2;
+        private static final int MODO_BYTE_GRIS = 3;
+        private static final int MODO_GENERICO = 4;
+
+        int[] columnaOrigen0 = new int[0];
+        int[] columnaOrigen1 = new int[0];
+        float[] pesoColumna = new float[0];
+        int[] filaOrigen0 = new int[0];
+        int[] filaOrigen1 = new int[0];
+        float[] pesoFila = new float[0];
+
+        private int anchoPreparado = -1;
+        private int altoPreparado = -1;
+        private int ladoPreparado = -1;
+
+        private int modo;
+        private int[] datosInt;
+        private byte[] datosByte;
+        private BufferedImage imagenGenerica;
+        private int desplazamiento;
+        private int paso;          // Elementos por fila
+        private int pasoPixel;     // Elementos por píxel (bytes)
+        private int traslacionX;
+        private int traslacionY;
+        private int bandaRojo;
+        private int bandaVerde;
+        private int bandaAzul;
+        private SampleModel ultimoModelo;
+        private int[] bandas;
+
+        void preparar(BufferedImage imagen, int lado) {
+            int ancho = imagen.getWidth();
+            int alto = imagen.getHeight();
+            if (ancho != anchoPreparado || alto != altoPreparado || lado != ladoPreparado) {
+                calcularTablas(ancho, alto, lado);
+            }
+
+            Raster raster = imagen.getRaster();
+            SampleModel modelo = raster.getSampleModel();
+            DataBuffer buffer = raster.getDataBuffer();
+            traslacionX = raster.getSampleModelTranslateX();
+            traslacionY = raster.getSampleModelTranslateY();
+            modo = MODO_GENERICO;
+
+            int tipo = imagen.getType();
+            if (buffer instanceof DataBufferInt && modelo instanceof SinglePixelPackedSampleModel
+                    && (tipo == BufferedImage.TYPE_INT_RGB || tipo == BufferedImage.TYPE_INT_ARGB
+                        || tipo == BufferedImage.TYPE_INT_ARGB_PRE || tipo == BufferedImage.TYPE_INT_BGR)) {
+                datosInt = ((DataBufferInt) buffer).getData();
+                desplazamiento = buffer.getOffset();
+                paso = ((SinglePixelPackedSampleModel) modelo).getScanlineStride();
+                modo = tipo == BufferedImage.TYPE_INT_BGR ? MODO_INT_BGR : MODO_INT_RGB;
+
+            } else if (buffer instanceof DataBufferByte && modelo instanceof ComponentSampleModel
+                    && (tipo == BufferedImage.TYPE_3BYTE_BGR || tipo == BufferedImage.TYPE_4BYTE_ABGR
+                        || tipo == BufferedImage.TYPE_4BYTE_ABGR_PRE || tipo == BufferedImage.TYPE_BYTE_GRAY)) {
+                ComponentSampleModel componentes = (ComponentSampleModel) modelo;
+                if (modelo != ultimoModelo) {
+                    // getBandOffsets() devuelve una copia: solo se consulta al cambiar de modelo
+                    bandas = componentes.getBandOffsets();
+                    ultimoModelo = modelo;
+                }
+                datosByte = ((DataBufferByte) buffer).getData();
+                desplazamiento = buffer.getOffset();
+                paso = componentes.getScanlineStride();
+                pasoPixel = componentes.getPixelStride();
+                if (tipo == BufferedImage.TYPE_BYTE_GRAY) {
+                    bandaRojo = bandas[0];
+                    modo = MODO_BYTE_GRIS;
+                } else {
+                    bandaRojo = bandas[0];
+                    bandaVerde = bandas[1];
+                    bandaAzul = bandas[2];
+                    modo = MODO_BYTE_COMPONENTES;
+                }
+
+            } else {
+                imagenGenerica = imagen;
+            }
+        }
+
+        /**
+         * Soltar referencias a la imagen para no retenerla entre llamadas
+         */
+        void liberar() {
+            datosInt = null;
+            datosByte = null;
+            imagenGenerica = null;
+        }
+
+        /**
+         * Gris en [0, 1] del píxel (x, y) de la imagen origen
+         */
+        float gris(int x, int y) {
+            switch (modo) {
+                case MODO_INT_RGB: {
+                    int p = datosInt[desplazamiento + (y - traslacionY) * paso + (x - traslacionX)];
+                    return ((p >> 16) & 0xFF) * PESO_ROJO + ((p >> 8) & 0xFF) * PESO_VERDE + (p & 0xFF) * PESO_AZUL;
+                }
+                case MODO_INT_BGR: {
+                    int p = datosInt[desplazamiento + (y - traslacionY) * paso + (x - traslacionX)];
+                    return (p & 0xFF) * PESO_ROJO + ((p >> 8) & 0xFF) * PESO_VERDE + ((p >> 16) & 0xFF) * PESO_AZUL;
+                }
+                case MODO_BYTE_COMPONENTES: {
+                    int base = desplazamiento + (y - traslacionY) * paso + (x - traslacionX) * pasoPixel;
+                    return (datosByte[base + bandaRojo] & 0xFF) * PESO_ROJO
+                         + (datosByte[base + bandaVerde] & 0xFF) * PESO_VERDE
+                         + (datosByte[base + bandaAzul] & 0xFF) * PESO_AZUL;
+                }
+                case MODO_BYTE_GRIS: {
+                    int base = desplazamiento + (y - traslacionY) * paso + (x - traslacionX) * pasoPixel;
+                    return (datosByte[base + bandaRojo] & 0xFF) / 255f;
+                }
+                default: {
+                    int p = imagenGenerica.getRGB(x, y);
+                    return ((p >> 16) & 0xFF) * PESO_ROJO + ((p >> 8) & 0xFF) * PESO_VERDE + (p & 0xFF) * PESO_AZUL;
+                }
+            }
+        }
+
+        /**
+         * Tablas de interpolación: centro de píxel destino → coordenada origen
+         * Solo se recalculan cuando cambia el tamaño de la imagen de entrada
+         */
+        private void calcularTablas(int ancho, int alto, int lado) {
+            if (columnaOrigen0.length != lado) {
+                columnaOrigen0 = new int[lado];
+                columnaOrigen1 = new int[lado];
+                pesoColumna = new float[lado];
+                filaOrigen0 = new int[lado];
+                filaOrigen1 = new int[lado];
+                pesoFila = new float[lado];
+            }
+            llenarTabla(ancho, lado, columnaOrigen0, columnaOrigen1, pesoColumna);
+            llenarTabla(alto, lado, filaOrigen0, filaOrigen1, pesoFila);
+            anchoPreparado = ancho;
+            altoPreparado = alto;
+            ladoPreparado = lado;
+        }
+
+        private static void llenarTabla(int origen, int lado, int[] indice0, int[] indice1, float[] peso) {
+            float escala = (float) origen / lado;
+            for (int i = 0; i < lado; i++) {
+                float posicion = (i + 0.5f) * escala - 0.5f;
+                if (posicion < 0f) {
+                    posicion = 0f;
+                }
+                int base = Math.min((int) posicion, origen - 1);
+                indice0[i] = base;
+                indice1[i] = Math.min(base + 1, origen - 1);
+                peso[i] = posicion - base;
+            }
+        }
+    }
+}
@@ -1,11 +1,19 @@
 package com.reconocimiento.facial.neural;
 
+import com.reconocimiento.facial.modelos.CaracteristicaFacial;
 import com.reconocimiento.facial.modelos.Usuario;
+import com.reconocimiento.facial.utilidades.AlmacenGaleria;
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
 import java.awt.image.BufferedImage;
 import java.awt.Graphics2D;
 import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.Optional;
 
 /**
@@ -44,10 +52,28 @@ public class RedNeuronalReconocimiento {
     private double[] biasOculta2;
     private double[] biasSalida;
     
+    // Matrices clásicas derivadas del motor plano la primera vez que se usa el motor CLASICO
+    private volatile boolean pesosClasicosListos;
+    
+    // Motor plano float32 (mismos pesos, disposición contigua fila-mayor)
+    private MotorInferenciaPlano motorPlano;
+    private final PreprocesadorImagen preprocesador = new PreprocesadorImagen(DIMENSION_IMAGEN);
+    private String versionModelo; // Identifica el modelo que produjo cada vector (version_algoritmo)
+    private final Path archivoModelo;
+    private volatile TipoMotorInferencia motorInferencia;
+    
     // Almacenamiento de perfiles faciales
     private Map<Integer, double[]> perfilesFaciales; // userId -> características
     private Map<Integer, String> nombresUsuarios; // userId -> nombre
     private Map<String, Integer> indiceUsuarios; // nombre -> userId
+    private final GaleriaPerfiles galeria; // Perfiles normalizados contiguos para búsqueda 1:N
+    private final AlmacenGaleria almacen; // WAL + instantáneas en disco (null = solo memoria)
+    
+    // Identificación aproximada (HNSW), construida al activar el modo APROXIMADO
+    private static final int CANDIDATOS_APROXIMADOS = 10;
+    private final Object bloqueoIndice = new Object();
+    private volatile IndiceHNSW indiceAproximado;
+    private volatile ModoIdentificacion modoIdentificacion;
     
     // Estado de la red
     private boolean redInicializada;
@@ -59,42 +85,110 @@ public class RedNeuronalReconocimiento {
     // private double ultimaPrecision;
     private double ultimaConfianza;
     // private List<Double> historialPerdida;
+    
+    // Latencia acumulada de extraerCaracteristicas por motor (nanosegundos / llamadas)
+    private final AtomicLong[] nanosPorMotor = { new AtomicLong(), new AtomicLong() };
+    private final AtomicLong[] llamadasPorMotor = { new AtomicLong(), new AtomicLong() };
 
     /**
      * Constructor principal
+     * Usa el directorio de galería configurado (galeria.directorio) si galeria.persistente=true
      */
     public RedNeuronalReconocimiento() {
+        this(GestorConfiguracion.obtenerBoolean("galeria.persistente", true)
+             ? Paths.get(GestorConfiguracion.obtenerString("galeria.directorio", "datos/galeria"), "neural")
+             : null);
+    }
+
+    /**
+     * Constructor con directorio de galería explícito
+     * Usa el archivo de modelo configurado (neural.archivo_modelo)
+     * @param directorioGaleria Carpeta del WAL y las instantáneas, o null para no persistir
+     */
+    public RedNeuronalReconocimiento(Path directorioGaleria) {
+        this(directorioGaleria,
+             Paths.get(GestorConfiguracion.obtenerString("neural.archivo_modelo", "modelos/red_neuronal.rnm")));
+    }
+
+    /**
+     * Constructor con directorio de galería y archivo de modelo explícitos
+     * @param directorioGaleria Carpeta del WAL y las instantáneas, o null para no persistir
+     * @param archivoModelo Pesos de la red; si no existe se generan y se guardan ahí
+     */
+    public RedNeuronalReconocimiento(Path directorioGaleria, Path archivoModelo) {
+        this.archivoModelo = archivoModelo;
         this.perfilesFaciales = new ConcurrentHashMap<>();
         this.nombresUsuarios = new ConcurrentHashMap<>();
         this.indiceUsuarios = new ConcurrentHashMap<>();
+        this.galeria = new GaleriaPerfiles(DIMENSION_CARACTERISTICAS);
         // this.historialPerdida = new ArrayList<>(); // Para futuras implementaciones
-        this.random = new Random(System.currentTimeMillis());
+        this.random = new Random(GestorConfiguracion.obtenerInt("neural.semilla", 42));
         this.contadorUsuarios = 0;
         this.redInicializada = false;
         this.redEntrenada = false;
+        this.motorInferencia = TipoMotorInferencia.desdeConfiguracion(
+            GestorConfiguracion.obtenerString("neural.motor_inferencia", "plano"));
+        this.modoIdentificacion = ModoIdentificacion.desdeConfiguracion(
+            GestorConfiguracion.obtenerString("neural.modo_identificacion", "exacto"));
         
         inicializarRed();
+        this.almacen = abrirAlmacen(directorioGaleria);
         System.out.println("🧠 Red neuronal inicializada correctamente");
     }
 
+    /**
+     * 💾 Abrir el almacén de galería y reconstruir los perfiles guardados
+     * Sin almacén la red sigue funcionando, pero los registros se pierden al reiniciar
+     */
+    private AlmacenGaleria abrirAlmacen(Path directorio) {
+        if (directorio == null) {
+            return null;
+        }
+        try {
+            AlmacenGaleria abierto = new AlmacenGaleria(directorio,
+                GestorConfiguracion.obtenerInt("galeria.operaciones_por_instantanea", 1000));
+            int maximoId = -1;
+            galeria.reservar(abierto.obtenerEntradas().size());
+            for (AlmacenGaleria.Entrada entrada : abierto.obtenerEntradas().values()) {
+                if (entrada.getVector().length != DIMENSION_CARACTERISTICAS) {
+                    System.err.println("⚠️ Perfil " + entrada.getId() + " con dimensión incompatible, se omite");
+                    continue;
+                }
+                perfilesFaciales.put(entrada.getId(), entrada.getVector());
+                galeria.agregarOActualizar(entrada.getId(), entrada.getVector());
+                nombresUsuarios.put(entrada.getId(), entrada.getNombre());
+                indiceUsuarios.put(entrada.getNombre(), entrada.getId());
+                maximoId = Math.max(maximoId, entrada.getId());
+            }
+            contadorUsuarios = maximoId + 1;
+            return abierto;
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo abrir la galería en " + directorio + ": " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * 🏗️ Inicializar la arquitectura de la red neuronal
+     * Carga los pesos del archivo de modelo si existe; si no, los genera con semilla fija
+     * y los guarda para que los vectores sigan siendo comparables tras reiniciar.
      */
     private void inicializarRed() {
         try {
-            // Inicializar matrices de pesos con distribución normal Xavier
-            pesosEntradaOculta1 = inicializarMatriz(DIMENSION_ENTRADA, NEURONAS_CAPA_OCULTA_1);
-            pesosOculta1Oculta2 = inicializarMatriz(NEURONAS_CAPA_OCULTA_1, NEURONAS_CAPA_OCULTA_2);
-            pesosOculta2Salida = inicializarMatriz(NEURONAS_CAPA_OCULTA_2, DIMENSION_CARACTERISTICAS);
+            long inicio = System.currentTimeMillis();
             
-            // Inicializar bias con valores pequeños
-            biasOculta1 = new double[NEURONAS_CAPA_OCULTA_1];
-            biasOculta2 = new double[NEURONAS_CAPA_OCULTA_2];
-            biasSalida = new double[DIMENSION_CARACTERISTICAS];
-            
-            Arrays.fill(biasOculta1, 0.01);
-            Arrays.fill(biasOculta2, 0.01);
-            Arrays.fill(biasSalida, 0.01);
+            if (Files.exists(archivoModelo) && cargarModelo(archivoModelo)) {
+                System.out.println("📂 Modelo " + versionModelo + " cargado desde " + archivoModelo
+                                 + " en " + (System.currentTimeMillis() - inicio) + " ms");
+            } else {
+                generarModelo();
+                try {
+                    ArchivoModelo.guardar(archivoModelo, versionModelo, motorPlano);
+                    System.out.println("💾 Modelo " + versionModelo + " guardado en " + archivoModelo);
+                } catch (IOException e) {
+                    System.err.println("⚠️ No se pudo guardar el modelo en " + archivoModelo + ": " + e.getMessage());
+                }
+            }
             
             redInicializada = true;
             System.out.println("✅ Arquitectura de red neuronal configurada");
@@ -105,6 +199,72 @@ public class RedNeuronalReconocimiento {
         }
     }
 
+    /**
+     * 📂 Cargar el motor desde un archivo de modelo con la arquitectura esperada
+     * @return false si el archivo es ilegible o incompatible (se regenerará)
+     */
+    private boolean cargarModelo(Path archivoModelo) {
+        try {
+            ArchivoModelo.ModeloCargado modelo = ArchivoModelo.cargar(archivoModelo);
+            MotorInferenciaPlano motor = modelo.getMotor();
+            if (motor.getDimensionEntrada() != DIMENSION_ENTRADA
+                    || motor.getNeuronasOculta1() != NEURONAS_CAPA_OCULTA_1
+                    || motor.getNeuronasOculta2() != NEURONAS_CAPA_OCULTA_2
+                    || motor.getDimensionSalida() != DIMENSION_CARACTERISTICAS) {
+                System.err.println("⚠️ Arquitectura del modelo incompatible en " + archivoModelo);
+                return false;
+            }
+            motorPlano = motor;
+            versionModelo = modelo.getVersionModelo();
+            return true;
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo cargar el modelo " + archivoModelo + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 🎲 Generar pesos Xavier con la semilla configurada
+     */
+    private void generarModelo() {
+        // Inicializar matrices de pesos con distribución normal Xavier
+        double[][] pesos1 = inicializarMatriz(DIMENSION_ENTRADA, NEURONAS_CAPA_OCULTA_1);
+        double[][] pesos2 = inicializarMatriz(NEURONAS_CAPA_OCULTA_1, NEURONAS_CAPA_OCULTA_2);
+        double[][] pesos3 = inicializarMatriz(NEURONAS_CAPA_OCULTA_2, DIMENSION_CARACTERISTICAS);
+        
+        // Inicializar bias con valores pequeños
+        double[] bias1 = new double[NEURONAS_CAPA_OCULTA_1];
+        double[] bias2 = new double[NEURONAS_CAPA_OCULTA_2];
+        double[] bias3 = new double[DIMENSION_CARACTERISTICAS];
+        
+        Arrays.fill(bias1, 0.01);
+        Arrays.fill(bias2, 0.01);
+        Arrays.fill(bias3, 0.01);
+        
+        motorPlano = MotorInferenciaPlano.desdeMatrices(pesos1, bias1, pesos2, bias2, pesos3, bias3);
+        versionModelo = ArchivoModelo.calcularVersion(motorPlano);
+    }
+
+    /**
+     * 🔄 Derivar las matrices double del motor clásico a partir del motor plano
+     */
+    private void asegurarPesosClasicos() {
+        if (pesosClasicosListos) {
+            return;
+        }
+        synchronized (this) {
+            if (!pesosClasicosListos) {
+                pesosEntradaOculta1 = motorPlano.aMatrizClasica(0);
+                pesosOculta1Oculta2 = motorPlano.aMatrizClasica(1);
+                pesosOculta2Salida = motorPlano.aMatrizClasica(2);
+                biasOculta1 = motorPlano.aBiasClasico(0);
+                biasOculta2 = motorPlano.aBiasClasico(1);
+                biasSalida = motorPlano.aBiasClasico(2);
+                pesosClasicosListos = true;
+            }
+        }
+    }
+
     /**
      * 🎲 Inicializar matriz de pesos con distribución Xavier
      */
@@ -124,13 +284,16 @@ public class RedNeuronalReconocimiento {
      * 🖼️ Extraer características faciales de una imagen
      */
     public double[] extraerCaracteristicas(BufferedImage imagen) {
+        TipoMotorInferencia motor = motorInferencia;
+        long inicio = System.nanoTime();
         try {
-            // Preprocesar imagen
-            double[] imagenNormalizada = preprocesarImagen(imagen);
-            
-            // Propagar hacia adelante por la red neuronal
-            double[] caracteristicas = propagarHaciaAdelante(imagenNormalizada);
+            // Preprocesar en el buffer del hilo y propagar con el motor seleccionado
+            float[] imagenNormalizada = preprocesador.preprocesar(imagen);
+            double[] caracteristicas = motor == TipoMotorInferencia.PLANO_FLOAT32
+                ? motorPlano.propagar(imagenNormalizada)
+                : propagarHaciaAdelante(aDouble(imagenNormalizada));
             
+            registrarLatencia(motor, System.nanoTime() - inicio);
             return caracteristicas;
             
         } catch (Exception e) {
@@ -140,60 +303,103 @@ public class RedNeuronalReconocimiento {
     }
 
     /**
-     * 🔄 Preprocesar imagen para la red neuronal
+     * 📦 Extraer características de un lote de imágenes
+     * Con el motor plano, las N imágenes atraviesan cada capa como un único producto
+     * matriz-matriz; con el motor clásico se procesan una a una.
+     * @param imagenes Imágenes a procesar
+     * @return Vectores de características en el mismo orden (vector vacío si una imagen falla)
      */
-    private double[] preprocesarImagen(BufferedImage imagen) {
-        // Redimensionar a 64x64
-        BufferedImage imagenRedimensionada = redimensionarImagen(imagen, DIMENSION_IMAGEN, DIMENSION_IMAGEN);
-        
-        // Convertir a escala de grises y normalizar
-        double[] pixeles = new double[DIMENSION_ENTRADA];
-        int indice = 0;
-        
-        for (int y = 0; y < DIMENSION_IMAGEN; y++) {
-            for (int x = 0; x < DIMENSION_IMAGEN; x++) {
-                Color color = new Color(imagenRedimensionada.getRGB(x, y));
-                // Convertir a escala de grises usando luminancia
-                double gris = 0.299 * color.getRed() + 0.587 * color.getGreen() + 0.114 * color.getBlue();
-                // Normalizar a rango [0, 1]
-                pixeles[indice++] = gris / 255.0;
+    public List<double[]> extraerCaracteristicasLote(List<BufferedImage> imagenes) {
+        if (imagenes == null || imagenes.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        TipoMotorInferencia motor = motorInferencia;
+        long inicio = System.nanoTime();
+        List<double[]> resultado = new ArrayList<>(imagenes.size());
+
+        try {
+            // Preprocesar en paralelo, un buffer por imagen; las imágenes inválidas quedan como null
+            float[][] entradas = imagenes.parallelStream()
+                .map(imagen -> {
+                    try {
+                        return preprocesador.preprocesar(imagen, new float[DIMENSION_ENTRADA]);
+                    } catch (Exception e) {
+                        System.err.println("❌ Error preprocesando imagen del lote: " + e.getMessage());
+                        return null;
+                    }
+                })
+                .toArray(float[][]::new);
+
+            if (motor == TipoMotorInferencia.PLANO_FLOAT32) {
+                List<Integer> posicionesValidas = new ArrayList<>();
+                List<float[]> entradasValidas = new ArrayList<>();
+                for (int i = 0; i < entradas.length; i++) {
+                    if (entradas[i] != null) {
+                        posicionesValidas.add(i);
+                        entradasValidas.add(entradas[i]);
+                    }
+                }
+
+                double[][] salidas = motorPlano.propagarLote(entradasValidas.toArray(new float[0][]));
+                double[][] ordenadas = new double[entradas.length][];
+                for (int k = 0; k < salidas.length; k++) {
+                    ordenadas[posicionesValidas.get(k)] = salidas[k];
+                }
+                for (double[] salida : ordenadas) {
+                    resultado.add(salida != null ? salida : new double[DIMENSION_CARACTERISTICAS]);
+                }
+            } else {
+                for (float[] entrada : entradas) {
+                    resultado.add(entrada != null ? propagarHaciaAdelante(aDouble(entrada)) : new double[DIMENSION_CARACTERISTICAS]);
+                }
             }
+
+            registrarLatencia(motor, System.nanoTime() - inicio, imagenes.size());
+            return resultado;
+
+        } catch (Exception e) {
+            System.err.println("❌ Error extrayendo características del lote: " + e.getMessage());
+            resultado.clear();
+            for (int i = 0; i < imagenes.size(); i++) {
+                resultado.add(new double[DIMENSION_CARACTERISTICAS]);
+            }
+            return resultado;
         }
-        
-        // Normalización adicional (z-score)
-        return normalizarVector(pixeles);
     }
 
     /**
-     * 📏 Redimensionar imagen
+     * Convertir la entrada preprocesada a double para el motor clásico
      */
-    private BufferedImage redimensionarImagen(BufferedImage original, int ancho, int alto) {
-        BufferedImage redimensionada = new BufferedImage(ancho, alto, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g2d = redimensionada.createGraphics();
-        g2d.setRenderingHint(java.awt.RenderingHints.KEY_INTERPOLATION, 
-                            java.awt.RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g2d.drawImage(original, 0, 0, ancho, alto, null);
-        g2d.dispose();
-        return redimensionada;
+    private static double[] aDouble(float[] vector) {
+        double[] resultado = new double[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            resultado[i] = vector[i];
+        }
+        return resultado;
     }
 
     /**
-     * 📊 Normalizar vector usando z-score
+     * ⏱️ Acumular latencia de una extracción para el motor usado
      */
-    private double[] normalizarVector(double[] vector) {
-        double media = Arrays.stream(vector).average().orElse(0.0);
-        double varianza = Arrays.stream(vector).map(x -> Math.pow(x - media, 2)).average().orElse(1.0);
-        double desviacionTemporal = Math.sqrt(varianza);
-        
-        final double desviacion = (desviacionTemporal == 0) ? 1.0 : desviacionTemporal; // Evitar división por cero
-        
-        return Arrays.stream(vector).map(x -> (x - media) / desviacion).toArray();
+    private void registrarLatencia(TipoMotorInferencia motor, long nanos) {
+        registrarLatencia(motor, nanos, 1);
+    }
+
+    /**
+     * ⏱️ Acumular latencia de un lote, contabilizada como una llamada por imagen
+     */
+    private void registrarLatencia(TipoMotorInferencia motor, long nanos, int imagenes) {
+        nanosPorMotor[motor.ordinal()].addAndGet(nanos);
+        llamadasPorMotor[motor.ordinal()].addAndGet(imagenes);
     }
 
     /**
      * ➡️ Propagación hacia adelante
      */
     private double[] propagarHaciaAdelante(double[] entrada) {
+        asegurarPesosClasicos();
+        
         // Capa oculta 1
         double[] oculta1 = new double[NEURONAS_CAPA_OCULTA_1];
         for (int i = 0; i < NEURONAS_CAPA_OCULTA_1; i++) {
@@ -246,23 +452,29 @@ public class RedNeuronalReconocimiento {
             
             System.out.println("📝 Registrando usuario: " + nombreUsuario);
             
-            // Extraer características de todas las imágenes
-            List<double[]> caracteristicasImagenes = new ArrayList<>();
-            for (BufferedImage imagen : imagenes) {
-                double[] caracteristicas = extraerCaracteristicas(imagen);
-                caracteristicasImagenes.add(caracteristicas);
-            }
+            // Extraer características de todas las imágenes en un solo lote
+            List<double[]> caracteristicasImagenes = extraerCaracteristicasLote(imagenes);
             
             // Calcular perfil promedio del usuario
             double[] perfilPromedio = calcularPerfilPromedio(caracteristicasImagenes);
             
-            // Asignar ID al usuario
-            int userId = contadorUsuarios++;
-            
-            // Almacenar en los mapas
-            perfilesFaciales.put(userId, perfilPromedio);
-            nombresUsuarios.put(userId, nombreUsuario);
-            indiceUsuarios.put(nombreUsuario, userId);
+            // Asignar ID al usuario (la instancia se comparte entre formularios);
+            // un nombre ya registrado conserva su ID y su perfil se actualiza.
+            // ID, WAL y mapas en la misma sección crítica: la memoria sigue el orden del WAL
+            int userId;
+            synchronized (this) {
+                Integer existente = indiceUsuarios.get(nombreUsuario);
+                userId = existente != null ? existente : contadorUsuarios;
+                
+                // Persistir antes de publicar: si el WAL falla el registro no se confirma
+                if (almacen != null) {
+                    almacen.guardar(userId, nombreUsuario, perfilPromedio);
+                }
+                if (existente == null) {
+                    contadorUsuarios++;
+                }
+                publicarPerfil(userId, nombreUsuario, perfilPromedio);
+            }
             
             System.out.println("✅ Usuario registrado: " + nombreUsuario + " (ID: " + userId + ")");
             System.out.println("📊 Características extraídas de " + imagenes.size() + " imágenes");
@@ -275,6 +487,115 @@ public class RedNeuronalReconocimiento {
         }
     }
 
+    /**
+     * 📥 Cargar un perfil ya calculado (p. ej. desde la base de datos) solo en memoria
+     * No escribe en el WAL: la fuente del perfil ya es persistente. Seguro entre hilos.
+     * @return ID asignado (el existente si el nombre ya estaba registrado)
+     */
+    public int cargarPerfil(String nombreUsuario, double[] perfil) {
+        if (perfil == null || perfil.length != DIMENSION_CARACTERISTICAS) {
+            throw new IllegalArgumentException("El perfil debe tener " + DIMENSION_CARACTERISTICAS + " valores");
+        }
+        synchronized (this) {
+            Integer existente = indiceUsuarios.get(nombreUsuario);
+            int userId = existente != null ? existente : contadorUsuarios++;
+            publicarPerfil(userId, nombreUsuario, perfil);
+            return userId;
+        }
+    }
+
+    /**
+     * Publicar un perfil en mapas, galería e índice (con el monitor de la instancia tomado)
+     */
+    private void publicarPerfil(int userId, String nombreUsuario, double[] perfil) {
+        perfilesFaciales.put(userId, perfil);
+        galeria.agregarOActualizar(userId, perfil);
+        synchronized (bloqueoIndice) {
+            if (indiceAproximado != null) {
+                indiceAproximado.insertar(userId, perfil);
+            }
+        }
+        nombresUsuarios.put(userId, nombreUsuario);
+        indiceUsuarios.put(nombreUsuario, userId);
+    }
+
+    /**
+     * 📥 Cargar el perfil solo si el usuario aún no está en memoria (p. ej. ya restaurado del WAL)
+     * @return true si se cargó
+     */
+    public synchronized boolean cargarPerfilSiAusente(String nombreUsuario, double[] perfil) {
+        if (indiceUsuarios.containsKey(nombreUsuario)) {
+            return false;
+        }
+        cargarPerfil(nombreUsuario, perfil);
+        return true;
+    }
+
+    /**
+     * 📋 Perfil promedio registrado para un usuario
+     */
+    public Optional<double[]> obtenerPerfil(String nombreUsuario) {
+        Integer userId = indiceUsuarios.get(nombreUsuario);
+        return userId != null ? Optional.ofNullable(perfilesFaciales.get(userId)) : Optional.empty();
+    }
+
+    /**
+     * 🗑️ Eliminar un usuario registrado de la galería (y de disco si hay almacén)
+     * @return true si el usuario existía
+     */
+    public boolean eliminarUsuario(String nombreUsuario) {
+        try {
+            Integer userId;
+            synchronized (this) {
+                userId = indiceUsuarios.get(nombreUsuario);
+                if (userId == null) {
+                    return false;
+                }
+                if (almacen != null) {
+                    almacen.eliminar(userId);
+                }
+                indiceUsuarios.remove(nombreUsuario);
+                nombresUsuarios.remove(userId);
+                perfilesFaciales.remove(userId);
+                galeria.eliminar(userId);
+                synchronized (bloqueoIndice) {
+                    if (indiceAproximado != null) {
+                        indiceAproximado.eliminar(userId);
+                    }
+                }
+            }
+            System.out.println("🗑️ Usuario eliminado: " + nombreUsuario + " (ID: " + userId + ")");
+            return true;
+            
+        } catch (IOException e) {
+            System.err.println("❌ Error eliminando usuario " + nombreUsuario + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 📸 Compactar el WAL de la galería en una instantánea
+     */
+    public void crearInstantaneaGaleria() throws IOException {
+        if (almacen != null) {
+            almacen.crearInstantanea();
+        }
+    }
+
+    /**
+     * 🧹 Cerrar el almacén de galería
+     */
+    public void cerrarGaleria() {
+        if (almacen == null) {
+            return;
+        }
+        try {
+            almacen.close();
+        } catch (IOException e) {
+            System.err.println("⚠️ Error cerrando la galería: " + e.getMessage());
+        }
+    }
+
     /**
      * 📊 Calcular perfil promedio de múltiples características
      */
@@ -346,66 +667,164 @@ public class RedNeuronalReconocimiento {
      * 🎯 Encontrar la mejor coincidencia entre los usuarios registrados
      */
     private ResultadoReconocimiento encontrarMejorCoincidencia(double[] caracteristicasImagen) {
+        if (modoIdentificacion == ModoIdentificacion.APROXIMADO) {
+            return encontrarCoincidenciaAproximada(caracteristicasImagen);
+        }
+
+        GaleriaPerfiles.Coincidencia coincidencia = galeria.buscarMejor(caracteristicasImagen);
+        if (coincidencia == null) {
+            return null;
+        }
+        return new ResultadoReconocimiento(coincidencia.getIdUsuario(), coincidencia.getConfianza(),
+                                           coincidencia.getSimilitudCoseno(), coincidencia.getDistanciaEuclidiana());
+    }
+
+    /**
+     * 🕸️ Identificación aproximada: el índice HNSW propone candidatos por coseno y
+     * se puntúan con la confianza combinada sobre los perfiles originales
+     */
+    private ResultadoReconocimiento encontrarCoincidenciaAproximada(double[] caracteristicasImagen) {
+        List<IndiceHNSW.Resultado> candidatos = obtenerIndiceAproximado()
+            .buscar(caracteristicasImagen, CANDIDATOS_APROXIMADOS);
+
         ResultadoReconocimiento mejor = null;
         double mejorConfianza = 0.0;
-        
-        for (Map.Entry<Integer, double[]> entry : perfilesFaciales.entrySet()) {
-            int userId = entry.getKey();
-            double[] perfilUsuario = entry.getValue();
-            
-            // Calcular similitud coseno
-            double similitudCoseno = calcularSimilitudCoseno(caracteristicasImagen, perfilUsuario);
-            
-            // Calcular distancia euclidiana normalizada
-            double distanciaEuclidiana = calcularDistanciaEuclidiana(caracteristicasImagen, perfilUsuario);
-            double similitudEuclidiana = 1.0 / (1.0 + distanciaEuclidiana);
-            
-            // Combinar métricas para confianza final
-            double confianza = (similitudCoseno * 0.7) + (similitudEuclidiana * 0.3);
-            
+        double[] metricas = new double[4];
+
+        for (IndiceHNSW.Resultado candidato : candidatos) {
+            double[] perfil = perfilesFaciales.get(candidato.getId());
+            if (perfil == null) {
+                continue;
+            }
+            KernelesSimilitud.calcularMetricas(caracteristicasImagen, perfil, metricas);
+            double similitudCoseno = KernelesSimilitud.coseno(metricas);
+            double distanciaEuclidiana = KernelesSimilitud.euclidiana(metricas);
+            double confianza = GaleriaPerfiles.combinarConfianza(similitudCoseno, distanciaEuclidiana);
+
             if (confianza > mejorConfianza) {
                 mejorConfianza = confianza;
-                mejor = new ResultadoReconocimiento(userId, confianza, similitudCoseno, distanciaEuclidiana);
+                mejor = new ResultadoReconocimiento(candidato.getId(), confianza, similitudCoseno, distanciaEuclidiana);
             }
         }
-        
         return mejor;
     }
 
     /**
-     * 📐 Calcular similitud coseno entre dos vectores
+     * 🏗️ Obtener el índice HNSW, construyéndolo con los perfiles actuales la primera vez
      */
-    private double calcularSimilitudCoseno(double[] vector1, double[] vector2) {
-        double productoEscalar = 0.0;
-        double norma1 = 0.0;
-        double norma2 = 0.0;
-        
-        for (int i = 0; i < vector1.length; i++) {
-            productoEscalar += vector1[i] * vector2[i];
-            norma1 += vector1[i] * vector1[i];
-            norma2 += vector2[i] * vector2[i];
+    private IndiceHNSW obtenerIndiceAproximado() {
+        IndiceHNSW indice = indiceAproximado;
+        if (indice != null) {
+            return indice;
         }
-        
-        norma1 = Math.sqrt(norma1);
-        norma2 = Math.sqrt(norma2);
-        
-        if (norma1 == 0.0 || norma2 == 0.0) {
-            return 0.0;
+        synchronized (bloqueoIndice) {
+            if (indiceAproximado == null) {
+                long inicio = System.currentTimeMillis();
+                IndiceHNSW nuevo = new IndiceHNSW(DIMENSION_CARACTERISTICAS,
+                    GestorConfiguracion.obtenerInt("neural.hnsw.m", 16),
+                    GestorConfiguracion.obtenerInt("neural.hnsw.ef_construccion", 200),
+                    GestorConfiguracion.obtenerInt("neural.hnsw.ef_busqueda", 64));
+                perfilesFaciales.forEach(nuevo::insertar);
+                indiceAproximado = nuevo;
+                System.out.println("🕸️ Índice HNSW construido con " + perfilesFaciales.size() + " perfiles en "
+                                 + (System.currentTimeMillis() - inicio) + " ms");
+            }
+            return indiceAproximado;
         }
-        
-        return productoEscalar / (norma1 * norma2);
     }
 
     /**
-     * 📏 Calcular distancia euclidiana entre dos vectores
+     * 📈 Medir el recall@k del índice aproximado frente a la búsqueda exhaustiva
+     * Las consultas son perfiles registrados con ruido gaussiano (semilla fija)
+     * @param k Vecinos comparados por consulta
+     * @param numeroConsultas Consultas a evaluar
+     * @return Fracción media de los k vecinos exactos recuperados por el índice [0, 1]
+     */
+    public double evaluarRecall(int k, int numeroConsultas) {
+        List<double[]> perfiles = new ArrayList<>(perfilesFaciales.values());
+        if (perfiles.isEmpty() || k <= 0 || numeroConsultas <= 0) {
+            return 1.0;
+        }
+
+        IndiceHNSW indice = obtenerIndiceAproximado();
+        Random generador = new Random(12345);
+        long nanosExacto = 0;
+        long nanosAproximado = 0;
+        double sumaRecall = 0.0;
+
+        for (int q = 0; q < numeroConsultas; q++) {
+            double[] consulta = perfiles.get(generador.nextInt(perfiles.size())).clone();
+            for (int i = 0; i < consulta.length; i++) {
+                consulta[i] += generador.nextGaussian() * 0.05;
+            }
+
+            long inicio = System.nanoTime();
+            int[] exactos = galeria.buscarMasSimilares(consulta, k);
+            nanosExacto += System.nanoTime() - inicio;
+
+            inicio = System.nanoTime();
+            List<IndiceHNSW.Resultado> aproximados = indice.buscar(consulta, k);
+            nanosAproximado += System.nanoTime() - inicio;
+
+            Set<Integer> encontrados = new HashSet<>();
+            aproximados.forEach(resultado -> encontrados.add(resultado.getId()));
+            int aciertos = 0;
+            for (int id : exactos) {
+                if (encontrados.contains(id)) {
+                    aciertos++;
+                }
+            }
+            sumaRecall += exactos.length == 0 ? 1.0 : (double) aciertos / exactos.length;
+        }
+
+        double recall = sumaRecall / numeroConsultas;
+        System.out.println("📈 Recall@" + k + " HNSW: " + String.format("%.2f%%", recall * 100)
+                         + " | exacto " + String.format("%.1f µs", nanosExacto / (numeroConsultas * 1000.0))
+                         + " | aproximado " + String.format("%.1f µs", nanosAproximado / (numeroConsultas * 1000.0))
+                         + " (efBusqueda=" + indice.getEfBusqueda() + ")");
+        return recall;
+    }
+
+    /**
+     * 💾 Guardar el índice aproximado en disco
      */
-    private double calcularDistanciaEuclidiana(double[] vector1, double[] vector2) {
-        double suma = 0.0;
-        for (int i = 0; i < vector1.length; i++) {
-            double diferencia = vector1[i] - vector2[i];
-            suma += diferencia * diferencia;
+    public void guardarIndiceAproximado(Path archivo) throws IOException {
+        obtenerIndiceAproximado().guardar(archivo);
+        System.out.println("💾 Índice HNSW guardado en " + archivo);
+    }
+
+    /**
+     * 📂 Cargar un índice aproximado guardado previamente
+     * Si está dañado o no coincide con la galería actual (registros posteriores al guardado)
+     * se descarta y se reconstruye con los perfiles en memoria
+     * @return true si se usó el índice guardado
+     */
+    public boolean cargarIndiceAproximado(Path archivo) {
+        IndiceHNSW indice;
+        try {
+            indice = IndiceHNSW.cargar(archivo);
+            if (indice.getDimension() != DIMENSION_CARACTERISTICAS) {
+                throw new IOException("Dimensión del índice incompatible: " + indice.getDimension());
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ Índice HNSW de " + archivo + " no válido (" + e.getMessage() + "), se reconstruye");
+            synchronized (bloqueoIndice) {
+                indiceAproximado = null;
+                obtenerIndiceAproximado();
+            }
+            return false;
         }
-        return Math.sqrt(suma);
+        synchronized (bloqueoIndice) {
+            if (!indice.coincideCon(perfilesFaciales)) {
+                System.err.println("⚠️ El índice HNSW de " + archivo + " no coincide con la galería, se reconstruye");
+                indiceAproximado = null;
+                obtenerIndiceAproximado();
+                return false;
+            }
+            indiceAproximado = indice;
+        }
+        System.out.println("📂 Índice HNSW cargado: " + indice);
+        return true;
     }
 
     /**
@@ -422,6 +841,21 @@ public class RedNeuronalReconocimiento {
         stats.append("• Dimensión de características: ").append(DIMENSION_CARACTERISTICAS).append("\n");
         stats.append("• Umbral de reconocimiento: ").append(String.format("%.2f%%", UMBRAL_RECONOCIMIENTO * 100)).append("\n");
         stats.append("• Última confianza: ").append(String.format("%.2f%%", ultimaConfianza * 100)).append("\n");
+        stats.append("• Versión del modelo: ").append(versionModelo).append("\n");
+        stats.append("• Motor de inferencia: ").append(motorInferencia).append("\n");
+        stats.append("• Galería contigua: ").append(galeria.getCantidad()).append(" perfiles, ")
+             .append(galeria.getTamanoBytes() / 1024).append(" KB\n");
+        stats.append("• Modo de identificación: ").append(modoIdentificacion).append("\n");
+        if (indiceAproximado != null) {
+            stats.append("• Índice aproximado: ").append(indiceAproximado).append("\n");
+        }
+        stats.append("• Kernels de similitud: ").append(KernelesSimilitud.getImplementacion()).append("\n");
+        for (TipoMotorInferencia motor : TipoMotorInferencia.values()) {
+            if (llamadasPorMotor[motor.ordinal()].get() > 0) {
+                stats.append("• Latencia media ").append(motor).append(": ")
+                     .append(String.format("%.1f µs", getLatenciaPromedioMicros(motor))).append("\n");
+            }
+        }
         
         if (!nombresUsuarios.isEmpty()) {
             stats.append("• Usuarios: ");
@@ -439,6 +873,81 @@ public class RedNeuronalReconocimiento {
     public boolean isRedEntrenada() { return redEntrenada; }
     public double getUltimaConfianza() { return ultimaConfianza; }
     public int getNumeroUsuariosRegistrados() { return perfilesFaciales.size(); }
+    public TipoMotorInferencia getMotorInferencia() { return motorInferencia; }
+    public String getVersionModelo() { return versionModelo; }
+    public Path getArchivoModelo() { return archivoModelo; }
+
+    /**
+     * 🧬 Extraer características como modelo persistible, etiquetado con la versión del modelo
+     */
+    public CaracteristicaFacial crearCaracteristicaFacial(int idUsuario, BufferedImage imagen) {
+        CaracteristicaFacial caracteristica = new CaracteristicaFacial(idUsuario, extraerCaracteristicas(imagen));
+        caracteristica.setMetodoExtraccion("RedNeuronal");
+        caracteristica.setVersionAlgoritmo(versionModelo);
+        return caracteristica;
+    }
+
+    /**
+     * Seleccionar el motor usado por extraerCaracteristicas
+     */
+    public void setMotorInferencia(TipoMotorInferencia motorInferencia) {
+        if (motorInferencia == null) {
+            throw new IllegalArgumentException("El motor de inferencia no puede ser null");
+        }
+        this.motorInferencia = motorInferencia;
+        System.out.println("⚡ Motor de inferencia seleccionado: " + motorInferencia);
+    }
+
+    public ModoIdentificacion getModoIdentificacion() { return modoIdentificacion; }
+
+    /**
+     * Seleccionar identificación exacta (galería completa) o aproximada (HNSW)
+     */
+    public void setModoIdentificacion(ModoIdentificacion modoIdentificacion) {
+        if (modoIdentificacion == null) {
+            throw new IllegalArgumentException("El modo de identificación no puede ser null");
+        }
+        if (modoIdentificacion == ModoIdentificacion.APROXIMADO) {
+            obtenerIndiceAproximado();
+        }
+        this.modoIdentificacion = modoIdentificacion;
+        System.out.println("🔍 Modo de identificación: " + modoIdentificacion);
+    }
+
+    /**
+     * ⏱️ Latencia media por llamada a extraerCaracteristicas con un motor (µs)
+     */
+    public double getLatenciaPromedioMicros(TipoMotorInferencia motor) {
+        long llamadas = llamadasPorMotor[motor.ordinal()].get();
+        return llamadas == 0 ? 0.0 : nanosPorMotor[motor.ordinal()].get() / (llamadas * 1000.0);
+    }
+
+    /**
+     * ⚡ Motores de inferencia disponibles
+     * CLASICO recorre las matrices double[entrada][salida]; PLANO_FLOAT32 usa
+     * {@link MotorInferenciaPlano} con los mismos pesos redondeados a float32
+     */
+    public enum TipoMotorInferencia {
+        CLASICO,
+        PLANO_FLOAT32;
+
+        static TipoMotorInferencia desdeConfiguracion(String valor) {
+            return "clasico".equalsIgnoreCase(valor == null ? "" : valor.trim()) ? CLASICO : PLANO_FLOAT32;
+        }
+    }
+
+    /**
+     * 🔍 Modos de identificación 1:N
+     * EXACTO recorre la galería completa; APROXIMADO consulta el índice HNSW
+     */
+    public enum ModoIdentificacion {
+        EXACTO,
+        APROXIMADO;
+
+        static ModoIdentificacion desdeConfiguracion(String valor) {
+            return "aproximado".equalsIgnoreCase(valor == null ? "" : valor.trim()) ? APROXIMADO : EXACTO;
+        }
+    }
 
     /**
      * 📋 Clase interna para resultados de reconocimiento
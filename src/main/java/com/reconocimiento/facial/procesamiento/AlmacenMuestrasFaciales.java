@@ -0,0 +1,173 @@
+package com.reconocimiento.facial.procesamiento;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.*;
+
+/**
+ * 🗃️ ALMACÉN DE MUESTRAS FACIALES
+ * Rostros ya preprocesados (gris 100x100) con su etiqueta, en orden de llegada. Es el
+ * registro del que se reconstruyen los modelos OpenCV: LBPH se pone al día con las muestras
+ * posteriores a su última copia guardada y Eigen/Fisher, que no admiten actualización
+ * incremental, se reentrenan leyendo todas.
+ *
+ * Cada muestra es un PNG {@code <secuencia>_<etiqueta>.png}: agregar no reescribe nada de
+ * lo anterior, así que registrar el usuario 10.000 cuesta lo mismo que el primero.
+ * Sin directorio las muestras se guardan solo en memoria.
+ */
+public class AlmacenMuestrasFaciales {
+
+    private static final String EXTENSION = ".png";
+
+    /**
+     * 👀 Recibe cada muestra al recorrer el almacén (el Mat solo es válido durante la llamada)
+     */
+    public interface Visitante {
+        void visitar(long secuencia, int etiqueta, Mat muestra);
+    }
+
+    private final Path directorio; // null = solo memoria
+    private final List<Entrada> entradas = new ArrayList<>();
+    private final Map<Integer, Integer> muestrasPorEtiqueta = new HashMap<>();
+    private long ultimaSecuencia;
+
+    /**
+     * @param directorio Carpeta de las muestras (se crea si no existe); null = solo memoria
+     */
+    public AlmacenMuestrasFaciales(Path directorio) throws IOException {
+        this.directorio = directorio;
+        if (directorio != null) {
+            Files.createDirectories(directorio);
+            indexar();
+        }
+    }
+
+    /**
+     * Leer los nombres de archivo existentes (no decodifica imágenes)
+     */
+    private void indexar() throws IOException {
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "*" + EXTENSION)) {
+            for (Path archivo : archivos) {
+                String nombre = archivo.getFileName().toString();
+                String[] partes = nombre.substring(0, nombre.length() - EXTENSION.length()).split("_");
+                try {
+                    registrar(new Entrada(Long.parseLong(partes[0]), Integer.parseInt(partes[1]), archivo, null));
+                } catch (RuntimeException e) {
+                    System.err.println("⚠️ Muestra con nombre no válido, se ignora: " + nombre);
+                }
+            }
+        }
+        entradas.sort(Comparator.comparingLong(entrada -> entrada.secuencia));
+        if (!entradas.isEmpty()) {
+            System.out.println("🗃️ Muestras faciales recuperadas de " + directorio + ": " + entradas.size() +
+                               " (" + muestrasPorEtiqueta.size() + " etiquetas)");
+        }
+    }
+
+    /**
+     * ➕ Guardar una muestra preprocesada
+     * @return Secuencia asignada (creciente)
+     * @throws IOException si no se pudo escribir
+     */
+    public synchronized long agregar(int etiqueta, Mat muestra) throws IOException {
+        long secuencia = ultimaSecuencia + 1;
+        Entrada entrada;
+        if (directorio != null) {
+            Path archivo = directorio.resolve(String.format("%012d_%d%s", secuencia, etiqueta, EXTENSION));
+            if (!imwrite(archivo.toString(), muestra)) {
+                throw new IOException("No se pudo escribir la muestra " + archivo);
+            }
+            entrada = new Entrada(secuencia, etiqueta, archivo, null);
+        } else {
+            entrada = new Entrada(secuencia, etiqueta, null, muestra.clone());
+        }
+        registrar(entrada);
+        return secuencia;
+    }
+
+    /**
+     * ↩️ Deshacer las muestras con secuencia mayor que la indicada (registro que no llegó a confirmarse)
+     */
+    public synchronized void descartarPosteriores(long secuencia) {
+        while (!entradas.isEmpty() && entradas.get(entradas.size() - 1).secuencia > secuencia) {
+            Entrada entrada = entradas.remove(entradas.size() - 1);
+            muestrasPorEtiqueta.computeIfPresent(entrada.etiqueta, (etiqueta, cantidad) -> cantidad > 1 ? cantidad - 1 : null);
+            if (entrada.enMemoria != null) {
+                entrada.enMemoria.release();
+            }
+            if (entrada.archivo != null) {
+                try {
+                    Files.deleteIfExists(entrada.archivo);
+                } catch (IOException e) {
+                    System.err.println("⚠️ No se pudo borrar la muestra descartada " + entrada.archivo + ": " + e.getMessage());
+                }
+            }
+        }
+        ultimaSecuencia = entradas.isEmpty() ? secuencia : entradas.get(entradas.size() - 1).secuencia;
+    }
+
+    private void registrar(Entrada entrada) {
+        entradas.add(entrada);
+        muestrasPorEtiqueta.merge(entrada.etiqueta, 1, Integer::sum);
+        ultimaSecuencia = Math.max(ultimaSecuencia, entrada.secuencia);
+    }
+
+    /**
+     * 🔁 Recorrer en orden las muestras con secuencia mayor que la indicada
+     * Se recorre una copia del índice: agregar durante el recorrido no lo bloquea
+     * @return Cantidad de muestras visitadas
+     */
+    public int recorrer(long desdeSecuencia, Visitante visitante) {
+        List<Entrada> copia;
+        synchronized (this) {
+            copia = new ArrayList<>(entradas);
+        }
+        int visitadas = 0;
+        for (Entrada entrada : copia) {
+            if (entrada.secuencia <= desdeSecuencia) {
+                continue;
+            }
+            Mat muestra = entrada.enMemoria != null ? entrada.enMemoria
+                                                    : imread(entrada.archivo.toString(), IMREAD_GRAYSCALE);
+            if (muestra == null || muestra.empty()) {
+                System.err.println("⚠️ Muestra ilegible, se omite: " + entrada.archivo);
+                continue;
+            }
+            visitante.visitar(entrada.secuencia, entrada.etiqueta, muestra);
+            visitadas++;
+            if (entrada.enMemoria == null) {
+                muestra.release();
+            }
+        }
+        return visitadas;
+    }
+
+    public synchronized long getUltimaSecuencia() { return ultimaSecuencia; }
+    public synchronized int getCantidad() { return entradas.size(); }
+    public synchronized int getCantidadEtiquetas() { return muestrasPorEtiqueta.size(); }
+    public Path getDirectorio() { return directorio; }
+
+    private static final class Entrada {
+        private final long secuencia;
+        private final int etiqueta;
+        private final Path archivo;
+        private final Mat enMemoria;
+
+        Entrada(long secuencia, int etiqueta, Path archivo, Mat enMemoria) {
+            this.secuencia = secuencia;
+            this.etiqueta = etiqueta;
+            this.archivo = archivo;
+            this.enMemoria = enMemoria;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.reconocimiento.facial.procesamiento;
+
+import com.reconocimiento.facial.procesamiento.ProcesadorOpenCV.ResultadoReconocimiento;
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 🎬 AUTENTICACIÓN POR VARIOS FOTOGRAMAS
+ * Toma hasta K fotogramas distintos de la cámara y acumula evidencia por identidad con un
+ * test secuencial de razón de probabilidades (SPRT de Wald). Cada fotograma que reconoce
+ * una etiqueta suma a favor de ella; los que no la reconocen restan. Se decide en cuanto la
+ * mejor identidad cruza el umbral de aceptación o todas caen bajo el de rechazo, así que un
+ * acceso claro termina en uno o dos fotogramas y uno dudoso pide más pruebas.
+ *
+ * Umbrales a partir de los errores tolerados (α = falsa aceptación, β = falso rechazo):
+ * aceptar si LLR ≥ ln((1-β)/α), rechazar si LLR ≤ ln(β/(1-α)).
+ *
+ * Las etapas se solapan: mientras un hilo virtual puntúa el rostro del fotograma k, este hilo
+ * espera el fotograma k+1 y lo detecta/preprocesa. La extracción (con historial de detección)
+ * queda siempre en el hilo llamador.
+ */
+public class AutenticadorMultiFotograma {
+
+    /**
+     * 📥 Origen de fotogramas distintos ({@link ManejadorCamara#esperarFotogramaPosterior})
+     */
+    public interface Fotogramas {
+        FotogramaCapturado esperarPosterior(long secuencia, long plazoMillis);
+    }
+
+    /**
+     * ✂️ Detección + preprocesado: rostro propio del llamador o null
+     */
+    public interface Extractor {
+        Mat extraer(Mat fotograma);
+    }
+
+    /**
+     * 🎯 Puntuación de un rostro ya preprocesado (no debe liberarlo)
+     */
+    public interface Puntuador {
+        ResultadoReconocimiento puntuar(Mat rostro);
+    }
+
+    /**
+     * ⚖️ Veredicto del test secuencial
+     */
+    public enum Decision {
+        ACEPTADO, RECHAZADO, INDETERMINADO
+    }
+
+    private final Extractor extractor;
+    private final Puntuador puntuador;
+    private final int maxFotogramas;
+    private final long plazoMillis;
+    private final double umbralAceptar;
+    private final double umbralRechazar;
+    private final double evidenciaAcierto;
+    private final double evidenciaFallo;
+    private final double confianzaReferencia;
+
+    /**
+     * Autenticador sobre el procesador con los parámetros de autenticacion.multifotograma.*
+     * @param flujo Estado de detección de la cámara de la que llegan los fotogramas
+     */
+    public AutenticadorMultiFotograma(ProcesadorOpenCV procesador, FlujoDeteccion flujo) {
+        this(fotograma -> procesador.extraerRostroPreprocesado(fotograma, flujo), procesador::reconocerRostroPreprocesado,
+             GestorConfiguracion.obtenerDouble("autenticacion.multifotograma.confianza_referencia", 50.0));
+    }
+
+    /**
+     * Autenticador sobre otro reconocedor (p. ej. la red neuronal) con los parámetros de
+     * autenticacion.multifotograma.* salvo la confianza de referencia, que depende de su escala
+     */
+    public AutenticadorMultiFotograma(Extractor extractor, Puntuador puntuador, double confianzaReferencia) {
+        this(extractor, puntuador,
+             GestorConfiguracion.obtenerInt("autenticacion.multifotograma.max_fotogramas", 5),
+             GestorConfiguracion.obtenerInt("autenticacion.multifotograma.plazo_ms", 3000),
+             GestorConfiguracion.obtenerDouble("autenticacion.multifotograma.alfa", 0.01),
+             GestorConfiguracion.obtenerDouble("autenticacion.multifotograma.beta", 0.05),
+             GestorConfiguracion.obtenerDouble("autenticacion.multifotograma.tasa_acierto", 0.8),
+             GestorConfiguracion.obtenerDouble("autenticacion.multifotograma.tasa_falsa", 0.05),
+             confianzaReferencia);
+    }
+
+    /**
+     * Constructor completo
+     * @param maxFotogramas K: fotogramas como máximo antes de dar el resultado por indeterminado
+     * @param plazoMillis Tiempo máximo de toda la autenticación
+     * @param alfa Tasa de falsa aceptación tolerada
+     * @param beta Tasa de falso rechazo tolerada
+     * @param tasaAcierto P(un fotograma reconoce a la persona | es ella)
+     * @param tasaFalsa P(un fotograma reconoce a la persona | es otra)
+     * @param confianzaReferencia Confianza (%) que vale un fotograma de evidencia; hasta el doble cuenta más
+     */
+    public AutenticadorMultiFotograma(Extractor extractor, Puntuador puntuador, int maxFotogramas, long plazoMillis,
+                                      double alfa, double beta, double tasaAcierto, double tasaFalsa,
+                                      double confianzaReferencia) {
+        this.extractor = extractor;
+        this.puntuador = puntuador;
+        this.maxFotogramas = Math.max(1, maxFotogramas);
+        this.plazoMillis = plazoMillis;
+        this.umbralAceptar = Math.log((1 - beta) / alfa);
+        this.umbralRechazar = Math.log(beta / (1 - alfa));
+        this.evidenciaAcierto = Math.log(tasaAcierto / tasaFalsa);
+        this.evidenciaFallo = Math.log((1 - tasaAcierto) / (1 - tasaFalsa));
+        this.confianzaReferencia = confianzaReferencia;
+    }
+
+    /**
+     * ▶️ Autenticar con los fotogramas que vayan llegando
+     */
+    public Resultado autenticar(Fotogramas fotogramas) {
+        long inicio = System.nanoTime();
+        long limite = inicio + TimeUnit.MILLISECONDS.toNanos(plazoMillis);
+        Evidencia evidencia = new Evidencia();
+
+        try (ExecutorService puntuacion = Executors.newVirtualThreadPerTaskExecutor()) {
+            long ultimaSecuencia = 0;
+            Future<ResultadoReconocimiento> enCurso = null;
+            Mat rostroEnCurso = null;
+            int obtenidos = 0;
+
+            try {
+                while (true) {
+                    // Si la puntuación anterior ya terminó se decide antes de esperar otro fotograma
+                    if (enCurso != null && enCurso.isDone()) {
+                        Resultado resultado = evaluar(evidencia, enCurso, rostroEnCurso, inicio);
+                        enCurso = null;
+                        rostroEnCurso = null;
+                        if (resultado != null) {
+                            return resultado;
+                        }
+                    }
+
+                    // Fotograma siguiente mientras se puntúa el anterior
+                    Mat rostro = null;
+                    if (obtenidos < maxFotogramas) {
+                        long restante = TimeUnit.NANOSECONDS.toMillis(limite - System.nanoTime());
+                        // El rostro extraído es una copia: el fotograma se devuelve enseguida
+                        try (FotogramaCapturado fotograma = restante > 0 ? fotogramas.esperarPosterior(ultimaSecuencia, restante) : null) {
+                            if (fotograma != null) {
+                                ultimaSecuencia = fotograma.getSecuencia();
+                                obtenidos++;
+                                rostro = extractor.extraer(fotograma.getMat());
+                                if (rostro == null) {
+                                    evidencia.sinRostro++;
+                                }
+                            } else {
+                                obtenidos = maxFotogramas; // Sin más fotogramas a tiempo
+                            }
+                        }
+                    }
+
+                    if (enCurso != null) {
+                        Resultado resultado = evaluar(evidencia, enCurso, rostroEnCurso, inicio);
+                        enCurso = null;
+                        rostroEnCurso = null;
+                        if (resultado != null) {
+                            if (rostro != null) {
+                                rostro.release(); // Extraído por adelantado y ya innecesario
+                            }
+                            return resultado;
+                        }
+                    }
+
+                    if (rostro != null) {
+                        Mat actual = rostro;
+                        rostroEnCurso = actual;
+                        enCurso = puntuacion.submit(() -> puntuador.puntuar(actual));
+                    } else if (obtenidos >= maxFotogramas) {
+                        return evidencia.resultado(Decision.INDETERMINADO, System.nanoTime() - inicio);
+                    }
+                }
+            } finally {
+                // Una excepción (p. ej. del extractor) no debe dejar sin liberar el rostro que se puntúa
+                if (rostroEnCurso != null) {
+                    esperar(enCurso);
+                    rostroEnCurso.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Recoger una puntuación, acumularla y devolver el resultado si ya hay decisión
+     */
+    private Resultado evaluar(Evidencia evidencia, Future<ResultadoReconocimiento> enCurso, Mat rostro, long inicio) {
+        ResultadoReconocimiento puntuado = esperar(enCurso);
+        rostro.release();
+        evidencia.acumular(puntuado);
+        Decision decision = decidir(evidencia);
+        return decision != Decision.INDETERMINADO ? evidencia.resultado(decision, System.nanoTime() - inicio) : null;
+    }
+
+    private static ResultadoReconocimiento esperar(Future<ResultadoReconocimiento> enCurso) {
+        try {
+            return enCurso.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("⚠️ Error puntuando fotograma: " + e.getCause().getMessage());
+        }
+        return new ResultadoReconocimiento(-1, 0.0, false);
+    }
+
+    private Decision decidir(Evidencia evidencia) {
+        if (evidencia.mejorLlr() >= umbralAceptar) {
+            return Decision.ACEPTADO;
+        }
+        // Ninguna identidad (ni las no vistas) conserva posibilidades
+        if (Math.max(evidencia.mejorLlr(), evidencia.llrBase) <= umbralRechazar) {
+            return Decision.RECHAZADO;
+        }
+        return Decision.INDETERMINADO;
+    }
+
+    // ========== EVIDENCIA ACUMULADA ==========
+
+    /**
+     * LLR por etiqueta. Los fotogramas que no votan a una etiqueta le restan evidenciaFallo:
+     * se acumula en llrBase (común a todas) y cada voto suma la diferencia
+     */
+    private final class Evidencia {
+        private final Map<Integer, Double> llrPorEtiqueta = new HashMap<>();
+        private final Map<Integer, Double> confianzaPorEtiqueta = new HashMap<>();
+        private final Map<Integer, Integer> votosPorEtiqueta = new HashMap<>();
+        private double llrBase;
+        private int puntuados;
+        private int sinRostro;
+
+        void acumular(ResultadoReconocimiento puntuado) {
+            puntuados++;
+            llrBase += evidenciaFallo;
+            if (puntuado.esReconocido() && puntuado.getEtiqueta() >= 0) {
+                double peso = Math.min(2.0, puntuado.getConfianza() / confianzaReferencia);
+                llrPorEtiqueta.merge(puntuado.getEtiqueta(), evidenciaAcierto * peso - evidenciaFallo, Double::sum);
+                confianzaPorEtiqueta.merge(puntuado.getEtiqueta(), puntuado.getConfianza(), Double::sum);
+                votosPorEtiqueta.merge(puntuado.getEtiqueta(), 1, Integer::sum);
+            }
+        }
+
+        int mejorEtiqueta() {
+            int mejor = -1;
+            double mejorValor = Double.NEGATIVE_INFINITY;
+            for (Map.Entry<Integer, Double> entrada : llrPorEtiqueta.entrySet()) {
+                if (entrada.getValue() > mejorValor) {
+                    mejor = entrada.getKey();
+                    mejorValor = entrada.getValue();
+                }
+            }
+            return mejor;
+        }
+
+        double mejorLlr() {
+            int mejor = mejorEtiqueta();
+            return mejor < 0 ? Double.NEGATIVE_INFINITY : llrBase + llrPorEtiqueta.get(mejor);
+        }
+
+        Resultado resultado(Decision decision, long nanos) {
+            int etiqueta = mejorEtiqueta();
+            double confianzaMedia = etiqueta >= 0
+                ? confianzaPorEtiqueta.get(etiqueta) / votosPorEtiqueta.get(etiqueta) : 0.0;
+            return new Resultado(decision, decision == Decision.ACEPTADO ? etiqueta : -1, confianzaMedia,
+                                 Math.max(mejorLlr(), llrBase), puntuados + sinRostro, sinRostro, nanos);
+        }
+    }
+
+    // ========== RESULTADO ==========
+
+    /**
+     * 📊 Veredicto con la evidencia que lo produjo
+     */
+    public static class Resultado {
+        private final Decision decision;
+        private final int etiqueta;
+        private final double confianza;
+        private final double llr;
+        private final int fotogramas;
+        private final int sinRostro;
+        private final long nanos;
+
+        public Resultado(Decision decision, int etiqueta, double confianza, double llr,
+                         int fotogramas, int sinRostro, long nanos) {
+            this.decision = decision;
+            this.etiqueta = etiqueta;
+            this.confianza = confianza;
+            this.llr = llr;
+            this.fotogramas = fotogramas;
+            this.sinRostro = sinRostro;
+            this.nanos = nanos;
+        }
+
+        public Decision getDecision() { return decision; }
+        public boolean isAceptado() { return decision == Decision.ACEPTADO; }
+
+        /**
+         * Etiqueta aceptada (-1 si no se aceptó)
+         */
+        public int getEtiqueta() { return etiqueta; }
+
+        /**
+         * Confianza media (%) de los fotogramas que votaron a la mejor identidad
+         */
+        public double getConfianza() { return confianza; }
+
+        /**
+         * Log-razón de verosimilitud de la mejor hipótesis al decidir
+         */
+        public double getLlr() { return llr; }
+
+        /**
+         * Fotogramas usados, incluidos los que no tenían rostro
+         */
+        public int getFotogramas() { return fotogramas; }
+        public int getSinRostro() { return sinRostro; }
+        public double getMilisegundos() { return nanos / 1e6; }
+
+        @Override
+        public String toString() {
+            return String.format("MultiFotograma{%s, etiqueta=%d, confianza=%.2f%%, llr=%.2f, fotogramas=%d (sin rostro %d), %.1f ms}",
+                decision, etiqueta, confianza, llr, fotogramas, sinRostro, getMilisegundos());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.reconocimiento.facial.procesamiento;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 🔁 BUFFER CIRCULAR DE FOTOGRAMAS SIN BLOQUEOS
+ * Un único productor (el hilo de captura) publica fotogramas; cualquier número de
+ * consumidores (vista previa, reconocimiento, registro) lee el más reciente sin tocar
+ * el dispositivo ni tomar candados. Los fotogramas viejos se sobrescriben: a un
+ * consumidor lento nunca le llega un fotograma atrasado, solo se salta los intermedios.
+ *
+ * Cada ranura es una referencia del fotograma: al sobrescribirla se devuelve, y lo que se
+ * entrega a un consumidor lleva una referencia propia que este cierra al terminar. Así el
+ * Mat de un fotograma descartado se libera en cuanto nadie lo usa, sin esperar al recolector.
+ */
+public final class BufferFotogramas {
+
+    private static final long ESPERA_SONDEO_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final AtomicReferenceArray<FotogramaCapturado> ranuras;
+    private final int mascara;
+    private final AtomicLong ultimaSecuencia = new AtomicLong(0);
+
+    /**
+     * Constructor
+     * @param capacidad Ranuras del anillo (se redondea a potencia de 2)
+     */
+    public BufferFotogramas(int capacidad) {
+        int tamano = capacidad <= 2 ? 2 : Integer.highestOneBit(capacidad - 1) << 1;
+        this.ranuras = new AtomicReferenceArray<>(tamano);
+        this.mascara = tamano - 1;
+    }
+
+    /**
+     * 📤 Publicar un fotograma (solo desde el hilo productor)
+     * La ranura se escribe antes que la secuencia: quien ve la secuencia nueva ve su fotograma
+     */
+    public void publicar(FotogramaCapturado fotograma) {
+        FotogramaCapturado anterior = ranuras.getAndSet((int) (fotograma.getSecuencia() & mascara), fotograma);
+        ultimaSecuencia.set(fotograma.getSecuencia());
+        if (anterior != null) {
+            anterior.close();
+        }
+    }
+
+    /**
+     * 🧹 Devolver todas las ranuras (la cámara se libera); la secuencia no retrocede
+     */
+    public void vaciar() {
+        for (int i = 0; i < ranuras.length(); i++) {
+            FotogramaCapturado anterior = ranuras.getAndSet(i, null);
+            if (anterior != null) {
+                anterior.close();
+            }
+        }
+    }
+
+    /**
+     * Secuencia que corresponde al siguiente fotograma a publicar
+     */
+    public long siguienteSecuencia() {
+        return ultimaSecuencia.get() + 1;
+    }
+
+    /**
+     * 📥 Fotograma más reciente, o null si todavía no se publicó ninguno
+     * El llamador recibe una referencia propia: debe cerrar el fotograma al terminar
+     */
+    public FotogramaCapturado ultimo() {
+        while (true) {
+            long secuencia = ultimaSecuencia.get();
+            if (secuencia == 0) {
+                return null;
+            }
+            // Si el productor ya reutilizó la ranura, lo que se lee es aún más reciente
+            FotogramaCapturado actual = ranuras.get((int) (secuencia & mascara));
+            if (actual == null || actual.retener()) {
+                return actual;
+            }
+            // Liberado entre la lectura y la retención: ya hay otro publicado
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * ⏳ Esperar un fotograma posterior a la secuencia indicada
+     * @return El fotograma más reciente con secuencia mayor (el llamador lo cierra), o null
+     *         si vence el plazo
+     */
+    public FotogramaCapturado esperarPosterior(long secuencia, long plazoMillis) {
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(plazoMillis);
+        while (true) {
+            FotogramaCapturado actual = ultimo();
+            if (actual != null) {
+                if (actual.getSecuencia() > secuencia) {
+                    return actual;
+                }
+                actual.close();
+            }
+            if (System.nanoTime() - limite >= 0 || Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            LockSupport.parkNanos(ESPERA_SONDEO_NANOS);
+        }
+    }
+
+    /**
+     * Secuencia del último fotograma publicado (0 = ninguno)
+     */
+    public long getUltimaSecuencia() {
+        return ultimaSecuencia.get();
+    }
+
+    public int getCapacidad() {
+        return mascara + 1;
+    }
+}
@@ -0,0 +1,230 @@
+package com.reconocimiento.facial.procesamiento;
+
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Point;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.RectVector;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ♻️ GRUPO DE BUFFERS NATIVOS
+ * Mats intermedios de detección y preprocesado (gris, redimensionado, ecualizado...) que se
+ * reutilizan de un fotograma al siguiente. Igual que las cascadas del
+ * {@link RegistroClasificadores}, quien procesa toma un juego libre, lo usa y lo devuelve al
+ * cerrarlo ({@code try (BuffersNativos buffers = BuffersNativos.tomar())}). El grupo crece solo
+ * hasta la concurrencia real y no depende de qué hilo trabaje: los hilos virtuales no dejan
+ * juegos huérfanos al terminar. {@code Mat.create} solo reserva memoria cuando cambian tamaño o
+ * tipo, así que con la resolución estable esos buffers dejan de reservar por fotograma.
+ *
+ * Los contadores cubren únicamente estos buffers. Para saber cuánta memoria nativa crece de
+ * verdad por fotograma (capturas, conversiones, cabeceras...) está {@link Medicion}.
+ */
+public final class BuffersNativos implements AutoCloseable {
+
+    /**
+     * 🗂️ Buffers de cada juego (uno de cada)
+     */
+    public enum Ranura {
+        GRIS_DETECCION, GRIS_ROSTRO, REDIMENSIONADO, ECUALIZADO
+    }
+
+    // Clases que se crean como cabeceras temporales dentro de una llamada (no las cascadas)
+    @SuppressWarnings("unchecked")
+    private static final Class<? extends Pointer>[] CABECERAS =
+        new Class[] {Mat.class, Rect.class, Point.class, Size.class};
+
+    private static final ConcurrentLinkedDeque<BuffersNativos> LIBRES = new ConcurrentLinkedDeque<>();
+    private static final AtomicInteger CREADOS = new AtomicInteger();
+
+    private static final LongAdder RESERVAS = new LongAdder();
+    private static final LongAdder SOLICITUDES = new LongAdder();
+    private static final LongAdder ENTREGADOS = new LongAdder();
+    private static final LongAdder FOTOGRAMAS = new LongAdder();
+
+    private final Map<Ranura, Mat> mats = new EnumMap<>(Ranura.class);
+    private final RectVector rectangulos = new RectVector();
+
+    private BuffersNativos() {
+        for (Ranura ranura : Ranura.values()) {
+            Mat mat = new Mat();
+            mat.retainReference(); // Sigue vivo aunque se cree dentro de un PointerScope
+            mats.put(ranura, mat);
+        }
+        rectangulos.retainReference();
+    }
+
+    /**
+     * 🔒 Tomar un juego libre (o crear uno); se devuelve al grupo con {@link #close()}
+     */
+    public static BuffersNativos tomar() {
+        BuffersNativos libre = LIBRES.pollFirst();
+        if (libre != null) {
+            return libre;
+        }
+        CREADOS.incrementAndGet();
+        return new BuffersNativos();
+    }
+
+    /**
+     * Devolver el juego al grupo; el llamador no debe seguir usando sus Mats
+     */
+    @Override
+    public void close() {
+        // Al frente: el juego más reciente tiene sus datos aún en caché
+        LIBRES.offerFirst(this);
+    }
+
+    /**
+     * 🧽 Ámbito para las cabeceras temporales de una llamada (ROI, Rect, Point, Size)
+     * Solo esas clases: una cascada que el registro cree durante la llamada no queda ligada
+     */
+    public static PointerScope ambitoCabeceras() {
+        return new PointerScope(CABECERAS);
+    }
+
+    /**
+     * 📐 Buffer de la ranura con el tamaño y tipo pedidos
+     * Solo reserva memoria nativa si la ranura no tenía ya esas dimensiones
+     */
+    public Mat obtener(Ranura ranura, int filas, int columnas, int tipo) {
+        Mat mat = mats.get(ranura);
+        SOLICITUDES.increment();
+        if (mat.rows() != filas || mat.cols() != columnas || mat.type() != tipo) {
+            mat.create(filas, columnas, tipo);
+            RESERVAS.increment();
+        }
+        return mat;
+    }
+
+    /**
+     * Vector de rectángulos reutilizable para detectMultiScale (lo vacía antes de devolverlo)
+     */
+    public RectVector getRectangulos() {
+        rectangulos.clear();
+        return rectangulos;
+    }
+
+    /**
+     * 🧹 Liberar los juegos libres (los que estén en uso vuelven al grupo al cerrarse)
+     */
+    public static void liberar() {
+        BuffersNativos libre;
+        while ((libre = LIBRES.pollFirst()) != null) {
+            for (Mat mat : libre.mats.values()) {
+                mat.releaseReference();
+            }
+            libre.rectangulos.releaseReference();
+            CREADOS.decrementAndGet();
+        }
+    }
+
+    // ========== CONTADORES ==========
+
+    /**
+     * Un fotograma recorrió el pipeline (detección con cascada)
+     */
+    public static void registrarFotograma() {
+        FOTOGRAMAS.increment();
+    }
+
+    /**
+     * Un Mat nuevo que pasa a ser del llamador (p. ej. el rostro preprocesado)
+     */
+    public static void registrarEntregado() {
+        ENTREGADOS.increment();
+    }
+
+    public static long getReservas() { return RESERVAS.sum(); }
+    public static long getSolicitudes() { return SOLICITUDES.sum(); }
+    public static long getEntregados() { return ENTREGADOS.sum(); }
+    public static long getFotogramas() { return FOTOGRAMAS.sum(); }
+
+    /**
+     * Juegos creados (libres más en uso): la concurrencia máxima que se ha dado
+     */
+    public static int getCreados() { return CREADOS.get(); }
+
+    /**
+     * 📊 Resumen para los informes de rendimiento
+     */
+    public static String obtenerEstadisticas() {
+        return String.format("   Buffers reutilizables: %d juegos, %d reservas en %d solicitudes (%d fotogramas) | " +
+                             "rostros entregados %d",
+            getCreados(), getReservas(), getSolicitudes(), getFotogramas(), getEntregados());
+    }
+
+    // ========== MEDICIÓN DE MEMORIA NATIVA ==========
+
+    /**
+     * 📏 Crecimiento de la memoria nativa durante N fotogramas
+     * Compara los contadores de JavaCPP al principio y al final: punteros vivos y bytes que
+     * siguen sus desasignadores ({@link Pointer#totalCount()}, {@link Pointer#totalBytes()}) y
+     * memoria física del proceso ({@link Pointer#physicalBytes()}, incluye lo que OpenCV reserva
+     * por su cuenta). Conviene empezar tras el calentamiento: las primeras reservas son legítimas.
+     * Lo que no se libera de forma explícita solo baja cuando pasa el recolector, así que un
+     * crecimiento sostenido por fotograma señala una fuga o una reserva por fotograma.
+     */
+    public static final class Medicion {
+        private final long punterosInicio;
+        private final long bytesInicio;
+        private final long fisicosInicio;
+        private long fotogramas;
+        private long punteros;
+        private long bytes;
+        private long fisicos;
+
+        private Medicion() {
+            punterosInicio = Pointer.totalCount();
+            bytesInicio = Pointer.totalBytes();
+            fisicosInicio = Pointer.physicalBytes();
+        }
+
+        /**
+         * ▶️ Empezar a medir desde el estado actual
+         */
+        public static Medicion iniciar() {
+            return new Medicion();
+        }
+
+        /**
+         * ⏹️ Cerrar la medición tras los fotogramas procesados
+         * @return La propia medición
+         */
+        public Medicion terminar(long fotogramasProcesados) {
+            fotogramas = fotogramasProcesados;
+            punteros = Pointer.totalCount() - punterosInicio;
+            bytes = Pointer.totalBytes() - bytesInicio;
+            fisicos = Pointer.physicalBytes() - fisicosInicio;
+            return this;
+        }
+
+        public long getFotogramas() { return fotogramas; }
+        public long getPunteros() { return punteros; }
+        public long getBytes() { return bytes; }
+        public long getFisicos() { return fisicos; }
+
+        public double getPunterosPorFotograma() { return porFotograma(punteros); }
+        public double getBytesPorFotograma() { return porFotograma(bytes); }
+        public double getFisicosPorFotograma() { return porFotograma(fisicos); }
+
+        private double porFotograma(long total) {
+            return fotogramas > 0 ? total / (double) fotogramas : 0.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("   Memoria nativa en %d fotogramas: %+d punteros (%+.2f por fotograma), " +
+                                 "%+d KB seguidos (%+.1f B por fotograma), %+d KB físicos (%+.1f B por fotograma)",
+                fotogramas, punteros, getPunterosPorFotograma(), bytes / 1024, getBytesPorFotograma(),
+                fisicos / 1024, getFisicosPorFotograma());
+        }
+    }
+}
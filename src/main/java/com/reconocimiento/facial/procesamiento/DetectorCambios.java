@@ -0,0 +1,180 @@
+package com.reconocimiento.facial.procesamiento;
+
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+import org.bytedeco.opencv.opencv_core.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.bytedeco.opencv.global.opencv_core.*;
+import static org.bytedeco.opencv.global.opencv_imgproc.*;
+
+/**
+ * 🚦 DETECTOR DE CAMBIOS EN LA ESCENA
+ * Puerta barata previa a la cascada Haar: compara una versión reducida y en grises del
+ * fotograma contra un fondo adaptativo (media móvil con accumulateWeighted). Si la fracción
+ * de píxeles que cambiaron no supera el mínimo, la escena es la misma y el llamador puede
+ * reutilizar su última detección en lugar de ejecutar detectMultiScale.
+ *
+ * El fondo absorbe poco a poco lo que queda quieto (una persona parada frente al kiosco),
+ * así que solo el movimiento reabre la detección. Cada cierto tiempo se fuerza una
+ * detección completa aunque no haya cambios, para no arrastrar un resultado equivocado.
+ *
+ * El fondo describe una sola cámara: cada flujo necesita su propia instancia (la crea
+ * {@link FlujoDeteccion}). Todos los métodos públicos se sincronizan sobre la instancia, así
+ * que consultar las estadísticas desde otro hilo es seguro; lo que no se protege es el orden:
+ * si dos hilos evalúan fotogramas del mismo flujo a la vez, el fondo mezcla ambos órdenes.
+ */
+public class DetectorCambios {
+
+    private static final int ANCHO_REDUCIDO_POR_DEFECTO = 80;
+    private static final Size NUCLEO_SUAVIZADO = new Size(5, 5);
+
+    private final int anchoReducido;
+    private final double alfaFondo;
+    private final double umbralPixel;
+    private final double fraccionMinima;
+    private final long redeteccionMaximaNanos;
+
+    // ========== ESTADO (protegido por this) ==========
+    private final Mat reducida = new Mat();
+    private final Mat gris = new Mat();
+    private final Mat grisFlotante = new Mat();
+    private final Mat diferencia = new Mat();
+    private final Mat mascara = new Mat();
+    private final Size tamanoReducido = new Size();
+    private Mat fondo;
+    private int anchoOriginal;
+    private int altoOriginal;
+    private long ultimaDeteccionNanos;
+    private double ultimaFraccion;
+    private long evaluados;
+    private long omitidos;
+
+    /**
+     * Detector con los valores de sistema.properties (deteccion.cambios.*)
+     */
+    public DetectorCambios() {
+        this(ANCHO_REDUCIDO_POR_DEFECTO,
+             GestorConfiguracion.obtenerDouble("deteccion.cambios.alfa_fondo", 0.05),
+             GestorConfiguracion.obtenerDouble("deteccion.cambios.umbral_pixel", 25.0),
+             GestorConfiguracion.obtenerDouble("deteccion.cambios.fraccion_minima", 0.01),
+             GestorConfiguracion.obtenerInt("deteccion.cambios.redeteccion_maxima_ms", 2000));
+    }
+
+    /**
+     * Constructor completo
+     * @param anchoReducido Ancho al que se reduce el fotograma (el alto mantiene la proporción)
+     * @param alfaFondo Peso del fotograma nuevo en el fondo (0-1; mayor = se adapta antes)
+     * @param umbralPixel Diferencia de gris (0-255) para contar un píxel como cambiado
+     * @param fraccionMinima Fracción de píxeles cambiados que se considera cambio de escena
+     * @param redeteccionMaximaMs Tiempo máximo reutilizando una detección (0 = sin límite)
+     */
+    public DetectorCambios(int anchoReducido, double alfaFondo, double umbralPixel,
+                           double fraccionMinima, long redeteccionMaximaMs) {
+        this.anchoReducido = Math.max(16, anchoReducido);
+        this.alfaFondo = alfaFondo;
+        this.umbralPixel = umbralPixel;
+        this.fraccionMinima = fraccionMinima;
+        this.redeteccionMaximaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, redeteccionMaximaMs));
+    }
+
+    /**
+     * 🔍 ¿Cambió la escena desde lo que ya conoce el fondo?
+     * Devuelve true la primera vez, si cambia el tamaño del fotograma o si venció el
+     * tiempo máximo de reutilización. Actualiza siempre el fondo adaptativo.
+     * @param imagen Fotograma BGR, BGRA o gris (no se modifica)
+     */
+    public synchronized boolean hayCambio(Mat imagen) {
+        evaluados++;
+        prepararReducida(imagen);
+
+        if (fondo == null || imagen.cols() != anchoOriginal || imagen.rows() != altoOriginal
+                || fondo.cols() != grisFlotante.cols() || fondo.rows() != grisFlotante.rows()) {
+            reiniciarFondo(imagen);
+            return marcarDeteccion();
+        }
+
+        absdiff(grisFlotante, fondo, diferencia);
+        threshold(diferencia, mascara, umbralPixel, 255, THRESH_BINARY);
+        ultimaFraccion = countNonZero(mascara) / (double) mascara.total();
+        accumulateWeighted(grisFlotante, fondo, alfaFondo);
+
+        boolean vencida = redeteccionMaximaNanos > 0
+            && System.nanoTime() - ultimaDeteccionNanos > redeteccionMaximaNanos;
+        if (ultimaFraccion > fraccionMinima || vencida) {
+            return marcarDeteccion();
+        }
+        omitidos++;
+        return false;
+    }
+
+    /**
+     * Olvidar el fondo (cambio de cámara o de fuente)
+     */
+    public synchronized void reiniciar() {
+        if (fondo != null) {
+            fondo.release();
+            fondo = null;
+        }
+    }
+
+    /**
+     * Liberar el fondo y los Mats de trabajo (el flujo se cierra)
+     * Si se vuelve a evaluar un fotograma se reservan de nuevo, como la primera vez
+     */
+    public synchronized void liberar() {
+        reiniciar();
+        reducida.release();
+        gris.release();
+        grisFlotante.release();
+        diferencia.release();
+        mascara.release();
+    }
+
+    private void prepararReducida(Mat imagen) {
+        int alto = Math.max(1, (int) Math.round(imagen.rows() * (anchoReducido / (double) imagen.cols())));
+        resize(imagen, reducida, tamanoReducido.width(anchoReducido).height(alto), 0, 0, INTER_AREA);
+        switch (reducida.channels()) {
+            case 1:
+                reducida.copyTo(gris);
+                break;
+            case 4:
+                cvtColor(reducida, gris, COLOR_BGRA2GRAY);
+                break;
+            default:
+                cvtColor(reducida, gris, COLOR_BGR2GRAY);
+        }
+        // El suavizado evita que el ruido del sensor cuente como movimiento
+        GaussianBlur(gris, gris, NUCLEO_SUAVIZADO, 0);
+        gris.convertTo(grisFlotante, CV_32F);
+    }
+
+    private void reiniciarFondo(Mat imagen) {
+        reiniciar();
+        fondo = grisFlotante.clone();
+        anchoOriginal = imagen.cols();
+        altoOriginal = imagen.rows();
+        ultimaFraccion = 1.0;
+    }
+
+    private boolean marcarDeteccion() {
+        ultimaDeteccionNanos = System.nanoTime();
+        return true;
+    }
+
+    // ========== CONSULTAS ==========
+
+    /**
+     * Fracción de píxeles cambiados en la última evaluación
+     */
+    public synchronized double getUltimaFraccion() { return ultimaFraccion; }
+    public synchronized long getEvaluados() { return evaluados; }
+    public synchronized long getOmitidos() { return omitidos; }
+
+    /**
+     * Fracción de fotogramas en los que se evitó la detección completa
+     */
+    public synchronized double getFraccionOmitida() {
+        return evaluados == 0 ? 0.0 : omitidos / (double) evaluados;
+    }
+}
@@ -1,30 +1,40 @@
 package com.reconocimiento.facial.procesamiento;
 
 import org.bytedeco.opencv.opencv_core.*;
-import org.bytedeco.opencv.opencv_objdetect.*;
 import static org.bytedeco.opencv.global.opencv_core.*;
 import static org.bytedeco.opencv.global.opencv_imgproc.*;
 
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Clase especializada para la detección de rostros en imágenes
  * Utiliza clasificadores Haar Cascade de OpenCV
+ *
+ * Detección por etapas: la cascada frontal siempre; la de perfil solo si la frontal no
+ * encontró nada; ojos solo sobre el mejor candidato; sonrisa solo cuando se pide
+ * ({@link #analizarSonrisa}). Cada etapa se puede forzar o desactivar con
+ * deteccion.etapa.* y mide su tiempo para equilibrar detalle y fotogramas por segundo.
  */
 public class DetectorRostros {
 
-    // Clasificadores para diferentes tipos de detección
-    private CascadeClassifier clasificadorRostroFrontal;
-    private CascadeClassifier clasificadorRostroPerfilIzquierdo;
-    private CascadeClassifier clasificadorOjos;
-    private CascadeClassifier clasificadorSonrisa;
+    // Ejecutor de cascadas (por defecto, instancias exclusivas del registro compartido)
+    private final EjecutorCascadas clasificadores;
+    private boolean perfilDisponible;
+    private boolean ojosDisponibles;
+    private boolean sonrisaDisponible;
 
-    // Rutas de los clasificadores
-    private static final String RUTA_ROSTRO_FRONTAL = "haarcascade_frontalface_alt.xml";
-    private static final String RUTA_PERFIL_IZQUIERDO = "haarcascade_profileface.xml";
-    private static final String RUTA_OJOS = "haarcascade_eye.xml";
-    private static final String RUTA_SONRISA = "haarcascade_smile.xml";
+    // Política de las etapas opcionales (deteccion.etapa.*)
+    private volatile ModoEtapa modoPerfil = ModoEtapa.desdeConfiguracion("deteccion.etapa.perfil");
+    private volatile ModoEtapa modoOjos = ModoEtapa.desdeConfiguracion("deteccion.etapa.ojos");
+    private volatile ModoEtapa modoSonrisa = ModoEtapa.desdeConfiguracion("deteccion.etapa.sonrisa");
+    private final Map<Etapa, MedidorEtapa> medidores = new EnumMap<>(Etapa.class);
 
     // Configuración de detección
     private double factorEscala = 1.1;
@@ -36,15 +46,35 @@ public class DetectorRostros {
     private boolean inicializado = false;
     private String ultimoError = "";
 
+    // Puerta de cambios: sin movimiento se reutiliza la última detección (null = desactivada)
+    private DetectorCambios detectorCambios =
+        GestorConfiguracion.obtenerBoolean("deteccion.cambios.activo", true) ? new DetectorCambios() : null;
+    private volatile List<RostroDetectado> ultimaDeteccion;
+
+    // Región y tamaños de búsqueda adaptativos (null = parámetros fijos de los setters)
+    private PlanificadorDeteccion planificadorDeteccion =
+        GestorConfiguracion.obtenerBoolean("deteccion.planificador.activo", true)
+            ? new PlanificadorDeteccion(tamanoMinimo, tamanoMaximo) : null;
+
     public DetectorRostros() {
+        this(new EjecutorRegistro());
+    }
+
+    /**
+     * Detector sobre otro ejecutor de cascadas (p. ej. uno simulado en las pruebas)
+     */
+    public DetectorRostros(EjecutorCascadas clasificadores) {
+        this.clasificadores = clasificadores;
+        for (Etapa etapa : Etapa.values()) {
+            medidores.put(etapa, new MedidorEtapa());
+        }
         inicializarClasificadores();
     }
 
     private void inicializarClasificadores() {
         try {
             // Inicializar clasificador de rostro frontal (principal)
-            clasificadorRostroFrontal = new CascadeClassifier();
-            if (clasificadorRostroFrontal.load(RUTA_ROSTRO_FRONTAL)) {
+            if (clasificadores.isDisponible(RegistroClasificadores.ROSTRO_FRONTAL)) {
                 System.out.println("Clasificador de rostro frontal cargado correctamente");
             } else {
                 System.err.println("No se pudo cargar el clasificador de rostro frontal");
@@ -65,34 +95,17 @@ public class DetectorRostros {
     }
 
     private void inicializarClasificadoresOpcionales() {
-        // Clasificador de ojos
-        try {
-            clasificadorOjos = new CascadeClassifier();
-            if (!clasificadorOjos.load(RUTA_OJOS)) {
-                clasificadorOjos = null;
-            }
-        } catch (Exception e) {
-            clasificadorOjos = null;
-        }
-
-        // Clasificador de sonrisa
-        try {
-            clasificadorSonrisa = new CascadeClassifier();
-            if (!clasificadorSonrisa.load(RUTA_SONRISA)) {
-                clasificadorSonrisa = null;
-            }
-        } catch (Exception e) {
-            clasificadorSonrisa = null;
-        }
+        // Clasificadores de ojos, sonrisa y perfil
+        ojosDisponibles = disponible(RegistroClasificadores.OJOS);
+        sonrisaDisponible = disponible(RegistroClasificadores.SONRISA);
+        perfilDisponible = disponible(RegistroClasificadores.ROSTRO_PERFIL);
+    }
 
-        // Clasificador de perfil
+    private boolean disponible(String cascada) {
         try {
-            clasificadorRostroPerfilIzquierdo = new CascadeClassifier();
-            if (!clasificadorRostroPerfilIzquierdo.load(RUTA_PERFIL_IZQUIERDO)) {
-                clasificadorRostroPerfilIzquierdo = null;
-            }
+            return clasificadores.isDisponible(cascada);
         } catch (Exception e) {
-            clasificadorRostroPerfilIzquierdo = null;
+            return false;
         }
     }
 
@@ -107,7 +120,15 @@ public class DetectorRostros {
         }
 
         try {
+            // Escena sin cambios: la cascada daría el mismo resultado
+            List<RostroDetectado> previa = ultimaDeteccion;
+            if (detectorCambios != null && !detectorCambios.hayCambio(imagen) && previa != null) {
+                rostrosDetectados.addAll(previa);
+                return rostrosDetectados;
+            }
+
             // Convertir a escala de grises si es necesario
+            long inicio = System.nanoTime();
             Mat imagenGris = new Mat();
             if (imagen.channels() > 1) {
                 cvtColor(imagen, imagenGris, COLOR_BGR2GRAY);
@@ -119,23 +140,70 @@ public class DetectorRostros {
             Mat imagenEcualizada = new Mat();
             equalizeHist(imagenGris, imagenEcualizada);
 
-            // Detectar rostros frontales
-            rostrosDetectados.addAll(detectarRostrosFrontales(imagenEcualizada));
+            // Región y tamaños según las detecciones recientes
+            Rect region = null;
+            Size minimo = tamanoMinimo;
+            Size maximo = tamanoMaximo;
+            double factor = factorEscala;
+            if (planificadorDeteccion != null) {
+                PlanificadorDeteccion.Parametros plan =
+                    planificadorDeteccion.planificar(imagenEcualizada.cols(), imagenEcualizada.rows());
+                region = plan.getRegion();
+                minimo = plan.getMinimo();
+                maximo = plan.getMaximo();
+                factor = plan.getFactorEscala();
+                System.out.println("Búsqueda de rostros: " + plan);
+            }
+            inicio = medir(Etapa.PREPARACION, inicio);
+
+            // Etapa 1: rostros frontales
+            rostrosDetectados.addAll(detectarRostrosFrontales(imagenEcualizada, region, factor, minimo, maximo));
+            inicio = medir(Etapa.FRONTAL, inicio);
+
+            // Etapa 2: perfil solo si la frontal no encontró nada (o siempre, si así se configura)
+            if (perfilDisponible && modoPerfil.aplica(rostrosDetectados.isEmpty())) {
+                rostrosDetectados.addAll(detectarRostrosPerfiles(imagenEcualizada, region, factor, minimo, maximo));
+                inicio = medir(Etapa.PERFIL, inicio);
+            }
 
-            // Detectar rostros de perfil si el clasificador está disponible
-            if (clasificadorRostroPerfilIzquierdo != null) {
-                rostrosDetectados.addAll(detectarRostrosPerfiles(imagenEcualizada));
+            if (planificadorDeteccion != null) {
+                List<Rect> rectangulos = new ArrayList<>();
+                for (RostroDetectado rostro : rostrosDetectados) {
+                    rectangulos.add(rostro.getRectangulo());
+                }
+                planificadorDeteccion.registrarResultado(rectangulos);
             }
 
-            // Analizar características adicionales para cada rostro
+            // Métricas baratas de calidad para todos: deciden cuál es el mejor candidato
             for (RostroDetectado rostro : rostrosDetectados) {
-                analizarCaracteristicasRostro(imagenEcualizada, rostro);
+                analizarCalidadRostro(imagenEcualizada, rostro);
+            }
+            inicio = medir(Etapa.CALIDAD, inicio);
+
+            // Etapa 3: ojos sobre el mejor candidato (o sobre todos)
+            if (ojosDisponibles && !rostrosDetectados.isEmpty() && modoOjos != ModoEtapa.NUNCA) {
+                List<RostroDetectado> candidatos = modoOjos == ModoEtapa.SIEMPRE
+                    ? rostrosDetectados : List.of(obtenerMejorRostro(rostrosDetectados));
+                for (RostroDetectado rostro : candidatos) {
+                    rostro.setOjosDetectados(detectarOjos(new Mat(imagenEcualizada, rostro.getRectangulo())));
+                }
+                inicio = medir(Etapa.OJOS, inicio);
+            }
+
+            // Etapa 4: sonrisa en cada rostro solo si se fuerza; si no, bajo demanda
+            if (sonrisaDisponible && modoSonrisa == ModoEtapa.SIEMPRE) {
+                for (RostroDetectado rostro : rostrosDetectados) {
+                    rostro.setSonrisaDetectada(detectarSonrisa(new Mat(imagenEcualizada, rostro.getRectangulo())));
+                }
+                medir(Etapa.SONRISA, inicio);
             }
 
             // Liberar memoria
             imagenGris.release();
             imagenEcualizada.release();
 
+            ultimaDeteccion = List.copyOf(rostrosDetectados);
+
         } catch (Exception e) {
             ultimoError = "Error en detección de rostros: " + e.getMessage();
             System.err.println(ultimoError);
@@ -144,23 +212,16 @@ public class DetectorRostros {
         return rostrosDetectados;
     }
 
-    private List<RostroDetectado> detectarRostrosFrontales(Mat imagen) {
+    private List<RostroDetectado> detectarRostrosFrontales(Mat imagen, Rect region, double factor,
+                                                          Size minimo, Size maximo) {
         List<RostroDetectado> rostros = new ArrayList<>();
 
         try {
-            RectVector rostrosVector = new RectVector();
-            clasificadorRostroFrontal.detectMultiScale(
-                imagen,
-                rostrosVector,
-                factorEscala,
-                minimoVecinos,
-                0,
-                tamanoMinimo,
-                tamanoMaximo
-            );
+            RectVector rostrosVector = clasificadores.detectar(RegistroClasificadores.ROSTRO_FRONTAL,
+                region != null ? new Mat(imagen, region) : imagen, factor, minimoVecinos, minimo, maximo);
 
             for (int i = 0; i < rostrosVector.size(); i++) {
-                Rect rectRostro = rostrosVector.get(i);
+                Rect rectRostro = desplazar(rostrosVector.get(i), region);
                 RostroDetectado rostro = new RostroDetectado(
                     rectRostro,
                     TipoRostro.FRONTAL,
@@ -178,24 +239,17 @@ public class DetectorRostros {
         return rostros;
     }
 
-    private List<RostroDetectado> detectarRostrosPerfiles(Mat imagen) {
+    private List<RostroDetectado> detectarRostrosPerfiles(Mat imagen, Rect region, double factor,
+                                                         Size minimo, Size maximo) {
         List<RostroDetectado> rostros = new ArrayList<>();
 
         try {
             // Detectar perfil izquierdo
-            RectVector perfilesVector = new RectVector();
-            clasificadorRostroPerfilIzquierdo.detectMultiScale(
-                imagen,
-                perfilesVector,
-                factorEscala,
-                minimoVecinos,
-                0,
-                tamanoMinimo,
-                tamanoMaximo
-            );
+            RectVector perfilesVector = clasificadores.detectar(RegistroClasificadores.ROSTRO_PERFIL,
+                region != null ? new Mat(imagen, region) : imagen, factor, minimoVecinos, minimo, maximo);
 
             for (int i = 0; i < perfilesVector.size(); i++) {
-                Rect rectRostro = perfilesVector.get(i);
+                Rect rectRostro = desplazar(perfilesVector.get(i), region);
                 RostroDetectado rostro = new RostroDetectado(
                     rectRostro,
                     TipoRostro.PERFIL_IZQUIERDO,
@@ -213,22 +267,19 @@ public class DetectorRostros {
         return rostros;
     }
 
-    private void analizarCaracteristicasRostro(Mat imagen, RostroDetectado rostro) {
-        try {
-            Rect rectRostro = rostro.getRectangulo();
+    /**
+     * Copia del rectángulo en coordenadas del fotograma completo
+     */
+    private static Rect desplazar(Rect rect, Rect region) {
+        int dx = region != null ? region.x() : 0;
+        int dy = region != null ? region.y() : 0;
+        return new Rect(rect.x() + dx, rect.y() + dy, rect.width(), rect.height());
+    }
 
+    private void analizarCalidadRostro(Mat imagen, RostroDetectado rostro) {
+        try {
             // Extraer región del rostro
-            Mat regionRostro = new Mat(imagen, rectRostro);
-
-            // Detectar ojos si el clasificador está disponible
-            if (clasificadorOjos != null) {
-                rostro.setOjosDetectados(detectarOjos(regionRostro));
-            }
-
-            // Detectar sonrisa si el clasificador está disponible
-            if (clasificadorSonrisa != null) {
-                rostro.setSonrisaDetectada(detectarSonrisa(regionRostro));
-            }
+            Mat regionRostro = new Mat(imagen, rostro.getRectangulo());
 
             // Calcular métricas de calidad
             rostro.setCalidadImagen(calcularCalidadImagen(regionRostro));
@@ -239,18 +290,37 @@ public class DetectorRostros {
         }
     }
 
+    /**
+     * Detecta la sonrisa de un rostro ya detectado, solo cuando se necesita
+     * (p. ej. una prueba de vida que pide sonreír)
+     * @param imagen Fotograma original (BGR o gris) en el que se detectó el rostro
+     * @return true si se detectó sonrisa; false si no, o si la etapa está desactivada
+     */
+    public boolean analizarSonrisa(Mat imagen, RostroDetectado rostro) {
+        if (!inicializado || !sonrisaDisponible || modoSonrisa == ModoEtapa.NUNCA
+                || imagen == null || imagen.empty() || rostro == null) {
+            return false;
+        }
+        long inicio = System.nanoTime();
+        Mat regionRostro = new Mat(imagen, rostro.getRectangulo());
+        Mat gris = new Mat();
+        if (regionRostro.channels() > 1) {
+            cvtColor(regionRostro, gris, COLOR_BGR2GRAY);
+        } else {
+            regionRostro.copyTo(gris);
+        }
+        equalizeHist(gris, gris);
+        boolean sonrisa = detectarSonrisa(gris);
+        gris.release();
+        rostro.setSonrisaDetectada(sonrisa);
+        medir(Etapa.SONRISA, inicio);
+        return sonrisa;
+    }
+
     private boolean detectarOjos(Mat regionRostro) {
         try {
-            RectVector ojos = new RectVector();
-            clasificadorOjos.detectMultiScale(
-                regionRostro,
-                ojos,
-                1.1,
-                2,
-                0,
-                new Size(10, 10),
-                new Size()
-            );
+            RectVector ojos = clasificadores.detectar(RegistroClasificadores.OJOS,
+                regionRostro, 1.1, 2, new Size(10, 10), new Size());
 
             boolean ojosDetectados = ojos.size() >= 2;
             ojos.close();
@@ -263,16 +333,8 @@ public class DetectorRostros {
 
     private boolean detectarSonrisa(Mat regionRostro) {
         try {
-            RectVector sonrisas = new RectVector();
-            clasificadorSonrisa.detectMultiScale(
-                regionRostro,
-                sonrisas,
-                1.1,
-                2,
-                0,
-                new Size(15, 15),
-                new Size()
-            );
+            RectVector sonrisas = clasificadores.detectar(RegistroClasificadores.SONRISA,
+                regionRostro, 1.1, 2, new Size(15, 15), new Size());
 
             boolean sonrisaDetectada = sonrisas.size() > 0;
             sonrisas.close();
@@ -437,6 +499,97 @@ public class DetectorRostros {
         this.tamanoMaximo = tamanoMaximo;
     }
 
+    /**
+     * Reemplazar la puerta de cambios (null = detectar siempre)
+     */
+    public void setDetectorCambios(DetectorCambios detectorCambios) {
+        this.detectorCambios = detectorCambios;
+        this.ultimaDeteccion = null;
+    }
+
+    public DetectorCambios getDetectorCambios() {
+        return detectorCambios;
+    }
+
+    /**
+     * Reemplazar el planificador de búsqueda (null = usar los tamaños fijos configurados)
+     */
+    public void setPlanificadorDeteccion(PlanificadorDeteccion planificadorDeteccion) {
+        this.planificadorDeteccion = planificadorDeteccion;
+    }
+
+    public PlanificadorDeteccion getPlanificadorDeteccion() {
+        return planificadorDeteccion;
+    }
+
+    /**
+     * Cambiar la política de una etapa opcional (FRONTAL y las de medición no son configurables)
+     */
+    public void setModoEtapa(Etapa etapa, ModoEtapa modo) {
+        switch (etapa) {
+            case PERFIL: modoPerfil = modo; break;
+            case OJOS: modoOjos = modo; break;
+            case SONRISA: modoSonrisa = modo; break;
+            default: throw new IllegalArgumentException("La etapa " + etapa + " no es opcional");
+        }
+    }
+
+    public ModoEtapa getModoEtapa(Etapa etapa) {
+        switch (etapa) {
+            case PERFIL: return modoPerfil;
+            case OJOS: return modoOjos;
+            case SONRISA: return modoSonrisa;
+            default: return ModoEtapa.SIEMPRE;
+        }
+    }
+
+    /**
+     * Veces que se ejecutó una etapa
+     */
+    public long getEjecuciones(Etapa etapa) {
+        return medidores.get(etapa).ejecuciones.sum();
+    }
+
+    /**
+     * Tiempo medio por ejecución de una etapa en milisegundos
+     */
+    public double getTiempoMedioMillis(Etapa etapa) {
+        MedidorEtapa medidor = medidores.get(etapa);
+        long ejecuciones = medidor.ejecuciones.sum();
+        return ejecuciones > 0 ? medidor.nanos.sum() / 1e6 / ejecuciones : 0.0;
+    }
+
+    /**
+     * Tiempo por etapa y su parte del total, para decidir qué etapas compensan
+     */
+    public String obtenerEstadisticasEtapas() {
+        double totalNanos = 0;
+        for (MedidorEtapa medidor : medidores.values()) {
+            totalNanos += medidor.nanos.sum();
+        }
+        StringBuilder sb = new StringBuilder("Etapas de detección (política perfil=" + modoPerfil +
+                                             ", ojos=" + modoOjos + ", sonrisa=" + modoSonrisa + ")\n");
+        for (Etapa etapa : Etapa.values()) {
+            MedidorEtapa medidor = medidores.get(etapa);
+            sb.append(String.format("   %-12s %6d ejecuciones | media %7.2f ms | %5.1f%% del tiempo%n",
+                etapa, medidor.ejecuciones.sum(), getTiempoMedioMillis(etapa),
+                totalNanos > 0 ? medidor.nanos.sum() * 100.0 / totalNanos : 0.0));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Registrar la duración de una etapa que empezó en inicio
+     * @return Instante actual, para encadenar la siguiente medición
+     */
+    private long medir(Etapa etapa, long inicio) {
+        long ahora = System.nanoTime();
+        MedidorEtapa medidor = medidores.get(etapa);
+        medidor.ejecuciones.increment();
+        medidor.nanos.add(ahora - inicio);
+        return ahora;
+    }
+
     public boolean isInicializado() {
         return inicializado;
     }
@@ -445,22 +598,92 @@ public class DetectorRostros {
         return ultimoError;
     }
 
-    // Liberar recursos
+    // Liberar recursos (los clasificadores pertenecen al registro compartido)
     public void liberarRecursos() {
-        if (clasificadorRostroFrontal != null) {
-            clasificadorRostroFrontal.close();
+        if (detectorCambios != null) {
+            detectorCambios.reiniciar();
+        }
+        ultimaDeteccion = null;
+    }
+
+    // Etapas del pipeline de detección (con tiempo medido)
+    public enum Etapa {
+        PREPARACION,
+        FRONTAL,
+        PERFIL,
+        CALIDAD,
+        OJOS,
+        SONRISA
+    }
+
+    /**
+     * Política de una etapa opcional. CONDICIONAL depende de la etapa: perfil si la frontal no
+     * encontró nada, ojos solo en el mejor candidato, sonrisa solo bajo demanda
+     */
+    public enum ModoEtapa {
+        NUNCA,
+        CONDICIONAL,
+        SIEMPRE;
+
+        boolean aplica(boolean condicion) {
+            return this == SIEMPRE || (this == CONDICIONAL && condicion);
         }
-        if (clasificadorOjos != null) {
-            clasificadorOjos.close();
+
+        /**
+         * Leer la política de sistema.properties (valor no válido = CONDICIONAL)
+         */
+        public static ModoEtapa desdeConfiguracion(String clave) {
+            String valor = GestorConfiguracion.obtenerString(clave, "condicional").trim();
+            try {
+                return valueOf(valor.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                System.err.println("Política de etapa no válida en " + clave + ": " + valor + ", usando condicional");
+                return CONDICIONAL;
+            }
         }
-        if (clasificadorSonrisa != null) {
-            clasificadorSonrisa.close();
+    }
+
+    /**
+     * Ejecuta una cascada Haar sobre una imagen en gris y devuelve los rectángulos encontrados
+     */
+    public interface EjecutorCascadas {
+        boolean isDisponible(String cascada);
+
+        RectVector detectar(String cascada, Mat imagen, double factor, int minimoVecinos,
+                            Size minimo, Size maximo);
+    }
+
+    // Ejecutor por defecto: cada detección toma una instancia exclusiva del registro compartido
+    private static final class EjecutorRegistro implements EjecutorCascadas {
+        private final RegistroClasificadores registro = RegistroClasificadores.obtenerInstancia();
+
+        @Override
+        public boolean isDisponible(String cascada) {
+            return registro.isDisponible(cascada);
         }
-        if (clasificadorRostroPerfilIzquierdo != null) {
-            clasificadorRostroPerfilIzquierdo.close();
+
+        @Override
+        public RectVector detectar(String cascada, Mat imagen, double factor, int minimoVecinos,
+                                   Size minimo, Size maximo) {
+            RectVector encontrados = new RectVector();
+            try {
+                registro.usar(cascada, clasificador -> {
+                    clasificador.detectMultiScale(imagen, encontrados, factor, minimoVecinos, 0, minimo, maximo);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                encontrados.close();
+                throw e;
+            }
+            return encontrados;
         }
     }
 
+    private static final class MedidorEtapa {
+        private final LongAdder ejecuciones = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+
     // Enumeración para tipos de rostro
     public enum TipoRostro {
         FRONTAL,
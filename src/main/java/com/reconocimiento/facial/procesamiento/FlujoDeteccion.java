@@ -0,0 +1,190 @@
+package com.reconocimiento.facial.procesamiento;
+
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.opencv_core.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.bytedeco.opencv.global.opencv_core.*;
+import static org.bytedeco.opencv.global.opencv_imgproc.*;
+
+/**
+ * 🎞️ DETECCIÓN DE ROSTROS DE UN FLUJO DE VÍDEO
+ * Lo que depende de la historia de una cámara concreta: la puerta de cambios, la región y
+ * los tamaños de búsqueda adaptativos y la última detección. La cascada frontal no es de
+ * nadie: cada búsqueda toma una instancia del {@link RegistroClasificadores} compartido, así
+ * que abrir un flujo por cámara solo cuesta unos Mats reducidos, no modelos ni cascadas.
+ *
+ * {@link #detectar} está sincronizado para que puerta, planificador y última detección
+ * avancen juntos, pero el orden de los fotogramas es cosa del llamador: un flujo espera
+ * recibirlos en el orden de captura, desde un único hilo a la vez.
+ */
+public class FlujoDeteccion implements Function<Mat, List<Rect>>, AutoCloseable {
+
+    // ========== PARÁMETROS DE LA CASCADA ==========
+    static final double FACTOR_ESCALA = 1.1;
+    static final int MINIMOS_VECINOS = 3;
+    static final Size TAMANO_MINIMO = new Size(30, 30);
+    static final Size TAMANO_MAXIMO = new Size(300, 300);
+
+    private static final RegistroClasificadores CLASIFICADORES = RegistroClasificadores.obtenerInstancia();
+
+    // Puerta de cambios: sin movimiento se reutiliza la última detección (null = desactivada)
+    private final DetectorCambios detectorCambios;
+    // Región y tamaños de búsqueda adaptativos (null = búsqueda fija)
+    private final PlanificadorDeteccion planificador;
+
+    // ========== ESTADO (protegido por this) ==========
+    private final PlanificadorDeteccion.Parametros plan = new PlanificadorDeteccion.Parametros();
+    private List<Rect> ultimaDeteccion;
+
+    /**
+     * Flujo con la puerta y el planificador de sistema.properties
+     * (deteccion.cambios.activo, deteccion.planificador.activo)
+     */
+    public FlujoDeteccion() {
+        this(GestorConfiguracion.obtenerBoolean("deteccion.cambios.activo", true) ? new DetectorCambios() : null,
+             GestorConfiguracion.obtenerBoolean("deteccion.planificador.activo", true)
+                 ? new PlanificadorDeteccion(TAMANO_MINIMO, TAMANO_MAXIMO) : null);
+    }
+
+    /**
+     * Constructor completo
+     * @param detectorCambios Puerta de cambios propia del flujo (null = detectar siempre)
+     * @param planificador Planificador propio del flujo (null = búsqueda fija)
+     */
+    public FlujoDeteccion(DetectorCambios detectorCambios, PlanificadorDeteccion planificador) {
+        this.detectorCambios = detectorCambios;
+        this.planificador = planificador;
+    }
+
+    /**
+     * 🔍 Rostros del siguiente fotograma del flujo
+     * @param imagen Fotograma BGR, BGRA o gris (no se modifica)
+     * @return Rectángulos nuevos en coordenadas del fotograma, propios del llamador
+     */
+    public synchronized List<Rect> detectar(Mat imagen) {
+        if (imagen == null || imagen.empty()) {
+            return new ArrayList<>();
+        }
+
+        // Escena sin cambios: la cascada daría el mismo resultado (copias: el llamador puede liberarlas)
+        if (detectorCambios != null && !detectorCambios.hayCambio(imagen) && ultimaDeteccion != null) {
+            return copiar(ultimaDeteccion);
+        }
+
+        // Región y tamaños según las detecciones recientes (sobre los parámetros del flujo)
+        List<Rect> rostros;
+        if (planificador != null) {
+            planificador.planificar(imagen.cols(), imagen.rows(), plan);
+            rostros = buscar(imagen, plan.getRegion(), plan.getFactorEscala(), plan.getMinimo(), plan.getMaximo());
+            planificador.registrarResultado(rostros);
+        } else {
+            rostros = buscarCompleto(imagen);
+        }
+
+        ultimaDeteccion = copiar(rostros);
+        System.out.println("🔍 Detectados " + rostros.size() + " rostros" + (planificador != null ? " (" + plan + ")" : ""));
+        return rostros;
+    }
+
+    @Override
+    public List<Rect> apply(Mat imagen) {
+        return detectar(imagen);
+    }
+
+    /**
+     * 🧹 Olvidar la historia del flujo y liberar los Mats de la puerta
+     * El flujo puede volver a usarse: empieza de cero como uno nuevo
+     */
+    @Override
+    public synchronized void close() {
+        if (detectorCambios != null) {
+            detectorCambios.liberar();
+        }
+        if (planificador != null) {
+            planificador.olvidar();
+        }
+        ultimaDeteccion = null;
+    }
+
+    private static List<Rect> copiar(List<Rect> rostros) {
+        List<Rect> copias = new ArrayList<>(rostros.size());
+        for (Rect rostro : rostros) {
+            copias.add(new Rect(rostro.x(), rostro.y(), rostro.width(), rostro.height()));
+        }
+        return copias;
+    }
+
+    public DetectorCambios getDetectorCambios() { return detectorCambios; }
+    public PlanificadorDeteccion getPlanificador() { return planificador; }
+
+    // ========== BÚSQUEDA CON LA CASCADA COMPARTIDA ==========
+
+    /**
+     * Cascada sobre el fotograma completo con los parámetros fijos (imágenes sueltas)
+     */
+    public static List<Rect> buscarCompleto(Mat imagen) {
+        return buscar(imagen, null, FACTOR_ESCALA, TAMANO_MINIMO, TAMANO_MAXIMO);
+    }
+
+    /**
+     * Cascada sobre una región del fotograma (null = completo)
+     * @return Rectángulos en coordenadas del fotograma
+     */
+    static List<Rect> buscar(Mat matImagen, Rect region, double factorEscala, Size minimo, Size maximo) {
+        BuffersNativos.registrarFotograma();
+        int[] coordenadas;
+
+        // Buffers prestados del grupo; las cabeceras temporales (ROI, Rect leídos) se liberan al
+        // cerrar el ámbito
+        try (BuffersNativos buffers = BuffersNativos.tomar();
+             PointerScope ambito = BuffersNativos.ambitoCabeceras()) {
+            Mat zona = region != null ? new Mat(matImagen, region) : matImagen;
+
+            // Convertir a escala de grises (solo la región) sobre el buffer prestado
+            Mat imagenGris = ProcesadorOpenCV.aEscalaGrises(zona, buffers.obtener(BuffersNativos.Ranura.GRIS_DETECCION,
+                                                                                   zona.rows(), zona.cols(), CV_8UC1));
+
+            // Ecualizar histograma para mejor detección
+            equalizeHist(imagenGris, imagenGris);
+
+            // Detectar rostros con una instancia exclusiva del registro (sin bloquear a otros hilos)
+            RectVector rostrosDetectados = buffers.getRectangulos();
+            CLASIFICADORES.usar(RegistroClasificadores.ROSTRO_FRONTAL, clasificador -> {
+                clasificador.detectMultiScale(
+                    imagenGris,
+                    rostrosDetectados,
+                    factorEscala,
+                    MINIMOS_VECINOS,
+                    0,
+                    minimo,
+                    maximo
+                );
+                return null;
+            });
+
+            // Copiar coordenadas desplazando al origen del fotograma
+            int dx = region != null ? region.x() : 0;
+            int dy = region != null ? region.y() : 0;
+            coordenadas = new int[(int) rostrosDetectados.size() * 4];
+            for (int i = 0; i < rostrosDetectados.size(); i++) {
+                Rect rostro = rostrosDetectados.get(i);
+                coordenadas[i * 4] = rostro.x() + dx;
+                coordenadas[i * 4 + 1] = rostro.y() + dy;
+                coordenadas[i * 4 + 2] = rostro.width();
+                coordenadas[i * 4 + 3] = rostro.height();
+            }
+        }
+
+        // Los Rect devueltos se crean fuera del ámbito: son del llamador
+        List<Rect> rostros = new ArrayList<>();
+        for (int i = 0; i < coordenadas.length; i += 4) {
+            rostros.add(new Rect(coordenadas[i], coordenadas[i + 1], coordenadas[i + 2], coordenadas[i + 3]));
+        }
+        return rostros;
+    }
+}
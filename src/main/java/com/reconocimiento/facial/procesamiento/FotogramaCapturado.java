@@ -0,0 +1,165 @@
+package com.reconocimiento.facial.procesamiento;
+
+import org.bytedeco.javacv.Java2DFrameConverter;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 🎞️ FOTOGRAMA CAPTURADO
+ * Copia inmutable de un fotograma publicada por el hilo de captura.
+ * El original es un Mat BGR propio del fotograma (clonado una sola vez del grabber);
+ * la BufferedImage solo se construye si alguien la pide (vista previa) y se guarda.
+ * Los consumidores pueden leer desde cualquier hilo; no deben modificar el Mat ni la
+ * imagen (trabajar sobre ROIs o copias).
+ *
+ * Vida del Mat: el {@link BufferFotogramas} tiene una referencia y cada consumidor que lo
+ * obtiene del buffer recibe otra, que devuelve con {@link #close()} (try-with-resources).
+ * Cuando el anillo sobrescribe la ranura y el último consumidor lo cierra, el Mat propio se
+ * libera en el acto. Un fotograma que nadie cierra solo lo libera el recolector.
+ */
+public final class FotogramaCapturado implements AutoCloseable {
+
+    // Los convertidores de JavaCV reutilizan sus buffers: uno por hilo
+    private static final ThreadLocal<Java2DFrameConverter> CONVERTIDOR_JAVA2D =
+        ThreadLocal.withInitial(Java2DFrameConverter::new);
+    private static final ThreadLocal<OpenCVFrameConverter.ToMat> CONVERTIDOR_MAT =
+        ThreadLocal.withInitial(OpenCVFrameConverter.ToMat::new);
+
+    private final long secuencia;
+    private final long instanteNanos;
+    private volatile Mat mat;
+    private volatile BufferedImage imagen;
+    // true = el Mat es del fotograma y se libera con la última referencia
+    private boolean matPropio;
+    private final AtomicInteger referencias = new AtomicInteger(1);
+
+    /**
+     * Fotograma nativo de OpenCV
+     * @param mat Mat propio del fotograma (el llamador cede su propiedad)
+     */
+    public FotogramaCapturado(long secuencia, long instanteNanos, Mat mat) {
+        this(secuencia, instanteNanos, mat, true);
+    }
+
+    /**
+     * Fotograma nativo de OpenCV
+     * @param propio false si el Mat sigue siendo de otro (p. ej. una caché de la fuente)
+     */
+    public FotogramaCapturado(long secuencia, long instanteNanos, Mat mat, boolean propio) {
+        this.secuencia = secuencia;
+        this.instanteNanos = instanteNanos;
+        this.mat = mat;
+        this.matPropio = propio;
+    }
+
+    /**
+     * Fotograma a partir de una imagen Java2D (modo simulación, pruebas)
+     */
+    public FotogramaCapturado(long secuencia, long instanteNanos, BufferedImage imagen) {
+        this.secuencia = secuencia;
+        this.instanteNanos = instanteNanos;
+        this.imagen = imagen;
+    }
+
+    /**
+     * Número de fotograma (creciente, empieza en 1)
+     */
+    public long getSecuencia() { return secuencia; }
+
+    /**
+     * Instante de captura según System.nanoTime()
+     */
+    public long getInstanteNanos() { return instanteNanos; }
+
+    /**
+     * 🖼️ Mat BGR del fotograma (se crea una vez si el fotograma vino de una imagen)
+     */
+    public Mat getMat() {
+        Mat actual = mat;
+        if (actual == null) {
+            synchronized (this) {
+                if (mat == null && imagen != null && referencias.get() > 0) {
+                    mat = convertirAMat(imagen).clone();
+                    matPropio = true;
+                }
+                actual = mat;
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * 🖼️ Imagen para mostrar; se convierte desde el Mat la primera vez que se pide
+     */
+    public BufferedImage getImagen() {
+        BufferedImage actual = imagen;
+        if (actual == null) {
+            synchronized (this) {
+                if (imagen == null && mat != null) {
+                    imagen = convertirAImagen(mat);
+                }
+                actual = imagen;
+            }
+        }
+        return actual;
+    }
+
+    // ========== REFERENCIAS ==========
+
+    /**
+     * Tomar una referencia más (el buffer lo hace al entregar el fotograma)
+     * @return false si el fotograma ya se liberó
+     */
+    public boolean retener() {
+        int actuales;
+        do {
+            actuales = referencias.get();
+            if (actuales <= 0) {
+                return false;
+            }
+        } while (!referencias.compareAndSet(actuales, actuales + 1));
+        return true;
+    }
+
+    /**
+     * Devolver una referencia; con la última se libera el Mat propio
+     * La imagen Java2D ya convertida sigue siendo válida
+     */
+    @Override
+    public void close() {
+        if (referencias.decrementAndGet() == 0) {
+            synchronized (this) {
+                if (matPropio && mat != null) {
+                    mat.close();
+                }
+                mat = null;
+            }
+        }
+    }
+
+    /**
+     * Antigüedad del fotograma en milisegundos
+     */
+    public long getEdadMillis() {
+        return (System.nanoTime() - instanteNanos) / 1_000_000L;
+    }
+
+    /**
+     * 🔄 Copia Java2D de un Mat (p. ej. la ROI de un rostro para la red neuronal)
+     */
+    public static BufferedImage convertirAImagen(Mat mat) {
+        BufferedImage compartida = CONVERTIDOR_JAVA2D.get().convert(CONVERTIDOR_MAT.get().convert(mat));
+        return compartida != null ? Java2DFrameConverter.cloneBufferedImage(compartida) : null;
+    }
+
+    /**
+     * 🔄 Vista Mat de una BufferedImage con los convertidores del hilo actual
+     * El Mat comparte memoria con el convertidor: válido hasta la siguiente conversión del hilo
+     */
+    public static Mat convertirAMat(BufferedImage imagen) {
+        return CONVERTIDOR_MAT.get().convert(CONVERTIDOR_JAVA2D.get().convert(imagen));
+    }
+}
@@ -0,0 +1,115 @@
+package com.reconocimiento.facial.procesamiento;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import static org.bytedeco.opencv.global.opencv_imgcodecs.IMREAD_COLOR;
+import static org.bytedeco.opencv.global.opencv_imgcodecs.imread;
+
+/**
+ * 🗂️ FUENTE DE DIRECTORIO DE IMÁGENES
+ * Entrega las imágenes de un directorio en orden alfabético como si fueran fotogramas.
+ * Cada imagen se decodifica una sola vez; en las vueltas siguientes se entrega el mismo Mat,
+ * así las pruebas de carga miden el reconocimiento y no el disco ni el decodificador.
+ * Los consumidores no modifican los Mat de los fotogramas (ver {@link FotogramaCapturado}).
+ */
+public class FuenteDirectorioImagenes extends FuenteReproducible {
+
+    private static final String[] EXTENSIONES = {".jpg", ".jpeg", ".png", ".bmp"};
+
+    private final Path directorio;
+    private final List<Path> archivos = new ArrayList<>();
+    private final List<Mat> decodificadas = new ArrayList<>();
+    private int posicion;
+
+    public FuenteDirectorioImagenes(Path directorio, double fps, boolean bucle) {
+        super(fps, bucle);
+        this.directorio = directorio;
+    }
+
+    @Override
+    protected void abrirOrigen() throws IOException {
+        archivos.clear();
+        decodificadas.clear();
+        try (Stream<Path> listado = Files.list(directorio)) {
+            listado.filter(FuenteDirectorioImagenes::esImagen).sorted().forEach(archivos::add);
+        }
+        if (archivos.isEmpty()) {
+            throw new IOException("No hay imágenes en " + directorio);
+        }
+        posicion = 0;
+        System.out.println("🗂️ Directorio de imágenes: " + directorio + " (" + archivos.size() + " archivos)");
+    }
+
+    /**
+     * Los Mat decodificados son de la caché: se vuelven a entregar en la siguiente vuelta
+     */
+    @Override
+    public boolean entregaMatsPropios() {
+        return false;
+    }
+
+    @Override
+    protected Mat leerOrigen() {
+        while (posicion < archivos.size()) {
+            int indice = posicion++;
+            if (indice < decodificadas.size()) {
+                Mat mat = decodificadas.get(indice);
+                if (mat != null) {
+                    return mat;
+                }
+                continue;
+            }
+            Mat mat = imread(archivos.get(indice).toString(), IMREAD_COLOR);
+            if (mat == null || mat.empty()) {
+                System.err.println("⚠️ Imagen no legible, se omite: " + archivos.get(indice));
+                mat = null;
+            }
+            decodificadas.add(mat);
+            if (mat != null) {
+                return mat;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected void reiniciarOrigen() {
+        posicion = 0;
+    }
+
+    @Override
+    protected void cerrarOrigen() {
+        decodificadas.clear();
+        posicion = 0;
+    }
+
+    @Override
+    public String getDescripcion() {
+        return "Imágenes " + directorio;
+    }
+
+    public int getCantidadImagenes() {
+        return archivos.size();
+    }
+
+    private static boolean esImagen(Path archivo) {
+        if (!Files.isRegularFile(archivo)) {
+            return false;
+        }
+        String nombre = archivo.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONES) {
+            if (nombre.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
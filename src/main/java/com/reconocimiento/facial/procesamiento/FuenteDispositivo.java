@@ -0,0 +1,87 @@
+package com.reconocimiento.facial.procesamiento;
+
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.bytedeco.javacv.OpenCVFrameGrabber;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+/**
+ * 📷 FUENTE DE DISPOSITIVO POR ÍNDICE
+ * Una cámara física concreta ({@code dispositivo:N}), para abrir varias a la vez en lugar
+ * de la única cámara que prueba {@link ManejadorCamara}. El ritmo lo marca el propio
+ * dispositivo; cada fotograma se clona porque el grabber reutiliza su Mat.
+ */
+public class FuenteDispositivo implements FuenteFotogramas {
+
+    private static final int REINTENTOS_LECTURA = 5;
+
+    private final int indice;
+    private final int ancho;
+    private final int alto;
+    private final double fps;
+    private final OpenCVFrameConverter.ToMat convertidor = new OpenCVFrameConverter.ToMat();
+    private OpenCVFrameGrabber grabber;
+
+    /**
+     * Dispositivo con la resolución y los FPS de sistema.properties (camara.*)
+     */
+    public FuenteDispositivo(int indice) {
+        this(indice,
+             GestorConfiguracion.obtenerInt("camara.resolucion_ancho", 640),
+             GestorConfiguracion.obtenerInt("camara.resolucion_alto", 480),
+             GestorConfiguracion.obtenerDouble("camara.fps", 30.0));
+    }
+
+    public FuenteDispositivo(int indice, int ancho, int alto, double fps) {
+        this.indice = indice;
+        this.ancho = ancho;
+        this.alto = alto;
+        this.fps = fps;
+    }
+
+    @Override
+    public void abrir() throws Exception {
+        grabber = new OpenCVFrameGrabber(indice);
+        grabber.setImageWidth(ancho);
+        grabber.setImageHeight(alto);
+        grabber.setFrameRate(fps);
+        grabber.start();
+        System.out.println("📷 Dispositivo " + indice + " abierto (" + grabber.getImageWidth() + "x" +
+                           grabber.getImageHeight() + ")");
+    }
+
+    /**
+     * Un dispositivo no se agota: si no entrega imagen tras varios intentos se lanza la
+     * excepción y el hilo de captura reintenta más tarde
+     */
+    @Override
+    public Mat leer() throws Exception {
+        for (int intento = 0; intento < REINTENTOS_LECTURA; intento++) {
+            Frame frame = grabber.grab();
+            Mat mat = frame != null ? convertidor.convert(frame) : null;
+            if (mat != null && !mat.empty()) {
+                return mat.clone();
+            }
+        }
+        throw new IllegalStateException("El dispositivo " + indice + " no entrega imágenes");
+    }
+
+    @Override
+    public String getDescripcion() {
+        return "Dispositivo " + indice;
+    }
+
+    @Override
+    public void close() {
+        if (grabber != null) {
+            try {
+                grabber.stop();
+                grabber.release();
+            } catch (Exception e) {
+                System.err.println("⚠️ Error cerrando dispositivo " + indice + ": " + e.getMessage());
+            }
+            grabber = null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.reconocimiento.facial.procesamiento;
+
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 🎞️ FUENTE DE FOTOGRAMAS
+ * Origen alternativo a la cámara física para el hilo de captura de {@link ManejadorCamara}.
+ * Permite reproducir un vídeo o un directorio de imágenes sin dispositivo conectado
+ * (servidores, pruebas de carga y regresión).
+ *
+ * Especificación textual (clave camara.fuente):
+ * <ul>
+ *   <li>{@code dispositivo} - cámara física (valor por defecto, sin fuente)</li>
+ *   <li>{@code dispositivo:N} - la cámara física de índice N (varias cámaras a la vez)</li>
+ *   <li>{@code video:ruta/al/archivo.mp4} - vídeo decodificado con FFmpeg</li>
+ *   <li>{@code imagenes:ruta/al/directorio} - imágenes en orden alfabético</li>
+ * </ul>
+ */
+public interface FuenteFotogramas extends AutoCloseable {
+
+    String ESPECIFICACION_DISPOSITIVO = "dispositivo";
+    String PREFIJO_DISPOSITIVO = "dispositivo:";
+    String PREFIJO_VIDEO = "video:";
+    String PREFIJO_IMAGENES = "imagenes:";
+
+    /**
+     * Abrir el origen; se llama una vez antes del primer {@link #leer()}
+     */
+    void abrir() throws Exception;
+
+    /**
+     * Siguiente fotograma BGR, respetando el ritmo configurado
+     * La fuente no vuelve a escribir en un Mat entregado, pero puede entregarlo otra vez
+     * en una vuelta posterior: los consumidores lo tratan como solo lectura.
+     * @return El fotograma o null cuando el origen se agotó (sin bucle)
+     */
+    Mat leer() throws Exception;
+
+    /**
+     * true si cada Mat de {@link #leer()} es nuevo y pasa a ser del llamador
+     * (el fotograma lo libera al dejar de usarse); false si la fuente lo conserva
+     */
+    default boolean entregaMatsPropios() {
+        return true;
+    }
+
+    /**
+     * Descripción para logs y estado de la cámara
+     */
+    String getDescripcion();
+
+    /**
+     * Liberar el origen (sin excepciones comprobadas)
+     */
+    @Override
+    void close();
+
+    /**
+     * 🔧 Crear la fuente indicada en la configuración
+     * Claves: camara.fuente, camara.fuente_fps (0 = lo más rápido posible), camara.fuente_bucle
+     * @return La fuente o null si se usa el dispositivo físico
+     */
+    static FuenteFotogramas desdeConfiguracion() {
+        return desdeEspecificacion(
+            GestorConfiguracion.obtenerString("camara.fuente", ESPECIFICACION_DISPOSITIVO),
+            GestorConfiguracion.obtenerDouble("camara.fuente_fps", 30.0),
+            GestorConfiguracion.obtenerBoolean("camara.fuente_bucle", true));
+    }
+
+    /**
+     * 🔧 Crear una fuente a partir de su especificación textual
+     * @param fps Fotogramas por segundo entregados; 0 o negativo = sin espera
+     * @param bucle Volver al principio al terminar
+     * @return La fuente o null para {@code dispositivo}
+     * @throws IllegalArgumentException si la especificación no es reconocida
+     */
+    static FuenteFotogramas desdeEspecificacion(String especificacion, double fps, boolean bucle) {
+        String valor = especificacion == null ? "" : especificacion.trim();
+        if (valor.isEmpty() || valor.equalsIgnoreCase(ESPECIFICACION_DISPOSITIVO)) {
+            return null;
+        }
+        if (valor.regionMatches(true, 0, PREFIJO_DISPOSITIVO, 0, PREFIJO_DISPOSITIVO.length())) {
+            try {
+                return new FuenteDispositivo(Integer.parseInt(valor.substring(PREFIJO_DISPOSITIVO.length()).trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Índice de dispositivo no válido: " + especificacion);
+            }
+        }
+        if (valor.regionMatches(true, 0, PREFIJO_VIDEO, 0, PREFIJO_VIDEO.length())) {
+            return new FuenteVideo(Paths.get(valor.substring(PREFIJO_VIDEO.length())), fps, bucle);
+        }
+        if (valor.regionMatches(true, 0, PREFIJO_IMAGENES, 0, PREFIJO_IMAGENES.length())) {
+            Path directorio = Paths.get(valor.substring(PREFIJO_IMAGENES.length()));
+            return new FuenteDirectorioImagenes(directorio, fps, bucle);
+        }
+        throw new IllegalArgumentException("Fuente de fotogramas no reconocida: " + especificacion);
+    }
+}
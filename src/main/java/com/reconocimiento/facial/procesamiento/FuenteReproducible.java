@@ -0,0 +1,100 @@
+package com.reconocimiento.facial.procesamiento;
+
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * ⏯️ BASE DE FUENTES REPRODUCIBLES
+ * Añade a un origen finito (vídeo, directorio) el ritmo de entrega y la repetición en bucle.
+ * Con fps &gt; 0 los fotogramas salen a intervalos fijos como una cámara; si el consumidor
+ * se retrasa no se entregan ráfagas para recuperar, se reinicia el reloj.
+ */
+public abstract class FuenteReproducible implements FuenteFotogramas {
+
+    private final long periodoNanos;
+    private final boolean bucle;
+    private long proximoInstante;
+    private long fotogramasEntregados;
+    private long vueltas;
+
+    protected FuenteReproducible(double fps, boolean bucle) {
+        this.periodoNanos = fps > 0 ? (long) (1_000_000_000L / fps) : 0L;
+        this.bucle = bucle;
+    }
+
+    // ========== ORIGEN CONCRETO ==========
+
+    protected abstract void abrirOrigen() throws Exception;
+
+    /**
+     * @return Siguiente Mat propio o null al final del origen
+     */
+    protected abstract Mat leerOrigen() throws Exception;
+
+    /**
+     * Volver al primer fotograma
+     */
+    protected abstract void reiniciarOrigen() throws Exception;
+
+    protected abstract void cerrarOrigen();
+
+    // ========== FUENTE ==========
+
+    @Override
+    public final void abrir() throws Exception {
+        abrirOrigen();
+        proximoInstante = System.nanoTime();
+        fotogramasEntregados = 0;
+        vueltas = 0;
+    }
+
+    @Override
+    public final Mat leer() throws Exception {
+        Mat mat = leerOrigen();
+        if (mat == null && bucle) {
+            reiniciarOrigen();
+            vueltas++;
+            mat = leerOrigen();
+        }
+        if (mat == null) {
+            return null;
+        }
+        esperarTurno();
+        fotogramasEntregados++;
+        return mat;
+    }
+
+    @Override
+    public final void close() {
+        cerrarOrigen();
+    }
+
+    /**
+     * Esperar hasta el instante del siguiente fotograma (sin espera si fps &lt;= 0)
+     */
+    private void esperarTurno() {
+        if (periodoNanos == 0) {
+            return;
+        }
+        long ahora = System.nanoTime();
+        long espera = proximoInstante - ahora;
+        if (espera > 0) {
+            LockSupport.parkNanos(espera);
+            proximoInstante += periodoNanos;
+        } else {
+            proximoInstante = ahora + periodoNanos;
+        }
+    }
+
+    public long getFotogramasEntregados() { return fotogramasEntregados; }
+    public long getVueltas() { return vueltas; }
+    public boolean isBucle() { return bucle; }
+
+    /**
+     * FPS objetivo (0 = lo más rápido posible)
+     */
+    public double getFps() {
+        return periodoNanos == 0 ? 0.0 : 1_000_000_000.0 / periodoNanos;
+    }
+}
@@ -0,0 +1,71 @@
+package com.reconocimiento.facial.procesamiento;
+
+import org.bytedeco.javacv.FFmpegFrameGrabber;
+import org.bytedeco.javacv.Frame;
+import org.bytedeco.javacv.OpenCVFrameConverter;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 🎬 FUENTE DE VÍDEO
+ * Reproduce un archivo de vídeo con el FFmpegFrameGrabber de JavaCV.
+ * Cada fotograma se clona una vez: el grabber reutiliza su buffer en el siguiente grab.
+ */
+public class FuenteVideo extends FuenteReproducible {
+
+    private final Path archivo;
+    private final OpenCVFrameConverter.ToMat convertidor = new OpenCVFrameConverter.ToMat();
+    private FFmpegFrameGrabber grabber;
+
+    public FuenteVideo(Path archivo, double fps, boolean bucle) {
+        super(fps, bucle);
+        this.archivo = archivo;
+    }
+
+    @Override
+    protected void abrirOrigen() throws Exception {
+        if (!Files.isRegularFile(archivo)) {
+            throw new IllegalArgumentException("No existe el vídeo: " + archivo);
+        }
+        grabber = new FFmpegFrameGrabber(archivo.toFile());
+        grabber.start();
+        System.out.println("🎬 Vídeo abierto: " + archivo + " (" + grabber.getImageWidth() + "x" +
+                           grabber.getImageHeight() + ", " + grabber.getLengthInVideoFrames() + " fotogramas)");
+    }
+
+    @Override
+    protected Mat leerOrigen() throws Exception {
+        // grabImage() omite paquetes de audio; null = fin del archivo
+        Frame frame = grabber.grabImage();
+        if (frame == null) {
+            return null;
+        }
+        Mat mat = convertidor.convert(frame);
+        return mat != null && !mat.empty() ? mat.clone() : null;
+    }
+
+    @Override
+    protected void reiniciarOrigen() throws Exception {
+        grabber.setFrameNumber(0);
+    }
+
+    @Override
+    protected void cerrarOrigen() {
+        if (grabber != null) {
+            try {
+                grabber.stop();
+                grabber.release();
+            } catch (Exception e) {
+                System.err.println("⚠️ Error cerrando vídeo: " + e.getMessage());
+            }
+            grabber = null;
+        }
+    }
+
+    @Override
+    public String getDescripcion() {
+        return "Vídeo " + archivo.getFileName();
+    }
+}
@@ -1,12 +1,16 @@
 package com.reconocimiento.facial.procesamiento;
 
 import com.reconocimiento.facial.procesamiento.ProcesadorOpenCV.ResultadoReconocimiento;
+import com.reconocimiento.facial.utilidades.AlmacenGaleria;
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
 import org.bytedeco.opencv.opencv_core.*;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 🤖 INTEGRADOR DE OPENCV CON SISTEMA DE RECONOCIMIENTO
@@ -18,26 +22,39 @@ public class IntegradorOpenCV {
     // ========== COMPONENTES PRINCIPALES ==========
     private final ProcesadorOpenCV procesadorOpenCV;
     private final ManejadorCamara manejadorCamara;
+    // Puerta de cambios y región adaptativa de la cámara de este integrador
+    private final FlujoDeteccion flujoCamara;
+    private final AutenticadorMultiFotograma autenticadorMultiFotograma;
     
     // ========== ESTADO DEL SISTEMA ==========
     private boolean sistemaInicializado = false;
     private Map<Integer, String> mapaUsuarios; // ID -> Nombre de usuario
     private int proximaEtiqueta = 1;
+    private AlmacenGaleria almacenEtiquetas; // Etiqueta -> nombre persistido (null = solo memoria)
     
     // ========== CONFIGURACIÓN ==========
     private static final double UMBRAL_CONFIANZA_ALTA = 85.0;
     private static final double UMBRAL_CONFIANZA_MEDIA = 70.0;
-    private static final int MAX_INTENTOS_DETECCION = 3;
 
     /**
      * Constructor
      */
     public IntegradorOpenCV() {
+        this(new ProcesadorOpenCV(), new ManejadorCamara());
+    }
+
+    /**
+     * Constructor con procesador y cámara compartidos
+     */
+    public IntegradorOpenCV(ProcesadorOpenCV procesadorOpenCV, ManejadorCamara manejadorCamara) {
         try {
-            this.procesadorOpenCV = new ProcesadorOpenCV();
-            this.manejadorCamara = new ManejadorCamara();
-            this.mapaUsuarios = new HashMap<>();
+            this.procesadorOpenCV = procesadorOpenCV;
+            this.manejadorCamara = manejadorCamara;
+            this.flujoCamara = new FlujoDeteccion();
+            this.autenticadorMultiFotograma = new AutenticadorMultiFotograma(procesadorOpenCV, flujoCamara);
+            this.mapaUsuarios = new ConcurrentHashMap<>();
             
+            cargarEtiquetas();
             verificarInicializacion();
             
         } catch (Exception e) {
@@ -46,6 +63,28 @@ public class IntegradorOpenCV {
         }
     }
 
+    /**
+     * 💾 Recuperar las etiquetas asignadas en sesiones anteriores
+     * Solo se guardan etiqueta y nombre; los vectores de esta ruta los entrena el reconocedor
+     */
+    private void cargarEtiquetas() {
+        if (!GestorConfiguracion.obtenerBoolean("galeria.persistente", true)) {
+            return;
+        }
+        try {
+            almacenEtiquetas = new AlmacenGaleria(
+                Paths.get(GestorConfiguracion.obtenerString("galeria.directorio", "datos/galeria"), "opencv"),
+                GestorConfiguracion.obtenerInt("galeria.operaciones_por_instantanea", 1000));
+            for (AlmacenGaleria.Entrada entrada : almacenEtiquetas.obtenerEntradas().values()) {
+                mapaUsuarios.put(entrada.getId(), entrada.getNombre());
+                proximaEtiqueta = Math.max(proximaEtiqueta, entrada.getId() + 1);
+            }
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudieron recuperar las etiquetas OpenCV: " + e.getMessage());
+            almacenEtiquetas = null;
+        }
+    }
+
     /**
      * Verificar que todos los componentes estén inicializados
      */
@@ -64,19 +103,21 @@ public class IntegradorOpenCV {
      * 📋 REGISTRAR USUARIO FACIAL
      * Procesa las imágenes faciales y entrena el modelo para un nuevo usuario
      */
-    public boolean registrarUsuarioFacial(String nombreUsuario, List<BufferedImage> imagenesFaciales) {
+    public synchronized boolean registrarUsuarioFacial(String nombreUsuario, List<BufferedImage> imagenesFaciales) {
         if (!sistemaInicializado || nombreUsuario == null || imagenesFaciales == null || imagenesFaciales.isEmpty()) {
             System.err.println("❌ Parámetros inválidos para registro facial");
             return false;
         }
 
+        // Etiqueta única del usuario; cualquier fallo antes de confirmarla la devuelve
+        int etiquetaUsuario = proximaEtiqueta++;
+        mapaUsuarios.put(etiquetaUsuario, nombreUsuario);
+        boolean persistida = false;
+        boolean confirmado = false;
+
         try {
             System.out.println("🔄 Procesando registro facial para: " + nombreUsuario);
             
-            // Asignar etiqueta única al usuario
-            int etiquetaUsuario = proximaEtiqueta++;
-            mapaUsuarios.put(etiquetaUsuario, nombreUsuario);
-            
             // Validar y preprocesar imágenes
             List<BufferedImage> imagenesValidas = validarImagenesFaciales(imagenesFaciales);
             if (imagenesValidas.size() < 3) {
@@ -90,25 +131,49 @@ public class IntegradorOpenCV {
                 etiquetas.add(etiquetaUsuario);
             }
             
-            // Entrenar modelo
-            boolean exito = procesadorOpenCV.entrenarReconocedor(imagenesValidas, etiquetas);
+            // Persistir antes de entrenar: un modelo nunca conoce una etiqueta sin nombre guardado
+            if (almacenEtiquetas != null) {
+                almacenEtiquetas.guardar(etiquetaUsuario, nombreUsuario, new double[0]);
+                persistida = true;
+            }
+            
+            // Entrenar modelo (agregar es atómico: si falla no queda ninguna muestra)
+            confirmado = procesadorOpenCV.entrenarReconocedor(imagenesValidas, etiquetas);
             
-            if (exito) {
+            if (confirmado) {
                 System.out.println("✅ Usuario facial registrado exitosamente: " + nombreUsuario + 
                                  " (Etiqueta: " + etiquetaUsuario + ")");
             } else {
-                // Revertir si falló
-                mapaUsuarios.remove(etiquetaUsuario);
-                proximaEtiqueta--;
                 System.err.println("❌ Error entrenando modelo para: " + nombreUsuario);
             }
             
-            return exito;
+            return confirmado;
             
         } catch (Exception e) {
             System.err.println("❌ Excepción durante registro facial: " + e.getMessage());
             e.printStackTrace();
             return false;
+        } finally {
+            if (!confirmado) {
+                revertirEtiqueta(etiquetaUsuario, persistida);
+            }
+        }
+    }
+
+    /**
+     * ↩️ Deshacer la asignación de una etiqueta que no llegó a entrenarse
+     * (el método es synchronized con el registro: nadie tomó otra etiqueta entretanto)
+     */
+    private void revertirEtiqueta(int etiqueta, boolean persistida) {
+        mapaUsuarios.remove(etiqueta);
+        proximaEtiqueta = etiqueta;
+        if (persistida) {
+            try {
+                almacenEtiquetas.eliminar(etiqueta);
+            } catch (IOException e) {
+                // Al reiniciar la etiqueta reaparece con su nombre, pero sin muestras no reconoce a nadie
+                System.err.println("⚠️ No se pudo retirar la etiqueta " + etiqueta + ": " + e.getMessage());
+            }
         }
     }
 
@@ -120,40 +185,85 @@ public class IntegradorOpenCV {
         if (!sistemaInicializado || imagenRostro == null) {
             return new ResultadoAutenticacionFacial(false, null, 0.0, "Sistema no inicializado o imagen inválida");
         }
+        // Una sola conversión BufferedImage → Mat
+        return autenticarUsuarioFacial(FotogramaCapturado.convertirAMat(imagenRostro));
+    }
+
+    /**
+     * 🎯 AUTENTICAR DESDE UN FOTOGRAMA DE LA CÁMARA
+     * Usa el Mat del fotograma directamente, sin pasar por BufferedImage
+     */
+    public ResultadoAutenticacionFacial autenticarUsuarioFacial(FotogramaCapturado fotograma) {
+        if (fotograma == null) {
+            return new ResultadoAutenticacionFacial(false, null, 0.0, "Sistema no inicializado o imagen inválida");
+        }
+        return autenticarUsuarioFacial(fotograma.getMat());
+    }
+
+    /**
+     * 🎬 AUTENTICAR CON LA CÁMARA EN VIVO
+     * Varios fotogramas distintos de la cámara del integrador con decisión secuencial:
+     * un acceso claro se resuelve en uno o dos fotogramas, uno dudoso reúne más evidencia
+     */
+    public ResultadoAutenticacionFacial autenticarUsuarioFacialEnVivo() {
+        if (!sistemaInicializado || !procesadorOpenCV.isModeloEntrenado()) {
+            return new ResultadoAutenticacionFacial(false, null, 0.0, "Sistema no inicializado o sin usuarios registrados");
+        }
+        if (!manejadorCamara.isCamaraActiva() && !manejadorCamara.inicializarCamara()) {
+            return new ResultadoAutenticacionFacial(false, null, 0.0, "No se pudo inicializar la cámara");
+        }
+
+        try {
+            System.out.println("🎬 Iniciando autenticación facial multifotograma...");
+            AutenticadorMultiFotograma.Resultado resultado =
+                autenticadorMultiFotograma.autenticar(manejadorCamara::esperarFotogramaPosterior);
+            System.out.println("🎬 " + resultado);
+
+            if (resultado.isAceptado()) {
+                String nombreUsuario = mapaUsuarios.get(resultado.getEtiqueta());
+                String nivelConfianza = determinarNivelConfianza(resultado.getConfianza());
+                return new ResultadoAutenticacionFacial(true, nombreUsuario, resultado.getConfianza(),
+                    "Autenticación exitosa - " + nivelConfianza + " (" + resultado.getFotogramas() + " fotogramas)");
+            }
+            String motivo = resultado.getDecision() == AutenticadorMultiFotograma.Decision.RECHAZADO
+                ? "Rostro no reconocido"
+                : "Evidencia insuficiente tras " + resultado.getFotogramas() + " fotogramas";
+            return new ResultadoAutenticacionFacial(false, null, resultado.getConfianza(), motivo);
+
+        } catch (Exception e) {
+            System.err.println("❌ Error durante autenticación facial: " + e.getMessage());
+            return new ResultadoAutenticacionFacial(false, null, 0.0, "Error del sistema: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 🎯 AUTENTICAR USUARIO FACIAL SOBRE UN MAT BGR
+     */
+    public ResultadoAutenticacionFacial autenticarUsuarioFacial(Mat imagenRostro) {
+        if (!sistemaInicializado || imagenRostro == null || imagenRostro.empty()) {
+            return new ResultadoAutenticacionFacial(false, null, 0.0, "Sistema no inicializado o imagen inválida");
+        }
 
         try {
             System.out.println("🔍 Iniciando autenticación facial...");
             
-            // Intentar reconocimiento múltiple para mayor precisión
-            ResultadoReconocimiento mejorResultado = null;
-            double mejorConfianza = 0.0;
-            
-            for (int intento = 0; intento < MAX_INTENTOS_DETECCION; intento++) {
-                ResultadoReconocimiento resultado = procesadorOpenCV.reconocerRostro(imagenRostro);
-                
-                if (resultado.esReconocido() && resultado.getConfianza() > mejorConfianza) {
-                    mejorResultado = resultado;
-                    mejorConfianza = resultado.getConfianza();
-                }
-                
-                // Si tenemos alta confianza, no necesitamos más intentos
-                if (mejorConfianza >= UMBRAL_CONFIANZA_ALTA) {
-                    break;
-                }
-            }
+            // Una sola pasada: repetirla sobre la misma imagen daba el mismo resultado. Para
+            // reunir más evidencia hacen falta fotogramas distintos (autenticarUsuarioFacialEnVivo)
+            ResultadoReconocimiento resultado = procesadorOpenCV.reconocerRostro(imagenRostro);
+            double confianza = resultado.getConfianza();
             
             // Evaluar resultado
-            if (mejorResultado != null && mejorResultado.esReconocido()) {
-                String nombreUsuario = mapaUsuarios.get(mejorResultado.getEtiqueta());
-                String nivelConfianza = determinarNivelConfianza(mejorConfianza);
+            if (resultado.esReconocido()) {
+                String nombreUsuario = mapaUsuarios.get(resultado.getEtiqueta());
+                String nivelConfianza = determinarNivelConfianza(confianza);
                 
                 System.out.println("✅ Usuario reconocido: " + nombreUsuario + 
-                                 " (Confianza: " + String.format("%.2f", mejorConfianza) + "% - " + nivelConfianza + ")");
+                                 " (Confianza: " + String.format("%.2f", confianza) + "% - " + nivelConfianza + ")");
                 
                 return new ResultadoAutenticacionFacial(
                     true, 
                     nombreUsuario, 
-                    mejorConfianza,
+                    confianza,
                     "Autenticación exitosa - " + nivelConfianza
                 );
             } else {
@@ -161,7 +271,7 @@ public class IntegradorOpenCV {
                 return new ResultadoAutenticacionFacial(
                     false, 
                     null, 
-                    mejorResultado != null ? mejorResultado.getConfianza() : 0.0,
+                    confianza,
                     "Rostro no reconocido"
                 );
             }
@@ -180,9 +290,26 @@ public class IntegradorOpenCV {
         if (!sistemaInicializado || imagen == null) {
             return new InformacionDeteccionRostros(0, false, "Sistema no inicializado");
         }
+        return detectarRostrosEnImagen(FotogramaCapturado.convertirAMat(imagen));
+    }
+
+    /**
+     * 🔍 DETECTAR ROSTROS EN UN MAT BGR
+     */
+    public InformacionDeteccionRostros detectarRostrosEnImagen(Mat imagen) {
+        return detectarRostrosEnImagen(imagen, null);
+    }
+
+    /**
+     * Detección sobre un fotograma suelto (flujo null) o de la cámara del integrador
+     */
+    private InformacionDeteccionRostros detectarRostrosEnImagen(Mat imagen, FlujoDeteccion flujo) {
+        if (!sistemaInicializado || imagen == null) {
+            return new InformacionDeteccionRostros(0, false, "Sistema no inicializado");
+        }
 
         try {
-            List<Rect> rostrosDetectados = procesadorOpenCV.detectarRostros(imagen);
+            List<Rect> rostrosDetectados = procesadorOpenCV.detectarRostros(imagen, flujo);
             
             boolean hayRostros = !rostrosDetectados.isEmpty();
             String mensaje = hayRostros ? 
@@ -207,20 +334,27 @@ public class IntegradorOpenCV {
                 return null;
             }
             
-            BufferedImage imagenCapturada = manejadorCamara.capturarImagenBuffered();
-            if (imagenCapturada == null) {
-                System.err.println("❌ No se pudo capturar imagen");
-                return null;
+            FotogramaCapturado capturado = manejadorCamara.capturarFotograma();
+            if (capturado == null) {
+                // Sin hilo de captura: imagen directa o simulada del manejador
+                BufferedImage imagenCapturada = manejadorCamara.capturarImagenBuffered();
+                if (imagenCapturada == null) {
+                    System.err.println("❌ No se pudo capturar imagen");
+                    return null;
+                }
+                capturado = new FotogramaCapturado(0, System.nanoTime(), imagenCapturada);
             }
             
-            // Verificar que hay rostros detectables
-            InformacionDeteccionRostros info = detectarRostrosEnImagen(imagenCapturada);
-            if (!info.hayRostros()) {
-                System.out.println("⚠️ Imagen capturada sin rostros detectables");
+            try (FotogramaCapturado fotograma = capturado) {
+                // Verificar que hay rostros detectables (sobre el Mat, sin convertir)
+                InformacionDeteccionRostros info = detectarRostrosEnImagen(fotograma.getMat(), flujoCamara);
+                if (!info.hayRostros()) {
+                    System.out.println("⚠️ Imagen capturada sin rostros detectables");
+                }
+
+                return fotograma.getImagen();
             }
             
-            return imagenCapturada;
-            
         } catch (Exception e) {
             System.err.println("❌ Error capturando desde cámara: " + e.getMessage());
             return null;
@@ -275,14 +409,29 @@ public class IntegradorOpenCV {
             "Sistema inicializado: %s\\n" +
             "Usuarios registrados: %d\\n" +
             "Próxima etiqueta: %d\\n" +
-            "Estado ProcesadorOpenCV: %s",
+            "Estado ProcesadorOpenCV: %s\\n" +
+            "Detecciones evitadas sin cambios: %s\\n" +
+            "Trabajo de cascada ahorrado: %s",
             sistemaInicializado ? "✅ SÍ" : "❌ NO",
             mapaUsuarios.size(),
             proximaEtiqueta,
-            procesadorOpenCV.isInicializado() ? "✅ OK" : "❌ ERROR"
+            procesadorOpenCV.isInicializado() ? "✅ OK" : "❌ ERROR",
+            describirPuertaCambios(),
+            flujoCamara.getPlanificador() != null
+                ? String.format("%.0f%% de media", flujoCamara.getPlanificador().getAhorroMedio() * 100)
+                : "búsqueda fija"
         );
     }
 
+    private String describirPuertaCambios() {
+        DetectorCambios puerta = flujoCamara.getDetectorCambios();
+        if (puerta == null) {
+            return "desactivado";
+        }
+        return String.format("%d de %d (%.0f%%)", puerta.getOmitidos(), puerta.getEvaluados(),
+                             puerta.getFraccionOmitida() * 100);
+    }
+
     /**
      * 🧹 LIMPIAR RECURSOS
      */
@@ -295,6 +444,11 @@ public class IntegradorOpenCV {
             if (manejadorCamara != null) {
                 manejadorCamara.liberarCamara();
             }
+            flujoCamara.close();
+            
+            if (almacenEtiquetas != null) {
+                almacenEtiquetas.close();
+            }
             
             mapaUsuarios.clear();
             System.out.println("🧹 Recursos IntegradorOpenCV liberados");
@@ -361,5 +515,12 @@ public class IntegradorOpenCV {
 
     // ========== GETTERS ==========
     public boolean isSistemaInicializado() { return sistemaInicializado; }
+
+    /**
+     * ¿Puede usarse {@link #autenticarUsuarioFacialEnVivo()}? (sistema listo y algún usuario entrenado)
+     */
+    public boolean isAutenticacionEnVivoDisponible() {
+        return sistemaInicializado && procesadorOpenCV.isModeloEntrenado();
+    }
     public int getCantidadUsuariosRegistrados() { return mapaUsuarios.size(); }
 }
\ No newline at end of file
@@ -1,25 +1,68 @@
 package com.reconocimiento.facial.procesamiento;
 
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
 import org.bytedeco.javacv.*;
+import org.bytedeco.opencv.opencv_core.Mat;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Manejador de cámara real para captura de imágenes faciales
  * Usa JavaCV y OpenCV para acceso directo a la cámara
+ *
+ * Un único hilo de captura es dueño del dispositivo: lee fotogramas continuamente y los
+ * publica en un {@link BufferFotogramas}. Vista previa, reconocimiento y registro leen
+ * el último fotograma publicado sin llamar a grab(), así el EDT nunca espera al
+ * dispositivo y dos consumidores no compiten por el mismo grabber.
+ *
+ * Con una {@link FuenteFotogramas} (clave camara.fuente) el hilo lee de un vídeo o de un
+ * directorio de imágenes en lugar del dispositivo, para ejecutar sin cámara conectada.
  */
 public class ManejadorCamara {
 
-    private boolean camaraActiva = false;
+    // ========== HILO DE CAPTURA ==========
+    private static final int CAPACIDAD_BUFFER = 4;
+    private static final long PERIODO_SIMULACION_NANOS = TimeUnit.MILLISECONDS.toNanos(33); // ~30 FPS
+    private static final long PLAZO_FOTOGRAMA_MS = 1000;
+    private static final long PLAZO_CIERRE_MS = 5000;
+    private final BufferFotogramas bufferFotogramas = new BufferFotogramas(CAPACIDAD_BUFFER);
+    private volatile HiloCaptura hiloCaptura;
+    // Libera una sesión cuyo hilo de captura no paró a tiempo (null = ninguna pendiente)
+    private Thread cierrePendiente;
+    private BufferedImage imagenSimulada;
+
+    private volatile boolean camaraActiva = false;
     private volatile boolean inicializandoCamara = false; // Nuevo: evitar inicializaciones simultáneas
     // Campo resultadoInicializacion removido por no uso
     // private volatile boolean resultadoInicializacion = false; // Para comunicación entre hilos
     private OpenCVFrameGrabber grabber;
     private Java2DFrameConverter converter;
     private Random random = new Random();
+    private final FuenteFotogramas fuente; // null = dispositivo físico
+
+    /**
+     * Cámara según la configuración (dispositivo físico o camara.fuente)
+     */
+    public ManejadorCamara() {
+        this(FuenteFotogramas.desdeConfiguracion());
+    }
+
+    /**
+     * Cámara alimentada por una fuente de fotogramas (null = dispositivo físico)
+     */
+    public ManejadorCamara(FuenteFotogramas fuente) {
+        this.fuente = fuente;
+    }
 
     /**
      * Inicializar la cámara real con configuración mejorada y diagnóstico completo
@@ -43,39 +86,39 @@ public class ManejadorCamara {
         
         try {
             // Limpiar recursos previos si existen
-            liberarRecursosPrevios();
+            if (!liberarRecursosPrevios()) {
+                System.err.println("❌ La sesión anterior sigue capturando; no se reabre la cámara");
+                return false;
+            }
             
-            // Diagnóstico inicial del sistema
-            realizarDiagnosticoSistema();
-
-            // Método 1: Inicialización simple y rápida
-            System.out.println("📷 INTENTO 1: Inicialización simple...");
-            if (inicializarCamaraSimple()) {
+            if (fuente != null) {
+                System.out.println("🎞️ Usando fuente de fotogramas: " + fuente.getDescripcion());
+                fuente.abrir();
                 camaraActiva = true;
-                mostrarExitoInicializacion("Método simple");
+                iniciarHiloCaptura();
+                mostrarExitoInicializacion(fuente.getDescripcion());
                 return true;
             }
 
-            // Método 2: Con DirectShow (Windows)
-            System.out.println("📷 INTENTO 2: Intentando con DirectShow...");
-            if (inicializarCamaraConDirectShow()) {
-                camaraActiva = true;
-                mostrarExitoInicializacion("DirectShow");
-                return true;
-            }
+            // Diagnóstico inicial del sistema
+            realizarDiagnosticoSistema();
 
-            // Método 3: Probar diferentes índices
-            System.out.println("📷 INTENTO 3: Probando diferentes índices de cámara...");
-            if (inicializarCamaraConIndices()) {
+            // Método 1: Sondeo paralelo (configuración guardada primero, luego los dispositivos a la vez)
+            System.out.println("📷 INTENTO 1: Sondeo paralelo de cámaras...");
+            SondeoCamaras.Resultado<OpenCVFrameGrabber> sondeo = inicializarCamaraConSondeo();
+            if (sondeo != null) {
+                grabber = sondeo.getAbierto();
                 camaraActiva = true;
-                mostrarExitoInicializacion("Índice alternativo");
+                iniciarHiloCaptura();
+                mostrarExitoInicializacion(sondeo.getConfiguracion() + " (" + sondeo.getMilisegundos() + " ms)");
                 return true;
             }
 
-            // Método 4: Modo de emergencia con simulación
-            System.out.println("📷 INTENTO 4: Modo de emergencia (simulación)...");
+            // Método 2: Modo de emergencia con simulación
+            System.out.println("📷 INTENTO 2: Modo de emergencia (simulación)...");
             if (activarModoEmergencia()) {
                 camaraActiva = true;
+                iniciarHiloCaptura();
                 mostrarAdvertenciaModoEmergencia();
                 return true;
             }
@@ -92,6 +135,180 @@ public class ManejadorCamara {
         }
     }
     
+    /**
+     * 🧵 Un hilo de captura con el grabber de su sesión
+     * Cada arranque crea uno nuevo: un hilo antiguo que aún no salió de grab() solo ve su
+     * propia bandera y su propio grabber, nunca los de la sesión siguiente
+     */
+    private final class HiloCaptura {
+        private final OpenCVFrameGrabber grabber; // null = fuente o simulación
+        private final Thread hilo;
+        private volatile boolean activo = true;
+        private volatile boolean agotado = false;
+
+        HiloCaptura(OpenCVFrameGrabber grabber) {
+            this.grabber = grabber;
+            this.hilo = new Thread(() -> bucleCaptura(this), "captura-camara");
+            this.hilo.setDaemon(true);
+        }
+    }
+
+    /**
+     * 🎬 Arrancar el hilo que lee el dispositivo y publica fotogramas
+     */
+    private synchronized void iniciarHiloCaptura() {
+        if (hiloCaptura != null && hiloCaptura.hilo.isAlive()) {
+            return;
+        }
+        HiloCaptura nuevo = new HiloCaptura(grabber);
+        hiloCaptura = nuevo;
+        nuevo.hilo.start();
+    }
+
+    /**
+     * ⏹️ Detener el hilo de captura y esperar a que suelte el grabber
+     * @return El hilo si sigue vivo tras el plazo (bloqueado en grab() o leer()); null si paró
+     */
+    private synchronized HiloCaptura detenerHiloCaptura() {
+        HiloCaptura anterior = hiloCaptura;
+        hiloCaptura = null;
+        if (anterior == null) {
+            return null;
+        }
+        anterior.activo = false;
+        try {
+            anterior.hilo.join(PLAZO_FOTOGRAMA_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return anterior.hilo.isAlive() ? anterior : null;
+    }
+
+    /**
+     * 🔌 Parar la captura y liberar el grabber y la fuente de la sesión actual
+     * Si el hilo sigue dentro de grab() o leer(), liberarlos ahora rompería la llamada en
+     * curso: un hilo virtual espera a que salga y los libera entonces
+     */
+    private synchronized void liberarSesion() {
+        HiloCaptura pendiente = detenerHiloCaptura();
+        OpenCVFrameGrabber grabberSesion = grabber;
+        grabber = null;
+        if (pendiente == null) {
+            cerrarDispositivo(grabberSesion);
+            return;
+        }
+        System.out.println("⏳ El hilo de captura sigue leyendo; la cámara se liberará cuando termine");
+        cierrePendiente = Thread.ofVirtual().name("cierre-camara").start(() -> {
+            try {
+                pendiente.hilo.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            cerrarDispositivo(grabberSesion);
+        });
+    }
+
+    private void cerrarDispositivo(OpenCVFrameGrabber grabberSesion) {
+        if (fuente != null) {
+            fuente.close();
+        }
+        if (grabberSesion != null) {
+            try {
+                grabberSesion.stop();
+                grabberSesion.release();
+                System.out.println("Camara liberada correctamente");
+            } catch (Exception e) {
+                System.err.println("Error al liberar camara: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 🔁 Bucle del hilo de captura: grab → copia propia → publicar
+     * El convertidor de JavaCV reutiliza su BufferedImage, por eso se publica una copia
+     */
+    private void bucleCaptura(HiloCaptura propio) {
+        OpenCVFrameConverter.ToMat convertidorCaptura = new OpenCVFrameConverter.ToMat();
+        OpenCVFrameGrabber grabber = propio.grabber;
+        boolean errorNotificado = false;
+
+        while (propio.activo) {
+            try {
+                FotogramaCapturado fotograma;
+                if (fuente != null) {
+                    Mat mat = fuente.leer();
+                    if (mat == null) {
+                        System.out.println("⏹️ Fuente agotada: " + fuente.getDescripcion());
+                        propio.agotado = true;
+                        break;
+                    }
+                    fotograma = new FotogramaCapturado(bufferFotogramas.siguienteSecuencia(),
+                                                       System.nanoTime(), mat, fuente.entregaMatsPropios());
+                } else if (grabber == null) {
+                    // Modo de emergencia: la misma imagen simulada a ritmo de cámara
+                    if (imagenSimulada == null) {
+                        imagenSimulada = crearImagenSimulada();
+                    }
+                    LockSupport.parkNanos(PERIODO_SIMULACION_NANOS);
+                    fotograma = new FotogramaCapturado(bufferFotogramas.siguienteSecuencia(),
+                                                       System.nanoTime(), imagenSimulada);
+                } else {
+                    org.bytedeco.javacv.Frame frame = grabber.grab();
+                    Mat mat = frame != null ? convertidorCaptura.convert(frame) : null;
+                    if (mat == null || mat.empty()) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+                        continue;
+                    }
+                    // Única copia: el grabber reutiliza su Mat en el siguiente grab(); la copia se
+                    // libera cuando el anillo la sobrescribe y la cierra su último consumidor
+                    fotograma = new FotogramaCapturado(bufferFotogramas.siguienteSecuencia(),
+                                                       System.nanoTime(), mat.clone());
+                }
+
+                if (!propio.activo) {
+                    // Sesión detenida mientras se leía: el fotograma ya no se publica
+                    fotograma.close();
+                    break;
+                }
+                bufferFotogramas.publicar(fotograma);
+                errorNotificado = false;
+
+            } catch (Exception e) {
+                if (!errorNotificado) {
+                    System.err.println("❌ Error en hilo de captura: " + e.getMessage());
+                    errorNotificado = true;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(100));
+            }
+        }
+    }
+
+    /**
+     * 📥 Último fotograma publicado, sin esperar (null si aún no hay ninguno)
+     * Pensado para la vista previa en el EDT; el llamador lo cierra al terminar
+     */
+    public FotogramaCapturado obtenerUltimoFotograma() {
+        return camaraActiva ? bufferFotogramas.ultimo() : null;
+    }
+
+    /**
+     * 📸 Esperar el siguiente fotograma publicado (para reconocimiento sobre el Mat)
+     * @return El fotograma (el llamador lo cierra) o null si la cámara no está activa o no
+     *         llega a tiempo
+     */
+    public FotogramaCapturado capturarFotograma() {
+        return esperarFotogramaPosterior(bufferFotogramas.getUltimaSecuencia(), PLAZO_FOTOGRAMA_MS);
+    }
+
+    /**
+     * ⏳ Esperar un fotograma posterior al indicado (para muestras distintas entre sí)
+     * @return El fotograma (el llamador lo cierra) o null si no llega ninguno en el plazo
+     */
+    public FotogramaCapturado esperarFotogramaPosterior(long secuencia, long plazoMillis) {
+        return camaraActiva ? bufferFotogramas.esperarPosterior(secuencia, plazoMillis) : null;
+    }
+
     /**
      * Realizar diagnóstico del sistema antes de intentar inicializar cámara
      */
@@ -176,148 +393,98 @@ public class ManejadorCamara {
     
     /**
      * Liberar recursos previos
+     * Antes de reabrir se espera a que termine el cierre de una sesión anterior: su hilo
+     * podría seguir leyendo la misma fuente o el mismo dispositivo
+     * @return false si la sesión anterior no terminó dentro de PLAZO_CIERRE_MS
      */
-    private void liberarRecursosPrevios() {
-        if (grabber != null) {
+    private synchronized boolean liberarRecursosPrevios() {
+        liberarSesion();
+        if (cierrePendiente != null) {
             try {
-                grabber.stop();
-                grabber.release();
-            } catch (Exception e) {
-                System.out.println("⚠️ Error limpiando recursos previos: " + e.getMessage());
+                cierrePendiente.join(PLAZO_CIERRE_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (cierrePendiente.isAlive()) {
+                return false;
             }
-            grabber = null;
+            cierrePendiente = null;
         }
+        return true;
     }
 
     /**
-     * Método 1: Inicialización simple sin configuraciones especiales
+     * Método 1: Sondeo paralelo con plazo global (camara.plazo_sondeo_ms)
+     * La configuración ganadora se guarda en camara.archivo_sondeo para el próximo arranque
      */
-    private boolean inicializarCamaraSimple() {
-        try {
-            System.out.println("🔧 Iniciando conexión simple con cámara por defecto...");
-            
-            grabber = new OpenCVFrameGrabber(0);
-            
-            // Configuración optimizada para velocidad
-            grabber.setImageWidth(640);
-            grabber.setImageHeight(480);
-            grabber.setFrameRate(30);
-            
-            System.out.println("⏰ Conectando cámara (puede tomar 10-20 segundos)...");
-            long startTime = System.currentTimeMillis();
-            
-            // Intentar conectar
-            grabber.start();
-            
-            long initTime = System.currentTimeMillis() - startTime;
-            System.out.println("✅ Cámara inicializada en " + initTime + "ms");
-            
-            // Verificar funcionamiento
-            org.bytedeco.javacv.Frame frame = grabber.grab();
-            if (frame != null) {
-                System.out.println("✅ Conexión simple exitosa - " + frame.imageWidth + "x" + frame.imageHeight);
-                return true;
-            } else {
-                System.out.println("❌ No se pudo capturar frame inicial");
-                if (grabber != null) {
-                    try { grabber.stop(); grabber.release(); } catch (Exception e) {}
-                }
-                return false;
-            }
-            
-        } catch (Exception e) {
-            System.out.println("❌ Error en inicialización simple: " + e.getMessage());
-            if (grabber != null) {
-                try { grabber.stop(); grabber.release(); } catch (Exception ex) {}
-            }
-            return false;
-        }
+    private SondeoCamaras.Resultado<OpenCVFrameGrabber> inicializarCamaraConSondeo() {
+        SondeoCamaras<OpenCVFrameGrabber> sondeo = new SondeoCamaras<>(this::abrirGrabber,
+            Paths.get(GestorConfiguracion.obtenerString("camara.archivo_sondeo", "datos/camara_sondeo.properties")),
+            GestorConfiguracion.obtenerInt("camara.plazo_sondeo_ms", 8000));
+        return sondeo.sondear(configuracionesCandidatas());
     }
 
     /**
-     * Método 2: Con DirectShow para Windows
+     * Candidatas: índice configurado primero, luego 0..camara.indice_maximo_sondeo;
+     * DirectShow solo en Windows y la resolución configurada con 640x480 como respaldo.
+     * El orden de la lista es la preferencia con la que se prueba cada índice
      */
-    private boolean inicializarCamaraConDirectShow() {
-        try {
-            System.out.println("🔧 Iniciando con DirectShow (Windows)...");
-            
-            grabber = new OpenCVFrameGrabber(0);
-            
-            // Configuración DirectShow optimizada
-            grabber.setFormat("dshow");
-            grabber.setImageWidth(640);
-            grabber.setImageHeight(480);
-            grabber.setFrameRate(30);
-            
-            System.out.println("⏰ Conectando con DirectShow...");
-            long startTime = System.currentTimeMillis();
-            
-            grabber.start();
-            
-            long initTime = System.currentTimeMillis() - startTime;
-            System.out.println("✅ DirectShow inicializado en " + initTime + "ms");
-            
-            // Verificar funcionamiento
-            org.bytedeco.javacv.Frame frame = grabber.grab();
-            if (frame != null) {
-                System.out.println("✅ DirectShow funcionando correctamente");
-                return true;
-            } else {
-                System.out.println("❌ DirectShow no pudo capturar frame");
-                if (grabber != null) {
-                    try { grabber.stop(); grabber.release(); } catch (Exception e) {}
+    private static List<SondeoCamaras.Configuracion> configuracionesCandidatas() {
+        int indiceConfigurado = GestorConfiguracion.obtenerInt("camara.indice", 0);
+        int indiceMaximo = GestorConfiguracion.obtenerInt("camara.indice_maximo_sondeo", 3);
+        int ancho = GestorConfiguracion.obtenerInt("camara.resolucion_ancho", 640);
+        int alto = GestorConfiguracion.obtenerInt("camara.resolucion_alto", 480);
+
+        Set<Integer> indices = new LinkedHashSet<>();
+        indices.add(indiceConfigurado);
+        for (int i = 0; i <= indiceMaximo; i++) {
+            indices.add(i);
+        }
+        List<String> formatos = new ArrayList<>();
+        formatos.add(null);
+        if (System.getProperty("os.name", "").toLowerCase().contains("windows")) {
+            formatos.add("dshow");
+        }
+        List<int[]> resoluciones = new ArrayList<>();
+        resoluciones.add(new int[]{ancho, alto});
+        if (ancho != 640 || alto != 480) {
+            resoluciones.add(new int[]{640, 480});
+        }
+
+        List<SondeoCamaras.Configuracion> candidatas = new ArrayList<>();
+        for (int[] resolucion : resoluciones) {
+            for (int indice : indices) {
+                for (String formato : formatos) {
+                    candidatas.add(new SondeoCamaras.Configuracion(formato, indice, resolucion[0], resolucion[1]));
                 }
-                return false;
-            }
-            
-        } catch (Exception e) {
-            System.out.println("❌ Error con DirectShow: " + e.getMessage());
-            if (grabber != null) {
-                try { grabber.stop(); grabber.release(); } catch (Exception ex) {}
             }
-            return false;
         }
+        return candidatas;
     }
 
     /**
-     * Método 3: Probar diferentes índices de cámara
+     * Sonda: abrir el dispositivo y exigir un primer fotograma
      */
-    private boolean inicializarCamaraConIndices() {
-        for (int i = 0; i <= 3; i++) {
-            try {
-                System.out.println("🔧 Probando cámara con índice " + i + "...");
-                
-                grabber = new OpenCVFrameGrabber(i);
-                grabber.setImageWidth(640);
-                grabber.setImageHeight(480);
-                
-                grabber.start();
-                
-                // Verificar funcionamiento
-                org.bytedeco.javacv.Frame frame = grabber.grab();
-                if (frame != null) {
-                    System.out.println("✅ Cámara encontrada en índice " + i);
-                    return true;
-                }
-                
-                // Si llega aquí, no funcionó
-                grabber.stop();
-                grabber.release();
-                grabber = null;
-                
-            } catch (Exception e) {
-                System.out.println("❌ Índice " + i + " falló: " + e.getMessage());
-                if (grabber != null) {
-                    try { grabber.stop(); grabber.release(); } catch (Exception ex) {}
-                    grabber = null;
-                }
+    private OpenCVFrameGrabber abrirGrabber(SondeoCamaras.Configuracion configuracion) throws Exception {
+        OpenCVFrameGrabber candidato = new OpenCVFrameGrabber(configuracion.getIndice());
+        if (configuracion.getFormato() != null) {
+            candidato.setFormat(configuracion.getFormato());
+        }
+        candidato.setImageWidth(configuracion.getAncho());
+        candidato.setImageHeight(configuracion.getAlto());
+        candidato.setFrameRate(GestorConfiguracion.obtenerDouble("camara.fps", 30.0));
+        try {
+            candidato.start();
+            if (candidato.grab() == null) {
+                throw new IllegalStateException("no entrega imagen");
             }
+            return candidato;
+        } catch (Exception e) {
+            try { candidato.stop(); candidato.release(); } catch (Exception ex) {}
+            throw e;
         }
-        
-        System.out.println("❌ No se encontró cámara en ningún índice");
-        return false;
     }
-    
+
     /**
      * Intentar inicializar con DirectShow (Windows)
      * @deprecated Método obsoleto - mantenido para compatibilidad pero no se usa
@@ -536,35 +703,20 @@ public class ManejadorCamara {
             System.out.println("📸 Capturando imagen de cámara...");
             long startTime = System.currentTimeMillis();
 
-            // Capturar frame con reintentos
-            org.bytedeco.javacv.Frame frame = null;
-            
-            for (int intento = 0; intento < 3; intento++) {
-                try {
-                    frame = grabber.grab();
-                    if (frame != null) break;
-                    
-                    System.out.println("⚠️ Intento " + (intento + 1) + "/3 - Reintentando captura...");
-                    Thread.sleep(500); // Pausa antes de reintentar
-                } catch (Exception e) {
-                    System.out.println("⚠️ Error en intento " + (intento + 1) + ": " + e.getMessage());
+            // Fotograma nuevo publicado por el hilo de captura (solo hace falta su imagen)
+            BufferedImage imagen;
+            try (FotogramaCapturado fotograma = bufferFotogramas.esperarPosterior(
+                     bufferFotogramas.getUltimaSecuencia(), PLAZO_FOTOGRAMA_MS)) {
+                if (fotograma == null) {
+                    System.err.println("❌ No llegó ningún fotograma en " + PLAZO_FOTOGRAMA_MS + "ms");
+                    return simularDatosFaciales(); // Fallback a simulación
                 }
-            }
-
-            if (frame == null) {
-                System.err.println("❌ No se pudo capturar frame después de 3 intentos");
-                return simularDatosFaciales(); // Fallback a simulación
+                imagen = fotograma.getImagen();
             }
 
             long captureTime = System.currentTimeMillis() - startTime;
             System.out.println("⏱️ Frame capturado en " + captureTime + "ms");
 
-            // Convertir frame a BufferedImage
-            if (converter == null) {
-                converter = new Java2DFrameConverter();
-            }
-            BufferedImage imagen = converter.convert(frame);
-            
             if (imagen != null) {
                 System.out.println("✅ Imagen capturada exitosamente - " + 
                     imagen.getWidth() + "x" + imagen.getHeight() + " píxeles");
@@ -587,6 +739,8 @@ public class ManejadorCamara {
 
     /**
      * Capturar imagen de la cámara como BufferedImage
+     * Espera el siguiente fotograma del hilo de captura (no toca el dispositivo).
+     * La imagen es compartida con otros consumidores: no debe modificarse.
      */
     public BufferedImage capturarImagenBuffered() {
         if (!camaraActiva) {
@@ -594,41 +748,17 @@ public class ManejadorCamara {
             return null;
         }
 
-        try {
-            // Si estamos en modo de emergencia (sin grabber), usar simulación directa
-            if (grabber == null) {
-                System.out.println("🚨 Modo de emergencia: Usando imagen simulada");
-                return crearImagenSimulada();
-            }
-            
-            // Capturar frame real de la cámara
-            org.bytedeco.javacv.Frame frame = grabber.grab();
-            if (frame == null) {
-                System.err.println("❌ No se pudo capturar frame de la cámara real");
-                System.out.println("🔄 Cambiando a modo simulación...");
-                return crearImagenSimulada();
-            }
-
-            // Convertir frame a BufferedImage
-            if (converter == null) {
-                converter = new Java2DFrameConverter();
-            }
-            
-            BufferedImage imagen = converter.convert(frame);
-            
-            if (imagen != null) {
-                System.out.println("✅ Imagen REAL capturada: " + imagen.getWidth() + "x" + imagen.getHeight());
-                return imagen;
-            } else {
-                System.err.println("⚠️ Error convirtiendo frame real, usando simulación");
-                return crearImagenSimulada();
-            }
-
-        } catch (Exception e) {
-            System.err.println("❌ Error capturando imagen real: " + e.getMessage());
-            System.out.println("🔄 Fallback a imagen simulada");
+        // La imagen Java2D sigue siendo válida después de cerrar el fotograma
+        BufferedImage imagen;
+        try (FotogramaCapturado fotograma = bufferFotogramas.esperarPosterior(
+                 bufferFotogramas.getUltimaSecuencia(), PLAZO_FOTOGRAMA_MS)) {
+            imagen = fotograma != null ? fotograma.getImagen() : null;
+        }
+        if (imagen == null) {
+            System.err.println("❌ No llegó ningún fotograma de la cámara, usando simulación");
             return crearImagenSimulada();
         }
+        return imagen;
     }
     
     /**
@@ -672,12 +802,10 @@ public class ManejadorCamara {
      */
     public void liberarCamara() {
         try {
-            if (grabber != null) {
-                grabber.stop();
-                grabber.release();
-                System.out.println("Camara liberada correctamente");
-            }
             camaraActiva = false;
+            liberarSesion();
+            // Las ranuras devuelven su referencia: los Mats se liberan cuando los suelten sus consumidores
+            bufferFotogramas.vaciar();
         } catch (Exception e) {
             System.err.println("Error al liberar camara: " + e.getMessage());
         }
@@ -687,7 +815,29 @@ public class ManejadorCamara {
      * Verificar si está funcionando en modo simulación
      */
     public boolean isSimulando() {
-        return camaraActiva && grabber == null;
+        return camaraActiva && grabber == null && fuente == null;
+    }
+
+    /**
+     * Buffer donde el hilo de captura publica (para planificadores y consumidores propios)
+     */
+    public BufferFotogramas getBufferFotogramas() {
+        return bufferFotogramas;
+    }
+
+    /**
+     * La fuente terminó (sin bucle) y el hilo de captura ya no publica fotogramas
+     */
+    public boolean isFuenteAgotada() {
+        HiloCaptura actual = hiloCaptura;
+        return fuente != null && camaraActiva && (actual == null || actual.agotado);
+    }
+
+    /**
+     * Fuente de fotogramas en uso (null = dispositivo físico)
+     */
+    public FuenteFotogramas getFuente() {
+        return fuente;
     }
     
     /**
@@ -696,6 +846,8 @@ public class ManejadorCamara {
     public String obtenerEstadoDetallado() {
         if (!camaraActiva) {
             return "❌ Cámara INACTIVA";
+        } else if (fuente != null) {
+            return "🎞️ Fuente " + fuente.getDescripcion();
         } else if (grabber == null) {
             return "🚨 Modo SIMULACIÓN (cámara física no disponible)";
         } else {
@@ -837,6 +989,7 @@ public class ManejadorCamara {
     public void detenerCamara() {
         if (camaraActiva) {
             camaraActiva = false;
+            detenerHiloCaptura();
             System.out.println("🔴 Cámara detenida");
         }
     }
@@ -0,0 +1,485 @@
+package com.reconocimiento.facial.procesamiento;
+
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.MatVector;
+import org.bytedeco.opencv.opencv_face.EigenFaceRecognizer;
+import org.bytedeco.opencv.opencv_face.FaceRecognizer;
+import org.bytedeco.opencv.opencv_face.FisherFaceRecognizer;
+import org.bytedeco.opencv.opencv_face.LBPHFaceRecognizer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static org.bytedeco.opencv.global.opencv_core.CV_32SC1;
+
+/**
+ * 🧩 MODELO PERSISTENTE DE RECONOCEDORES OPENCV
+ * LBPH, EigenFaces y FisherFaces entrenados con todas las muestras registradas, no solo con
+ * las del último usuario.
+ * <ul>
+ *   <li>LBPH se actualiza en el acto con {@code update()}: solo procesa las muestras nuevas.</li>
+ *   <li>Eigen y Fisher no admiten actualización; se reentrenan en segundo plano, agrupando
+ *       los registros que lleguen durante {@code opencv.reentrenamiento_diferido_ms}, y se
+ *       sustituyen al terminar. Mientras tanto sigue vigente el modelo anterior.</li>
+ *   <li>Cada modelo se guarda con {@code write()} en el directorio de modelos junto con la
+ *       última secuencia de muestra que incluye. Al arrancar se leen con {@code read()} y
+ *       LBPH recupera con {@code update()} lo registrado después de su última copia.</li>
+ * </ul>
+ * Las predicciones comparten un candado de lectura; update y el cambio de modelo toman el
+ * de escritura, así varias predicciones pueden correr a la vez. Los registros se serializan:
+ * guardar las muestras y actualizar LBPH es una sola operación que se deshace entera si falla.
+ */
+public class ModeloReconocedores implements AutoCloseable {
+
+    /**
+     * Tipos de reconocedor y su archivo de modelo
+     */
+    public enum Tipo {
+        LBPH("lbph.yml"),
+        EIGEN("eigen.yml"),
+        FISHER("fisher.yml");
+
+        private final String archivo;
+
+        Tipo(String archivo) {
+            this.archivo = archivo;
+        }
+    }
+
+    private static final String ARCHIVO_ESTADO = "estado.properties";
+    private static final String CARPETA_MUESTRAS = "muestras";
+
+    private final Path directorio; // null = solo memoria
+    private final long retrasoReentrenamientoMs;
+    private final AlmacenMuestrasFaciales muestras;
+    private final ReentrantReadWriteLock bloqueo = new ReentrantReadWriteLock();
+    private final Object bloqueoRegistro = new Object();
+    private final Object bloqueoGuardado = new Object(); // Un solo escritor de los archivos temporales
+
+    // ========== MODELOS (protegidos por bloqueo) ==========
+    private final LBPHFaceRecognizer lbph = LBPHFaceRecognizer.create();
+    private FaceRecognizer eigen;
+    private FaceRecognizer fisher;
+    private long secuenciaLbph;
+    private long secuenciaEigenFisher;
+    private boolean cerrado; // Tras close() no se sustituye ni se guarda ningún modelo
+
+    // ========== REENTRENAMIENTO DIFERIDO ==========
+    private final ScheduledExecutorService reentrenador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "reentrenamiento-opencv");
+        hilo.setDaemon(true);
+        hilo.setPriority(Thread.MIN_PRIORITY);
+        return hilo;
+    });
+    private ScheduledFuture<?> reentrenamientoPendiente;
+
+    /**
+     * Modelo con la configuración del sistema (galeria.persistente, opencv.*)
+     */
+    public ModeloReconocedores() throws IOException {
+        this(GestorConfiguracion.obtenerBoolean("galeria.persistente", true)
+                 ? Paths.get(GestorConfiguracion.obtenerString("opencv.directorio_modelos", "modelos/opencv"))
+                 : null,
+             GestorConfiguracion.obtenerInt("opencv.reentrenamiento_diferido_ms", 5000));
+    }
+
+    /**
+     * @param directorio Carpeta de modelos y muestras; null = solo memoria
+     * @param retrasoReentrenamientoMs Espera para agrupar registros antes de reentrenar Eigen/Fisher
+     */
+    public ModeloReconocedores(Path directorio, long retrasoReentrenamientoMs) throws IOException {
+        this.directorio = directorio;
+        this.retrasoReentrenamientoMs = Math.max(0, retrasoReentrenamientoMs);
+        this.muestras = new AlmacenMuestrasFaciales(directorio != null ? directorio.resolve(CARPETA_MUESTRAS) : null);
+        if (directorio != null) {
+            cargar();
+        }
+    }
+
+    // ========== CARGA ==========
+
+    /**
+     * Leer los modelos guardados y poner LBPH al día con las muestras posteriores
+     */
+    private void cargar() {
+        Properties estado = leerEstado();
+        secuenciaLbph = Long.parseLong(estado.getProperty("secuencia_lbph", "0"));
+        secuenciaEigenFisher = Long.parseLong(estado.getProperty("secuencia_eigen_fisher", "0"));
+
+        if (secuenciaLbph > 0 && !leerModelo(lbph, Tipo.LBPH)) {
+            secuenciaLbph = 0;
+        }
+        if (secuenciaEigenFisher > 0) {
+            eigen = leerModeloNuevo(EigenFaceRecognizer.create(), Tipo.EIGEN);
+            fisher = leerModeloNuevo(FisherFaceRecognizer.create(), Tipo.FISHER);
+        }
+
+        // Registros posteriores a la última copia de LBPH (p. ej. cierre antes del guardado)
+        long desde = secuenciaLbph;
+        List<Mat> nuevas = new ArrayList<>();
+        List<Integer> etiquetas = new ArrayList<>();
+        muestras.recorrer(desde, (secuencia, etiqueta, muestra) -> {
+            nuevas.add(muestra.clone());
+            etiquetas.add(etiqueta);
+        });
+        if (!nuevas.isEmpty()) {
+            actualizarLbph(nuevas, etiquetas, muestras.getUltimaSecuencia());
+            System.out.println("🧩 LBPH puesto al día con " + nuevas.size() + " muestras posteriores a su copia");
+            liberar(nuevas);
+        }
+        if (muestras.getUltimaSecuencia() > secuenciaEigenFisher) {
+            programarReentrenamiento();
+        }
+    }
+
+    private boolean leerModelo(FaceRecognizer reconocedor, Tipo tipo) {
+        Path archivo = directorio.resolve(tipo.archivo);
+        if (!Files.isRegularFile(archivo)) {
+            return false;
+        }
+        try {
+            reconocedor.read(archivo.toString());
+            System.out.println("📂 Modelo " + tipo + " cargado: " + archivo);
+            return true;
+        } catch (Exception e) {
+            System.err.println("⚠️ Modelo " + tipo + " ilegible, se reconstruirá: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @return El reconocedor leído o null (cerrado) si no hay modelo válido
+     */
+    private FaceRecognizer leerModeloNuevo(FaceRecognizer reconocedor, Tipo tipo) {
+        if (leerModelo(reconocedor, tipo)) {
+            return reconocedor;
+        }
+        reconocedor.close();
+        return null;
+    }
+
+    // ========== REGISTRO ==========
+
+    /**
+     * ➕ Añadir rostros preprocesados (gris, mismo tamaño) sin olvidar a los usuarios anteriores
+     * El coste es el de las muestras nuevas; Eigen/Fisher se reentrenan más tarde en segundo plano
+     * @return true si las muestras quedaron guardadas y LBPH ya las reconoce
+     */
+    public boolean agregar(List<Mat> rostros, List<Integer> etiquetas) {
+        if (rostros.isEmpty() || rostros.size() != etiquetas.size()) {
+            return false;
+        }
+        synchronized (bloqueoRegistro) {
+            long anterior = muestras.getUltimaSecuencia();
+            try {
+                long ultima = anterior;
+                for (int i = 0; i < rostros.size(); i++) {
+                    ultima = muestras.agregar(etiquetas.get(i), rostros.get(i));
+                }
+                actualizarLbph(rostros, etiquetas, ultima);
+            } catch (Exception e) {
+                // Sin LBPH actualizado las muestras no cuentan como registradas
+                muestras.descartarPosteriores(anterior);
+                System.err.println("❌ Error agregando muestras al modelo: " + e.getMessage());
+                return false;
+            }
+        }
+        programarReentrenamiento();
+        return true;
+    }
+
+    private void actualizarLbph(List<Mat> rostros, List<Integer> etiquetas, long hastaSecuencia) {
+        MatVector imagenes = new MatVector(rostros.size());
+        Mat matEtiquetas = new Mat(etiquetas.size(), 1, CV_32SC1);
+        for (int i = 0; i < rostros.size(); i++) {
+            imagenes.put(i, rostros.get(i));
+            matEtiquetas.ptr(i, 0).putInt(etiquetas.get(i));
+        }
+        bloqueo.writeLock().lock();
+        try {
+            if (cerrado) {
+                throw new IllegalStateException("El modelo está cerrado");
+            }
+            // update() sobre un modelo vacío equivale a train()
+            lbph.update(imagenes, matEtiquetas);
+            secuenciaLbph = Math.max(secuenciaLbph, hastaSecuencia);
+        } finally {
+            bloqueo.writeLock().unlock();
+            imagenes.close();
+            matEtiquetas.close();
+        }
+        System.out.println("✅ LBPH actualizado con " + rostros.size() + " muestras (" + muestras.getCantidad() + " en total)");
+    }
+
+    /**
+     * Reprogramar el reentrenamiento: varios registros seguidos producen uno solo
+     */
+    private synchronized void programarReentrenamiento() {
+        if (reentrenador.isShutdown()) {
+            return;
+        }
+        if (reentrenamientoPendiente != null) {
+            reentrenamientoPendiente.cancel(false);
+        }
+        reentrenamientoPendiente = reentrenador.schedule(this::reentrenarYGuardar,
+                                                         retrasoReentrenamientoMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 🔄 Entrenar Eigen y Fisher con todas las muestras fuera del candado, sustituir los
+     * modelos vigentes y guardar los tres
+     */
+    private void reentrenarYGuardar() {
+        // Solo muestras ya confirmadas en LBPH (un registro en curso aún puede deshacerse)
+        long hasta;
+        bloqueo.readLock().lock();
+        try {
+            if (cerrado) {
+                return;
+            }
+            hasta = secuenciaLbph;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+        List<Mat> todas = new ArrayList<>();
+        List<Integer> etiquetas = new ArrayList<>();
+        muestras.recorrer(0, (secuencia, etiqueta, muestra) -> {
+            if (secuencia <= hasta) {
+                todas.add(muestra.clone());
+                etiquetas.add(etiqueta);
+            }
+        });
+
+        long inicio = System.nanoTime();
+        FaceRecognizer nuevoEigen = todas.size() > 1 ? entrenar(EigenFaceRecognizer.create(), todas, etiquetas, Tipo.EIGEN) : null;
+        FaceRecognizer nuevoFisher = muestras.getCantidadEtiquetas() > 1
+            ? entrenar(FisherFaceRecognizer.create(), todas, etiquetas, Tipo.FISHER) : null;
+        liberar(todas);
+
+        FaceRecognizer viejoEigen;
+        FaceRecognizer viejoFisher;
+        boolean publicado;
+        bloqueo.writeLock().lock();
+        try {
+            publicado = !cerrado;
+            if (publicado) {
+                viejoEigen = nuevoEigen != null ? eigen : null;
+                viejoFisher = nuevoFisher != null ? fisher : null;
+                if (nuevoEigen != null) eigen = nuevoEigen;
+                if (nuevoFisher != null) fisher = nuevoFisher;
+                secuenciaEigenFisher = hasta;
+            } else {
+                // close() no esperó a este entrenamiento: los modelos nuevos se descartan
+                viejoEigen = nuevoEigen;
+                viejoFisher = nuevoFisher;
+            }
+        } finally {
+            bloqueo.writeLock().unlock();
+        }
+        if (viejoEigen != null) viejoEigen.close();
+        if (viejoFisher != null) viejoFisher.close();
+        if (!publicado) {
+            return;
+        }
+        System.out.printf("🔄 Eigen/Fisher reentrenados con %d muestras en %.0f ms%n",
+                          etiquetas.size(), (System.nanoTime() - inicio) / 1e6);
+
+        guardar();
+    }
+
+    private static FaceRecognizer entrenar(FaceRecognizer reconocedor, List<Mat> rostros, List<Integer> etiquetas, Tipo tipo) {
+        MatVector imagenes = new MatVector(rostros.size());
+        Mat matEtiquetas = new Mat(etiquetas.size(), 1, CV_32SC1);
+        for (int i = 0; i < rostros.size(); i++) {
+            imagenes.put(i, rostros.get(i));
+            matEtiquetas.ptr(i, 0).putInt(etiquetas.get(i));
+        }
+        try {
+            reconocedor.train(imagenes, matEtiquetas);
+            return reconocedor;
+        } catch (Exception e) {
+            System.err.println("⚠️ Error entrenando " + tipo + ": " + e.getMessage());
+            reconocedor.close();
+            return null;
+        } finally {
+            imagenes.close();
+            matEtiquetas.close();
+        }
+    }
+
+    // ========== PERSISTENCIA ==========
+
+    /**
+     * 💾 Escribir los modelos y las secuencias que incluyen
+     * Los candados de lectura permiten seguir prediciendo mientras se escribe
+     */
+    public void guardar() {
+        if (directorio == null) {
+            return;
+        }
+        synchronized (bloqueoGuardado) {
+            guardarModelos();
+        }
+    }
+
+    private void guardarModelos() {
+        bloqueo.readLock().lock();
+        try {
+            if (cerrado) {
+                return;
+            }
+            Properties estado = new Properties();
+            if (!lbph.empty()) {
+                escribirModelo(lbph, Tipo.LBPH);
+                estado.setProperty("secuencia_lbph", String.valueOf(secuenciaLbph));
+            }
+            if (eigen != null) escribirModelo(eigen, Tipo.EIGEN);
+            if (fisher != null) escribirModelo(fisher, Tipo.FISHER);
+            estado.setProperty("secuencia_eigen_fisher", String.valueOf(eigen != null || fisher != null ? secuenciaEigenFisher : 0));
+            escribirEstado(estado);
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudieron guardar los modelos OpenCV: " + e.getMessage());
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    /**
+     * write() a un temporal y renombrado atómico: un cierre a mitad no deja un modelo truncado
+     */
+    private void escribirModelo(FaceRecognizer reconocedor, Tipo tipo) throws IOException {
+        Path destino = directorio.resolve(tipo.archivo);
+        Path temporal = directorio.resolve("tmp_" + tipo.archivo);
+        reconocedor.write(temporal.toString());
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Properties leerEstado() {
+        Properties estado = new Properties();
+        Path archivo = directorio.resolve(ARCHIVO_ESTADO);
+        if (Files.isRegularFile(archivo)) {
+            try (InputStream entrada = Files.newInputStream(archivo)) {
+                estado.load(entrada);
+            } catch (IOException e) {
+                System.err.println("⚠️ Estado de modelos ilegible, se reconstruye: " + e.getMessage());
+            }
+        }
+        return estado;
+    }
+
+    private void escribirEstado(Properties estado) throws IOException {
+        Path temporal = directorio.resolve(ARCHIVO_ESTADO + ".tmp");
+        try (OutputStream salida = Files.newOutputStream(temporal)) {
+            estado.store(salida, "Ultima muestra incluida en cada modelo");
+        }
+        Files.move(temporal, directorio.resolve(ARCHIVO_ESTADO),
+                   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ========== PREDICCIÓN ==========
+
+    /**
+     * 🎯 Predecir con un reconocedor
+     * @param rostro Rostro preprocesado (gris, tamaño de entrenamiento)
+     * @return {etiqueta, distancia} o null si ese modelo aún no está entrenado
+     */
+    public double[] predecir(Tipo tipo, Mat rostro) {
+        bloqueo.readLock().lock();
+        try {
+            FaceRecognizer reconocedor = reconocedor(tipo);
+            if (cerrado || reconocedor == null || reconocedor.empty()) {
+                return null;
+            }
+            int[] etiqueta = new int[1];
+            double[] distancia = new double[1];
+            reconocedor.predict(rostro, etiqueta, distancia);
+            return new double[]{etiqueta[0], distancia[0]};
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    public boolean isEntrenado(Tipo tipo) {
+        bloqueo.readLock().lock();
+        try {
+            FaceRecognizer reconocedor = reconocedor(tipo);
+            return !cerrado && reconocedor != null && !reconocedor.empty();
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    private FaceRecognizer reconocedor(Tipo tipo) {
+        switch (tipo) {
+            case EIGEN: return eigen;
+            case FISHER: return fisher;
+            default: return lbph;
+        }
+    }
+
+    public int getCantidadMuestras() { return muestras.getCantidad(); }
+
+    /**
+     * ¿Hay registros que Eigen/Fisher todavía no incluyen?
+     */
+    public boolean isReentrenamientoPendiente() {
+        bloqueo.readLock().lock();
+        try {
+            return muestras.getUltimaSecuencia() > secuenciaEigenFisher;
+        } finally {
+            bloqueo.readLock().unlock();
+        }
+    }
+
+    private static void liberar(List<Mat> mats) {
+        for (Mat mat : mats) {
+            mat.release();
+        }
+    }
+
+    /**
+     * 🧹 Guardar y liberar; un reentrenamiento pendiente se retoma en el próximo arranque
+     * Si un entrenamiento en curso no termina en el plazo, al acabar ve el modelo cerrado
+     * y descarta su resultado en lugar de publicarlo o guardarlo.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            reentrenador.shutdownNow();
+        }
+        try {
+            reentrenador.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Sin registros a medias: lo guardado incluye todo lo que LBPH confirmó
+        synchronized (bloqueoRegistro) {
+            guardar();
+            bloqueo.writeLock().lock();
+            try {
+                cerrado = true;
+                lbph.close();
+                if (eigen != null) eigen.close();
+                if (fisher != null) fisher.close();
+                eigen = null;
+                fisher = null;
+            } finally {
+                bloqueo.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.reconocimiento.facial.procesamiento;
+
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.Size;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 🧭 PLANIFICADOR DE BÚSQUEDA DE LA CASCADA
+ * Decide, fotograma a fotograma, dónde y a qué tamaños busca detectMultiScale.
+ *
+ * - Sin historial: fotograma completo, tamaños acotados por la geometría de la cámara
+ *   (fracciones del lado menor: un usuario de kiosco nunca ocupa 30 px ni toda la imagen).
+ * - Con detecciones recientes: región alrededor de los últimos rostros y tamaños en torno
+ *   al tamaño medio observado, así se descartan la mayoría de niveles de la pirámide.
+ * - Si el rostro se pierde, la región y el rango de tamaños se ensanchan al doble en cada
+ *   fallo y, tras varios fallos seguidos, se vuelve a la búsqueda completa.
+ * - Aunque el rostro siga encontrándose, cada N planes o T ms se hace una búsqueda completa
+ *   para ver rostros nuevos fuera de la zona o que se acercan o alejan fuera del rango.
+ *
+ * También estima el trabajo de la cascada (ventanas evaluadas en la pirámide) para
+ * informar qué fracción se ahorra frente a la búsqueda fija anterior.
+ *
+ * El historial es el de una cámara: {@link FlujoDeteccion} crea un planificador por flujo.
+ * Los métodos se sincronizan sobre la instancia, pero {@link #planificar(int, int, Parametros)}
+ * rellena unos parámetros del llamador que no están protegidos: quien los reutiliza debe
+ * consumirlos antes de pedir el siguiente plan.
+ */
+public class PlanificadorDeteccion {
+
+    private static final int VENTANA_CASCADA = 20; // haarcascade_frontalface_alt usa 20x20
+    private static final double ALFA_TAMANO = 0.3;
+    private static final double HOLGURA_TAMANO_MIN = 0.6;
+    private static final double HOLGURA_TAMANO_MAX = 1.6;
+    private static final int FALLOS_PARA_REINICIAR = 3;
+    private static final int PLANES_BUSQUEDA_COMPLETA = 10;
+    private static final long MS_BUSQUEDA_COMPLETA = 1000;
+
+    private final double fraccionMinima;
+    private final double fraccionMaxima;
+    private final double factorEscala;
+    private final Size minimoReferencia;
+    private final Size maximoReferencia;
+    private final int planesBusquedaCompleta;   // 0 = sin límite de planes
+    private final long nanosBusquedaCompleta;   // 0 = sin límite de tiempo
+
+    // ========== ESTADO (protegido por this) ==========
+    private int anchoFotograma;
+    private int altoFotograma;
+    // Zona que envuelve los últimos rostros (hayZona = false: sin historial)
+    private boolean hayZona;
+    private int zonaX;
+    private int zonaY;
+    private int zonaAncho;
+    private int zonaAlto;
+    private double tamanoMedio;
+    private int fallosSeguidos;
+    private int planesDesdeCompleta;
+    private long ultimaCompletaNanos;
+    private double ahorroAcumulado;
+    private long planes;
+
+    /**
+     * Planificador con los valores de sistema.properties
+     * @param minimoReferencia Tamaño mínimo de la búsqueda fija (para medir el ahorro)
+     * @param maximoReferencia Tamaño máximo de la búsqueda fija (vacío = sin límite)
+     */
+    public PlanificadorDeteccion(Size minimoReferencia, Size maximoReferencia) {
+        this(GestorConfiguracion.obtenerDouble("deteccion.fraccion_rostro_minima", 0.08),
+             GestorConfiguracion.obtenerDouble("deteccion.fraccion_rostro_maxima", 0.9),
+             GestorConfiguracion.obtenerDouble("deteccion.factor_escala", 1.1),
+             minimoReferencia, maximoReferencia,
+             GestorConfiguracion.obtenerInt("deteccion.planificador.busqueda_completa_planes", PLANES_BUSQUEDA_COMPLETA),
+             GestorConfiguracion.obtenerInt("deteccion.planificador.busqueda_completa_ms", (int) MS_BUSQUEDA_COMPLETA));
+    }
+
+    /**
+     * Planificador con búsqueda completa periódica por defecto
+     * @param fraccionMinima Lado mínimo del rostro en fracción del lado menor del fotograma
+     * @param fraccionMaxima Lado máximo del rostro en fracción del lado menor del fotograma
+     */
+    public PlanificadorDeteccion(double fraccionMinima, double fraccionMaxima, double factorEscala,
+                                 Size minimoReferencia, Size maximoReferencia) {
+        this(fraccionMinima, fraccionMaxima, factorEscala, minimoReferencia, maximoReferencia,
+             PLANES_BUSQUEDA_COMPLETA, MS_BUSQUEDA_COMPLETA);
+    }
+
+    /**
+     * Constructor completo
+     * @param planesBusquedaCompleta Cada cuántos planes se busca en todo el fotograma aunque haya zona (0 = nunca por planes)
+     * @param msBusquedaCompleta Tiempo máximo sin búsqueda completa (0 = nunca por tiempo)
+     */
+    public PlanificadorDeteccion(double fraccionMinima, double fraccionMaxima, double factorEscala,
+                                 Size minimoReferencia, Size maximoReferencia,
+                                 int planesBusquedaCompleta, long msBusquedaCompleta) {
+        this.fraccionMinima = fraccionMinima;
+        this.fraccionMaxima = Math.max(fraccionMinima, fraccionMaxima);
+        this.factorEscala = factorEscala > 1.0 ? factorEscala : 1.1;
+        this.minimoReferencia = minimoReferencia;
+        this.maximoReferencia = maximoReferencia;
+        this.planesBusquedaCompleta = Math.max(0, planesBusquedaCompleta);
+        this.nanosBusquedaCompleta = TimeUnit.MILLISECONDS.toNanos(Math.max(0, msBusquedaCompleta));
+    }
+
+    /**
+     * 📐 Parámetros de búsqueda para el siguiente fotograma (objeto nuevo)
+     */
+    public Parametros planificar(int ancho, int alto) {
+        return planificar(ancho, alto, new Parametros());
+    }
+
+    /**
+     * 📐 Parámetros de búsqueda para el siguiente fotograma, escritos sobre {@code destino}
+     * Sin reservas nativas: un flujo reutiliza los mismos parámetros en cada fotograma
+     * @return El propio destino
+     */
+    public synchronized Parametros planificar(int ancho, int alto, Parametros destino) {
+        if (ancho != anchoFotograma || alto != altoFotograma) {
+            // Otra cámara u otra resolución: el historial no sirve
+            anchoFotograma = ancho;
+            altoFotograma = alto;
+            olvidar();
+        }
+
+        int ladoMenor = Math.min(ancho, alto);
+        int minimoGeometria = Math.max(VENTANA_CASCADA, (int) Math.round(ladoMenor * fraccionMinima));
+        int maximoGeometria = Math.max(minimoGeometria, (int) Math.round(ladoMenor * fraccionMaxima));
+
+        Rect region = destino.region.x(0).y(0).width(ancho).height(alto);
+        int minimo = minimoGeometria;
+        int maximo = maximoGeometria;
+
+        long ahora = System.nanoTime();
+        if (hayZona && fallosSeguidos < FALLOS_PARA_REINICIAR && !tocaBusquedaCompleta(ahora)) {
+            // Cada fallo seguido duplica la holgura
+            double ensanche = 1 << fallosSeguidos;
+            minimo = Math.max(minimoGeometria, (int) Math.round(tamanoMedio * HOLGURA_TAMANO_MIN / ensanche));
+            maximo = Math.min(maximoGeometria, (int) Math.round(tamanoMedio * HOLGURA_TAMANO_MAX * ensanche));
+            maximo = Math.max(minimo, maximo);
+
+            int margen = (int) Math.round(tamanoMedio * ensanche);
+            recortar(region, zonaX - margen, zonaY - margen, zonaAncho + 2 * margen, zonaAlto + 2 * margen, ancho, alto);
+            // La región debe poder contener el rostro más grande buscado
+            if (region.width() < maximo || region.height() < maximo) {
+                region.x(0).y(0).width(ancho).height(alto);
+            }
+            planesDesdeCompleta++;
+        } else {
+            planesDesdeCompleta = 0;
+            ultimaCompletaNanos = ahora;
+        }
+
+        double trabajo = estimarTrabajo(region.width(), region.height(), minimo, maximo, factorEscala);
+        double referencia = estimarTrabajo(ancho, alto, minimoReferencia.width(),
+            maximoReferencia.width() > 0 ? maximoReferencia.width() : ladoMenor, 1.1);
+        double ahorro = referencia > 0 ? Math.max(0.0, 1.0 - trabajo / referencia) : 0.0;
+        planes++;
+        ahorroAcumulado += ahorro;
+
+        destino.minimo.width(minimo).height(minimo);
+        destino.maximo.width(maximo).height(maximo);
+        destino.factorEscala = factorEscala;
+        destino.ahorro = ahorro;
+        return destino;
+    }
+
+    /**
+     * Con zona activa, si ya pasaron N planes o T ms desde la última búsqueda completa
+     */
+    private boolean tocaBusquedaCompleta(long ahora) {
+        return (planesBusquedaCompleta > 0 && planesDesdeCompleta + 1 >= planesBusquedaCompleta)
+            || (nanosBusquedaCompleta > 0 && ahora - ultimaCompletaNanos >= nanosBusquedaCompleta);
+    }
+
+    /**
+     * 📥 Informar lo encontrado con el plan (rectángulos en coordenadas del fotograma)
+     */
+    public synchronized void registrarResultado(List<Rect> rostros) {
+        if (rostros == null || rostros.isEmpty()) {
+            fallosSeguidos++;
+            if (fallosSeguidos >= FALLOS_PARA_REINICIAR) {
+                hayZona = false;
+            }
+            return;
+        }
+
+        int x1 = Integer.MAX_VALUE, y1 = Integer.MAX_VALUE, x2 = Integer.MIN_VALUE, y2 = Integer.MIN_VALUE;
+        double ladoMedio = 0;
+        for (Rect rostro : rostros) {
+            x1 = Math.min(x1, rostro.x());
+            y1 = Math.min(y1, rostro.y());
+            x2 = Math.max(x2, rostro.x() + rostro.width());
+            y2 = Math.max(y2, rostro.y() + rostro.height());
+            ladoMedio += Math.max(rostro.width(), rostro.height());
+        }
+        ladoMedio /= rostros.size();
+
+        hayZona = true;
+        zonaX = x1;
+        zonaY = y1;
+        zonaAncho = x2 - x1;
+        zonaAlto = y2 - y1;
+        tamanoMedio = tamanoMedio == 0 ? ladoMedio : tamanoMedio + ALFA_TAMANO * (ladoMedio - tamanoMedio);
+        fallosSeguidos = 0;
+    }
+
+    /**
+     * Volver a la búsqueda completa
+     */
+    public synchronized void olvidar() {
+        hayZona = false;
+        tamanoMedio = 0;
+        fallosSeguidos = 0;
+    }
+
+    /**
+     * Fracción media del trabajo de la cascada ahorrada frente a la búsqueda fija
+     */
+    public synchronized double getAhorroMedio() {
+        return planes == 0 ? 0.0 : ahorroAcumulado / planes;
+    }
+
+    /**
+     * 🧮 Ventanas que evalúa la cascada en la pirámide de una región
+     * Cada nivel reduce la región por el factor de escala; solo cuentan los niveles cuya
+     * ventana equivale a un rostro entre el tamaño mínimo y el máximo.
+     */
+    static double estimarTrabajo(int ancho, int alto, double minimo, double maximo, double factor) {
+        double trabajo = 0;
+        for (double escala = Math.max(1.0, minimo / VENTANA_CASCADA);
+             escala * VENTANA_CASCADA <= Math.min(maximo, Math.min(ancho, alto));
+             escala *= factor) {
+            double columnas = ancho / escala - VENTANA_CASCADA + 1;
+            double filas = alto / escala - VENTANA_CASCADA + 1;
+            if (columnas > 0 && filas > 0) {
+                trabajo += columnas * filas;
+            }
+        }
+        return trabajo;
+    }
+
+    private static void recortar(Rect destino, int x, int y, int ancho, int alto, int limiteAncho, int limiteAlto) {
+        int x1 = Math.max(0, x);
+        int y1 = Math.max(0, y);
+        int x2 = Math.min(limiteAncho, x + ancho);
+        int y2 = Math.min(limiteAlto, y + alto);
+        destino.x(x1).y(y1).width(Math.max(0, x2 - x1)).height(Math.max(0, y2 - y1));
+    }
+
+    /**
+     * 📋 Parámetros de una búsqueda: región, rango de tamaños y ahorro estimado
+     * El planificador los reescribe en cada {@link #planificar(int, int, Parametros)}
+     */
+    public static class Parametros {
+        private final Rect region;
+        private final Size minimo;
+        private final Size maximo;
+        private double factorEscala;
+        private double ahorro;
+
+        /**
+         * Parámetros vacíos para reutilizar fotograma a fotograma
+         */
+        public Parametros() {
+            this(new Rect(), new Size(), new Size(), 1.1, 0.0);
+        }
+
+        public Parametros(Rect region, Size minimo, Size maximo, double factorEscala, double ahorro) {
+            this.region = region;
+            this.minimo = minimo;
+            this.maximo = maximo;
+            this.factorEscala = factorEscala;
+            this.ahorro = ahorro;
+        }
+
+        public Rect getRegion() { return region; }
+        public Size getMinimo() { return minimo; }
+        public Size getMaximo() { return maximo; }
+        public double getFactorEscala() { return factorEscala; }
+
+        /**
+         * Fracción estimada del trabajo de la cascada que se evita (0-1)
+         */
+        public double getAhorro() { return ahorro; }
+
+        @Override
+        public String toString() {
+            return String.format("región %dx%d+%d+%d, tamaños %d-%d, ahorro %.0f%%",
+                    region.width(), region.height(), region.x(), region.y(),
+                    minimo.width(), maximo.width(), ahorro * 100);
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.reconocimiento.facial.procesamiento;
+
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * ⏱️ PLANIFICADOR DE FOTOGRAMAS
+ * Se coloca entre el buffer de captura y las etapas de detección/reconocimiento.
+ *
+ * - Nunca encola: un único hilo ordenado toma el fotograma más reciente; los intermedios
+ *   se pierden a propósito (contrapresión por descarte).
+ * - Las etapas con estado del flujo (seguimiento, puerta de cambios...) corren siempre en
+ *   ese hilo, una vez por fotograma y en orden de captura. Solo las etapas sin estado que
+ *   vienen detrás se reparten entre los demás hilos: el relevo no espera, si todos están
+ *   ocupados el fotograma termina ahí.
+ * - Descarta fotogramas más viejos que la latencia máxima antes de procesarlos.
+ * - Mide cada etapa con una media móvil exponencial y ajusta el periodo entre
+ *   fotogramas procesados: nunca más rápido de lo que las etapas pueden sostener y
+ *   más lento cuando la CPU del equipo supera el umbral configurado.
+ *
+ * Valores por defecto: camara.fps, rendimiento.hilos_procesamiento,
+ * rendimiento.latencia_maxima_ms y rendimiento.umbral_cpu de sistema.properties.
+ */
+public class PlanificadorFotogramas implements AutoCloseable {
+
+    // ========== CONFIGURACIÓN ==========
+    private static final double ALFA_EWMA = 0.2;
+    private static final long INTERVALO_AJUSTE_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long PERIODO_MAXIMO_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double FACTOR_FRENADO = 1.5;
+    private static final long ESPERA_FOTOGRAMA_MS = 200;
+
+    /**
+     * 🧩 Etapa de la cadena de procesamiento
+     * El fotograma vale mientras dura la llamada: si una etapa lo guarda, lo retiene con
+     * {@link FotogramaCapturado#retener()} y lo cierra después.
+     */
+    public interface Etapa {
+        String getNombre();
+
+        /**
+         * @return false para no ejecutar las etapas siguientes sobre este fotograma
+         */
+        boolean procesar(FotogramaCapturado fotograma) throws Exception;
+
+        /**
+         * true (por defecto) si la etapa guarda estado entre fotogramas del flujo: se ejecuta
+         * en el hilo ordenado. false si puede procesar fotogramas distintos en paralelo; en
+         * ese caso debe ser segura entre hilos y las etapas con estado van antes que ella
+         */
+        default boolean isConEstado() {
+            return true;
+        }
+    }
+
+    private final BufferFotogramas origen;
+    private final List<Etapa> etapas;
+    // Las etapas [0, primeraSinEstado) van en el hilo ordenado; el resto, en los paralelos
+    private final int primeraSinEstado;
+    private final int hilosParalelos;
+    private final long periodoBaseNanos;
+    private final long latenciaMaximaNanos;
+    private final double umbralCpu;
+    private final DoubleSupplier medidorCpu;
+
+    // ========== ESTADO ==========
+    private final AtomicLong ultimaReclamada = new AtomicLong(0);
+    private final AtomicLong proximoInstante = new AtomicLong(0);
+    private final AtomicLong proximoAjuste = new AtomicLong(0);
+    private volatile long periodoActualNanos;
+    private final double[] latenciaEtapaNanos;
+    private double latenciaExtremoNanos;
+    private double costoOrdenadoNanos;
+    private double costoParaleloNanos;
+    // Relevo sin cola: solo entrega si hay un hilo paralelo esperando
+    private final SynchronousQueue<FotogramaCapturado> relevo = new SynchronousQueue<>();
+    private volatile double ultimaCargaCpu = -1;
+    private final List<Thread> trabajadores = new ArrayList<>();
+    private volatile boolean activo = false;
+
+    // ========== CONTADORES ==========
+    private final LongAdder procesados = new LongAdder();
+    private final LongAdder descartadosAntiguos = new LongAdder();
+    private final LongAdder descartadosRitmo = new LongAdder();
+    private final LongAdder descartadosOcupados = new LongAdder();
+    private final LongAdder sobrescritos = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+
+    /**
+     * Planificador sobre la cámara con los valores de sistema.properties
+     */
+    public PlanificadorFotogramas(ManejadorCamara camara, List<Etapa> etapas) {
+        this(camara.getBufferFotogramas(), etapas,
+             GestorConfiguracion.obtenerDouble("camara.fps", 30.0),
+             GestorConfiguracion.obtenerInt("rendimiento.hilos_procesamiento", 4),
+             GestorConfiguracion.obtenerInt("rendimiento.latencia_maxima_ms", 250),
+             GestorConfiguracion.obtenerDouble("rendimiento.umbral_cpu", 0.85),
+             PlanificadorFotogramas::cargaCpuSistema);
+    }
+
+    /**
+     * Constructor completo
+     * @param fps Ritmo máximo de fotogramas procesados
+     * @param hilos Hilos de procesamiento: uno ordenado y el resto para las etapas sin estado
+     * @param latenciaMaximaMs Edad máxima de un fotograma al empezar a procesarlo
+     * @param umbralCpu Carga (0-1) a partir de la cual se frena el ritmo
+     * @param medidorCpu Carga actual de CPU (0-1; negativo = desconocida)
+     */
+    public PlanificadorFotogramas(BufferFotogramas origen, List<Etapa> etapas, double fps, int hilos,
+                                  long latenciaMaximaMs, double umbralCpu, DoubleSupplier medidorCpu) {
+        this.origen = origen;
+        this.etapas = List.copyOf(etapas);
+        int primera = this.etapas.size();
+        for (int i = 0; i < this.etapas.size(); i++) {
+            if (!this.etapas.get(i).isConEstado()) {
+                primera = Math.min(primera, i);
+            } else if (primera < i) {
+                throw new IllegalArgumentException("La etapa con estado " + this.etapas.get(i).getNombre() +
+                                                   " va detrás de una sin estado: no se ejecutaría en orden");
+            }
+        }
+        this.primeraSinEstado = primera;
+        this.hilosParalelos = primera < this.etapas.size() ? Math.max(0, hilos - 1) : 0;
+        this.periodoBaseNanos = fps > 0 ? (long) (1_000_000_000L / fps) : 0L;
+        this.latenciaMaximaNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, latenciaMaximaMs));
+        this.umbralCpu = umbralCpu;
+        this.medidorCpu = medidorCpu;
+        this.periodoActualNanos = periodoBaseNanos;
+        this.latenciaEtapaNanos = new double[this.etapas.size()];
+    }
+
+    // ========== CICLO DE VIDA ==========
+
+    /**
+     * ▶️ Arrancar los hilos de procesamiento
+     */
+    public synchronized void iniciar() {
+        if (activo) {
+            return;
+        }
+        activo = true;
+        ultimaReclamada.set(origen.getUltimaSecuencia());
+        long ahora = System.nanoTime();
+        proximoInstante.set(ahora);
+        proximoAjuste.set(ahora + INTERVALO_AJUSTE_NANOS);
+        arrancar(this::bucleOrdenado, "planificador-fotogramas-ordenado");
+        for (int i = 0; i < hilosParalelos; i++) {
+            arrancar(this::bucleParalelo, "planificador-fotogramas-" + i);
+        }
+        System.out.println("⏱️ Planificador iniciado: " + (1 + hilosParalelos) + " hilos, " + etapas.size() +
+                           " etapas (" + primeraSinEstado + " con estado en orden)");
+    }
+
+    private void arrancar(Runnable bucle, String nombre) {
+        Thread hilo = new Thread(bucle, nombre);
+        hilo.setDaemon(true);
+        trabajadores.add(hilo);
+        hilo.start();
+    }
+
+    /**
+     * ⏹️ Detener y esperar a que terminen los fotogramas en curso
+     */
+    public synchronized void detener() {
+        activo = false;
+        for (Thread hilo : trabajadores) {
+            try {
+                hilo.join(TimeUnit.SECONDS.toMillis(2));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        trabajadores.clear();
+    }
+
+    @Override
+    public void close() {
+        detener();
+    }
+
+    // ========== BUCLE ==========
+
+    /**
+     * Hilo ordenado: reclama, filtra por edad y ritmo y ejecuta las etapas con estado
+     */
+    private void bucleOrdenado() {
+        while (activo) {
+            // Cada vuelta devuelve su referencia al fotograma, se procese o se descarte
+            try (FotogramaCapturado fotograma = origen.esperarPosterior(ultimaReclamada.get(), ESPERA_FOTOGRAMA_MS)) {
+                if (fotograma == null || !reclamar(fotograma.getSecuencia())) {
+                    continue;
+                }
+
+                long ahora = System.nanoTime();
+                if (ahora - fotograma.getInstanteNanos() > latenciaMaximaNanos) {
+                    descartadosAntiguos.increment();
+                    continue;
+                }
+                if (!tomarTurno(ahora)) {
+                    descartadosRitmo.increment();
+                    continue;
+                }
+
+                try {
+                    long inicio = System.nanoTime();
+                    boolean continuar = ejecutarEtapas(fotograma, 0, primeraSinEstado);
+                    registrarCosto(true, System.nanoTime() - inicio);
+                    if (continuar && hilosParalelos > 0) {
+                        relevar(fotograma);
+                    } else {
+                        if (continuar) {
+                            inicio = System.nanoTime();
+                            ejecutarEtapas(fotograma, primeraSinEstado, etapas.size());
+                            registrarCosto(false, System.nanoTime() - inicio);
+                        }
+                        terminar(fotograma);
+                    }
+                } catch (Exception e) {
+                    fallar(fotograma, e);
+                }
+            }
+            ajustarRitmo();
+        }
+    }
+
+    /**
+     * Pasar el fotograma a un hilo paralelo libre con una referencia propia; si no hay
+     * ninguno esperando, el fotograma se descarta (el relevo nunca acumula trabajo)
+     */
+    private void relevar(FotogramaCapturado fotograma) {
+        if (!fotograma.retener()) {
+            return;
+        }
+        if (!relevo.offer(fotograma)) {
+            fotograma.close();
+            descartadosOcupados.increment();
+        }
+    }
+
+    /**
+     * Hilos paralelos: etapas sin estado sobre el fotograma que les releva el ordenado
+     */
+    private void bucleParalelo() {
+        while (activo) {
+            FotogramaCapturado recibido;
+            try {
+                recibido = relevo.poll(ESPERA_FOTOGRAMA_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (recibido == null) {
+                continue;
+            }
+            try (FotogramaCapturado fotograma = recibido) {
+                try {
+                    long inicio = System.nanoTime();
+                    ejecutarEtapas(fotograma, primeraSinEstado, etapas.size());
+                    registrarCosto(false, System.nanoTime() - inicio);
+                    terminar(fotograma);
+                } catch (Exception e) {
+                    fallar(fotograma, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reclamar un fotograma: solo un hilo lo procesa y nadie vuelve a uno anterior
+     */
+    private boolean reclamar(long secuencia) {
+        long previa;
+        do {
+            previa = ultimaReclamada.get();
+            if (previa >= secuencia) {
+                return false;
+            }
+        } while (!ultimaReclamada.compareAndSet(previa, secuencia));
+
+        if (previa > 0 && secuencia - previa > 1) {
+            sobrescritos.add(secuencia - previa - 1);
+        }
+        return true;
+    }
+
+    /**
+     * Respetar el periodo actual entre fotogramas procesados
+     */
+    private boolean tomarTurno(long ahora) {
+        long turno = proximoInstante.get();
+        return ahora - turno >= 0 && proximoInstante.compareAndSet(turno, ahora + periodoActualNanos);
+    }
+
+    /**
+     * Ejecutar las etapas [desde, hasta)
+     * @return false si una etapa cortó la cadena
+     */
+    private boolean ejecutarEtapas(FotogramaCapturado fotograma, int desde, int hasta) throws Exception {
+        for (int i = desde; i < hasta; i++) {
+            long t0 = System.nanoTime();
+            boolean continuar = etapas.get(i).procesar(fotograma);
+            registrarEtapa(i, System.nanoTime() - t0);
+            if (!continuar) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Contar el fotograma como procesado cuando ya no le quedan etapas
+     */
+    private void terminar(FotogramaCapturado fotograma) {
+        registrarExtremo(System.nanoTime() - fotograma.getInstanteNanos());
+        procesados.increment();
+    }
+
+    private void fallar(FotogramaCapturado fotograma, Exception e) {
+        errores.increment();
+        System.err.println("❌ Error procesando fotograma " + fotograma.getSecuencia() + ": " + e.getMessage());
+    }
+
+    // ========== MEDICIÓN Y AJUSTE ==========
+
+    private synchronized void registrarEtapa(int indice, long nanos) {
+        latenciaEtapaNanos[indice] = ewma(latenciaEtapaNanos[indice], nanos);
+    }
+
+    private synchronized void registrarCosto(boolean ordenado, long nanos) {
+        if (ordenado) {
+            costoOrdenadoNanos = ewma(costoOrdenadoNanos, nanos);
+        } else {
+            costoParaleloNanos = ewma(costoParaleloNanos, nanos);
+        }
+    }
+
+    private synchronized void registrarExtremo(long extremoNanos) {
+        latenciaExtremoNanos = ewma(latenciaExtremoNanos, extremoNanos);
+    }
+
+    private static double ewma(double actual, long muestra) {
+        return actual == 0 ? muestra : actual + ALFA_EWMA * (muestra - actual);
+    }
+
+    /**
+     * Recalcular el periodo como mucho cada INTERVALO_AJUSTE_NANOS
+     * Base: lo que sostienen el hilo ordenado (su costo entero) y los paralelos (su costo
+     * repartido), nunca menos que 1/fps.
+     * Con la CPU por encima del umbral se alarga multiplicativamente; al bajar se
+     * acerca a la base a mitades, para no oscilar.
+     */
+    private void ajustarRitmo() {
+        long ahora = System.nanoTime();
+        long ajuste = proximoAjuste.get();
+        if (ahora - ajuste < 0 || !proximoAjuste.compareAndSet(ajuste, ahora + INTERVALO_AJUSTE_NANOS)) {
+            return;
+        }
+
+        long sostenible;
+        synchronized (this) {
+            double paralelo = hilosParalelos > 0 ? costoParaleloNanos / hilosParalelos : costoParaleloNanos;
+            double serie = hilosParalelos > 0 ? costoOrdenadoNanos : costoOrdenadoNanos + costoParaleloNanos;
+            sostenible = Math.max(periodoBaseNanos, (long) Math.max(serie, paralelo));
+        }
+        double carga = medidorCpu.getAsDouble();
+        ultimaCargaCpu = carga;
+
+        long periodo = periodoActualNanos;
+        if (carga >= 0 && carga > umbralCpu) {
+            periodo = Math.min(PERIODO_MAXIMO_NANOS, (long) (Math.max(periodo, sostenible) * FACTOR_FRENADO) + 1);
+        } else {
+            periodo = periodo - (periodo - sostenible) / 2;
+        }
+        periodoActualNanos = Math.max(sostenible, periodo);
+    }
+
+    /**
+     * Carga de CPU del sistema según la JVM (negativo si no está disponible)
+     */
+    private static double cargaCpuSistema() {
+        OperatingSystemMXBean sistema = ManagementFactory.getOperatingSystemMXBean();
+        if (sistema instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) sistema).getCpuLoad();
+        }
+        double promedio = sistema.getSystemLoadAverage();
+        return promedio < 0 ? -1 : promedio / sistema.getAvailableProcessors();
+    }
+
+    // ========== CONSULTAS ==========
+
+    public long getProcesados() { return procesados.sum(); }
+    public long getDescartadosAntiguos() { return descartadosAntiguos.sum(); }
+    public long getDescartadosRitmo() { return descartadosRitmo.sum(); }
+    public long getDescartadosOcupados() { return descartadosOcupados.sum(); }
+    public long getSobrescritos() { return sobrescritos.sum(); }
+    public long getErrores() { return errores.sum(); }
+    public boolean isActivo() { return activo; }
+
+    /**
+     * Periodo actual entre fotogramas procesados
+     */
+    public double getPeriodoActualMillis() {
+        return periodoActualNanos / 1e6;
+    }
+
+    /**
+     * Media móvil de la latencia de una etapa (0 si aún no se midió)
+     */
+    public synchronized double getLatenciaEtapaMillis(String nombre) {
+        for (int i = 0; i < etapas.size(); i++) {
+            if (etapas.get(i).getNombre().equals(nombre)) {
+                return latenciaEtapaNanos[i] / 1e6;
+            }
+        }
+        throw new IllegalArgumentException("Etapa desconocida: " + nombre);
+    }
+
+    /**
+     * Media móvil desde la captura hasta el final de la última etapa
+     */
+    public synchronized double getLatenciaExtremoMillis() {
+        return latenciaExtremoNanos / 1e6;
+    }
+
+    /**
+     * 📊 Resumen legible del estado del planificador
+     */
+    public synchronized String obtenerEstadisticas() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("⏱️ PLANIFICADOR DE FOTOGRAMAS\n");
+        sb.append(String.format("   Periodo actual: %.1f ms (base %.1f ms)%n", periodoActualNanos / 1e6, periodoBaseNanos / 1e6));
+        sb.append(String.format("   Latencia captura→resultado: %.1f ms%n", latenciaExtremoNanos / 1e6));
+        for (int i = 0; i < etapas.size(); i++) {
+            sb.append(String.format("   Etapa %-20s %.2f ms%n", etapas.get(i).getNombre(), latenciaEtapaNanos[i] / 1e6));
+        }
+        sb.append(String.format("   CPU: %s%n", ultimaCargaCpu < 0 ? "desconocida" : String.format("%.0f%%", ultimaCargaCpu * 100)));
+        sb.append("   Procesados: ").append(procesados.sum())
+          .append(" | Antiguos: ").append(descartadosAntiguos.sum())
+          .append(" | Por ritmo: ").append(descartadosRitmo.sum())
+          .append(" | Hilos ocupados: ").append(descartadosOcupados.sum())
+          .append(" | Sobrescritos: ").append(sobrescritos.sum())
+          .append(" | Errores: ").append(errores.sum());
+        return sb.toString();
+    }
+}
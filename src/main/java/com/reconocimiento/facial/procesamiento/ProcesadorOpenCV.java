@@ -1,17 +1,17 @@
 package com.reconocimiento.facial.procesamiento;
 
 import org.bytedeco.opencv.opencv_core.*;
-import org.bytedeco.opencv.opencv_objdetect.*;
-import org.bytedeco.opencv.opencv_face.*;
 import org.bytedeco.javacv.*;
+import org.bytedeco.javacpp.PointerScope;
 import static org.bytedeco.opencv.global.opencv_core.*;
 import static org.bytedeco.opencv.global.opencv_imgproc.*;
 
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+
 import java.awt.image.BufferedImage;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * 🎯 PROCESADOR AVANZADO CON OPENCV
@@ -21,37 +21,26 @@ import java.util.List;
 public class ProcesadorOpenCV {
 
     // ========== COMPONENTES OPENCV ==========
-    private CascadeClassifier clasificadorRostros;
-    private CascadeClassifier clasificadorOjos;
-    private FaceRecognizer reconocedorLBPH;
-    private FaceRecognizer reconocedorEigen;
-    private FaceRecognizer reconocedorFisher;
-    
-    // ========== CONVERTIDORES ==========
-    private Java2DFrameConverter converterJava2D;
-    private OpenCVFrameConverter.ToMat converterMat;
+    // Cascadas compartidas: cada detección toma una instancia exclusiva del registro
+    private final RegistroClasificadores clasificadores = RegistroClasificadores.obtenerInstancia();
+    // LBPH, Eigen y Fisher con todas las muestras registradas, persistidos en disco
+    private ModeloReconocedores modeloReconocedores;
+    // Fusión LBPH + Eigen + Fisher (null = solo LBPH, opencv.conjunto.activo=false)
+    private ReconocedorConjunto reconocedorConjunto;
+    // Usos de los modelos (lectura) frente a liberarRecursos (escritura)
+    private final ReentrantReadWriteLock bloqueoModelos = new ReentrantReadWriteLock();
     
     // ========== CONFIGURACIÓN ==========
-    private static final String RUTA_HAARCASCADES = "src/main/resources/haarcascade/";
-    private static final String ARCHIVO_ROSTROS = "haarcascade_frontalface_alt.xml";
-    private static final String ARCHIVO_OJOS = "haarcascade_eye.xml";
-    
-    // Parámetros de detección optimizados
-    private static final double FACTOR_ESCALA = 1.1;
-    private static final int MINIMOS_VECINOS = 3;
-    private static final Size TAMANO_MINIMO = new Size(30, 30);
-    private static final Size TAMANO_MAXIMO = new Size(300, 300);
-    
     // Parámetros de reconocimiento
     private static final int ANCHO_IMAGEN = 100;
     private static final int ALTO_IMAGEN = 100;
     private static final double UMBRAL_CONFIANZA = 80.0;
+    private static final Size TAMANO_ROSTRO = new Size(ANCHO_IMAGEN, ALTO_IMAGEN);
+    private static final Size NUCLEO_SUAVIZADO = new Size(3, 3);
     
     // ========== ESTADO ==========
-    private boolean inicializado = false;
+    private volatile boolean inicializado = false;
     private String ultimoError = "";
-    private List<Mat> imageneEntrenamiento;
-    private Mat etiquetasEntrenamiento;
 
     /**
      * Constructor - Inicializa todos los componentes de OpenCV
@@ -62,9 +51,6 @@ public class ProcesadorOpenCV {
             cargarClasificadores();
             inicializarReconocedores();
             
-            this.imageneEntrenamiento = new ArrayList<>();
-            this.etiquetasEntrenamiento = new Mat();
-            
             inicializado = true;
             System.out.println("✅ ProcesadorOpenCV inicializado correctamente");
             
@@ -77,32 +63,25 @@ public class ProcesadorOpenCV {
 
     /**
      * Inicializar componentes básicos
+     * Las conversiones BufferedImage → Mat usan convertidores por hilo ({@link FotogramaCapturado#convertirAMat})
      */
     private void inicializarComponentes() {
-        converterJava2D = new Java2DFrameConverter();
-        converterMat = new OpenCVFrameConverter.ToMat();
-        
         System.out.println("🔧 Convertidores inicializados");
     }
 
     /**
      * Cargar clasificadores Haar Cascade
+     * Se resuelven desde el classpath en el registro compartido; aquí solo se comprueban
      */
     private void cargarClasificadores() throws Exception {
-        // Cargar clasificador de rostros
-        String rutaRostros = obtenerRutaClasificador(ARCHIVO_ROSTROS);
-        clasificadorRostros = new CascadeClassifier(rutaRostros);
-        
-        if (clasificadorRostros.empty()) {
-            throw new Exception("No se pudo cargar el clasificador de rostros: " + rutaRostros);
+        // Clasificador de rostros (obligatorio)
+        if (!clasificadores.isDisponible(RegistroClasificadores.ROSTRO_FRONTAL)) {
+            throw new Exception("No se pudo cargar el clasificador de rostros: " + RegistroClasificadores.ROSTRO_FRONTAL);
         }
         
-        // Cargar clasificador de ojos
-        String rutaOjos = obtenerRutaClasificador(ARCHIVO_OJOS);
-        clasificadorOjos = new CascadeClassifier(rutaOjos);
-        
-        if (clasificadorOjos.empty()) {
-            System.out.println("⚠️ Clasificador de ojos no disponible: " + rutaOjos);
+        // Clasificador de ojos (opcional)
+        if (!clasificadores.isDisponible(RegistroClasificadores.OJOS)) {
+            System.out.println("⚠️ Clasificador de ojos no disponible: " + RegistroClasificadores.OJOS);
         }
         
         System.out.println("✅ Clasificadores cargados correctamente");
@@ -110,45 +89,22 @@ public class ProcesadorOpenCV {
 
     /**
      * Inicializar reconocedores faciales
+     * Se recuperan los modelos guardados (opencv.directorio_modelos) y las muestras registradas
      */
     private void inicializarReconocedores() {
         try {
-            // LBPH (Local Binary Patterns Histograms) - Más robusto
-            reconocedorLBPH = LBPHFaceRecognizer.create();
-            
-            // EigenFaces - Rápido y eficiente
-            reconocedorEigen = EigenFaceRecognizer.create();
-            
-            // FisherFaces - Mejor discriminación
-            reconocedorFisher = FisherFaceRecognizer.create();
-            
-            System.out.println("✅ Reconocedores faciales inicializados");
+            modeloReconocedores = new ModeloReconocedores();
+            if (GestorConfiguracion.obtenerBoolean("opencv.conjunto.activo", true)) {
+                reconocedorConjunto = new ReconocedorConjunto(modeloReconocedores);
+            }
+            System.out.println("✅ Reconocedores faciales inicializados (" +
+                               modeloReconocedores.getCantidadMuestras() + " muestras registradas)");
             
         } catch (Exception e) {
             System.err.println("⚠️ Error inicializando reconocedores: " + e.getMessage());
         }
     }
 
-    /**
-     * Obtener ruta completa del clasificador
-     */
-    private String obtenerRutaClasificador(String archivo) {
-        // Primero buscar en resources
-        Path rutaResources = Paths.get(RUTA_HAARCASCADES + archivo);
-        if (rutaResources.toFile().exists()) {
-            return rutaResources.toString();
-        }
-        
-        // Buscar en target/classes
-        Path rutaTarget = Paths.get("target/classes/haarcascade/" + archivo);
-        if (rutaTarget.toFile().exists()) {
-            return rutaTarget.toString();
-        }
-        
-        // Usar ruta por defecto
-        return RUTA_HAARCASCADES + archivo;
-    }
-
     /**
      * 🔍 DETECTAR ROSTROS EN IMAGEN
      * Detecta rostros usando Haar Cascades
@@ -157,39 +113,29 @@ public class ProcesadorOpenCV {
         if (!inicializado || imagen == null) {
             return new ArrayList<>();
         }
+        return detectarRostros(bufferedImageToMat(imagen));
+    }
 
+    /**
+     * 🔍 DETECTAR ROSTROS EN UN MAT BGR (o gris)
+     * Búsqueda completa sin historial: el procesador lo comparten todas las cámaras, así que
+     * no guarda estado de ningún flujo. Ruta nativa: no crea BufferedImage
+     */
+    public List<Rect> detectarRostros(Mat matImagen) {
+        return detectarRostros(matImagen, null);
+    }
+
+    /**
+     * 🔍 DETECTAR ROSTROS EN EL SIGUIENTE FOTOGRAMA DE UN FLUJO
+     * La puerta de cambios y la región adaptativa son las del flujo del llamador
+     * @param flujo Estado de la cámara que produce el fotograma (null = búsqueda completa)
+     */
+    public List<Rect> detectarRostros(Mat matImagen, FlujoDeteccion flujo) {
+        if (!inicializado || matImagen == null || matImagen.empty()) {
+            return new ArrayList<>();
+        }
         try {
-            // Convertir BufferedImage a Mat
-            Mat matImagen = bufferedImageToMat(imagen);
-            
-            // Convertir a escala de grises
-            Mat imagenGris = new Mat();
-            cvtColor(matImagen, imagenGris, COLOR_BGR2GRAY);
-            
-            // Ecualizar histograma para mejor detección
-            equalizeHist(imagenGris, imagenGris);
-            
-            // Detectar rostros
-            RectVector rostrosDetectados = new RectVector();
-            clasificadorRostros.detectMultiScale(
-                imagenGris, 
-                rostrosDetectados,
-                FACTOR_ESCALA,
-                MINIMOS_VECINOS,
-                0,
-                TAMANO_MINIMO,
-                TAMANO_MAXIMO
-            );
-            
-            // Convertir a lista Java
-            List<Rect> rostros = new ArrayList<>();
-            for (int i = 0; i < rostrosDetectados.size(); i++) {
-                rostros.add(new Rect(rostrosDetectados.get(i)));
-            }
-            
-            System.out.println("🔍 Detectados " + rostros.size() + " rostros");
-            return rostros;
-            
+            return flujo != null ? flujo.detectar(matImagen) : FlujoDeteccion.buscarCompleto(matImagen);
         } catch (Exception e) {
             System.err.println("❌ Error detectando rostros: " + e.getMessage());
             return new ArrayList<>();
@@ -204,34 +150,46 @@ public class ProcesadorOpenCV {
         if (!inicializado || imagen == null || rostro == null) {
             return null;
         }
+        return preprocesarImagenFacial(bufferedImageToMat(imagen), rostro);
+    }
 
-        try {
-            // Convertir a Mat
-            Mat matImagen = bufferedImageToMat(imagen);
-            
-            // Extraer región del rostro
+    /**
+     * 🎨 PREPROCESAR ROSTRO SOBRE UN MAT
+     * Trabaja sobre la ROI del rostro (sin copiar el fotograma); el resultado es un Mat nuevo
+     */
+    public Mat preprocesarImagenFacial(Mat matImagen, Rect rostro) {
+        if (!inicializado || matImagen == null || rostro == null) {
+            return null;
+        }
+
+        // Único Mat nuevo: el resultado, creado fuera del ámbito porque es del llamador
+        Mat rostroSuavizado = new Mat(ALTO_IMAGEN, ANCHO_IMAGEN, CV_8UC1);
+        try (BuffersNativos buffers = BuffersNativos.tomar();
+             PointerScope ambito = BuffersNativos.ambitoCabeceras()) {
+            // Extraer región del rostro (vista, comparte memoria con el fotograma)
             Mat rostroMat = new Mat(matImagen, rostro);
             
             // Convertir a escala de grises
-            Mat rostroGris = new Mat();
-            cvtColor(rostroMat, rostroGris, COLOR_BGR2GRAY);
+            Mat rostroGris = aEscalaGrises(rostroMat, buffers.obtener(BuffersNativos.Ranura.GRIS_ROSTRO,
+                                                                      rostro.height(), rostro.width(), CV_8UC1));
             
             // Redimensionar a tamaño estándar
-            Mat rostroRedimensionado = new Mat();
-            resize(rostroGris, rostroRedimensionado, new Size(ANCHO_IMAGEN, ALTO_IMAGEN));
+            Mat rostroRedimensionado = buffers.obtener(BuffersNativos.Ranura.REDIMENSIONADO, ALTO_IMAGEN, ANCHO_IMAGEN, CV_8UC1);
+            resize(rostroGris, rostroRedimensionado, TAMANO_ROSTRO);
             
             // Ecualizar histograma
-            Mat rostroEcualizado = new Mat();
+            Mat rostroEcualizado = buffers.obtener(BuffersNativos.Ranura.ECUALIZADO, ALTO_IMAGEN, ANCHO_IMAGEN, CV_8UC1);
             equalizeHist(rostroRedimensionado, rostroEcualizado);
             
             // Aplicar filtro Gaussiano para suavizar
-            Mat rostroSuavizado = new Mat();
-            GaussianBlur(rostroEcualizado, rostroSuavizado, new Size(3, 3), 0);
+            GaussianBlur(rostroEcualizado, rostroSuavizado, NUCLEO_SUAVIZADO, 0);
             
+            BuffersNativos.registrarEntregado();
             System.out.println("🎨 Imagen facial preprocesada correctamente");
             return rostroSuavizado;
             
         } catch (Exception e) {
+            rostroSuavizado.release();
             System.err.println("❌ Error preprocesando imagen: " + e.getMessage());
             return null;
         }
@@ -239,21 +197,23 @@ public class ProcesadorOpenCV {
 
     /**
      * 📚 ENTRENAR RECONOCEDOR
-     * Entrena el modelo con imágenes de rostros y etiquetas
+     * Añade las imágenes al modelo existente: los usuarios anteriores se conservan y el coste
+     * solo depende de las imágenes nuevas (LBPH incremental, Eigen/Fisher en segundo plano)
      */
     public boolean entrenarReconocedor(List<BufferedImage> imagenes, List<Integer> etiquetas) {
-        if (!inicializado || imagenes == null || etiquetas == null || imagenes.size() != etiquetas.size()) {
+        if (!inicializado || modeloReconocedores == null || imagenes == null || etiquetas == null
+                || imagenes.size() != etiquetas.size()) {
             return false;
         }
 
+        List<Mat> rostrosEntrenamiento = new ArrayList<>();
+        List<Integer> etiquetasRostros = new ArrayList<>();
         try {
-            imageneEntrenamiento.clear();
-            
-            // Procesar cada imagen
+            // Procesar cada imagen (una sola conversión a Mat por imagen)
             for (int i = 0; i < imagenes.size(); i++) {
-                BufferedImage imagen = imagenes.get(i);
+                Mat imagen = bufferedImageToMat(imagenes.get(i));
                 
-                // Detectar rostro
+                // Detectar rostro (imagen suelta: búsqueda completa)
                 List<Rect> rostros = detectarRostros(imagen);
                 if (rostros.isEmpty()) {
                     System.out.println("⚠️ No se detectó rostro en imagen " + i);
@@ -263,113 +223,145 @@ public class ProcesadorOpenCV {
                 // Usar el rostro más grande
                 Rect rostroMasGrande = obtenerRostroMasGrande(rostros);
                 
-                // Preprocesar
+                // Preprocesar (la etiqueta viaja con su rostro aunque se descarten imágenes)
                 Mat rostroProcessed = preprocesarImagenFacial(imagen, rostroMasGrande);
                 if (rostroProcessed != null) {
-                    imageneEntrenamiento.add(rostroProcessed);
+                    rostrosEntrenamiento.add(rostroProcessed);
+                    etiquetasRostros.add(etiquetas.get(i));
                 }
             }
             
-            if (imageneEntrenamiento.isEmpty()) {
+            if (rostrosEntrenamiento.isEmpty()) {
                 System.err.println("❌ No hay imágenes válidas para entrenamiento");
                 return false;
             }
             
-            // Crear matriz de etiquetas
-            etiquetasEntrenamiento = new Mat(etiquetas.size(), 1, CV_32SC1);
-            for (int i = 0; i < etiquetas.size(); i++) {
-                etiquetasEntrenamiento.ptr(i, 0).putInt(etiquetas.get(i));
-            }
-            
             // Entrenar reconocedores
-            entrenarTodosLosReconocedores();
-            
-            System.out.println("✅ Reconocedor entrenado con " + imageneEntrenamiento.size() + " imágenes");
-            return true;
+            boolean exito;
+            bloqueoModelos.readLock().lock();
+            try {
+                exito = inicializado && modeloReconocedores.agregar(rostrosEntrenamiento, etiquetasRostros);
+            } finally {
+                bloqueoModelos.readLock().unlock();
+            }
+            if (exito) {
+                System.out.println("✅ Reconocedor entrenado con " + rostrosEntrenamiento.size() + " imágenes nuevas");
+            }
+            return exito;
             
         } catch (Exception e) {
             System.err.println("❌ Error entrenando reconocedor: " + e.getMessage());
             return false;
+        } finally {
+            for (Mat rostro : rostrosEntrenamiento) {
+                rostro.release();
+            }
+        }
+    }
+
+    /**
+     * 🎯 RECONOCER ROSTRO
+     * Identifica un rostro usando el modelo entrenado
+     */
+    public ResultadoReconocimiento reconocerRostro(BufferedImage imagen) {
+        if (!isModeloEntrenado() || imagen == null) {
+            return new ResultadoReconocimiento(-1, 0.0, false);
         }
+        return reconocerRostro(bufferedImageToMat(imagen));
     }
 
     /**
-     * Entrenar todos los reconocedores disponibles
+     * 🎯 RECONOCER ROSTRO EN UN MAT
+     * Detección, recorte y preprocesado sobre el mismo Mat
      */
-    private void entrenarTodosLosReconocedores() {
-        // Convertir lista a MatVector
-        MatVector imagenesVector = new MatVector(imageneEntrenamiento.size());
-        for (int i = 0; i < imageneEntrenamiento.size(); i++) {
-            imagenesVector.put(i, imageneEntrenamiento.get(i));
+    public ResultadoReconocimiento reconocerRostro(Mat imagen) {
+        if (!isModeloEntrenado() || imagen == null) {
+            return new ResultadoReconocimiento(-1, 0.0, false);
         }
-        
-        try {
-            if (reconocedorLBPH != null) {
-                reconocedorLBPH.train(imagenesVector, etiquetasEntrenamiento);
-                System.out.println("✅ LBPH entrenado");
-            }
-        } catch (Exception e) {
-            System.err.println("⚠️ Error entrenando LBPH: " + e.getMessage());
+        Mat rostroProcessed = extraerRostroPreprocesado(imagen);
+        if (rostroProcessed == null) {
+            return new ResultadoReconocimiento(-1, 0.0, false);
         }
-        
         try {
-            if (reconocedorEigen != null && imageneEntrenamiento.size() > 1) {
-                reconocedorEigen.train(imagenesVector, etiquetasEntrenamiento);
-                System.out.println("✅ EigenFaces entrenado");
-            }
-        } catch (Exception e) {
-            System.err.println("⚠️ Error entrenando EigenFaces: " + e.getMessage());
+            return reconocerRostroPreprocesado(rostroProcessed);
+        } finally {
+            rostroProcessed.release();
+        }
+    }
+
+    /**
+     * ✂️ EXTRAER ROSTRO PREPROCESADO
+     * Primera mitad del reconocimiento (detección + recorte + normalización), separada para
+     * poder solaparla con la puntuación del fotograma anterior
+     * @return Rostro gris 100x100 propio del llamador (debe liberarlo) o null si no hay rostro
+     */
+    public Mat extraerRostroPreprocesado(Mat imagen) {
+        return extraerRostroPreprocesado(imagen, null);
+    }
+
+    /**
+     * ✂️ EXTRAER ROSTRO PREPROCESADO DEL SIGUIENTE FOTOGRAMA DE UN FLUJO
+     * @param flujo Estado de detección de la cámara (null = búsqueda completa)
+     */
+    public Mat extraerRostroPreprocesado(Mat imagen, FlujoDeteccion flujo) {
+        if (!inicializado || imagen == null) {
+            return null;
         }
-        
         try {
-            if (reconocedorFisher != null && imageneEntrenamiento.size() > 1) {
-                reconocedorFisher.train(imagenesVector, etiquetasEntrenamiento);
-                System.out.println("✅ FisherFaces entrenado");
+            // Detectar rostros
+            List<Rect> rostros = detectarRostros(imagen, flujo);
+            if (rostros.isEmpty()) {
+                return null;
             }
+            
+            // Usar el rostro más grande y preprocesar
+            return preprocesarImagenFacial(imagen, obtenerRostroMasGrande(rostros));
+            
         } catch (Exception e) {
-            System.err.println("⚠️ Error entrenando FisherFaces: " + e.getMessage());
+            System.err.println("❌ Error extrayendo rostro: " + e.getMessage());
+            return null;
         }
     }
 
     /**
-     * 🎯 RECONOCER ROSTRO
-     * Identifica un rostro usando el modelo entrenado
+     * 🎯 RECONOCER UN ROSTRO YA PREPROCESADO
+     * Segunda mitad del reconocimiento; no libera el rostro recibido
      */
-    public ResultadoReconocimiento reconocerRostro(BufferedImage imagen) {
-        if (!inicializado || imagen == null || imageneEntrenamiento.isEmpty()) {
+    public ResultadoReconocimiento reconocerRostroPreprocesado(Mat rostroProcessed) {
+        // liberarRecursos espera a los reconocimientos en curso antes de cerrar los modelos
+        bloqueoModelos.readLock().lock();
+        try {
+            return reconocerConModelos(rostroProcessed);
+        } finally {
+            bloqueoModelos.readLock().unlock();
+        }
+    }
+
+    private ResultadoReconocimiento reconocerConModelos(Mat rostroProcessed) {
+        if (!isModeloEntrenado() || rostroProcessed == null) {
             return new ResultadoReconocimiento(-1, 0.0, false);
         }
 
         try {
-            // Detectar rostros
-            List<Rect> rostros = detectarRostros(imagen);
-            if (rostros.isEmpty()) {
-                return new ResultadoReconocimiento(-1, 0.0, false);
-            }
-            
-            // Usar el rostro más grande
-            Rect rostroMasGrande = obtenerRostroMasGrande(rostros);
-            
-            // Preprocesar
-            Mat rostroProcessed = preprocesarImagenFacial(imagen, rostroMasGrande);
-            if (rostroProcessed == null) {
-                return new ResultadoReconocimiento(-1, 0.0, false);
+            // Los tres modelos en paralelo sobre el mismo rostro, o solo LBPH si el conjunto está desactivado
+            if (reconocedorConjunto != null) {
+                ReconocedorConjunto.Resultado conjunto = reconocedorConjunto.reconocer(rostroProcessed);
+                System.out.println("🎯 Reconocimiento - " + conjunto);
+                return new ResultadoReconocimiento(conjunto.getEtiqueta(), conjunto.getConfianza(), conjunto.esReconocido());
             }
+
+            double[] prediccion = modeloReconocedores.predecir(ModeloReconocedores.Tipo.LBPH, rostroProcessed);
             
-            // Reconocer con LBPH (más confiable)
-            int[] etiqueta = new int[1];
-            double[] confianza = new double[1];
-            
-            if (reconocedorLBPH != null) {
-                reconocedorLBPH.predict(rostroProcessed, etiqueta, confianza);
+            if (prediccion != null) {
+                int etiqueta = (int) prediccion[0];
+                double distancia = prediccion[1];
+                boolean reconocido = distancia < UMBRAL_CONFIANZA;
+                double porcentajeConfianza = Math.max(0, 100.0 - distancia);
                 
-                boolean reconocido = confianza[0] < UMBRAL_CONFIANZA;
-                double porcentajeConfianza = Math.max(0, 100.0 - confianza[0]);
-                
-                System.out.println("🎯 Reconocimiento - Etiqueta: " + etiqueta[0] + 
+                System.out.println("🎯 Reconocimiento - Etiqueta: " + etiqueta + 
                                  ", Confianza: " + String.format("%.2f", porcentajeConfianza) + "%");
                 
-                return new ResultadoReconocimiento(etiqueta[0], porcentajeConfianza, reconocido);
+                return new ResultadoReconocimiento(etiqueta, porcentajeConfianza, reconocido);
             }
             
             return new ResultadoReconocimiento(-1, 0.0, false);
@@ -385,11 +377,28 @@ public class ProcesadorOpenCV {
      */
     
     /**
-     * Convertir BufferedImage a Mat
+     * Convertir BufferedImage a Mat (una vez por llamada pública)
+     * El Mat comparte memoria con el convertidor del hilo: se usa dentro de la misma llamada
      */
     private Mat bufferedImageToMat(BufferedImage imagen) {
-        Frame frame = converterJava2D.convert(imagen);
-        return converterMat.convert(frame);
+        return FotogramaCapturado.convertirAMat(imagen);
+    }
+
+    /**
+     * Escala de grises según los canales del Mat (BGR, BGRA o ya gris), sobre el destino dado
+     */
+    static Mat aEscalaGrises(Mat imagen, Mat gris) {
+        switch (imagen.channels()) {
+            case 1:
+                imagen.copyTo(gris);
+                break;
+            case 4:
+                cvtColor(imagen, gris, COLOR_BGRA2GRAY);
+                break;
+            default:
+                cvtColor(imagen, gris, COLOR_BGR2GRAY);
+        }
+        return gris;
     }
     
     /**
@@ -434,27 +443,29 @@ public class ProcesadorOpenCV {
      * 🧹 LIMPIEZA DE RECURSOS
      */
     public void liberarRecursos() {
+        bloqueoModelos.writeLock().lock();
         try {
-            if (clasificadorRostros != null) clasificadorRostros.close();
-            if (clasificadorOjos != null) clasificadorOjos.close();
-            if (reconocedorLBPH != null) reconocedorLBPH.close();
-            if (reconocedorEigen != null) reconocedorEigen.close();
-            if (reconocedorFisher != null) reconocedorFisher.close();
-            
-            for (Mat imagen : imageneEntrenamiento) {
-                if (imagen != null) imagen.close();
-            }
-            
-            if (etiquetasEntrenamiento != null) etiquetasEntrenamiento.close();
+            inicializado = false;
+            // Predicciones que siguen tras una salida anticipada del conjunto: terminan antes del cierre
+            if (reconocedorConjunto != null) reconocedorConjunto.close();
+            // Guarda los modelos antes de liberarlos
+            if (modeloReconocedores != null) modeloReconocedores.close();
+            BuffersNativos.liberar();
             
             System.out.println("🧹 Recursos OpenCV liberados");
             
         } catch (Exception e) {
             System.err.println("⚠️ Error liberando recursos: " + e.getMessage());
+        } finally {
+            bloqueoModelos.writeLock().unlock();
         }
     }
 
     // ========== GETTERS ==========
     public boolean isInicializado() { return inicializado; }
+    public boolean isModeloEntrenado() {
+        return inicializado && modeloReconocedores != null && modeloReconocedores.isEntrenado(ModeloReconocedores.Tipo.LBPH);
+    }
+    public ModeloReconocedores getModeloReconocedores() { return modeloReconocedores; }
     public String getUltimoError() { return ultimoError; }
 }
\ No newline at end of file
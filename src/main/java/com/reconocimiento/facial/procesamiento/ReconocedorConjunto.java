@@ -0,0 +1,234 @@
+package com.reconocimiento.facial.procesamiento;
+
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 🗳️ RECONOCEDOR EN CONJUNTO (LBPH + EIGEN + FISHER)
+ * Lanza los tres predict en paralelo sobre el mismo rostro preprocesado y fusiona sus
+ * respuestas. Las distancias de cada modelo viven en escalas distintas, así que cada una se
+ * normaliza con el umbral de su modelo: acuerdo = 1 - distancia / umbral (0 si lo supera).
+ * La confianza de una etiqueta es la suma ponderada de los acuerdos de los modelos que la
+ * votan, dividida entre los pesos de los modelos que respondieron.
+ *
+ * Salida anticipada: si un modelo responde con una distancia muy por debajo de su umbral
+ * ({@code opencv.conjunto.decisivo}), su etiqueta se da por buena sin esperar a los demás.
+ * El tiempo total es el del modelo más lento (o el del decisivo), no la suma de los tres.
+ *
+ * Los predict corren en hilos virtuales; el trabajo nativo ocupa su portador mientras dura.
+ * Seguro entre hilos: varias autenticaciones pueden usar la misma instancia. {@link #close()}
+ * espera a los predict que sigan en curso, así que después se pueden cerrar los modelos.
+ */
+public class ReconocedorConjunto implements AutoCloseable {
+
+    /**
+     * 🎯 Predicción de un modelo: {etiqueta, distancia} o null si no está entrenado
+     */
+    public interface Predictor {
+        double[] predecir(ModeloReconocedores.Tipo tipo, Mat rostro);
+    }
+
+    private static final long PLAZO_PREDICCION_MS = 2000;
+
+    private final Predictor predictor;
+    private final Map<ModeloReconocedores.Tipo, Double> pesos;
+    private final Map<ModeloReconocedores.Tipo, Double> umbrales;
+    private final double decisivo;
+    private final double confianzaMinima;
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Conjunto sobre los modelos persistidos con los pesos de sistema.properties (opencv.conjunto.*)
+     */
+    public ReconocedorConjunto(ModeloReconocedores modelo) {
+        this(modelo::predecir, leerPorTipo("peso", 0.5, 0.2, 0.3), leerPorTipo("umbral", 80.0, 4000.0, 1500.0),
+             GestorConfiguracion.obtenerDouble("opencv.conjunto.decisivo", 0.4),
+             GestorConfiguracion.obtenerDouble("opencv.conjunto.confianza_minima", 0.2));
+    }
+
+    /**
+     * Constructor completo
+     * @param pesos Peso de cada modelo en la fusión (0 = no se consulta)
+     * @param umbrales Distancia a partir de la cual el modelo no reconoce
+     * @param decisivo Fracción del umbral por debajo de la cual un modelo decide solo
+     * @param confianzaMinima Confianza fusionada (0-1) necesaria para reconocer
+     */
+    public ReconocedorConjunto(Predictor predictor, Map<ModeloReconocedores.Tipo, Double> pesos,
+                               Map<ModeloReconocedores.Tipo, Double> umbrales, double decisivo, double confianzaMinima) {
+        this.predictor = predictor;
+        this.pesos = new EnumMap<>(pesos);
+        this.umbrales = new EnumMap<>(umbrales);
+        this.decisivo = decisivo;
+        this.confianzaMinima = confianzaMinima;
+    }
+
+    private static Map<ModeloReconocedores.Tipo, Double> leerPorTipo(String clave, double lbph, double eigen, double fisher) {
+        Map<ModeloReconocedores.Tipo, Double> valores = new EnumMap<>(ModeloReconocedores.Tipo.class);
+        valores.put(ModeloReconocedores.Tipo.LBPH, GestorConfiguracion.obtenerDouble("opencv.conjunto." + clave + "_lbph", lbph));
+        valores.put(ModeloReconocedores.Tipo.EIGEN, GestorConfiguracion.obtenerDouble("opencv.conjunto." + clave + "_eigen", eigen));
+        valores.put(ModeloReconocedores.Tipo.FISHER, GestorConfiguracion.obtenerDouble("opencv.conjunto." + clave + "_fisher", fisher));
+        return valores;
+    }
+
+    /**
+     * 🔎 Reconocer un rostro preprocesado
+     * El rostro se copia una vez: las predicciones que terminen después de una salida
+     * anticipada no dependen del Mat del llamador, que puede liberarlo al volver
+     */
+    public Resultado reconocer(Mat rostro) {
+        long inicio = System.nanoTime();
+        List<ModeloReconocedores.Tipo> activos = new ArrayList<>();
+        for (ModeloReconocedores.Tipo tipo : ModeloReconocedores.Tipo.values()) {
+            if (pesos.getOrDefault(tipo, 0.0) > 0) {
+                activos.add(tipo);
+            }
+        }
+        if (activos.isEmpty()) {
+            return new Resultado(-1, 0.0, false, null, System.nanoTime() - inicio);
+        }
+
+        Mat copia = rostro.clone();
+        AtomicInteger pendientes = new AtomicInteger(activos.size());
+        BlockingQueue<Voto> votos = new LinkedBlockingQueue<>();
+        for (int i = 0; i < activos.size(); i++) {
+            try {
+                lanzar(activos.get(i), copia, pendientes, votos);
+            } catch (RejectedExecutionException e) {
+                // Conjunto cerrado: los no lanzados se descuentan y los ya lanzados liberan la copia al terminar
+                if (pendientes.addAndGet(i - activos.size()) == 0) {
+                    copia.release();
+                }
+                return new Resultado(-1, 0.0, false, null, System.nanoTime() - inicio);
+            }
+        }
+
+        Map<Integer, Double> acuerdoPorEtiqueta = new HashMap<>();
+        double pesoRespondido = 0;
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PLAZO_PREDICCION_MS);
+        for (int recibidos = 0; recibidos < activos.size(); recibidos++) {
+            Voto voto;
+            try {
+                voto = votos.poll(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (voto == null) {
+                break; // Plazo agotado: se decide con lo recibido
+            }
+            if (voto.prediccion == null) {
+                continue; // Modelo sin entrenar: no cuenta en la fusión
+            }
+            int etiqueta = (int) voto.prediccion[0];
+            double normalizada = voto.prediccion[1] / umbrales.getOrDefault(voto.tipo, 1.0);
+            if (normalizada <= decisivo) {
+                return new Resultado(etiqueta, (1.0 - normalizada) * 100.0, true, voto.tipo, System.nanoTime() - inicio);
+            }
+            double peso = pesos.get(voto.tipo);
+            pesoRespondido += peso;
+            acuerdoPorEtiqueta.merge(etiqueta, peso * Math.max(0.0, 1.0 - normalizada), Double::sum);
+        }
+
+        int mejorEtiqueta = -1;
+        double mejorAcuerdo = 0;
+        for (Map.Entry<Integer, Double> entrada : acuerdoPorEtiqueta.entrySet()) {
+            if (entrada.getValue() > mejorAcuerdo) {
+                mejorEtiqueta = entrada.getKey();
+                mejorAcuerdo = entrada.getValue();
+            }
+        }
+        double confianza = pesoRespondido > 0 ? mejorAcuerdo / pesoRespondido : 0.0;
+        return new Resultado(mejorEtiqueta, confianza * 100.0, mejorEtiqueta >= 0 && confianza >= confianzaMinima,
+                             null, System.nanoTime() - inicio);
+    }
+
+    /**
+     * Un predict en su hilo virtual; el último en terminar libera la copia del rostro
+     */
+    private void lanzar(ModeloReconocedores.Tipo tipo, Mat copia, AtomicInteger pendientes, BlockingQueue<Voto> votos) {
+        ejecutor.execute(() -> {
+            double[] prediccion = null;
+            try {
+                prediccion = predictor.predecir(tipo, copia);
+            } catch (Exception e) {
+                System.err.println("⚠️ Error en predicción " + tipo + ": " + e.getMessage());
+            } finally {
+                votos.add(new Voto(tipo, prediccion));
+                if (pendientes.decrementAndGet() == 0) {
+                    copia.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * 🧹 No aceptar más reconocimientos y esperar a los predict en curso
+     */
+    @Override
+    public void close() {
+        ejecutor.close();
+    }
+
+    private static final class Voto {
+        private final ModeloReconocedores.Tipo tipo;
+        private final double[] prediccion;
+
+        Voto(ModeloReconocedores.Tipo tipo, double[] prediccion) {
+            this.tipo = tipo;
+            this.prediccion = prediccion;
+        }
+    }
+
+    /**
+     * 📊 Resultado de la fusión
+     */
+    public static class Resultado {
+        private final int etiqueta;
+        private final double confianza;
+        private final boolean reconocido;
+        private final ModeloReconocedores.Tipo decisivo;
+        private final long nanos;
+
+        public Resultado(int etiqueta, double confianza, boolean reconocido,
+                         ModeloReconocedores.Tipo decisivo, long nanos) {
+            this.etiqueta = etiqueta;
+            this.confianza = confianza;
+            this.reconocido = reconocido;
+            this.decisivo = decisivo;
+            this.nanos = nanos;
+        }
+
+        public int getEtiqueta() { return etiqueta; }
+
+        /**
+         * Confianza fusionada en porcentaje (0-100)
+         */
+        public double getConfianza() { return confianza; }
+        public boolean esReconocido() { return reconocido; }
+
+        /**
+         * Modelo que decidió por salida anticipada (null = fusión de todos)
+         */
+        public ModeloReconocedores.Tipo getDecisivo() { return decisivo; }
+        public double getMilisegundos() { return nanos / 1e6; }
+
+        @Override
+        public String toString() {
+            return String.format("Conjunto{etiqueta=%d, confianza=%.2f%%, reconocido=%b, %s, %.2f ms}",
+                etiqueta, confianza, reconocido, decisivo != null ? "decidió " + decisivo : "fusión", getMilisegundos());
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.reconocimiento.facial.procesamiento;
+
+import org.bytedeco.opencv.opencv_objdetect.CascadeClassifier;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 🗂️ REGISTRO DE CLASIFICADORES HAAR
+ * CascadeClassifier no es seguro entre hilos, así que cada detección necesita una instancia
+ * propia. El registro resuelve cada cascada una sola vez desde el classpath
+ * ({@code /haarcascade/} o la raíz de recursos) y mantiene por cascada un grupo de instancias
+ * ya cargadas: quien detecta toma una libre, la usa y la devuelve. El grupo crece solo hasta
+ * la concurrencia real (hilos o cámaras detectando a la vez), sin candados durante
+ * detectMultiScale y sin volver a interpretar el XML en cada detector.
+ *
+ * Si el recurso está dentro de un JAR se extrae una vez a un archivo temporal, porque
+ * OpenCV solo carga cascadas desde una ruta.
+ */
+public final class RegistroClasificadores {
+
+    // ========== CASCADAS CONOCIDAS ==========
+    public static final String ROSTRO_FRONTAL = "haarcascade_frontalface_alt.xml";
+    public static final String ROSTRO_PERFIL = "haarcascade_profileface.xml";
+    public static final String OJOS = "haarcascade_eye.xml";
+    public static final String SONRISA = "haarcascade_smile.xml";
+
+    private static final String[] CARPETAS_RECURSOS = {"/haarcascade/", "/"};
+
+    private static volatile RegistroClasificadores instancia;
+
+    private final Map<String, Grupo> grupos = new ConcurrentHashMap<>();
+
+    private RegistroClasificadores() {
+    }
+
+    /**
+     * 🏗️ Obtener el registro único de la aplicación
+     */
+    public static RegistroClasificadores obtenerInstancia() {
+        if (instancia == null) {
+            synchronized (RegistroClasificadores.class) {
+                if (instancia == null) {
+                    instancia = new RegistroClasificadores();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * 📄 Archivo de la cascada, resuelto desde el classpath una sola vez
+     * @return Ruta lista para OpenCV o null si el recurso no existe
+     */
+    public Path obtenerArchivo(String nombre) {
+        return grupo(nombre).archivo;
+    }
+
+    /**
+     * ¿Se puede cargar la cascada? La primera consulta carga una instancia y la deja en el grupo
+     */
+    public boolean isDisponible(String nombre) {
+        Grupo grupo = grupo(nombre);
+        if (grupo.archivo == null || grupo.invalida) {
+            return false;
+        }
+        CascadeClassifier clasificador = grupo.tomar();
+        if (clasificador == null) {
+            return false;
+        }
+        grupo.devolver(clasificador);
+        return true;
+    }
+
+    /**
+     * 🔒 Usar una instancia exclusiva de la cascada y devolverla al grupo al terminar
+     * @param uso Trabajo con el clasificador; no debe conservar la referencia
+     * @throws IllegalStateException si la cascada no existe o no se pudo cargar
+     */
+    public <T> T usar(String nombre, Function<CascadeClassifier, T> uso) {
+        Grupo grupo = grupo(nombre);
+        CascadeClassifier clasificador = grupo.tomar();
+        if (clasificador == null) {
+            throw new IllegalStateException("Clasificador no disponible: " + nombre);
+        }
+        try {
+            return uso.apply(clasificador);
+        } finally {
+            grupo.devolver(clasificador);
+        }
+    }
+
+    /**
+     * Instancias cargadas de la cascada (libres más en uso)
+     */
+    public int getInstanciasCreadas(String nombre) {
+        Grupo grupo = grupos.get(nombre);
+        return grupo != null ? grupo.creadas.get() : 0;
+    }
+
+    /**
+     * 🧹 Cerrar las instancias libres (las que estén en uso se cierran al devolverse)
+     */
+    public void liberar() {
+        for (Grupo grupo : grupos.values()) {
+            grupo.cerrarLibres();
+        }
+    }
+
+    private Grupo grupo(String nombre) {
+        return grupos.computeIfAbsent(nombre, n -> new Grupo(n, resolverArchivo(n)));
+    }
+
+    /**
+     * Buscar la cascada en el classpath; si vive dentro de un JAR se copia a un temporal
+     */
+    private static Path resolverArchivo(String nombre) {
+        for (String carpeta : CARPETAS_RECURSOS) {
+            URL recurso = RegistroClasificadores.class.getResource(carpeta + nombre);
+            if (recurso == null) {
+                continue;
+            }
+            try {
+                if ("file".equals(recurso.getProtocol())) {
+                    return Paths.get(recurso.toURI());
+                }
+                Path temporal = Files.createTempFile("cascada-", "-" + nombre);
+                temporal.toFile().deleteOnExit();
+                try (InputStream entrada = recurso.openStream()) {
+                    Files.copy(entrada, temporal, StandardCopyOption.REPLACE_EXISTING);
+                }
+                return temporal;
+            } catch (IOException | URISyntaxException e) {
+                System.err.println("⚠️ No se pudo preparar la cascada " + nombre + ": " + e.getMessage());
+                return null;
+            }
+        }
+        System.err.println("⚠️ Cascada no encontrada en el classpath: " + nombre);
+        return null;
+    }
+
+    // ========== GRUPO DE INSTANCIAS ==========
+
+    /**
+     * Instancias libres de una cascada; se crean bajo demanda y se reutilizan
+     */
+    private static final class Grupo {
+        private final String nombre;
+        private final Path archivo;
+        private final ConcurrentLinkedDeque<CascadeClassifier> libres = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger creadas = new AtomicInteger();
+        private volatile boolean invalida;
+        private volatile boolean cerrado;
+
+        Grupo(String nombre, Path archivo) {
+            this.nombre = nombre;
+            this.archivo = archivo;
+        }
+
+        CascadeClassifier tomar() {
+            CascadeClassifier libre = libres.pollFirst();
+            if (libre != null) {
+                return libre;
+            }
+            if (archivo == null || invalida) {
+                return null;
+            }
+            CascadeClassifier nuevo = new CascadeClassifier(archivo.toString());
+            if (nuevo.empty()) {
+                nuevo.close();
+                invalida = true;
+                System.err.println("❌ No se pudo cargar el clasificador " + nombre + ": " + archivo);
+                return null;
+            }
+            int total = creadas.incrementAndGet();
+            if (total == 1) {
+                System.out.println("✅ Clasificador cargado: " + nombre);
+            }
+            cerrado = false;
+            return nuevo;
+        }
+
+        void devolver(CascadeClassifier clasificador) {
+            if (cerrado) {
+                clasificador.close();
+                creadas.decrementAndGet();
+            } else {
+                // Al frente: la instancia más reciente tiene sus datos aún en caché
+                libres.offerFirst(clasificador);
+            }
+        }
+
+        void cerrarLibres() {
+            cerrado = true;
+            CascadeClassifier libre;
+            while ((libre = libres.pollFirst()) != null) {
+                libre.close();
+                creadas.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.reconocimiento.facial.procesamiento;
+
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+import org.bytedeco.javacpp.DoublePointer;
+import org.bytedeco.opencv.opencv_core.*;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.bytedeco.opencv.global.opencv_core.*;
+import static org.bytedeco.opencv.global.opencv_imgproc.*;
+
+/**
+ * 🎯 SEGUIDOR DE ROSTROS ENTRE FOTOGRAMAS
+ * Tras una detección completa, sigue el rostro con matchTemplate dentro de una ventana
+ * alrededor de su última posición en lugar de volver a barrer todo el fotograma a todas
+ * las escalas. La cascada completa solo se ejecuta:
+ * <ul>
+ *   <li>cada {@code seguimiento.intervalo_redeteccion} fotogramas (corrige deriva y escala),</li>
+ *   <li>cuando la correlación cae por debajo de {@code seguimiento.umbral_correlacion},</li>
+ *   <li>o cuando no hay pista.</li>
+ * </ul>
+ * La identidad reconocida queda ligada a la pista: mientras la redetección encuentre el
+ * mismo rostro (solapamiento suficiente), no se vuelve a extraer su vector.
+ *
+ * La pista y la plantilla siguen a una sola cámara, así que cada flujo tiene su seguidor.
+ * {@link #actualizar} y las consultas se sincronizan sobre la instancia; la identificación
+ * de {@link #actualizarEIdentificar} corre fuera del candado (puede tardar) y la pista queda
+ * marcada como pendiente mientras dura, para que otro hilo no identifique el mismo rostro.
+ * La {@link Pista} devuelta se comparte con el seguidor: sus campos son volátiles y el
+ * rectángulo se sustituye, nunca se modifica, así que leerla desde otro hilo es seguro.
+ */
+public class SeguidorRostros {
+
+    private static final double SOLAPAMIENTO_MISMA_PISTA = 0.3;
+    private static final double CORRELACION_REFRESCO_PLANTILLA = 0.9;
+
+    private final Function<Mat, List<Rect>> detector;
+    private final int intervaloRedeteccion;
+    private final double umbralCorrelacion;
+    private final double margenBusqueda;
+
+    // ========== ESTADO (protegido por this) ==========
+    private Pista pista;
+    private Mat plantilla;
+    private int fotogramasDesdeDeteccion;
+    private int siguienteIdPista = 1;
+    private long detecciones;
+    private long seguimientos;
+
+    /**
+     * Seguidor con los valores de sistema.properties (seguimiento.*)
+     * @param detector Detección completa sobre un fotograma BGR (p. ej. ProcesadorOpenCV::detectarRostros)
+     */
+    public SeguidorRostros(Function<Mat, List<Rect>> detector) {
+        this(detector,
+             GestorConfiguracion.obtenerInt("seguimiento.intervalo_redeteccion", 15),
+             GestorConfiguracion.obtenerDouble("seguimiento.umbral_correlacion", 0.6),
+             GestorConfiguracion.obtenerDouble("seguimiento.margen_busqueda", 0.5));
+    }
+
+    /**
+     * Constructor completo
+     * @param intervaloRedeteccion Fotogramas seguidos entre detecciones completas
+     * @param umbralCorrelacion Correlación normalizada mínima (TM_CCOEFF_NORMED) para seguir
+     * @param margenBusqueda Ampliación de la ventana de búsqueda, en fracción del tamaño del rostro
+     */
+    public SeguidorRostros(Function<Mat, List<Rect>> detector, int intervaloRedeteccion,
+                           double umbralCorrelacion, double margenBusqueda) {
+        this.detector = detector;
+        this.intervaloRedeteccion = Math.max(1, intervaloRedeteccion);
+        this.umbralCorrelacion = umbralCorrelacion;
+        this.margenBusqueda = Math.max(0.1, margenBusqueda);
+    }
+
+    /**
+     * 🔄 Actualizar la pista con un fotograma nuevo
+     * @param fotograma Fotograma BGR, BGRA o gris (no se modifica)
+     * @return La pista actual o null si no hay rostro
+     */
+    public synchronized Pista actualizar(Mat fotograma) {
+        if (fotograma == null || fotograma.empty()) {
+            return pista;
+        }
+        if (pista != null && fotogramasDesdeDeteccion < intervaloRedeteccion && seguir(fotograma)) {
+            fotogramasDesdeDeteccion++;
+            seguimientos++;
+            return pista;
+        }
+        redetectar(fotograma);
+        return pista;
+    }
+
+    /**
+     * 🪪 Actualizar la pista y, si aún no tiene identidad, identificar su rostro una vez
+     * Si otro hilo ya está identificando la pista, este no repite la consulta
+     * @param identificador Recibe la ROI del rostro (vista del fotograma, válida solo durante
+     *                      la llamada) y devuelve el usuario
+     * @return La pista actual o null si no hay rostro
+     */
+    public Pista actualizarEIdentificar(Mat fotograma, Function<Mat, Optional<String>> identificador) {
+        Pista actual = actualizar(fotograma);
+        if (actual != null && !actual.isIdentificada() && actual.iniciarIdentificacion()) {
+            try (Mat rostro = new Mat(fotograma, actual.getRectangulo())) {
+                identificador.apply(rostro).ifPresent(actual::asignarIdentidad);
+            } finally {
+                actual.terminarIdentificacion();
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Olvidar la pista (cambio de usuario, cierre de sesión)
+     */
+    public synchronized void reiniciar() {
+        pista = null;
+        liberarPlantilla();
+    }
+
+    // ========== SEGUIMIENTO ==========
+
+    /**
+     * Buscar la plantilla en una ventana alrededor de la última posición
+     * @return false si la correlación no alcanza el umbral
+     */
+    private boolean seguir(Mat fotograma) {
+        Rect actual = pista.getRectangulo();
+        int margenX = (int) Math.round(actual.width() * margenBusqueda);
+        int margenY = (int) Math.round(actual.height() * margenBusqueda);
+        Rect ventana = recortar(actual.x() - margenX, actual.y() - margenY,
+                                actual.width() + 2 * margenX, actual.height() + 2 * margenY,
+                                fotograma.cols(), fotograma.rows());
+        if (ventana.width() < plantilla.cols() || ventana.height() < plantilla.rows()) {
+            ventana.close();
+            return false;
+        }
+
+        Mat zona;
+        try (Mat region = new Mat(fotograma, ventana)) {
+            zona = aGris(region);
+        }
+        Mat resultado = new Mat();
+        matchTemplate(zona, plantilla, resultado, TM_CCOEFF_NORMED);
+        try (DoublePointer minimo = new DoublePointer(1); DoublePointer maximo = new DoublePointer(1);
+             Point posicionMinima = new Point(); Point posicionMaxima = new Point()) {
+            minMaxLoc(resultado, minimo, maximo, posicionMinima, posicionMaxima, null);
+
+            double correlacion = maximo.get();
+            if (Double.isNaN(correlacion) || correlacion < umbralCorrelacion) {
+                return false;
+            }
+            Rect nuevo = new Rect(ventana.x() + posicionMaxima.x(), ventana.y() + posicionMaxima.y(),
+                                  plantilla.cols(), plantilla.rows());
+            pista.mover(nuevo, correlacion);
+
+            // Con buena correlación la plantilla se renueva para acompañar cambios lentos de aspecto
+            if (correlacion >= CORRELACION_REFRESCO_PLANTILLA) {
+                try (Rect zonaRecorte = new Rect(posicionMaxima.x(), posicionMaxima.y(), plantilla.cols(), plantilla.rows());
+                     Mat recorte = new Mat(zona, zonaRecorte)) {
+                    liberarPlantilla();
+                    plantilla = recorte.clone();
+                }
+            }
+            return true;
+        } finally {
+            ventana.close();
+            resultado.close();
+            zona.close();
+        }
+    }
+
+    /**
+     * Detección completa; conserva pista e identidad si el rostro es el mismo
+     */
+    private void redetectar(Mat fotograma) {
+        detecciones++;
+        fotogramasDesdeDeteccion = 0;
+        List<Rect> rostros = detector.apply(fotograma);
+        if (rostros == null || rostros.isEmpty()) {
+            reiniciar();
+            return;
+        }
+
+        Rect mayor = rostros.get(0);
+        for (Rect rostro : rostros) {
+            if (rostro.area() > mayor.area()) {
+                mayor = rostro;
+            }
+        }
+        // Copia propia: la pista no depende de los Rect que devolvió el detector
+        Rect rostro = recortar(mayor.x(), mayor.y(), mayor.width(), mayor.height(),
+                               fotograma.cols(), fotograma.rows());
+        if (rostro.width() <= 0 || rostro.height() <= 0) {
+            rostro.close();
+            reiniciar();
+            return;
+        }
+
+        if (pista != null && solapamiento(pista.getRectangulo(), rostro) >= SOLAPAMIENTO_MISMA_PISTA) {
+            pista.mover(rostro, 1.0);
+        } else {
+            pista = new Pista(siguienteIdPista++, rostro);
+        }
+        liberarPlantilla();
+        try (Mat region = new Mat(fotograma, rostro)) {
+            plantilla = aGris(region);
+        }
+    }
+
+    private static Mat aGris(Mat imagen) {
+        Mat gris = new Mat();
+        switch (imagen.channels()) {
+            case 1:
+                imagen.copyTo(gris);
+                break;
+            case 4:
+                cvtColor(imagen, gris, COLOR_BGRA2GRAY);
+                break;
+            default:
+                cvtColor(imagen, gris, COLOR_BGR2GRAY);
+        }
+        return gris;
+    }
+
+    private void liberarPlantilla() {
+        if (plantilla != null) {
+            plantilla.release();
+            plantilla = null;
+        }
+    }
+
+    private static Rect recortar(int x, int y, int ancho, int alto, int limiteAncho, int limiteAlto) {
+        int x1 = Math.max(0, x);
+        int y1 = Math.max(0, y);
+        int x2 = Math.min(limiteAncho, x + ancho);
+        int y2 = Math.min(limiteAlto, y + alto);
+        return new Rect(x1, y1, Math.max(0, x2 - x1), Math.max(0, y2 - y1));
+    }
+
+    /**
+     * Intersección sobre unión de dos rectángulos
+     */
+    static double solapamiento(Rect a, Rect b) {
+        int x1 = Math.max(a.x(), b.x());
+        int y1 = Math.max(a.y(), b.y());
+        int x2 = Math.min(a.x() + a.width(), b.x() + b.width());
+        int y2 = Math.min(a.y() + a.height(), b.y() + b.height());
+        double interseccion = Math.max(0, x2 - x1) * (double) Math.max(0, y2 - y1);
+        double union = a.area() + (double) b.area() - interseccion;
+        return union <= 0 ? 0.0 : interseccion / union;
+    }
+
+    // ========== CONSULTAS ==========
+
+    public synchronized Pista getPista() { return pista; }
+    public synchronized long getDetecciones() { return detecciones; }
+    public synchronized long getSeguimientos() { return seguimientos; }
+
+    /**
+     * 🧭 PISTA DE UN ROSTRO
+     * Posición actual, confianza del seguimiento e identidad asignada
+     */
+    public static class Pista {
+        private final int id;
+        private volatile Rect rectangulo;
+        private volatile double confianzaSeguimiento;
+        private volatile String identidad;
+        private volatile int fotogramas;
+        private final AtomicBoolean identificando = new AtomicBoolean();
+
+        Pista(int id, Rect rectangulo) {
+            this.id = id;
+            this.rectangulo = rectangulo;
+            this.confianzaSeguimiento = 1.0;
+            this.fotogramas = 1;
+        }
+
+        void mover(Rect nuevo, double confianza) {
+            this.rectangulo = nuevo;
+            this.confianzaSeguimiento = confianza;
+            this.fotogramas++;
+        }
+
+        public void asignarIdentidad(String usuario) { this.identidad = usuario; }
+
+        /**
+         * Marcar la pista como pendiente de identificación
+         * @return false si otro hilo ya la está identificando
+         */
+        boolean iniciarIdentificacion() { return identificando.compareAndSet(false, true); }
+        void terminarIdentificacion() { identificando.set(false); }
+
+        /**
+         * ¿Hay una identificación en curso para esta pista?
+         */
+        public boolean isPendiente() { return identificando.get(); }
+
+        public int getId() { return id; }
+        public Rect getRectangulo() { return rectangulo; }
+        public double getConfianzaSeguimiento() { return confianzaSeguimiento; }
+        public String getIdentidad() { return identidad; }
+        public boolean isIdentificada() { return identidad != null; }
+        public int getFotogramas() { return fotogramas; }
+
+        @Override
+        public String toString() {
+            return String.format("Pista[id=%d, pos=(%d,%d,%dx%d), confianza=%.2f, usuario=%s, fotogramas=%d]",
+                    id, rectangulo.x(), rectangulo.y(), rectangulo.width(), rectangulo.height(),
+                    confianzaSeguimiento, identidad != null ? identidad : "-", fotogramas);
+        }
+    }
+}
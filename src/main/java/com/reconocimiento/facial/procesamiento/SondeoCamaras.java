@@ -0,0 +1,292 @@
+package com.reconocimiento.facial.procesamiento;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 🔭 SONDEO PARALELO DE CÁMARAS
+ * Prueba a la vez los dispositivos candidatos con un plazo global; el primero que abre y
+ * entrega una imagen gana y los demás se cierran solos al terminar. Dentro de un mismo índice
+ * las combinaciones (backend, resolución) se prueban una tras otra en orden de preferencia:
+ * abrir dos veces el mismo dispositivo a la vez falla o lo deja ocupado según el driver.
+ * La configuración ganadora se guarda en un archivo pequeño y en el siguiente arranque se
+ * prueba primero y sola, así que en el caso habitual la cámara abre al primer intento.
+ *
+ * Las sondas corren en hilos de plataforma demonio: start() del grabber es nativo, no se
+ * puede interrumpir y no debe retener ni el cierre de la JVM ni los portadores de hilos virtuales.
+ *
+ * @param <T> Recurso abierto por la sonda (el grabber)
+ */
+public class SondeoCamaras<T extends AutoCloseable> {
+
+    /**
+     * 🧪 Abre una configuración y comprueba que entrega imagen
+     */
+    public interface Sonda<T> {
+        /**
+         * @return El recurso abierto y verificado
+         * @throws Exception si la configuración no funciona
+         */
+        T abrir(Configuracion configuracion) throws Exception;
+    }
+
+    private static final AtomicInteger CONTADOR_HILOS = new AtomicInteger();
+
+    private final Sonda<T> sonda;
+    private final Path archivoCache;
+    private final long plazoMillis;
+
+    /**
+     * @param archivoCache Archivo con la última configuración ganadora (null = sin caché)
+     * @param plazoMillis Plazo global del sondeo, incluido el intento de la caché
+     */
+    public SondeoCamaras(Sonda<T> sonda, Path archivoCache, long plazoMillis) {
+        this.sonda = sonda;
+        this.archivoCache = archivoCache;
+        this.plazoMillis = Math.max(1, plazoMillis);
+    }
+
+    /**
+     * 🏁 Abrir la primera configuración que funcione
+     * @param candidatas En orden de preferencia (los índices compiten; dentro de uno, el orden manda)
+     * @return El ganador o null si ninguna respondió dentro del plazo
+     */
+    public Resultado<T> sondear(List<Configuracion> candidatas) {
+        long inicio = System.nanoTime();
+        long limite = inicio + TimeUnit.MILLISECONDS.toNanos(plazoMillis);
+
+        Configuracion guardada = cargarCache();
+        if (guardada != null && !candidatas.contains(guardada)) {
+            // La configuración cambió (índice, resolución, sistema): la guardada ya no aplica
+            System.out.println("🗑️ La configuración guardada no está entre las candidatas: " + guardada);
+            borrarCache();
+            guardada = null;
+        }
+        if (guardada != null) {
+            System.out.println("💾 Probando configuración guardada: " + guardada);
+            // La guardada sola y con la mitad del plazo: si la cámara cambió, aún queda tiempo para el resto
+            Resultado<T> resultado = carrera(List.of(guardada), inicio + (limite - inicio) / 2, inicio);
+            if (resultado != null) {
+                return resultado;
+            }
+            System.out.println("⚠️ La configuración guardada ya no funciona, sondeando todas");
+        }
+
+        List<Configuracion> restantes = new ArrayList<>(candidatas);
+        restantes.remove(guardada);
+        Resultado<T> resultado = carrera(restantes, limite, inicio);
+        if (resultado != null) {
+            guardarCache(resultado.getConfiguracion());
+        }
+        return resultado;
+    }
+
+    /**
+     * Lanzar una sonda por índice de dispositivo y esperar al primer éxito o al plazo
+     * Cada sonda recorre las configuraciones de su índice en orden hasta que una abre
+     */
+    private Resultado<T> carrera(List<Configuracion> configuraciones, long limiteNanos, long inicioNanos) {
+        if (configuraciones.isEmpty()) {
+            return null;
+        }
+        Map<Integer, List<Configuracion>> porIndice = new LinkedHashMap<>();
+        for (Configuracion configuracion : configuraciones) {
+            porIndice.computeIfAbsent(configuracion.getIndice(), i -> new ArrayList<>()).add(configuracion);
+        }
+
+        AtomicReference<Resultado<T>> ganador = new AtomicReference<>();
+        AtomicInteger pendientes = new AtomicInteger(porIndice.size());
+        CountDownLatch decidido = new CountDownLatch(1);
+        // Marca de carrera cerrada: tras el plazo las sondas tardías cierran lo que abrieron
+        Resultado<T> cierre = new Resultado<>(null, null, -1);
+
+        ExecutorService hilos = Executors.newThreadPerTaskExecutor(
+            Thread.ofPlatform().daemon().name("sondeo-camara-", CONTADOR_HILOS.getAndAdd(porIndice.size())).factory());
+        for (List<Configuracion> delIndice : porIndice.values()) {
+            hilos.execute(() -> {
+                try {
+                    for (Configuracion configuracion : delIndice) {
+                        // Otro índice ya ganó o venció el plazo: no se abre nada más
+                        if (ganador.get() != null || System.nanoTime() - limiteNanos >= 0) {
+                            return;
+                        }
+                        try {
+                            T abierto = sonda.abrir(configuracion);
+                            Resultado<T> resultado = new Resultado<>(abierto, configuracion,
+                                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioNanos));
+                            if (ganador.compareAndSet(null, resultado)) {
+                                decidido.countDown();
+                            } else {
+                                cerrar(abierto);
+                            }
+                            return;
+                        } catch (Exception e) {
+                            System.out.println("❌ " + configuracion + ": " + e.getMessage());
+                        }
+                    }
+                } finally {
+                    if (pendientes.decrementAndGet() == 0) {
+                        decidido.countDown();
+                    }
+                }
+            });
+        }
+        hilos.shutdown();
+
+        try {
+            decidido.await(Math.max(0, limiteNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Un éxito justo en el límite pudo ganar después del await: se conserva
+        Resultado<T> resultado = ganador.compareAndSet(null, cierre) ? null : ganador.get();
+        if (resultado != null) {
+            System.out.println("✅ Cámara abierta con " + resultado.getConfiguracion() + " en " +
+                               resultado.getMilisegundos() + " ms");
+        } else {
+            System.out.println("⏰ Ninguna configuración respondió a tiempo (" + configuraciones.size() + " probadas)");
+        }
+        return resultado;
+    }
+
+    private void cerrar(T abierto) {
+        try {
+            abierto.close();
+        } catch (Exception e) {
+            System.err.println("⚠️ Error cerrando sonda perdedora: " + e.getMessage());
+        }
+    }
+
+    // ========== CACHÉ DE LA CONFIGURACIÓN GANADORA ==========
+
+    private Configuracion cargarCache() {
+        if (archivoCache == null || !Files.isRegularFile(archivoCache)) {
+            return null;
+        }
+        Properties propiedades = new Properties();
+        try (InputStream entrada = Files.newInputStream(archivoCache)) {
+            propiedades.load(entrada);
+            String formato = propiedades.getProperty("formato", "");
+            return new Configuracion(formato.isEmpty() ? null : formato,
+                Integer.parseInt(propiedades.getProperty("indice")),
+                Integer.parseInt(propiedades.getProperty("ancho")),
+                Integer.parseInt(propiedades.getProperty("alto")));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ Caché de cámara ilegible, se ignora: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void borrarCache() {
+        try {
+            Files.deleteIfExists(archivoCache);
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo borrar la caché de cámara: " + e.getMessage());
+        }
+    }
+
+    private void guardarCache(Configuracion configuracion) {
+        if (archivoCache == null) {
+            return;
+        }
+        Properties propiedades = new Properties();
+        propiedades.setProperty("formato", configuracion.getFormato() != null ? configuracion.getFormato() : "");
+        propiedades.setProperty("indice", String.valueOf(configuracion.getIndice()));
+        propiedades.setProperty("ancho", String.valueOf(configuracion.getAncho()));
+        propiedades.setProperty("alto", String.valueOf(configuracion.getAlto()));
+        try {
+            Path directorio = archivoCache.toAbsolutePath().getParent();
+            if (directorio != null) {
+                Files.createDirectories(directorio);
+            }
+            Path temporal = archivoCache.resolveSibling(archivoCache.getFileName() + ".tmp");
+            try (OutputStream salida = Files.newOutputStream(temporal)) {
+                propiedades.store(salida, "Ultima configuracion de camara que funciono");
+            }
+            Files.move(temporal, archivoCache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo guardar la caché de cámara: " + e.getMessage());
+        }
+    }
+
+    // ========== TIPOS ==========
+
+    /**
+     * 📋 Combinación a probar: backend (null = por defecto), índice y resolución
+     */
+    public static final class Configuracion {
+        private final String formato;
+        private final int indice;
+        private final int ancho;
+        private final int alto;
+
+        public Configuracion(String formato, int indice, int ancho, int alto) {
+            this.formato = formato;
+            this.indice = indice;
+            this.ancho = ancho;
+            this.alto = alto;
+        }
+
+        public String getFormato() { return formato; }
+        public int getIndice() { return indice; }
+        public int getAncho() { return ancho; }
+        public int getAlto() { return alto; }
+
+        @Override
+        public boolean equals(Object otro) {
+            if (this == otro) return true;
+            if (!(otro instanceof Configuracion)) return false;
+            Configuracion c = (Configuracion) otro;
+            return indice == c.indice && ancho == c.ancho && alto == c.alto && Objects.equals(formato, c.formato);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(formato, indice, ancho, alto);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s índice %d %dx%d", formato != null ? formato : "por defecto", indice, ancho, alto);
+        }
+    }
+
+    /**
+     * 🏆 Recurso abierto por la sonda ganadora
+     */
+    public static final class Resultado<T> {
+        private final T abierto;
+        private final Configuracion configuracion;
+        private final long milisegundos;
+
+        Resultado(T abierto, Configuracion configuracion, long milisegundos) {
+            this.abierto = abierto;
+            this.configuracion = configuracion;
+            this.milisegundos = milisegundos;
+        }
+
+        public T getAbierto() { return abierto; }
+        public Configuracion getConfiguracion() { return configuracion; }
+
+        /**
+         * Tiempo desde el inicio del sondeo hasta que esta sonda abrió
+         */
+        public long getMilisegundos() { return milisegundos; }
+    }
+}
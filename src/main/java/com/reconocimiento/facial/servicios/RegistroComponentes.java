@@ -0,0 +1,173 @@
+package com.reconocimiento.facial.servicios;
+
+import com.reconocimiento.facial.dao.UsuarioDAO;
+import com.reconocimiento.facial.neural.RedNeuronalReconocimiento;
+import com.reconocimiento.facial.procesamiento.IntegradorOpenCV;
+import com.reconocimiento.facial.procesamiento.ManejadorCamara;
+import com.reconocimiento.facial.procesamiento.ProcesadorOpenCV;
+import com.reconocimiento.facial.procesamiento.RegistroClasificadores;
+import com.reconocimiento.facial.seguridad.CifradorContrasenas;
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+
+import java.util.function.Supplier;
+
+/**
+ * 🗄️ REGISTRO DE COMPONENTES DE LA APLICACIÓN
+ * Construye una sola vez, de forma perezosa y segura entre hilos, los componentes
+ * pesados (red neuronal, procesador OpenCV, cámara, servicio de usuarios) y entrega
+ * las mismas instancias a todos los formularios. Así el login busca en la misma
+ * galería en la que escribió el registro y la cámara física se abre una sola vez.
+ */
+public final class RegistroComponentes {
+
+    private static volatile RegistroComponentes instancia;
+
+    // ========== COMPONENTES COMPARTIDOS ==========
+    private volatile RedNeuronalReconocimiento redNeuronal;
+    private volatile ProcesadorOpenCV procesadorOpenCV;
+    private volatile ManejadorCamara manejadorCamara;
+    private volatile IntegradorOpenCV integradorOpenCV;
+    private volatile ServicioUsuarioMejorado servicioUsuario;
+
+    // Un candado por componente: construir OpenCV no bloquea a quien pide la red neuronal
+    private final Object bloqueoRed = new Object();
+    private final Object bloqueoProcesador = new Object();
+    private final Object bloqueoCamara = new Object();
+    private final Object bloqueoIntegrador = new Object();
+    private final Object bloqueoServicio = new Object();
+
+    private RegistroComponentes() {
+    }
+
+    /**
+     * 🏗️ Obtener el registro único de la aplicación
+     */
+    public static RegistroComponentes obtenerInstancia() {
+        if (instancia == null) {
+            synchronized (RegistroComponentes.class) {
+                if (instancia == null) {
+                    instancia = new RegistroComponentes();
+                }
+            }
+        }
+        return instancia;
+    }
+
+    /**
+     * 🧠 Red neuronal compartida
+     */
+    public RedNeuronalReconocimiento obtenerRedNeuronal() {
+        RedNeuronalReconocimiento actual = redNeuronal;
+        if (actual == null) {
+            synchronized (bloqueoRed) {
+                if (redNeuronal == null) {
+                    redNeuronal = construir("RedNeuronalReconocimiento", RedNeuronalReconocimiento::new);
+                }
+                actual = redNeuronal;
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * 🤖 Procesador OpenCV compartido (clasificadores y reconocedores)
+     */
+    public ProcesadorOpenCV obtenerProcesadorOpenCV() {
+        ProcesadorOpenCV actual = procesadorOpenCV;
+        if (actual == null) {
+            synchronized (bloqueoProcesador) {
+                if (procesadorOpenCV == null) {
+                    procesadorOpenCV = construir("ProcesadorOpenCV", ProcesadorOpenCV::new);
+                }
+                actual = procesadorOpenCV;
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * 📷 Manejador de cámara compartido
+     */
+    public ManejadorCamara obtenerManejadorCamara() {
+        ManejadorCamara actual = manejadorCamara;
+        if (actual == null) {
+            synchronized (bloqueoCamara) {
+                if (manejadorCamara == null) {
+                    manejadorCamara = construir("ManejadorCamara", ManejadorCamara::new);
+                }
+                actual = manejadorCamara;
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * 🔗 Integrador OpenCV construido sobre el procesador y la cámara compartidos
+     */
+    public IntegradorOpenCV obtenerIntegradorOpenCV() {
+        IntegradorOpenCV actual = integradorOpenCV;
+        if (actual == null) {
+            synchronized (bloqueoIntegrador) {
+                if (integradorOpenCV == null) {
+                    integradorOpenCV = construir("IntegradorOpenCV",
+                        () -> new IntegradorOpenCV(obtenerProcesadorOpenCV(), obtenerManejadorCamara()));
+                }
+                actual = integradorOpenCV;
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * 🛡️ Servicio de usuarios construido sobre los componentes compartidos
+     */
+    public ServicioUsuarioMejorado obtenerServicioUsuario() {
+        ServicioUsuarioMejorado actual = servicioUsuario;
+        if (actual == null) {
+            synchronized (bloqueoServicio) {
+                if (servicioUsuario == null) {
+                    ServicioUsuarioMejorado nuevo = construir("ServicioUsuarioMejorado",
+                        () -> new ServicioUsuarioMejorado(new UsuarioDAO(), new CifradorContrasenas(),
+                                                          obtenerRedNeuronal(), obtenerIntegradorOpenCV()));
+                    if (GestorConfiguracion.obtenerBoolean("galeria.precarga_bd", false)) {
+                        construir("Galería desde base de datos", nuevo::precargarGaleria);
+                    }
+                    servicioUsuario = nuevo;
+                }
+                actual = servicioUsuario;
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * 🧹 Liberar los recursos nativos de los componentes ya construidos
+     */
+    public void liberarRecursos() {
+        if (integradorOpenCV != null) {
+            integradorOpenCV.liberarRecursos(); // Libera también procesador y cámara
+        } else {
+            if (procesadorOpenCV != null) {
+                procesadorOpenCV.liberarRecursos();
+            }
+            if (manejadorCamara != null) {
+                manejadorCamara.liberarCamara();
+            }
+        }
+        if (redNeuronal != null) {
+            redNeuronal.cerrarGaleria();
+        }
+        RegistroClasificadores.obtenerInstancia().liberar();
+        System.out.println("🧹 Componentes compartidos liberados");
+    }
+
+    /**
+     * ⏱️ Construir un componente registrando el tiempo empleado
+     */
+    private static <T> T construir(String nombre, Supplier<T> fabrica) {
+        long inicio = System.currentTimeMillis();
+        T componente = fabrica.get();
+        System.out.println("🗄️ " + nombre + " construido en " + (System.currentTimeMillis() - inicio) + " ms");
+        return componente;
+    }
+}
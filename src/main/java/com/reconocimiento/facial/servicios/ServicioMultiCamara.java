@@ -0,0 +1,331 @@
+package com.reconocimiento.facial.servicios;
+
+import com.reconocimiento.facial.modelos.Usuario;
+import com.reconocimiento.facial.neural.RedNeuronalReconocimiento;
+import com.reconocimiento.facial.procesamiento.FlujoDeteccion;
+import com.reconocimiento.facial.procesamiento.FotogramaCapturado;
+import com.reconocimiento.facial.procesamiento.FuenteFotogramas;
+import com.reconocimiento.facial.procesamiento.ManejadorCamara;
+import com.reconocimiento.facial.procesamiento.SeguidorRostros;
+import com.reconocimiento.facial.utilidades.GestorConfiguracion;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 🚪 SERVICIO DE RECONOCIMIENTO MULTICÁMARA
+ * Atiende varias entradas desde una sola JVM: cada fuente tiene su {@link ManejadorCamara}
+ * (hilo de captura propio) y un canal de detección → seguimiento → reconocimiento que
+ * corre en un hilo virtual. Los canales comparten la galería neuronal y el registro de
+ * clasificadores; lo que depende del flujo (puerta de cambios, región de búsqueda, pista)
+ * es propio de cada canal y se libera al detener el servicio.
+ *
+ * Cada canal procesa siempre el fotograma más reciente de su cámara, así que un canal
+ * lento descarta fotogramas en lugar de acumular retraso ni frenar a los demás. El trabajo
+ * nativo de OpenCV ocupa el hilo portador mientras dura, de modo que la concurrencia real
+ * queda acotada por los núcleos disponibles.
+ *
+ * Configuración: multicamara.fuentes (especificaciones separadas por comas, p. ej.
+ * {@code dispositivo:0,dispositivo:1,video:entrada_norte.mp4}).
+ * Uso: ServicioMultiCamara [segundos_entre_informes]
+ */
+public class ServicioMultiCamara implements AutoCloseable {
+
+    private static final long PLAZO_FOTOGRAMA_MS = 500;
+    private static final long PLAZO_DETENCION_MS = 2000;
+    private static final double ALFA_LATENCIA = 0.1;
+    private static final int SEGUNDOS_INFORME_POR_DEFECTO = 10;
+
+    /**
+     * 🔔 Aviso de un usuario reconocido en una cámara
+     */
+    public interface OyenteReconocimiento {
+        void usuarioReconocido(String camara, Usuario usuario, SeguidorRostros.Pista pista);
+    }
+
+    private final List<Canal> canales = new ArrayList<>();
+    private final Function<BufferedImage, Optional<Usuario>> reconocedor;
+    private volatile OyenteReconocimiento oyente;
+    private volatile boolean activo;
+
+    /**
+     * ▶️ Servicio de puerta: galería persistida, cámaras de multicamara.fuentes e informe periódico
+     * hasta que se detiene la JVM
+     */
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("===========================================");
+        System.out.println("🚪 SERVICIO DE RECONOCIMIENTO MULTICÁMARA");
+        System.out.println("===========================================");
+
+        int segundosInforme = args.length >= 1 ? Integer.parseInt(args[0]) : SEGUNDOS_INFORME_POR_DEFECTO;
+        ServicioMultiCamara servicio;
+        try {
+            servicio = desdeConfiguracion(new RedNeuronalReconocimiento());
+        } catch (IllegalArgumentException e) {
+            System.err.println("❌ " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (servicio.getCanales().isEmpty()) {
+            System.err.println("❌ Sin cámaras: configure multicamara.fuentes en sistema.properties");
+            System.exit(1);
+        }
+
+        servicio.setOyente((camara, usuario, pista) ->
+            System.out.println("✅ " + camara + ": " + usuario.getNombreUsuario()));
+        Runtime.getRuntime().addShutdownHook(new Thread(servicio::close, "multicamara-cierre"));
+        servicio.iniciar();
+        while (servicio.isActivo()) {
+            Thread.sleep(TimeUnit.SECONDS.toMillis(Math.max(1, segundosInforme)));
+            System.out.print(servicio.obtenerEstadisticas());
+        }
+    }
+
+    /**
+     * Servicio sobre las fuentes de multicamara.fuentes con la galería indicada
+     */
+    public static ServicioMultiCamara desdeConfiguracion(RedNeuronalReconocimiento redNeuronal) {
+        List<FuenteFotogramas> fuentes = new ArrayList<>();
+        for (String especificacion : GestorConfiguracion.obtenerString("multicamara.fuentes", "").split(",")) {
+            if (especificacion.isBlank()) {
+                continue;
+            }
+            FuenteFotogramas fuente = FuenteFotogramas.desdeEspecificacion(especificacion,
+                GestorConfiguracion.obtenerDouble("camara.fuente_fps", 30.0),
+                GestorConfiguracion.obtenerBoolean("camara.fuente_bucle", true));
+            if (fuente == null) {
+                throw new IllegalArgumentException("En multicámara cada entrada indica su dispositivo (dispositivo:N)");
+            }
+            fuentes.add(fuente);
+        }
+        return new ServicioMultiCamara(fuentes, redNeuronal);
+    }
+
+    /**
+     * Servicio con un {@link FlujoDeteccion} por canal y reconocimiento en la galería compartida
+     */
+    public ServicioMultiCamara(List<FuenteFotogramas> fuentes, RedNeuronalReconocimiento redNeuronal) {
+        this(fuentes, FlujoDeteccion::new, redNeuronal::reconocerUsuario);
+    }
+
+    /**
+     * Constructor completo
+     * @param fabricaDetectores Crea el detector de cada canal (uno por flujo: guarda historial).
+     *                          Si es AutoCloseable se cierra al detener el servicio
+     * @param reconocedor Identifica un recorte de rostro; compartido por todos los canales
+     */
+    public ServicioMultiCamara(List<FuenteFotogramas> fuentes,
+                               Supplier<? extends Function<Mat, List<Rect>>> fabricaDetectores,
+                               Function<BufferedImage, Optional<Usuario>> reconocedor) {
+        this.reconocedor = reconocedor;
+        for (int i = 0; i < fuentes.size(); i++) {
+            FuenteFotogramas fuente = fuentes.get(i);
+            String nombre = "cámara " + (i + 1) + " (" + fuente.getDescripcion() + ")";
+            canales.add(new Canal(nombre, new ManejadorCamara(fuente), fabricaDetectores.get()));
+        }
+    }
+
+    public void setOyente(OyenteReconocimiento oyente) {
+        this.oyente = oyente;
+    }
+
+    /**
+     * ▶️ Abrir todas las cámaras y arrancar un hilo virtual por canal
+     * Las cámaras se abren en paralelo: una entrada lenta no retrasa a las demás
+     */
+    public synchronized void iniciar() {
+        if (activo) {
+            return;
+        }
+        activo = true;
+        for (Canal canal : canales) {
+            canal.hilo = Thread.ofVirtual().name("multicamara-" + canal.nombre).start(canal::ejecutar);
+        }
+        System.out.println("🚪 Servicio multicámara iniciado con " + canales.size() + " cámaras");
+    }
+
+    /**
+     * ⏹️ Detener los canales y liberar las cámaras y el estado de cada flujo
+     */
+    public synchronized void detener() {
+        activo = false;
+        for (Canal canal : canales) {
+            if (canal.hilo != null) {
+                try {
+                    canal.hilo.join(PLAZO_DETENCION_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                canal.hilo = null;
+            }
+            canal.camara.liberarCamara();
+            canal.liberarDetector();
+        }
+    }
+
+    @Override
+    public void close() {
+        detener();
+    }
+
+    public List<Canal> getCanales() {
+        return Collections.unmodifiableList(canales);
+    }
+
+    public boolean isActivo() {
+        return activo;
+    }
+
+    /**
+     * 📊 Rendimiento por cámara
+     */
+    public String obtenerEstadisticas() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("🚪 SERVICIO MULTICÁMARA\n");
+        for (Canal canal : canales) {
+            sb.append(String.format("   %-30s %6.1f fps | latencia %.1f ms (máx %.1f) | procesados %d | omitidos %d | " +
+                                    "identificaciones %d | reconocidos %d%n",
+                canal.nombre, canal.getFps(), canal.getLatenciaMediaMillis(), canal.getLatenciaMaximaMillis(),
+                canal.getProcesados(), canal.getOmitidos(), canal.getIdentificaciones(), canal.getReconocidos()));
+        }
+        return sb.toString();
+    }
+
+    // ========== CANAL POR CÁMARA ==========
+
+    /**
+     * 📹 Cámara, detector, seguidor de rostros y contadores de una entrada
+     */
+    public final class Canal {
+        private final String nombre;
+        private final ManejadorCamara camara;
+        private final Function<Mat, List<Rect>> detector;
+        private final SeguidorRostros seguidor;
+        private volatile Thread hilo;
+
+        private final LongAdder procesados = new LongAdder();
+        private final LongAdder omitidos = new LongAdder();
+        private final LongAdder identificaciones = new LongAdder();
+        private final LongAdder reconocidos = new LongAdder();
+        private volatile double latenciaMediaNanos;
+        private volatile long latenciaMaximaNanos;
+        private volatile long inicioNanos;
+
+        private Canal(String nombre, ManejadorCamara camara, Function<Mat, List<Rect>> detector) {
+            this.nombre = nombre;
+            this.camara = camara;
+            this.detector = detector;
+            this.seguidor = new SeguidorRostros(detector);
+        }
+
+        private void ejecutar() {
+            if (!camara.inicializarCamara()) {
+                System.err.println("❌ No se pudo abrir " + nombre);
+                return;
+            }
+            inicioNanos = System.nanoTime();
+            long ultimaSecuencia = 0;
+            while (activo) {
+                try (FotogramaCapturado fotograma = camara.esperarFotogramaPosterior(ultimaSecuencia, PLAZO_FOTOGRAMA_MS)) {
+                    if (fotograma == null) {
+                        if (camara.isFuenteAgotada()) {
+                            System.out.println("⏹️ " + nombre + ": fuente agotada");
+                            return;
+                        }
+                        continue;
+                    }
+                    if (ultimaSecuencia > 0) {
+                        omitidos.add(fotograma.getSecuencia() - ultimaSecuencia - 1);
+                    }
+                    ultimaSecuencia = fotograma.getSecuencia();
+
+                    try {
+                        procesar(fotograma);
+                    } catch (Exception e) {
+                        System.err.println("❌ Error en " + nombre + ": " + e.getMessage());
+                    }
+                    registrarLatencia(System.nanoTime() - fotograma.getInstanteNanos());
+                }
+            }
+        }
+
+        /**
+         * Seguir el rostro y, solo si la pista no tiene identidad, consultar la galería
+         */
+        private void procesar(FotogramaCapturado fotograma) {
+            seguidor.actualizarEIdentificar(fotograma.getMat(), rostro -> {
+                identificaciones.increment();
+                Optional<Usuario> usuario = reconocedor.apply(FotogramaCapturado.convertirAImagen(rostro));
+                usuario.ifPresent(this::notificar);
+                return usuario.map(Usuario::getNombreUsuario);
+            });
+            procesados.increment();
+        }
+
+        /**
+         * Cerrar el estado del flujo (puerta de cambios, planificador) una vez parado el hilo
+         */
+        private void liberarDetector() {
+            if (detector instanceof AutoCloseable cerrable) {
+                try {
+                    cerrable.close();
+                } catch (Exception e) {
+                    System.err.println("⚠️ Error liberando el detector de " + nombre + ": " + e.getMessage());
+                }
+            }
+        }
+
+        private void notificar(Usuario usuario) {
+            reconocidos.increment();
+            OyenteReconocimiento actual = oyente;
+            if (actual != null) {
+                actual.usuarioReconocido(nombre, usuario, seguidor.getPista());
+            }
+        }
+
+        // Un solo escritor por canal: basta con volatile
+        private void registrarLatencia(long nanos) {
+            latenciaMediaNanos = latenciaMediaNanos == 0 ? nanos
+                : latenciaMediaNanos + ALFA_LATENCIA * (nanos - latenciaMediaNanos);
+            if (nanos > latenciaMaximaNanos) {
+                latenciaMaximaNanos = nanos;
+            }
+        }
+
+        public String getNombre() { return nombre; }
+        public ManejadorCamara getCamara() { return camara; }
+        public long getProcesados() { return procesados.sum(); }
+
+        /**
+         * Fotogramas que la cámara publicó mientras el canal estaba ocupado
+         */
+        public long getOmitidos() { return omitidos.sum(); }
+
+        /**
+         * Consultas a la galería (una por pista nueva, no por fotograma)
+         */
+        public long getIdentificaciones() { return identificaciones.sum(); }
+        public long getReconocidos() { return reconocidos.sum(); }
+
+        /**
+         * Latencia media captura → resultado (media móvil exponencial)
+         */
+        public double getLatenciaMediaMillis() { return latenciaMediaNanos / 1e6; }
+        public double getLatenciaMaximaMillis() { return latenciaMaximaNanos / 1e6; }
+
+        public double getFps() {
+            long inicio = inicioNanos;
+            double segundos = inicio == 0 ? 0 : (System.nanoTime() - inicio) / (double) TimeUnit.SECONDS.toNanos(1);
+            return segundos > 0 ? getProcesados() / segundos : 0.0;
+        }
+    }
+}
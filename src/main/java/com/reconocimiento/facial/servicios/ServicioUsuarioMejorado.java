@@ -1,7 +1,9 @@
 package com.reconocimiento.facial.servicios;
 
+import com.reconocimiento.facial.dao.CaracteristicaFacialDAO;
 import com.reconocimiento.facial.dao.UsuarioDAO;
 import com.reconocimiento.facial.dto.UsuarioDTO;
+import com.reconocimiento.facial.modelos.CaracteristicaFacial;
 import com.reconocimiento.facial.modelos.Usuario;
 import com.reconocimiento.facial.modelos.IntentoAcceso;
 import com.reconocimiento.facial.seguridad.CifradorContrasenas;
@@ -24,6 +26,7 @@ public class ServicioUsuarioMejorado {
 
     // ========== COMPONENTES DEL SERVICIO ==========
     private final UsuarioDAO usuarioDAO;
+    private final CaracteristicaFacialDAO caracteristicaFacialDAO;
     private final CifradorContrasenas cifradorContrasenas;
     private final RedNeuronalReconocimiento redNeuronal;
     private final IntegradorOpenCV integradorOpenCV;
@@ -34,14 +37,24 @@ public class ServicioUsuarioMejorado {
     private static final double CONFIANZA_MINIMA_FACIAL = 0.85;
 
     /**
-     * Constructor principal
+     * Constructor principal (componentes propios)
+     * Los formularios usan {@link RegistroComponentes} para compartir una sola instancia
      */
     public ServicioUsuarioMejorado() {
+        this(new UsuarioDAO(), new CifradorContrasenas(), new RedNeuronalReconocimiento(), new IntegradorOpenCV());
+    }
+
+    /**
+     * Constructor con componentes inyectados
+     */
+    public ServicioUsuarioMejorado(UsuarioDAO usuarioDAO, CifradorContrasenas cifradorContrasenas,
+                                   RedNeuronalReconocimiento redNeuronal, IntegradorOpenCV integradorOpenCV) {
         try {
-            this.usuarioDAO = new UsuarioDAO();
-            this.cifradorContrasenas = new CifradorContrasenas();
-            this.redNeuronal = new RedNeuronalReconocimiento();
-            this.integradorOpenCV = new IntegradorOpenCV();
+            this.usuarioDAO = usuarioDAO;
+            this.caracteristicaFacialDAO = new CaracteristicaFacialDAO();
+            this.cifradorContrasenas = cifradorContrasenas;
+            this.redNeuronal = redNeuronal;
+            this.integradorOpenCV = integradorOpenCV;
             
             System.out.println("✅ ServicioUsuario inicializado correctamente");
             System.out.println("🔧 IntegradorOpenCV estado: " + 
@@ -198,6 +211,47 @@ public class ServicioUsuarioMejorado {
         }
     }
 
+    /**
+     * 🎬 Autenticación facial con la cámara en vivo (varios fotogramas, decisión secuencial)
+     * Requiere {@link #isAutenticacionEnVivoDisponible()}
+     */
+    public Optional<Usuario> autenticarConReconocimientoFacialEnVivo() {
+        try {
+            ResultadoAutenticacionFacial resultado = integradorOpenCV.autenticarUsuarioFacialEnVivo();
+            if (!resultado.isAutenticado()) {
+                System.out.println("❌ " + resultado.getMensaje());
+                registrarIntentoFallido(null, IntentoAcceso.TipoAcceso.FACIAL, resultado.getMensaje());
+                return Optional.empty();
+            }
+
+            Optional<Usuario> usuarioReconocido = usuarioDAO.buscarPorNombreUsuario(resultado.getNombreUsuario());
+            if (usuarioReconocido.isEmpty()) {
+                registrarIntentoFallido(resultado.getNombreUsuario(), IntentoAcceso.TipoAcceso.FACIAL,
+                                        "Usuario reconocido sin cuenta activa");
+                return Optional.empty();
+            }
+
+            Usuario usuario = usuarioReconocido.get();
+            System.out.println("🎯 Autenticación facial en vivo EXITOSA: " + usuario.getNombreUsuario()
+                             + " - " + resultado.getMensaje());
+            usuario.registrarAcceso();
+            registrarAccesoExitoso(usuario, IntentoAcceso.TipoAcceso.FACIAL, resultado.getConfianza() / 100.0);
+            return usuarioReconocido;
+
+        } catch (Exception e) {
+            System.err.println("❌ Error en autenticación facial en vivo: " + e.getMessage());
+            registrarIntentoFallido(null, IntentoAcceso.TipoAcceso.FACIAL, "Error del sistema: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * ¿Hay reconocedores OpenCV entrenados para autenticar con la cámara en vivo?
+     */
+    public boolean isAutenticacionEnVivoDisponible() {
+        return integradorOpenCV.isAutenticacionEnVivoDisponible();
+    }
+
     /**
      * 👥 Registrar nuevo usuario con datos biométricos
      */
@@ -263,6 +317,9 @@ public class ServicioUsuarioMejorado {
                 muestrasFaciales
             );
             System.out.println("🧠 Registro Red Neuronal: " + (registroRedNeuronalExitoso ? "✅ Exitoso" : "❌ Falló"));
+            if (registroRedNeuronalExitoso) {
+                guardarPerfilEnBaseDatos(usuarioGuardado);
+            }
             
             // Evaluación del resultado
             if (registroOpenCVExitoso || registroRedNeuronalExitoso) {
@@ -290,6 +347,39 @@ public class ServicioUsuarioMejorado {
         }
     }
 
+    /**
+     * 💾 Guardar el perfil de la red neuronal como BLOB float32 para precargas futuras
+     * Un fallo aquí no invalida el registro: el perfil sigue en la galería local
+     */
+    private void guardarPerfilEnBaseDatos(Usuario usuario) {
+        redNeuronal.obtenerPerfil(usuario.getNombreUsuario()).ifPresent(perfil -> {
+            try {
+                CaracteristicaFacial caracteristica = new CaracteristicaFacial(usuario.getIdUsuario(), perfil);
+                caracteristica.setMetodoExtraccion("RedNeuronal");
+                caracteristica.setVersionAlgoritmo(redNeuronal.getVersionModelo());
+                caracteristicaFacialDAO.guardarCaracteristica(caracteristica);
+            } catch (Exception e) {
+                System.err.println("⚠️ No se pudo guardar el perfil facial en base de datos: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 📥 Precargar en la red neuronal todos los perfiles de la base de datos
+     * Solo se cargan vectores generados por el modelo actual; los usuarios que la red ya
+     * restauró de su WAL se saltan (el WAL es igual o más reciente que la base de datos)
+     * @return Número de perfiles leídos
+     */
+    public int precargarGaleria() {
+        try {
+            return caracteristicaFacialDAO.precargarGaleria(redNeuronal.getVersionModelo(),
+                                                            redNeuronal::cargarPerfilSiAusente);
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo precargar la galería desde base de datos: " + e.getMessage());
+            return 0;
+        }
+    }
+
     /**
      * 🔍 Buscar usuario por nombre de usuario
      */
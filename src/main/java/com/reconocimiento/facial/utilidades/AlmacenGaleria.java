@@ -0,0 +1,408 @@
+package com.reconocimiento.facial.utilidades;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 💾 ALMACÉN PERSISTENTE DE GALERÍA
+ * Guarda perfiles (id, nombre, vector) con un registro de escritura anticipada (WAL)
+ * de altas, actualizaciones y bajas más instantáneas binarias compactas.
+ *
+ * - Cada operación se añade al WAL con su CRC32 y se sincroniza a disco antes de confirmar
+ * - Cada N operaciones se escribe una instantánea completa (archivo temporal + movimiento
+ *   atómico) y se reinicia el WAL
+ * - Al abrir se carga la instantánea y se reaplican las operaciones del WAL posteriores;
+ *   un registro final incompleto o corrupto (escritura interrumpida) se descarta
+ * - Una operación se confirma en cuanto su registro de WAL es durable: si la instantánea
+ *   falla solo se avisa, y una instantánea dañada se aparta y se recupera desde el WAL
+ */
+public class AlmacenGaleria implements Closeable {
+
+    // ========== FORMATO ==========
+    private static final int MAGICO_INSTANTANEA = 0x47414C53; // "GALS"
+    private static final int VERSION_FORMATO = 1;
+    private static final byte OPERACION_ALTA = 1;
+    private static final byte OPERACION_ACTUALIZACION = 2;
+    private static final byte OPERACION_BAJA = 3;
+
+    private static final String ARCHIVO_INSTANTANEA = "galeria.snapshot";
+    private static final String ARCHIVO_WAL = "galeria.wal";
+    private static final String SUFIJO_CORRUPTA = ".corrupta";
+    private static final int DIMENSION_MAXIMA = 1 << 16;
+
+    private final Path directorio;
+    private final int operacionesPorInstantanea;
+    private final Map<Integer, Entrada> entradas = new LinkedHashMap<>();
+
+    private FileChannel canalWal;
+    private long secuencia;               // Última operación aplicada
+    private int operacionesDesdeInstantanea;
+
+    /**
+     * Abrir (o crear) el almacén y recuperar su estado
+     * @param directorio Carpeta donde viven la instantánea y el WAL
+     * @param operacionesPorInstantanea Operaciones de WAL tras las que se compacta
+     */
+    public AlmacenGaleria(Path directorio, int operacionesPorInstantanea) throws IOException {
+        this.directorio = directorio;
+        this.operacionesPorInstantanea = Math.max(1, operacionesPorInstantanea);
+        Files.createDirectories(directorio);
+
+        long inicio = System.currentTimeMillis();
+        try {
+            cargarInstantanea();
+        } catch (IOException | RuntimeException e) {
+            apartarInstantaneaCorrupta(e);
+        }
+        int reaplicadas = reaplicarWal();
+        this.canalWal = FileChannel.open(directorio.resolve(ARCHIVO_WAL),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        System.out.println("💾 Galería recuperada de " + directorio + ": " + entradas.size() + " perfiles ("
+                         + reaplicadas + " operaciones de WAL) en " + (System.currentTimeMillis() - inicio) + " ms");
+    }
+
+    /**
+     * 📋 Perfiles recuperados/actuales en orden de alta
+     */
+    public synchronized Map<Integer, Entrada> obtenerEntradas() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(entradas));
+    }
+
+    /**
+     * ➕ Registrar el alta o actualización de un perfil
+     */
+    public synchronized void guardar(int id, String nombre, double[] vector) throws IOException {
+        byte operacion = entradas.containsKey(id) ? OPERACION_ACTUALIZACION : OPERACION_ALTA;
+        Entrada entrada = new Entrada(id, nombre, vector.clone());
+        escribirOperacion(operacion, entrada);
+        entradas.put(id, entrada);
+        compactarSiCorresponde();
+    }
+
+    /**
+     * ➖ Registrar la baja de un perfil
+     * @return true si el id existía
+     */
+    public synchronized boolean eliminar(int id) throws IOException {
+        Entrada entrada = entradas.get(id);
+        if (entrada == null) {
+            return false;
+        }
+        escribirOperacion(OPERACION_BAJA, new Entrada(id, entrada.nombre, new double[0]));
+        entradas.remove(id);
+        compactarSiCorresponde();
+        return true;
+    }
+
+    /**
+     * 📸 Escribir una instantánea completa y reiniciar el WAL
+     */
+    public synchronized void crearInstantanea() throws IOException {
+        Path destino = directorio.resolve(ARCHIVO_INSTANTANEA);
+        Path temporal = directorio.resolve(ARCHIVO_INSTANTANEA + ".tmp");
+
+        CRC32 crc = new CRC32();
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Channels.newOutputStream(canal), crc), 1 << 16));
+            salida.writeInt(MAGICO_INSTANTANEA);
+            salida.writeInt(VERSION_FORMATO);
+            salida.writeLong(secuencia);
+            salida.writeInt(entradas.size());
+            for (Entrada entrada : entradas.values()) {
+                escribirEntrada(salida, entrada);
+            }
+            salida.flush();
+            // El CRC cubre todo lo anterior y se escribe fuera del flujo verificado
+            ByteBuffer cola = ByteBuffer.allocate(Long.BYTES).putLong(crc.getValue());
+            cola.flip();
+            while (cola.hasRemaining()) {
+                canal.write(cola);
+            }
+            canal.force(true);
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        // Las operaciones del WAL ya están en la instantánea (su secuencia es <= la guardada)
+        canalWal.truncate(0);
+        canalWal.force(true);
+        operacionesDesdeInstantanea = 0;
+        System.out.println("📸 Instantánea de galería escrita: " + entradas.size() + " perfiles");
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (canalWal != null && canalWal.isOpen()) {
+            canalWal.close();
+        }
+    }
+
+    public synchronized int getCantidad() { return entradas.size(); }
+    public Path getDirectorio() { return directorio; }
+
+    /**
+     * 🔧 ESCRITURA DEL WAL
+     * Registro: int longitud | cuerpo | long crc32(cuerpo)
+     * Cuerpo: long secuencia | byte operación | entrada
+     */
+    private void escribirOperacion(byte operacion, Entrada entrada) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entrada.vector.length * Double.BYTES);
+        DataOutputStream cuerpo = new DataOutputStream(bytes);
+        cuerpo.writeLong(secuencia + 1);
+        cuerpo.writeByte(operacion);
+        escribirEntrada(cuerpo, entrada);
+        cuerpo.flush();
+        byte[] datos = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(datos);
+        ByteBuffer registro = ByteBuffer.allocate(Integer.BYTES + datos.length + Long.BYTES);
+        registro.putInt(datos.length).put(datos).putLong(crc.getValue());
+        registro.flip();
+        while (registro.hasRemaining()) {
+            canalWal.write(registro);
+        }
+        canalWal.force(false);
+
+        secuencia++;
+        operacionesDesdeInstantanea++;
+    }
+
+    /**
+     * Compactar tras N operaciones. La operación ya es durable en el WAL, así que un fallo
+     * aquí no la invalida: se avisa y se reintenta en la siguiente operación
+     */
+    private void compactarSiCorresponde() {
+        if (operacionesDesdeInstantanea >= operacionesPorInstantanea) {
+            try {
+                crearInstantanea();
+            } catch (IOException e) {
+                System.err.println("⚠️ No se pudo escribir la instantánea de galería (el WAL conserva los cambios): "
+                                 + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 🔧 RECUPERACIÓN
+     */
+
+    private void cargarInstantanea() throws IOException {
+        Path archivo = directorio.resolve(ARCHIVO_INSTANTANEA);
+        if (!Files.exists(archivo)) {
+            return;
+        }
+
+        long tamano = Files.size(archivo);
+        CRC32 crc = new CRC32();
+        try (InputStream flujo = Files.newInputStream(archivo)) {
+            // Solo los bytes previos a la cola de CRC pasan por el verificador
+            DataInputStream entrada = new DataInputStream(new BufferedInputStream(
+                new CheckedInputStream(new LimiteEntrada(flujo, tamano - Long.BYTES), crc), 1 << 16));
+            if (entrada.readInt() != MAGICO_INSTANTANEA) {
+                throw new IOException("Instantánea de galería inválida: " + archivo);
+            }
+            int version = entrada.readInt();
+            if (version != VERSION_FORMATO) {
+                throw new IOException("Versión de instantánea no soportada: " + version);
+            }
+            long secuenciaInstantanea = entrada.readLong();
+            int cantidad = entrada.readInt();
+            Map<Integer, Entrada> leidas = new LinkedHashMap<>();
+            for (int i = 0; i < cantidad; i++) {
+                Entrada leida = leerEntrada(entrada);
+                leidas.put(leida.id, leida);
+            }
+            long crcEsperado = new DataInputStream(flujo).readLong();
+            if (crc.getValue() != crcEsperado) {
+                throw new IOException("CRC de instantánea incorrecto en " + archivo);
+            }
+            entradas.putAll(leidas);
+            secuencia = secuenciaInstantanea;
+        }
+    }
+
+    /**
+     * Instantánea ilegible: se conserva aparte para recuperarla a mano y se parte de vacío,
+     * de modo que el WAL se reaplica completo y la persistencia sigue activa
+     */
+    private void apartarInstantaneaCorrupta(Exception causa) throws IOException {
+        Path archivo = directorio.resolve(ARCHIVO_INSTANTANEA);
+        Path apartada = directorio.resolve(ARCHIVO_INSTANTANEA + SUFIJO_CORRUPTA);
+        Files.move(archivo, apartada, StandardCopyOption.REPLACE_EXISTING);
+        entradas.clear();
+        secuencia = 0;
+        System.err.println("❌ Instantánea de galería dañada (" + causa.getMessage() + "); movida a " + apartada
+                         + ". Se recuperan solo los perfiles del WAL");
+    }
+
+    /**
+     * Reaplicar operaciones posteriores a la instantánea; trunca una cola dañada
+     * @return Número de operaciones aplicadas
+     */
+    private int reaplicarWal() throws IOException {
+        Path archivo = directorio.resolve(ARCHIVO_WAL);
+        if (!Files.exists(archivo)) {
+            return 0;
+        }
+
+        int aplicadas = 0;
+        long posicionValida = 0;
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(archivo), 1 << 16))) {
+            while (true) {
+                int longitud;
+                try {
+                    longitud = entrada.readInt();
+                } catch (EOFException fin) {
+                    break;
+                }
+                if (longitud <= 0 || longitud > (1 << 24)) {
+                    break;
+                }
+                byte[] datos = new byte[longitud];
+                long crcLeido;
+                try {
+                    entrada.readFully(datos);
+                    crcLeido = entrada.readLong();
+                } catch (EOFException incompleto) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(datos);
+                if (crc.getValue() != crcLeido) {
+                    break;
+                }
+
+                DataInputStream cuerpo = new DataInputStream(new ByteArrayInputStream(datos));
+                long secuenciaRegistro = cuerpo.readLong();
+                byte operacion = cuerpo.readByte();
+                Entrada leida = leerEntrada(cuerpo);
+                posicionValida += Integer.BYTES + longitud + Long.BYTES;
+
+                if (secuenciaRegistro <= secuencia) {
+                    continue; // Ya incluida en la instantánea
+                }
+                if (operacion == OPERACION_BAJA) {
+                    entradas.remove(leida.id);
+                } else {
+                    entradas.put(leida.id, leida);
+                }
+                secuencia = secuenciaRegistro;
+                operacionesDesdeInstantanea++;
+                aplicadas++;
+            }
+        }
+
+        if (posicionValida < Files.size(archivo)) {
+            System.err.println("⚠️ WAL de galería con cola incompleta; se descartan "
+                             + (Files.size(archivo) - posicionValida) + " bytes");
+            try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.WRITE)) {
+                canal.truncate(posicionValida);
+                canal.force(true);
+            }
+        }
+        return aplicadas;
+    }
+
+    private static void escribirEntrada(DataOutputStream salida, Entrada entrada) throws IOException {
+        salida.writeInt(entrada.id);
+        salida.writeUTF(entrada.nombre != null ? entrada.nombre : "");
+        salida.writeInt(entrada.vector.length);
+        for (double valor : entrada.vector) {
+            salida.writeDouble(valor);
+        }
+    }
+
+    private static Entrada leerEntrada(DataInputStream entrada) throws IOException {
+        int id = entrada.readInt();
+        String nombre = entrada.readUTF();
+        int dimension = entrada.readInt();
+        if (dimension < 0 || dimension > DIMENSION_MAXIMA) {
+            throw new IOException("Dimensión de perfil inválida: " + dimension);
+        }
+        double[] vector = new double[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = entrada.readDouble();
+        }
+        return new Entrada(id, nombre, vector);
+    }
+
+    /**
+     * Flujo que deja de leer tras un número fijo de bytes (excluye la cola de CRC)
+     */
+    private static final class LimiteEntrada extends FilterInputStream {
+        private long restantes;
+
+        LimiteEntrada(InputStream entrada, long limite) {
+            super(entrada);
+            this.restantes = limite;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (restantes <= 0) {
+                return -1;
+            }
+            int valor = super.read();
+            if (valor >= 0) {
+                restantes--;
+            }
+            return valor;
+        }
+
+        @Override
+        public int read(byte[] buffer, int desplazamiento, int longitud) throws IOException {
+            if (restantes <= 0) {
+                return -1;
+            }
+            int leidos = super.read(buffer, desplazamiento, (int) Math.min(longitud, restantes));
+            if (leidos > 0) {
+                restantes -= leidos;
+            }
+            return leidos;
+        }
+    }
+
+    /**
+     * 📋 Perfil almacenado
+     */
+    public static final class Entrada {
+        private final int id;
+        private final String nombre;
+        private final double[] vector;
+
+        public Entrada(int id, String nombre, double[] vector) {
+            this.id = id;
+            this.nombre = nombre;
+            this.vector = vector;
+        }
+
+        public int getId() { return id; }
+        public String getNombre() { return nombre; }
+        public double[] getVector() { return vector; }
+    }
+}
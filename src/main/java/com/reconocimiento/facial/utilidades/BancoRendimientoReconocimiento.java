@@ -0,0 +1,248 @@
+package com.reconocimiento.facial.utilidades;
+
+import com.reconocimiento.facial.neural.RedNeuronalReconocimiento;
+import com.reconocimiento.facial.procesamiento.BuffersNativos;
+import com.reconocimiento.facial.procesamiento.FlujoDeteccion;
+import com.reconocimiento.facial.procesamiento.FotogramaCapturado;
+import com.reconocimiento.facial.procesamiento.FuenteFotogramas;
+import com.reconocimiento.facial.procesamiento.IntegradorOpenCV;
+import com.reconocimiento.facial.procesamiento.ManejadorCamara;
+import com.reconocimiento.facial.procesamiento.PlanificadorFotogramas;
+import com.reconocimiento.facial.procesamiento.ProcesadorOpenCV;
+import com.reconocimiento.facial.procesamiento.SeguidorRostros;
+import org.bytedeco.opencv.opencv_core.Mat;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 📊 BANCO DE RENDIMIENTO DEL RECONOCIMIENTO
+ * Ejecuta la cadena completa (hilo de captura → planificador → detección OpenCV →
+ * autenticación → red neuronal) sobre una fuente reproducida, sin cámara ni interfaz gráfica.
+ * El planificador usa camara.fps y rendimiento.hilos_procesamiento de la configuración.
+ *
+ * Uso: BancoRendimientoReconocimiento &lt;fuente&gt; [segundos] [fps] [bucle]
+ *   fuente: video:ruta.mp4 | imagenes:directorio
+ *   fps: 0 = lo más rápido posible (mide el rendimiento máximo)
+ *
+ * La galería neuronal se crea solo en memoria con los primeros fotogramas, así el banco
+ * no modifica los datos persistidos de la aplicación.
+ */
+public class BancoRendimientoReconocimiento {
+
+    private static final int FOTOGRAMAS_REGISTRO = 3;
+    private static final long PLAZO_FOTOGRAMA_MS = 2000;
+
+    public static void main(String[] args) {
+        System.out.println("===========================================");
+        System.out.println("📊 BANCO DE RENDIMIENTO DEL RECONOCIMIENTO");
+        System.out.println("===========================================");
+
+        if (args.length < 1) {
+            System.err.println("Uso: BancoRendimientoReconocimiento <video:archivo|imagenes:directorio> [segundos] [fps] [bucle]");
+            System.exit(1);
+        }
+
+        String especificacion = args[0];
+        int segundos = args.length >= 2 ? Integer.parseInt(args[1]) : 30;
+        double fps = args.length >= 3 ? Double.parseDouble(args[2]) : 0.0;
+        boolean bucle = args.length < 4 || Boolean.parseBoolean(args[3]);
+
+        FuenteFotogramas fuente = FuenteFotogramas.desdeEspecificacion(especificacion, fps, bucle);
+        if (fuente == null) {
+            System.err.println("❌ El banco necesita una fuente reproducida, no el dispositivo físico");
+            System.exit(1);
+        }
+
+        System.out.println("📋 Configuración:");
+        System.out.println("   Fuente: " + fuente.getDescripcion());
+        System.out.println("   Duración: " + segundos + " s");
+        System.out.println("   FPS fuente: " + (fps > 0 ? fps : "máximo"));
+        System.out.println("   Bucle: " + bucle);
+        System.out.println();
+
+        ManejadorCamara camara = new ManejadorCamara(fuente);
+        ProcesadorOpenCV procesador = new ProcesadorOpenCV();
+        IntegradorOpenCV integrador = new IntegradorOpenCV(procesador, camara);
+        RedNeuronalReconocimiento red = new RedNeuronalReconocimiento((Path) null);
+
+        try {
+            if (!camara.inicializarCamara()) {
+                System.err.println("❌ No se pudo abrir la fuente");
+                System.exit(2);
+            }
+            ejecutar(camara, procesador, integrador, red, TimeUnit.SECONDS.toNanos(segundos));
+        } finally {
+            camara.liberarCamara();
+            integrador.liberarRecursos();
+        }
+    }
+
+    /**
+     * Medición: registra la galería con los primeros fotogramas y luego deja que el
+     * planificador reparta los fotogramas entre las etapas, como haría la aplicación
+     */
+    private static void ejecutar(ManejadorCamara camara, ProcesadorOpenCV procesador, IntegradorOpenCV integrador,
+                                 RedNeuronalReconocimiento red, long duracionNanos) {
+        List<BufferedImage> muestrasRegistro = new ArrayList<>();
+        long ultimaSecuencia = 0;
+        while (muestrasRegistro.size() < FOTOGRAMAS_REGISTRO) {
+            try (FotogramaCapturado fotograma = camara.esperarFotogramaPosterior(ultimaSecuencia, PLAZO_FOTOGRAMA_MS)) {
+                if (fotograma == null) {
+                    System.err.println("❌ La fuente no entrega fotogramas para el registro");
+                    return;
+                }
+                ultimaSecuencia = fotograma.getSecuencia();
+                muestrasRegistro.add(fotograma.getImagen());
+            }
+        }
+        red.registrarUsuario("banco", muestrasRegistro);
+
+        Medidor deteccion = new Medidor("Detección/seguimiento");
+        Medidor autenticacion = new Medidor("Autenticación OpenCV");
+        Medidor neuronal = new Medidor("Red neuronal");
+        LongAdder reconocidos = new LongAdder();
+        LongAdder vectoresExtraidos = new LongAdder();
+        FlujoDeteccion flujo = new FlujoDeteccion();
+        SeguidorRostros seguidor = new SeguidorRostros(fotograma -> procesador.detectarRostros(fotograma, flujo));
+
+        // Seguimiento y red neuronal leen y escriben la pista del flujo: van en el hilo ordenado.
+        // La autenticación OpenCV no depende de fotogramas anteriores y se reparte entre los demás
+        List<PlanificadorFotogramas.Etapa> etapas = List.of(
+            etapa(deteccion, true, fotograma -> seguidor.actualizar(fotograma.getMat())),
+            etapa(neuronal, true, fotograma -> {
+                // Con pista identificada no se vuelve a extraer el vector del mismo rostro
+                SeguidorRostros.Pista pista = seguidor.getPista();
+                if (pista != null && pista.isIdentificada()) {
+                    reconocidos.increment();
+                    return;
+                }
+                vectoresExtraidos.increment();
+                BufferedImage imagen;
+                if (pista != null) {
+                    // La ROI es una cabecera sobre el fotograma: se cierra en cuanto se copia
+                    try (Mat rostro = new Mat(fotograma.getMat(), pista.getRectangulo())) {
+                        imagen = FotogramaCapturado.convertirAImagen(rostro);
+                    }
+                } else {
+                    imagen = fotograma.getImagen();
+                }
+                red.reconocerUsuario(imagen).ifPresent(usuario -> {
+                    reconocidos.increment();
+                    if (pista != null) {
+                        pista.asignarIdentidad(usuario.getNombreUsuario());
+                    }
+                });
+            }),
+            etapa(autenticacion, false, integrador::autenticarUsuarioFacial));
+
+        PlanificadorFotogramas planificador = new PlanificadorFotogramas(camara, etapas);
+        // Tras el registro (calentamiento): lo que crezca desde aquí se reserva por fotograma
+        BuffersNativos.Medicion memoria = BuffersNativos.Medicion.iniciar();
+        long inicio = System.nanoTime();
+        planificador.iniciar();
+        try {
+            while (System.nanoTime() - inicio < duracionNanos) {
+                if (camara.isFuenteAgotada()) {
+                    System.out.println("⏹️ Fuente agotada antes del tiempo previsto");
+                    break;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+            }
+        } finally {
+            planificador.detener();
+            flujo.close();
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        long procesados = planificador.getProcesados();
+        System.out.println();
+        System.out.println("===========================================");
+        System.out.println("📊 RESULTADOS");
+        System.out.println("===========================================");
+        System.out.printf("   Fotogramas procesados: %d (%.1f fps)%n", procesados, procesados / segundos);
+        System.out.printf("   Reconocidos por la red: %d (vectores extraídos: %d)%n",
+                          reconocidos.sum(), vectoresExtraidos.sum());
+        System.out.printf("   Detecciones completas: %d | Fotogramas seguidos: %d%n",
+                          seguidor.getDetecciones(), seguidor.getSeguimientos());
+        System.out.println(planificador.obtenerEstadisticas());
+        System.out.println(BuffersNativos.obtenerEstadisticas());
+        System.out.println(memoria.terminar(procesados));
+        System.out.println("   Latencias (ms)         media     p50     p95     p99     máx");
+        for (Medidor medidor : List.of(deteccion, neuronal, autenticacion)) {
+            System.out.println("   " + medidor.resumen());
+        }
+    }
+
+    /**
+     * Etapa del planificador que además guarda cada latencia para los percentiles
+     */
+    private static PlanificadorFotogramas.Etapa etapa(Medidor medidor, boolean conEstado,
+                                                      Consumer<FotogramaCapturado> accion) {
+        return new PlanificadorFotogramas.Etapa() {
+            @Override
+            public String getNombre() {
+                return medidor.nombre;
+            }
+
+            @Override
+            public boolean isConEstado() {
+                return conEstado;
+            }
+
+            @Override
+            public boolean procesar(FotogramaCapturado fotograma) {
+                long inicio = System.nanoTime();
+                accion.accept(fotograma);
+                medidor.registrar(System.nanoTime() - inicio);
+                return true;
+            }
+        };
+    }
+
+    // ========== MEDICIÓN ==========
+
+    /**
+     * Acumula latencias en nanosegundos y calcula percentiles al final
+     */
+    private static class Medidor {
+        private final String nombre;
+        private long[] muestras = new long[1024];
+        private int cantidad;
+
+        Medidor(String nombre) {
+            this.nombre = nombre;
+        }
+
+        synchronized void registrar(long nanos) {
+            if (cantidad == muestras.length) {
+                muestras = Arrays.copyOf(muestras, cantidad * 2);
+            }
+            muestras[cantidad++] = nanos;
+        }
+
+        synchronized String resumen() {
+            if (cantidad == 0) {
+                return String.format("%-22s sin muestras", nombre);
+            }
+            long[] ordenadas = Arrays.copyOf(muestras, cantidad);
+            Arrays.sort(ordenadas);
+            double media = Arrays.stream(ordenadas).average().orElse(0) / 1e6;
+            return String.format("%-22s %7.2f %7.2f %7.2f %7.2f %7.2f", nombre, media,
+                percentil(ordenadas, 0.50), percentil(ordenadas, 0.95),
+                percentil(ordenadas, 0.99), ordenadas[cantidad - 1] / 1e6);
+        }
+
+        private static double percentil(long[] ordenadas, double fraccion) {
+            int indice = (int) Math.min(ordenadas.length - 1, Math.ceil(fraccion * ordenadas.length) - 1);
+            return ordenadas[Math.max(0, indice)] / 1e6;
+        }
+    }
+}
@@ -1,16 +1,69 @@
 package com.reconocimiento.facial;
 
+import com.reconocimiento.facial.modelos.CaracteristicaFacial;
+import com.reconocimiento.facial.modelos.Usuario;
+import com.reconocimiento.facial.procesamiento.AlmacenMuestrasFaciales;
+import com.reconocimiento.facial.procesamiento.AutenticadorMultiFotograma;
+import com.reconocimiento.facial.procesamiento.BufferFotogramas;
+import com.reconocimiento.facial.procesamiento.BuffersNativos;
+import com.reconocimiento.facial.procesamiento.DetectorCambios;
+import com.reconocimiento.facial.procesamiento.DetectorRostros;
+import com.reconocimiento.facial.procesamiento.FotogramaCapturado;
+import com.reconocimiento.facial.procesamiento.FuenteDirectorioImagenes;
+import com.reconocimiento.facial.procesamiento.FuenteFotogramas;
+import com.reconocimiento.facial.procesamiento.ManejadorCamara;
+import com.reconocimiento.facial.procesamiento.ModeloReconocedores;
+import com.reconocimiento.facial.procesamiento.PlanificadorDeteccion;
+import com.reconocimiento.facial.procesamiento.PlanificadorFotogramas;
+import com.reconocimiento.facial.procesamiento.ProcesadorOpenCV;
+import com.reconocimiento.facial.procesamiento.ReconocedorConjunto;
+import com.reconocimiento.facial.procesamiento.RegistroClasificadores;
+import com.reconocimiento.facial.procesamiento.SeguidorRostros;
+import com.reconocimiento.facial.procesamiento.SondeoCamaras;
+import com.reconocimiento.facial.servicios.ServicioMultiCamara;
 import com.reconocimiento.facial.utilidades.ManejadorImagenes;
 import com.reconocimiento.facial.utilidades.GestorConfiguracion;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import org.bytedeco.javacpp.Loader;
+import org.bytedeco.javacpp.PointerScope;
+import org.bytedeco.opencv.global.opencv_face;
+import org.bytedeco.opencv.opencv_core.Mat;
+import org.bytedeco.opencv.opencv_core.Rect;
+import org.bytedeco.opencv.opencv_core.RectVector;
+import org.bytedeco.opencv.opencv_core.Scalar;
+import org.bytedeco.opencv.opencv_core.Size;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC1;
+import static org.bytedeco.opencv.global.opencv_core.CV_8UC3;
+import static org.bytedeco.opencv.global.opencv_imgproc.COLOR_BGR2GRAY;
+import static org.bytedeco.opencv.global.opencv_imgproc.cvtColor;
 
 import java.awt.image.BufferedImage;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import javax.imageio.ImageIO;
 // Properties import removido - no se utiliza en esta clase
 
 /**
@@ -244,4 +297,1027 @@ public class PruebasBasicasTest {
         assertNotEquals(checksum1, checksumDiferente, 
                        "Imágenes diferentes deben tener checksums diferentes");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Vector de características como BLOB float32 little-endian")
+    void testCodecVectorBinario() {
+        double[] vector = { 0.5, -1.25, 3.0e-3, 0.0 };
+        byte[] datos = CaracteristicaFacial.codificarVector(vector);
+
+        assertEquals(16, datos.length, "Cada componente debe ocupar 4 bytes");
+        assertEquals(0x3F, datos[3] & 0xFF, "0.5f en little-endian termina en 0x3F");
+        assertArrayEquals(vector, CaracteristicaFacial.decodificarVector(datos), 1e-7);
+
+        CaracteristicaFacial caracteristica = new CaracteristicaFacial();
+        caracteristica.cargarVectorDesdeBytes(datos);
+        assertArrayEquals(datos, caracteristica.vectorABytes(), "El codec debe ser reversible");
+
+        assertThrows(IllegalArgumentException.class, () -> {
+            CaracteristicaFacial.decodificarVector(new byte[6]);
+        }, "Debe rechazar longitudes que no son múltiplo de 4");
+
+        // Filas anteriores a la migración a BLOB: texto JSON
+        byte[] legado = "[0.5, -1.25, 0.003, 0.0]".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        assertTrue(CaracteristicaFacial.esVectorJson(legado));
+        assertFalse(CaracteristicaFacial.esVectorJson(datos), "Un float32 no debe pasar por JSON");
+        assertArrayEquals(vector, CaracteristicaFacial.decodificarVectorAlmacenado(legado), 1e-12);
+        assertArrayEquals(vector, CaracteristicaFacial.decodificarVectorAlmacenado(datos), 1e-7);
+    }
+
+    @Test
+    @DisplayName("Buffer de fotogramas - el consumidor siempre ve el más reciente")
+    void testBufferFotogramas() throws InterruptedException {
+        BufferFotogramas buffer = new BufferFotogramas(3);
+        assertEquals(4, buffer.getCapacidad(), "La capacidad se redondea a potencia de 2");
+        assertNull(buffer.ultimo(), "Sin publicar no hay fotograma");
+        assertNull(buffer.esperarPosterior(0, 20), "Debe vencer el plazo sin productor");
+
+        Thread productor = new Thread(() -> {
+            for (int i = 0; i < 100; i++) {
+                buffer.publicar(new FotogramaCapturado(buffer.siguienteSecuencia(), System.nanoTime(), imagenPrueba));
+            }
+        });
+        productor.start();
+
+        long vista = 0;
+        while (vista < 100) {
+            try (FotogramaCapturado fotograma = buffer.esperarPosterior(vista, 2000)) {
+                assertNotNull(fotograma, "Debe llegar un fotograma nuevo");
+                assertTrue(fotograma.getSecuencia() > vista, "Las secuencias leídas deben crecer");
+                vista = fotograma.getSecuencia();
+            }
+        }
+        productor.join();
+        try (FotogramaCapturado ultimo = buffer.ultimo()) {
+            assertEquals(100, ultimo.getSecuencia());
+            assertSame(imagenPrueba, ultimo.getImagen());
+        }
+    }
+
+    @Test
+    @DisplayName("Buffer de fotogramas - el Mat sobrescrito se libera con su último consumidor")
+    void testBufferFotogramasLiberaSobrescritos() {
+        BufferFotogramas buffer = new BufferFotogramas(2);
+        Mat propio = new Mat(8, 8, CV_8UC3);
+        Mat ajeno = new Mat(8, 8, CV_8UC3);
+        try {
+            buffer.publicar(new FotogramaCapturado(buffer.siguienteSecuencia(), System.nanoTime(), propio));
+            FotogramaCapturado enUso = buffer.ultimo();
+            assertSame(propio, enUso.getMat());
+
+            // El anillo sobrescribe la ranura mientras el consumidor sigue con el fotograma
+            for (int i = 0; i < buffer.getCapacidad(); i++) {
+                buffer.publicar(new FotogramaCapturado(buffer.siguienteSecuencia(), System.nanoTime(), new Mat(8, 8, CV_8UC3)));
+            }
+            assertFalse(propio.isNull(), "Con un consumidor pendiente el Mat sigue vivo");
+            enUso.close();
+            assertTrue(propio.isNull(), "Sin referencias el Mat propio se libera en el acto");
+            assertFalse(enUso.retener(), "Un fotograma liberado no se vuelve a entregar");
+
+            // Un Mat que sigue siendo de la fuente no se libera
+            buffer.publicar(new FotogramaCapturado(buffer.siguienteSecuencia(), System.nanoTime(), ajeno, false));
+            buffer.vaciar();
+            assertFalse(ajeno.isNull(), "El Mat de la caché de la fuente no es del fotograma");
+            assertNull(buffer.ultimo(), "Tras vaciar no queda fotograma que entregar");
+        } finally {
+            ajeno.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Fuente de directorio - reproduce las imágenes en orden y en bucle")
+    void testFuenteDirectorioImagenes(@TempDir Path directorio) throws Exception {
+        for (int i = 0; i < 3; i++) {
+            BufferedImage imagen = new BufferedImage(40 + i, 30, BufferedImage.TYPE_3BYTE_BGR);
+            ImageIO.write(imagen, "png", directorio.resolve("fotograma_" + i + ".png").toFile());
+        }
+        Files.writeString(directorio.resolve("notas.txt"), "no es una imagen");
+
+        assertNull(FuenteFotogramas.desdeEspecificacion("dispositivo", 30, true), "El dispositivo no es una fuente");
+        assertThrows(IllegalArgumentException.class, () -> FuenteFotogramas.desdeEspecificacion("rtsp:x", 30, true));
+
+        try (FuenteDirectorioImagenes fuente = new FuenteDirectorioImagenes(directorio, 0, false)) {
+            fuente.abrir();
+            assertEquals(3, fuente.getCantidadImagenes(), "Solo cuentan las extensiones de imagen");
+            for (int i = 0; i < 3; i++) {
+                Mat mat = fuente.leer();
+                assertNotNull(mat);
+                assertEquals(40 + i, mat.cols(), "Debe respetar el orden alfabético");
+                assertEquals(3, mat.channels());
+            }
+            assertNull(fuente.leer(), "Sin bucle la fuente se agota");
+        }
+
+        try (FuenteDirectorioImagenes fuente = new FuenteDirectorioImagenes(directorio, 0, true)) {
+            fuente.abrir();
+            Mat primero = fuente.leer();
+            fuente.leer();
+            fuente.leer();
+            assertSame(primero, fuente.leer(), "En bucle se reutiliza el Mat ya decodificado");
+            assertEquals(1, fuente.getVueltas());
+        }
+    }
+
+    @Test
+    @DisplayName("Manejador de cámara - no cierra la fuente mientras el hilo de captura lee")
+    void testManejadorCamaraCierreDiferido() throws Exception {
+        CountDownLatch leyendo = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        CountDownLatch cerrada = new CountDownLatch(2); // La limpieza previa de inicializarCamara y la final
+        AtomicInteger lecturasEnCurso = new AtomicInteger();
+        AtomicInteger cierresDuranteLectura = new AtomicInteger();
+        FuenteFotogramas bloqueante = new FuenteFotogramas() {
+            @Override
+            public void abrir() { }
+
+            @Override
+            public Mat leer() throws Exception {
+                lecturasEnCurso.incrementAndGet();
+                try {
+                    leyendo.countDown();
+                    soltar.await(); // Como un grab() colgado del dispositivo
+                    return new Mat(4, 4, CV_8UC3);
+                } finally {
+                    lecturasEnCurso.decrementAndGet();
+                }
+            }
+
+            @Override
+            public String getDescripcion() { return "bloqueante"; }
+
+            @Override
+            public void close() {
+                if (lecturasEnCurso.get() > 0) {
+                    cierresDuranteLectura.incrementAndGet();
+                }
+                cerrada.countDown();
+            }
+        };
+
+        ManejadorCamara camara = new ManejadorCamara(bloqueante);
+        assertTrue(camara.inicializarCamara());
+        assertTrue(leyendo.await(2, TimeUnit.SECONDS));
+
+        camara.liberarCamara(); // El hilo sigue dentro de leer() tras el plazo de parada
+        assertFalse(camara.isCamaraActiva());
+        assertEquals(1, cerrada.getCount(), "La fuente no se cierra con una lectura en curso");
+
+        soltar.countDown();
+        assertTrue(cerrada.await(2, TimeUnit.SECONDS), "Se cierra en cuanto el hilo sale de leer()");
+        assertEquals(0, cierresDuranteLectura.get());
+        assertNull(camara.obtenerUltimoFotograma(), "La sesión detenida no publica su último fotograma");
+    }
+
+    @Test
+    @DisplayName("Planificador de fotogramas - descarta atrasados y frena con CPU alta")
+    void testPlanificadorFotogramas() throws InterruptedException {
+        BufferFotogramas buffer = new BufferFotogramas(4);
+        AtomicInteger ejecuciones = new AtomicInteger();
+        PlanificadorFotogramas.Etapa etapa = new PlanificadorFotogramas.Etapa() {
+            @Override
+            public String getNombre() { return "deteccion"; }
+
+            @Override
+            public boolean procesar(FotogramaCapturado fotograma) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+                ejecuciones.incrementAndGet();
+                return true;
+            }
+        };
+
+        // CPU simulada siempre por encima del umbral
+        PlanificadorFotogramas planificador = new PlanificadorFotogramas(
+            buffer, List.of(etapa), 200, 2, 50, 0.5, () -> 0.9);
+        planificador.iniciar();
+        try {
+            long haceUnSegundo = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+            buffer.publicar(new FotogramaCapturado(buffer.siguienteSecuencia(), haceUnSegundo, imagenPrueba));
+            Thread.sleep(100);
+            assertEquals(1, planificador.getDescartadosAntiguos(), "Un fotograma viejo no se procesa");
+            assertEquals(0, ejecuciones.get());
+
+            for (int i = 0; i < 500; i++) {
+                buffer.publicar(new FotogramaCapturado(buffer.siguienteSecuencia(), System.nanoTime(), imagenPrueba));
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+            Thread.sleep(100);
+        } finally {
+            planificador.detener();
+        }
+
+        assertTrue(planificador.getProcesados() > 0, "Debe procesar fotogramas recientes");
+        assertEquals(ejecuciones.get(), planificador.getProcesados());
+        long contabilizados = planificador.getProcesados() + planificador.getDescartadosAntiguos()
+            + planificador.getDescartadosRitmo() + planificador.getSobrescritos();
+        assertTrue(contabilizados <= 501, "Ningún fotograma se procesa dos veces");
+        assertTrue(planificador.getLatenciaEtapaMillis("deteccion") >= 2.0, "La etapa debe estar medida");
+        assertTrue(planificador.getPeriodoActualMillis() > 5.0, "Con CPU alta el periodo supera 1/fps");
+    }
+
+    @Test
+    @DisplayName("Planificador de fotogramas - etapas con estado en orden, sin estado en paralelo")
+    void testPlanificadorFotogramasOrdenado() throws InterruptedException {
+        BufferFotogramas buffer = new BufferFotogramas(4);
+        AtomicInteger dentroConEstado = new AtomicInteger();
+        AtomicInteger solapesConEstado = new AtomicInteger();
+        AtomicInteger desordenados = new AtomicInteger();
+        AtomicInteger dentroSinEstado = new AtomicInteger();
+        AtomicInteger maximoSinEstado = new AtomicInteger();
+        long[] ultimaVista = {0};
+
+        PlanificadorFotogramas.Etapa seguimiento = new PlanificadorFotogramas.Etapa() {
+            @Override
+            public String getNombre() { return "seguimiento"; }
+
+            @Override
+            public boolean procesar(FotogramaCapturado fotograma) {
+                if (dentroConEstado.incrementAndGet() > 1) {
+                    solapesConEstado.incrementAndGet();
+                }
+                if (fotograma.getSecuencia() <= ultimaVista[0]) {
+                    desordenados.incrementAndGet();
+                }
+                ultimaVista[0] = fotograma.getSecuencia();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                dentroConEstado.decrementAndGet();
+                return true;
+            }
+        };
+        PlanificadorFotogramas.Etapa identificacion = new PlanificadorFotogramas.Etapa() {
+            @Override
+            public String getNombre() { return "identificacion"; }
+
+            @Override
+            public boolean isConEstado() { return false; }
+
+            @Override
+            public boolean procesar(FotogramaCapturado fotograma) {
+                maximoSinEstado.accumulateAndGet(dentroSinEstado.incrementAndGet(), Math::max);
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(15));
+                dentroSinEstado.decrementAndGet();
+                return true;
+            }
+        };
+
+        assertThrows(IllegalArgumentException.class,
+            () -> new PlanificadorFotogramas(buffer, List.of(identificacion, seguimiento), 0, 4, 1000, 1.0, () -> -1),
+            "Una etapa con estado detrás de una sin estado no podría ir en orden");
+
+        PlanificadorFotogramas planificador = new PlanificadorFotogramas(
+            buffer, List.of(seguimiento, identificacion), 0, 4, 1000, 1.0, () -> -1);
+        planificador.iniciar();
+        try {
+            for (int i = 0; i < 300; i++) {
+                buffer.publicar(new FotogramaCapturado(buffer.siguienteSecuencia(), System.nanoTime(), imagenPrueba));
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(2));
+            }
+            Thread.sleep(100);
+        } finally {
+            planificador.detener();
+        }
+
+        assertTrue(planificador.getProcesados() > 0);
+        assertEquals(0, solapesConEstado.get(), "La etapa con estado nunca corre en dos hilos a la vez");
+        assertEquals(0, desordenados.get(), "La etapa con estado ve los fotogramas en orden de captura");
+        assertTrue(maximoSinEstado.get() > 1, "La etapa sin estado aprovecha los hilos paralelos");
+        assertTrue(maximoSinEstado.get() <= 3, "Los paralelos son los hilos restantes, no más");
+    }
+
+    @Test
+    @DisplayName("Detector de cambios - escena quieta no repite la detección")
+    void testDetectorCambios() {
+        DetectorCambios detector = new DetectorCambios(80, 0.5, 25, 0.01, 0);
+        Mat escena = new FotogramaCapturado(1, System.nanoTime(), imagenPrueba).getMat();
+
+        assertTrue(detector.hayCambio(escena), "El primer fotograma siempre se detecta");
+        assertFalse(detector.hayCambio(escena), "La misma escena no es un cambio");
+
+        BufferedImage conPersona = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = conPersona.createGraphics();
+        g2d.drawImage(imagenPrueba, 0, 0, null);
+        g2d.setColor(Color.BLACK);
+        g2d.fillRect(0, 0, 40, 100);
+        g2d.dispose();
+        Mat movimiento = new FotogramaCapturado(2, System.nanoTime(), conPersona).getMat();
+
+        assertTrue(detector.hayCambio(movimiento), "Un objeto nuevo es un cambio");
+        assertTrue(detector.getUltimaFraccion() > 0.2);
+
+        // Si el objeto se queda quieto, el fondo lo absorbe
+        boolean estabilizado = false;
+        for (int i = 0; i < 20 && !estabilizado; i++) {
+            estabilizado = !detector.hayCambio(movimiento);
+        }
+        assertTrue(estabilizado, "El fondo adaptativo debe absorber lo que queda quieto");
+        assertTrue(detector.getOmitidos() >= 2);
+
+        DetectorCambios conLimite = new DetectorCambios(80, 0.5, 25, 0.01, 1);
+        conLimite.hayCambio(escena);
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue(conLimite.hayCambio(escena), "Vencido el plazo se fuerza una detección");
+    }
+
+    @Test
+    @DisplayName("Seguidor de rostros - sigue la ROI y conserva la identidad")
+    void testSeguidorRostros() {
+        Random aleatorio = new Random(7);
+        int[] textura = new int[40 * 40];
+        for (int i = 0; i < textura.length; i++) {
+            textura[i] = aleatorio.nextInt(0xFFFFFF);
+        }
+
+        int[] posicion = {50};
+        AtomicInteger detecciones = new AtomicInteger();
+        SeguidorRostros seguidor = new SeguidorRostros(fotograma -> {
+            detecciones.incrementAndGet();
+            return List.of(new Rect(posicion[0], 60, 40, 40));
+        }, 10, 0.6, 0.5);
+
+        AtomicInteger identificaciones = new AtomicInteger();
+        SeguidorRostros.Pista pista = null;
+        for (int paso = 0; paso < 8; paso++) {
+            posicion[0] = 50 + paso * 4;
+            BufferedImage imagen = new BufferedImage(200, 160, BufferedImage.TYPE_3BYTE_BGR);
+            for (int y = 0; y < 160; y++) {
+                for (int x = 0; x < 200; x++) {
+                    imagen.setRGB(x, y, aleatorio.nextInt(0xFFFFFF));
+                }
+            }
+            imagen.setRGB(posicion[0], 60, 40, 40, textura, 0, 40);
+            Mat fotograma = new FotogramaCapturado(paso + 1, System.nanoTime(), imagen).getMat();
+
+            pista = seguidor.actualizarEIdentificar(fotograma, roi -> {
+                identificaciones.incrementAndGet();
+                return Optional.of("ana");
+            });
+            assertNotNull(pista);
+            assertEquals(posicion[0], pista.getRectangulo().x(), "La pista debe seguir al rostro");
+            assertEquals(60, pista.getRectangulo().y());
+        }
+
+        assertEquals(1, detecciones.get(), "Solo la primera búsqueda recorre el fotograma completo");
+        assertEquals(1, identificaciones.get(), "La identidad queda ligada a la pista");
+        assertEquals("ana", pista.getIdentidad());
+        assertEquals(7, seguidor.getSeguimientos());
+
+        // Sin rostros en la detección completa no hay pista
+        Mat vacio = new FotogramaCapturado(99, System.nanoTime(),
+            new BufferedImage(200, 160, BufferedImage.TYPE_3BYTE_BGR)).getMat();
+        SeguidorRostros sinRostros = new SeguidorRostros(fotograma -> List.of(), 10, 0.6, 0.5);
+        assertNull(sinRostros.actualizar(vacio));
+        assertEquals(1, sinRostros.getDetecciones());
+
+        // Mientras un hilo identifica la pista, otro no repite la consulta
+        SeguidorRostros compartido = new SeguidorRostros(fotograma -> List.of(new Rect(20, 20, 40, 40)), 1, 0.6, 0.5);
+        CountDownLatch enConsulta = new CountDownLatch(1);
+        CountDownLatch continuar = new CountDownLatch(1);
+        AtomicInteger consultas = new AtomicInteger();
+        Thread primero = Thread.ofVirtual().start(() -> compartido.actualizarEIdentificar(vacio, roi -> {
+            consultas.incrementAndGet();
+            enConsulta.countDown();
+            try {
+                continuar.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Optional.of("ana");
+        }));
+        assertDoesNotThrow(() -> assertTrue(enConsulta.await(5, TimeUnit.SECONDS)));
+        SeguidorRostros.Pista pendiente = compartido.actualizarEIdentificar(vacio, roi -> {
+            consultas.incrementAndGet();
+            return Optional.of("otro");
+        });
+        assertTrue(pendiente.isPendiente(), "La pista queda marcada mientras se identifica");
+        continuar.countDown();
+        assertDoesNotThrow(() -> primero.join(5000));
+        assertEquals(1, consultas.get(), "Una sola identificación por pista");
+        assertEquals("ana", compartido.getPista().getIdentidad());
+        assertFalse(compartido.getPista().isPendiente());
+    }
+
+    @Test
+    @DisplayName("Planificador de detección - acota región y tamaños con el historial")
+    void testPlanificadorDeteccion() {
+        PlanificadorDeteccion planificador = new PlanificadorDeteccion(0.08, 0.9, 1.1,
+            new Size(30, 30), new Size(300, 300));
+
+        PlanificadorDeteccion.Parametros inicial = planificador.planificar(640, 480);
+        assertEquals(640, inicial.getRegion().width(), "Sin historial se busca en todo el fotograma");
+        assertEquals(38, inicial.getMinimo().width(), "El mínimo sale de la geometría de la cámara");
+
+        planificador.registrarResultado(List.of(new Rect(300, 200, 100, 100)));
+        PlanificadorDeteccion.Parametros acotado = planificador.planificar(640, 480);
+        assertEquals(200, acotado.getRegion().x(), "La región rodea al último rostro con un rostro de margen");
+        assertEquals(300, acotado.getRegion().width());
+        assertEquals(300, acotado.getRegion().height());
+        assertEquals(60, acotado.getMinimo().width());
+        assertEquals(160, acotado.getMaximo().width());
+        assertTrue(acotado.getAhorro() > 0.5, "La búsqueda acotada evita la mayor parte de la pirámide");
+
+        planificador.registrarResultado(List.of());
+        PlanificadorDeteccion.Parametros ensanchado = planificador.planificar(640, 480);
+        assertTrue(ensanchado.getRegion().area() > acotado.getRegion().area(), "Un fallo ensancha la búsqueda");
+        assertTrue(ensanchado.getMinimo().width() < acotado.getMinimo().width());
+
+        planificador.registrarResultado(List.of());
+        planificador.registrarResultado(List.of());
+        assertEquals(640 * 480, planificador.planificar(640, 480).getRegion().area(),
+            "Tras varios fallos se vuelve a la búsqueda completa");
+
+        PlanificadorDeteccion.Parametros reutilizados = new PlanificadorDeteccion.Parametros();
+        planificador.registrarResultado(List.of(new Rect(300, 200, 100, 100)));
+        assertSame(reutilizados, planificador.planificar(640, 480, reutilizados), "Un flujo reescribe sus parámetros");
+        assertEquals(300, reutilizados.getRegion().width());
+        planificador.olvidar();
+        planificador.planificar(640, 480, reutilizados);
+        assertEquals(640, reutilizados.getRegion().width(), "La región reutilizada vuelve al fotograma completo");
+        assertEquals(38, reutilizados.getMinimo().width());
+    }
+
+    @Test
+    @DisplayName("Planificador de detección - búsqueda completa periódica con un rostro seguido")
+    void testPlanificadorBusquedaCompletaPeriodica() {
+        int cada = 4;
+        PlanificadorDeteccion planificador = new PlanificadorDeteccion(0.08, 0.9, 1.1,
+            new Size(30, 30), new Size(300, 300), cada, 0);
+        Rect seguido = new Rect(300, 200, 100, 100);
+        Rect nuevo = new Rect(20, 20, 40, 40); // Fuera de la zona y por debajo del rango acotado
+
+        planificador.planificar(640, 480);
+        planificador.registrarResultado(List.of(seguido));
+        int plan = 0;
+        boolean nuevoEncontrado = false;
+        while (!nuevoEncontrado && plan < cada) {
+            PlanificadorDeteccion.Parametros parametros = planificador.planificar(640, 480);
+            plan++;
+            List<Rect> encontrados = new ArrayList<>();
+            for (Rect rostro : List.of(seguido, nuevo)) {
+                Rect region = parametros.getRegion();
+                boolean dentro = rostro.x() >= region.x() && rostro.y() >= region.y()
+                    && rostro.x() + rostro.width() <= region.x() + region.width()
+                    && rostro.y() + rostro.height() <= region.y() + region.height();
+                if (dentro && rostro.width() >= parametros.getMinimo().width()
+                        && rostro.width() <= parametros.getMaximo().width()) {
+                    encontrados.add(rostro);
+                }
+            }
+            nuevoEncontrado = encontrados.contains(nuevo);
+            planificador.registrarResultado(encontrados);
+        }
+        assertTrue(nuevoEncontrado, "El rostro nuevo fuera de la zona debe aparecer en " + cada + " planes");
+        assertEquals(cada, plan, "Los planes intermedios siguen acotados a la zona");
+    }
+
+    @Test
+    @DisplayName("Registro de clasificadores - resuelve cada cascada una vez desde el classpath")
+    void testRegistroClasificadores() {
+        RegistroClasificadores registro = RegistroClasificadores.obtenerInstancia();
+        assertSame(registro, RegistroClasificadores.obtenerInstancia());
+
+        Path frontal = registro.obtenerArchivo(RegistroClasificadores.ROSTRO_FRONTAL);
+        assertNotNull(frontal, "La cascada frontal viaja en los recursos");
+        assertTrue(Files.isRegularFile(frontal));
+        assertEquals(frontal, registro.obtenerArchivo(RegistroClasificadores.ROSTRO_FRONTAL),
+            "La resolución se hace una sola vez");
+
+        assertNull(registro.obtenerArchivo("haarcascade_inexistente.xml"));
+        assertFalse(registro.isDisponible("haarcascade_inexistente.xml"));
+        assertEquals(0, registro.getInstanciasCreadas("haarcascade_inexistente.xml"));
+        assertThrows(IllegalStateException.class,
+            () -> registro.usar("haarcascade_inexistente.xml", clasificador -> null));
+    }
+
+    @Test
+    @DisplayName("Servicio multicámara - canales en paralelo con galería compartida")
+    void testServicioMultiCamara(@TempDir Path directorio) throws Exception {
+        List<FuenteFotogramas> fuentes = new ArrayList<>();
+        for (int camara = 0; camara < 2; camara++) {
+            Path entrada = Files.createDirectory(directorio.resolve("entrada_" + camara));
+            for (int i = 0; i < 3; i++) {
+                ImageIO.write(new BufferedImage(160, 120, BufferedImage.TYPE_3BYTE_BGR), "png",
+                              entrada.resolve("fotograma_" + i + ".png").toFile());
+            }
+            fuentes.add(new FuenteDirectorioImagenes(entrada, 60, true));
+        }
+
+        AtomicInteger consultasGaleria = new AtomicInteger();
+        Usuario usuario = new Usuario("visitante", "visitante@correo.com", "x", "Visitante");
+        List<String> avisos = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger detectoresCerrados = new AtomicInteger();
+        abstract class DetectorCerrable implements Function<Mat, List<Rect>>, AutoCloseable {
+        }
+
+        try (ServicioMultiCamara servicio = new ServicioMultiCamara(fuentes,
+                () -> new DetectorCerrable() {
+                    @Override
+                    public List<Rect> apply(Mat fotograma) {
+                        return List.of(new Rect(40, 30, 60, 60));
+                    }
+
+                    @Override
+                    public void close() {
+                        detectoresCerrados.incrementAndGet();
+                    }
+                },
+                recorte -> {
+                    consultasGaleria.incrementAndGet();
+                    assertEquals(60, recorte.getWidth(), "La galería recibe solo el recorte del rostro");
+                    return Optional.of(usuario);
+                })) {
+            servicio.setOyente((camara, reconocido, pista) -> avisos.add(camara));
+            servicio.iniciar();
+
+            long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (System.nanoTime() < limite
+                    && servicio.getCanales().stream().anyMatch(canal -> canal.getProcesados() < 10)) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(20));
+            }
+
+            for (ServicioMultiCamara.Canal canal : servicio.getCanales()) {
+                assertTrue(canal.getProcesados() >= 10, "Cada cámara avanza por su cuenta: " + canal.getNombre());
+                assertEquals(1, canal.getIdentificaciones(), "La pista identificada no vuelve a consultar la galería");
+                assertEquals(1, canal.getReconocidos());
+            }
+            assertEquals(2, consultasGaleria.get());
+            assertEquals(2, avisos.size());
+            assertTrue(servicio.obtenerEstadisticas().contains("cámara 2"));
+        }
+        assertEquals(2, detectoresCerrados.get(), "Al detener se libera el estado de cada flujo");
+    }
+
+    @Test
+    @DisplayName("Sondeo de cámaras - gana la primera, cierra las demás y recuerda la ganadora")
+    void testSondeoCamaras(@TempDir Path directorio) throws Exception {
+        SondeoCamaras.Configuracion lenta = new SondeoCamaras.Configuracion(null, 0, 640, 480);
+        SondeoCamaras.Configuracion rapida = new SondeoCamaras.Configuracion("dshow", 1, 640, 480);
+        SondeoCamaras.Configuracion tardia = new SondeoCamaras.Configuracion(null, 2, 640, 480);
+        Map<SondeoCamaras.Configuracion, Long> demoras = Map.of(lenta, 3000L, rapida, 50L, tardia, 300L);
+        Map<SondeoCamaras.Configuracion, AtomicInteger> intentos = new ConcurrentHashMap<>();
+        AtomicInteger cerradas = new AtomicInteger();
+
+        SondeoCamaras.Sonda<AutoCloseable> sonda = configuracion -> {
+            intentos.computeIfAbsent(configuracion, c -> new AtomicInteger()).incrementAndGet();
+            Thread.sleep(demoras.get(configuracion));
+            if (configuracion.equals(lenta)) {
+                throw new IllegalStateException("no responde");
+            }
+            return cerradas::incrementAndGet;
+        };
+        Path cache = directorio.resolve("camara_sondeo.properties");
+        List<SondeoCamaras.Configuracion> candidatas = List.of(lenta, rapida, tardia);
+
+        long inicio = System.nanoTime();
+        SondeoCamaras.Resultado<AutoCloseable> primero = new SondeoCamaras<>(sonda, cache, 5000).sondear(candidatas);
+        assertNotNull(primero);
+        assertEquals(rapida, primero.getConfiguracion(), "Las sondas compiten en paralelo");
+        assertTrue(System.nanoTime() - inicio < TimeUnit.MILLISECONDS.toNanos(1000), "No espera a la sonda lenta");
+        assertTrue(Files.isRegularFile(cache), "La ganadora queda guardada");
+
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (cerradas.get() == 0 && System.nanoTime() < limite) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        assertEquals(1, cerradas.get(), "La sonda que abre tarde cierra su recurso");
+
+        intentos.clear();
+        SondeoCamaras.Resultado<AutoCloseable> segundo = new SondeoCamaras<>(sonda, cache, 5000).sondear(candidatas);
+        assertEquals(rapida, segundo.getConfiguracion());
+        assertEquals(Set.of(rapida), intentos.keySet(), "Con caché solo se prueba la guardada");
+
+        assertNull(new SondeoCamaras<>(sonda, null, 200).sondear(List.of(lenta)), "El plazo global se respeta");
+
+        // Mismo índice: se prueba en orden y nunca dos aperturas a la vez del mismo dispositivo
+        SondeoCamaras.Configuracion preferida = new SondeoCamaras.Configuracion(null, 3, 1280, 720);
+        SondeoCamaras.Configuracion respaldo = new SondeoCamaras.Configuracion(null, 3, 640, 480);
+        SondeoCamaras.Configuracion sobrante = new SondeoCamaras.Configuracion("dshow", 3, 640, 480);
+        List<SondeoCamaras.Configuracion> orden = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger abiertasALaVez = new AtomicInteger();
+        AtomicInteger maximoALaVez = new AtomicInteger();
+        SondeoCamaras.Sonda<AutoCloseable> secuencial = configuracion -> {
+            maximoALaVez.accumulateAndGet(abiertasALaVez.incrementAndGet(), Math::max);
+            try {
+                orden.add(configuracion);
+                Thread.sleep(20);
+                if (configuracion.equals(preferida)) {
+                    throw new IllegalStateException("resolución no soportada");
+                }
+                return () -> { };
+            } finally {
+                abiertasALaVez.decrementAndGet();
+            }
+        };
+        SondeoCamaras.Resultado<AutoCloseable> mismoIndice = new SondeoCamaras<>(secuencial, cache, 5000)
+            .sondear(List.of(preferida, respaldo, sobrante));
+        assertEquals(respaldo, mismoIndice.getConfiguracion(), "Gana la primera que abre en orden de preferencia");
+        assertEquals(List.of(preferida, respaldo), orden, "La guardada (índice 1) no es candidata y se descarta");
+        assertEquals(1, maximoALaVez.get(), "Un índice no se abre dos veces a la vez");
+
+        // La caché inválida se borró y ahora guarda la nueva ganadora
+        orden.clear();
+        new SondeoCamaras<>(secuencial, cache, 5000).sondear(List.of(preferida, respaldo, sobrante));
+        assertEquals(List.of(respaldo), orden, "La nueva ganadora se prueba primero y sola");
+    }
+
+    @Test
+    @DisplayName("Almacén de muestras faciales - agrega sin reescribir y se recupera al reabrir")
+    void testAlmacenMuestrasFaciales(@TempDir Path directorio) throws Exception {
+        AlmacenMuestrasFaciales almacen = new AlmacenMuestrasFaciales(directorio);
+        for (int etiqueta = 1; etiqueta <= 2; etiqueta++) {
+            for (int i = 0; i < 3; i++) {
+                Mat muestra = new Mat(100, 100, CV_8UC1,
+                                      new Scalar(etiqueta * 50 + i));
+                almacen.agregar(etiqueta, muestra);
+            }
+        }
+        assertEquals(6, almacen.getUltimaSecuencia());
+        assertEquals(2, almacen.getCantidadEtiquetas());
+
+        AlmacenMuestrasFaciales reabierto = new AlmacenMuestrasFaciales(directorio);
+        assertEquals(6, reabierto.getCantidad(), "Las muestras sobreviven al reinicio");
+        assertEquals(6, reabierto.getUltimaSecuencia());
+
+        List<Integer> etiquetas = new ArrayList<>();
+        int visitadas = reabierto.recorrer(3, (secuencia, etiqueta, muestra) -> {
+            assertEquals(100, muestra.cols());
+            assertEquals(1, muestra.channels(), "Se leen en gris, como se entrenan");
+            etiquetas.add(etiqueta);
+        });
+        assertEquals(3, visitadas, "Solo las posteriores a la secuencia indicada");
+        assertEquals(List.of(2, 2, 2), etiquetas);
+
+        assertEquals(7, reabierto.agregar(3, new Mat(100, 100, CV_8UC1)),
+            "La secuencia continúa tras reabrir");
+
+        // Un registro que no se confirma se deshace entero, también en disco
+        reabierto.descartarPosteriores(6);
+        assertEquals(6, reabierto.getUltimaSecuencia());
+        assertEquals(2, reabierto.getCantidadEtiquetas());
+        assertEquals(6, new AlmacenMuestrasFaciales(directorio).getCantidad());
+    }
+
+    @Test
+    @DisplayName("🧩 Modelo de reconocedores: LBPH incremental, recuperación al reabrir y Eigen/Fisher diferidos")
+    void testModeloReconocedores(@TempDir Path directorio) throws Exception {
+        assumeTrue(moduloFaceDisponible(), "opencv_face no se puede cargar en este entorno (sin highgui)");
+        ModeloReconocedores modelo = new ModeloReconocedores(directorio, 300);
+        assertTrue(modelo.agregar(muestrasRostro(1, 3), List.of(1, 1, 1)));
+        assertEquals(1, (int) modelo.predecir(ModeloReconocedores.Tipo.LBPH, rostroSintetico(1, 99))[0]);
+        modelo.guardar();
+        // Copia de LBPH que solo conoce la etiqueta 1 (como si el proceso muriera antes del siguiente guardado)
+        Path copia = Files.createDirectory(directorio.resolve("copia"));
+        Files.copy(directorio.resolve("lbph.yml"), copia.resolve("lbph.yml"));
+        Files.copy(directorio.resolve("estado.properties"), copia.resolve("estado.properties"));
+
+        assertTrue(modelo.agregar(muestrasRostro(2, 3), List.of(2, 2, 2)));
+        assertEquals(1, (int) modelo.predecir(ModeloReconocedores.Tipo.LBPH, rostroSintetico(1, 98))[0],
+            "update() no olvida la etiqueta anterior");
+        assertEquals(2, (int) modelo.predecir(ModeloReconocedores.Tipo.LBPH, rostroSintetico(2, 98))[0]);
+        assertTrue(modelo.isReentrenamientoPendiente(), "Eigen/Fisher esperan al retraso configurado");
+        assertFalse(modelo.isEntrenado(ModeloReconocedores.Tipo.FISHER));
+
+        esperarReentrenamiento(modelo);
+        assertEquals(1, (int) modelo.predecir(ModeloReconocedores.Tipo.EIGEN, rostroSintetico(1, 97))[0]);
+        assertEquals(2, (int) modelo.predecir(ModeloReconocedores.Tipo.FISHER, rostroSintetico(2, 97))[0]);
+        modelo.close();
+        assertNull(modelo.predecir(ModeloReconocedores.Tipo.LBPH, rostroSintetico(1, 97)), "Cerrado no predice");
+
+        // Reabrir con el LBPH completo guardado al cerrar
+        try (ModeloReconocedores reabierto = new ModeloReconocedores(directorio, 300)) {
+            assertEquals(6, reabierto.getCantidadMuestras());
+            assertFalse(reabierto.isReentrenamientoPendiente(), "Eigen/Fisher guardados al día");
+            assertTrue(reabierto.isEntrenado(ModeloReconocedores.Tipo.EIGEN));
+            assertEquals(1, (int) reabierto.predecir(ModeloReconocedores.Tipo.LBPH, rostroSintetico(1, 96))[0]);
+            assertEquals(2, (int) reabierto.predecir(ModeloReconocedores.Tipo.LBPH, rostroSintetico(2, 96))[0]);
+        }
+
+        // Reabrir con la copia antigua: las muestras posteriores a su secuencia se reaplican con update()
+        Files.copy(copia.resolve("lbph.yml"), directorio.resolve("lbph.yml"), StandardCopyOption.REPLACE_EXISTING);
+        Files.copy(copia.resolve("estado.properties"), directorio.resolve("estado.properties"),
+                   StandardCopyOption.REPLACE_EXISTING);
+        try (ModeloReconocedores recuperado = new ModeloReconocedores(directorio, 300)) {
+            assertEquals(1, (int) recuperado.predecir(ModeloReconocedores.Tipo.LBPH, rostroSintetico(1, 95))[0]);
+            assertEquals(2, (int) recuperado.predecir(ModeloReconocedores.Tipo.LBPH, rostroSintetico(2, 95))[0],
+                "La etiqueta 2 llega por la reaplicación de muestras");
+            assertTrue(recuperado.isReentrenamientoPendiente(), "La copia no incluía Eigen/Fisher");
+            esperarReentrenamiento(recuperado);
+            assertEquals(2, (int) recuperado.predecir(ModeloReconocedores.Tipo.FISHER, rostroSintetico(2, 95))[0]);
+        }
+    }
+
+    private static boolean moduloFaceDisponible() {
+        try {
+            Loader.load(opencv_face.class);
+            return true;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+
+    private static void esperarReentrenamiento(ModeloReconocedores modelo) throws InterruptedException {
+        long limite = System.currentTimeMillis() + 10_000;
+        while ((modelo.isReentrenamientoPendiente() || !modelo.isEntrenado(ModeloReconocedores.Tipo.FISHER))
+                && System.currentTimeMillis() < limite) {
+            Thread.sleep(50);
+        }
+        assertTrue(modelo.isEntrenado(ModeloReconocedores.Tipo.EIGEN), "Eigen reentrenado tras el retraso");
+        assertTrue(modelo.isEntrenado(ModeloReconocedores.Tipo.FISHER), "Fisher reentrenado tras el retraso");
+        assertFalse(modelo.isReentrenamientoPendiente());
+    }
+
+    private static List<Mat> muestrasRostro(int etiqueta, int cantidad) {
+        List<Mat> muestras = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) {
+            muestras.add(rostroSintetico(etiqueta, i));
+        }
+        return muestras;
+    }
+
+    /**
+     * Rostro de 100x100 en gris: franjas horizontales (etiqueta impar) o verticales (par) con ruido
+     */
+    private static Mat rostroSintetico(int etiqueta, int semilla) {
+        Random aleatorio = new Random(etiqueta * 1000L + semilla);
+        byte[] pixeles = new byte[100 * 100];
+        for (int y = 0; y < 100; y++) {
+            for (int x = 0; x < 100; x++) {
+                int franja = (etiqueta % 2 == 1 ? y : x) / 10 % 2;
+                pixeles[y * 100 + x] = (byte) (franja == 0 ? 190 + aleatorio.nextInt(30) : 40 + aleatorio.nextInt(30));
+            }
+        }
+        Mat rostro = new Mat(100, 100, CV_8UC1);
+        rostro.data().put(pixeles);
+        return rostro;
+    }
+
+    @Test
+    @DisplayName("🗳️ Conjunto LBPH/Eigen/Fisher: fusión ponderada y salida anticipada")
+    void testReconocedorConjunto() {
+        Map<ModeloReconocedores.Tipo, Double> pesos = new EnumMap<>(Map.of(
+            ModeloReconocedores.Tipo.LBPH, 0.5, ModeloReconocedores.Tipo.EIGEN, 0.2, ModeloReconocedores.Tipo.FISHER, 0.3));
+        Map<ModeloReconocedores.Tipo, Double> umbrales = new EnumMap<>(Map.of(
+            ModeloReconocedores.Tipo.LBPH, 80.0, ModeloReconocedores.Tipo.EIGEN, 4000.0, ModeloReconocedores.Tipo.FISHER, 1500.0));
+        Mat rostro = new Mat(100, 100, CV_8UC1, new Scalar(128));
+
+        // Fusión: LBPH y Eigen votan la etiqueta 1, Fisher la 2
+        Map<ModeloReconocedores.Tipo, double[]> respuestas = new EnumMap<>(Map.of(
+            ModeloReconocedores.Tipo.LBPH, new double[]{1, 60},
+            ModeloReconocedores.Tipo.EIGEN, new double[]{1, 2000},
+            ModeloReconocedores.Tipo.FISHER, new double[]{2, 1200}));
+        ReconocedorConjunto conjunto = new ReconocedorConjunto((tipo, muestra) -> respuestas.get(tipo), pesos, umbrales, 0.4, 0.2);
+        ReconocedorConjunto.Resultado fusion = conjunto.reconocer(rostro);
+        assertEquals(1, fusion.getEtiqueta());
+        assertEquals(22.5, fusion.getConfianza(), 1e-9, "0.5·0.25 + 0.2·0.5 sobre el peso total");
+        assertTrue(fusion.esReconocido());
+        assertNull(fusion.getDecisivo());
+
+        // Salida anticipada: LBPH casi exacto no espera a un Fisher lento
+        ReconocedorConjunto anticipado = new ReconocedorConjunto((tipo, muestra) -> {
+            if (tipo != ModeloReconocedores.Tipo.LBPH) {
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+                return new double[]{2, 10};
+            }
+            return new double[]{7, 8};
+        }, pesos, umbrales, 0.4, 0.2);
+        ReconocedorConjunto.Resultado decidido = anticipado.reconocer(rostro);
+        assertEquals(7, decidido.getEtiqueta());
+        assertEquals(ModeloReconocedores.Tipo.LBPH, decidido.getDecisivo());
+        assertEquals(90.0, decidido.getConfianza(), 1e-9);
+        assertTrue(decidido.getMilisegundos() < 500, "No espera al modelo lento: " + decidido);
+        rostro.release(); // La copia interna sigue válida para las predicciones que aún corren
+
+        // close() espera a los predict lentos que siguen tras la salida anticipada
+        long antesDeCerrar = System.nanoTime();
+        anticipado.close();
+        assertTrue(System.nanoTime() - antesDeCerrar > TimeUnit.MILLISECONDS.toNanos(300),
+                   "close() debe esperar a los predict en curso");
+        ReconocedorConjunto.Resultado cerrado = anticipado.reconocer(new Mat(100, 100, CV_8UC1));
+        assertFalse(cerrado.esReconocido(), "Un conjunto cerrado no reconoce");
+
+        // Eigen y Fisher sin entrenar: la fusión se normaliza con lo que respondió
+        ReconocedorConjunto soloLbph = new ReconocedorConjunto(
+            (tipo, muestra) -> tipo == ModeloReconocedores.Tipo.LBPH ? new double[]{3, 60} : null, pesos, umbrales, 0.4, 0.2);
+        ReconocedorConjunto.Resultado parcial = soloLbph.reconocer(new Mat(100, 100, CV_8UC1));
+        assertEquals(3, parcial.getEtiqueta());
+        assertEquals(25.0, parcial.getConfianza(), 1e-9);
+        assertTrue(parcial.esReconocido());
+    }
+
+    @Test
+    @DisplayName("🎬 Autenticación multifotograma: decisión secuencial sobre fotogramas distintos")
+    void testAutenticadorMultiFotograma() {
+        AtomicInteger extraidos = new AtomicInteger();
+        AutenticadorMultiFotograma.Fotogramas camara = (secuencia, plazo) ->
+            new FotogramaCapturado(secuencia + 1, System.nanoTime(), new Mat(10, 10, CV_8UC1));
+        AutenticadorMultiFotograma.Extractor extractor = fotograma -> new Mat(100, 100, CV_8UC1);
+
+        // Muy seguro: basta un fotograma puntuado
+        AutenticadorMultiFotograma claro = new AutenticadorMultiFotograma(extractor,
+            rostro -> new ProcesadorOpenCV.ResultadoReconocimiento(4, 90.0, true), 5, 3000, 0.01, 0.05, 0.8, 0.05, 50.0);
+        AutenticadorMultiFotograma.Resultado aceptado = claro.autenticar(camara);
+        assertEquals(AutenticadorMultiFotograma.Decision.ACEPTADO, aceptado.getDecision());
+        assertEquals(4, aceptado.getEtiqueta());
+        assertEquals(1, aceptado.getFotogramas(), "Un acceso claro se resuelve con un fotograma: " + aceptado);
+
+        // Confianza moderada: hacen falta dos votos
+        AutenticadorMultiFotograma moderado = new AutenticadorMultiFotograma(fotograma -> {
+            extraidos.incrementAndGet();
+            return new Mat(100, 100, CV_8UC1);
+        }, rostro -> new ProcesadorOpenCV.ResultadoReconocimiento(2, 60.0, true), 5, 3000, 0.01, 0.05, 0.8, 0.05, 50.0);
+        AutenticadorMultiFotograma.Resultado dosVotos = moderado.autenticar(camara);
+        assertTrue(dosVotos.isAceptado());
+        assertEquals(2, dosVotos.getFotogramas());
+        assertEquals(60.0, dosVotos.getConfianza(), 1e-9);
+        assertTrue(extraidos.get() <= 3, "Como mucho un fotograma extraído por adelantado");
+
+        // Nadie reconocido: se rechaza sin agotar los K fotogramas
+        AutenticadorMultiFotograma desconocido = new AutenticadorMultiFotograma(extractor,
+            rostro -> new ProcesadorOpenCV.ResultadoReconocimiento(-1, 10.0, false), 5, 3000, 0.01, 0.05, 0.8, 0.05, 50.0);
+        AutenticadorMultiFotograma.Resultado rechazado = desconocido.autenticar(camara);
+        assertEquals(AutenticadorMultiFotograma.Decision.RECHAZADO, rechazado.getDecision());
+        assertEquals(-1, rechazado.getEtiqueta());
+        assertEquals(2, rechazado.getFotogramas());
+
+        // Sin rostro en ningún fotograma: indeterminado tras K
+        AutenticadorMultiFotograma sinRostro = new AutenticadorMultiFotograma(fotograma -> null,
+            rostro -> fail("No hay rostro que puntuar"), 4, 3000, 0.01, 0.05, 0.8, 0.05, 50.0);
+        AutenticadorMultiFotograma.Resultado indeterminado = sinRostro.autenticar(camara);
+        assertEquals(AutenticadorMultiFotograma.Decision.INDETERMINADO, indeterminado.getDecision());
+        assertEquals(4, indeterminado.getSinRostro());
+
+        // La cámara deja de entregar fotogramas: tampoco se decide
+        AutenticadorMultiFotograma.Resultado sinCamara = claro.autenticar((secuencia, plazo) -> null);
+        assertEquals(AutenticadorMultiFotograma.Decision.INDETERMINADO, sinCamara.getDecision());
+        assertEquals(0, sinCamara.getFotogramas());
+
+        // El extractor falla mientras se puntúa el rostro anterior: ese rostro se libera igual
+        Mat primero = new Mat(100, 100, CV_8UC1);
+        AtomicInteger llamadas = new AtomicInteger();
+        AutenticadorMultiFotograma fallido = new AutenticadorMultiFotograma(fotograma -> {
+            if (llamadas.incrementAndGet() > 1) {
+                throw new IllegalStateException("extractor roto");
+            }
+            return primero;
+        }, rostro -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new ProcesadorOpenCV.ResultadoReconocimiento(2, 60.0, true);
+        }, 5, 3000, 0.01, 0.05, 0.8, 0.05, 50.0);
+        assertThrows(IllegalStateException.class, () -> fallido.autenticar(camara));
+        assertTrue(primero.empty(), "El rostro en puntuación debe liberarse aunque el extractor falle");
+
+        // Escala neuronal (100% = un fotograma de evidencia): una sola coincidencia no basta
+        AutenticadorMultiFotograma neuronal = new AutenticadorMultiFotograma(extractor,
+            rostro -> new ProcesadorOpenCV.ResultadoReconocimiento(7, 100.0, true), 100.0);
+        AutenticadorMultiFotograma.Resultado mismaIdentidad = neuronal.autenticar(camara);
+        assertTrue(mismaIdentidad.isAceptado());
+        assertEquals(7, mismaIdentidad.getEtiqueta());
+        assertEquals(2, mismaIdentidad.getFotogramas(), "Hace falta la misma identidad en dos fotogramas");
+
+        // Identidades distintas en cada fotograma: nunca se acepta
+        AtomicInteger alternas = new AtomicInteger();
+        AutenticadorMultiFotograma cambiante = new AutenticadorMultiFotograma(extractor,
+            rostro -> new ProcesadorOpenCV.ResultadoReconocimiento(alternas.incrementAndGet(), 100.0, true), 100.0);
+        assertFalse(cambiante.autenticar(camara).isAceptado());
+    }
+
+    @Test
+    @DisplayName("♻️ Buffers nativos prestados: reutilización, supervivencia al ámbito y memoria por fotograma")
+    void testBuffersNativos() throws Exception {
+        BuffersNativos.liberar();
+        Mat gris;
+        BuffersNativos prestado;
+        long reservasAntes = BuffersNativos.getReservas();
+        try (BuffersNativos buffers = BuffersNativos.tomar(); PointerScope ambito = BuffersNativos.ambitoCabeceras()) {
+            prestado = buffers;
+            gris = buffers.obtener(BuffersNativos.Ranura.GRIS_ROSTRO, 120, 160, CV_8UC1);
+            assertEquals(120, gris.rows());
+        }
+        assertFalse(gris.isNull(), "El buffer del grupo sobrevive al cierre del ámbito");
+        long reservasTrasCalentar = BuffersNativos.getReservas();
+        assertEquals(reservasAntes + 1, reservasTrasCalentar, "La primera vez sí reserva");
+
+        // Mismas dimensiones en fotogramas sucesivos: mismo juego devuelto y ninguna reserva nueva
+        for (int i = 0; i < 50; i++) {
+            try (BuffersNativos buffers = BuffersNativos.tomar(); PointerScope ambito = BuffersNativos.ambitoCabeceras()) {
+                assertSame(prestado, buffers, "El juego devuelto se vuelve a prestar");
+                assertSame(gris, buffers.obtener(BuffersNativos.Ranura.GRIS_ROSTRO, 120, 160, CV_8UC1));
+            }
+        }
+        assertEquals(reservasTrasCalentar, BuffersNativos.getReservas(), "Sin reservas tras el calentamiento");
+
+        // Préstamos simultáneos: cada uno tiene su juego y el grupo crece hasta esa concurrencia
+        try (BuffersNativos uno = BuffersNativos.tomar(); BuffersNativos otro = BuffersNativos.tomar()) {
+            assertNotSame(uno, otro);
+        }
+        assertEquals(2, BuffersNativos.getCreados());
+
+        // Otro hilo (virtual) reutiliza los juegos libres en lugar de crear el suyo
+        Thread hilo = Thread.ofVirtual().start(() -> {
+            try (BuffersNativos buffers = BuffersNativos.tomar()) {
+                buffers.obtener(BuffersNativos.Ranura.GRIS_ROSTRO, 120, 160, CV_8UC1);
+            }
+        });
+        hilo.join();
+        assertEquals(2, BuffersNativos.getCreados(), "Terminar un hilo no deja juegos huérfanos");
+
+        // Puerta de cambios + plan reutilizado + ROI en gris: la memoria nativa no crece por fotograma
+        List<Mat> fotogramas = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            fotogramas.add(new Mat(240, 320, CV_8UC3, new Scalar(40.0 + i * 80, 90.0, 200.0 - i * 60, 0)));
+        }
+        DetectorCambios puerta = new DetectorCambios(80, 0.05, 25.0, 0.01, 0);
+        PlanificadorDeteccion planificador = new PlanificadorDeteccion(0.08, 0.9, 1.1, new Size(30, 30), new Size(300, 300));
+        PlanificadorDeteccion.Parametros plan = new PlanificadorDeteccion.Parametros();
+        List<Rect> rostro = List.of(new Rect(100, 80, 60, 60));
+        Runnable fotograma = new Runnable() {
+            int n;
+
+            @Override
+            public void run() {
+                Mat actual = fotogramas.get(n++ % fotogramas.size());
+                puerta.hayCambio(actual);
+                planificador.planificar(actual.cols(), actual.rows(), plan);
+                try (BuffersNativos buffers = BuffersNativos.tomar(); PointerScope ambito = BuffersNativos.ambitoCabeceras()) {
+                    Mat zona = new Mat(actual, plan.getRegion());
+                    cvtColor(zona, buffers.obtener(BuffersNativos.Ranura.GRIS_DETECCION, zona.rows(), zona.cols(), CV_8UC1),
+                             COLOR_BGR2GRAY);
+                }
+                planificador.registrarResultado(rostro);
+            }
+        };
+        for (int i = 0; i < 20; i++) {
+            fotograma.run(); // Calentamiento
+        }
+        BuffersNativos.Medicion medicion = BuffersNativos.Medicion.iniciar();
+        for (int i = 0; i < 300; i++) {
+            fotograma.run();
+        }
+        medicion.terminar(300);
+        assertTrue(medicion.getPunterosPorFotograma() < 0.05, "Sin punteros nuevos por fotograma: " + medicion);
+        assertTrue(medicion.toString().contains("300 fotogramas"));
+        assertTrue(BuffersNativos.obtenerEstadisticas().contains("Buffers reutilizables"));
+        fotogramas.forEach(Mat::close);
+        puerta.liberar();
+    }
+
+    @Test
+    @DisplayName("🪜 Políticas de las etapas opcionales del detector")
+    void testPoliticasEtapasDeteccion() {
+        assertEquals(DetectorRostros.ModoEtapa.CONDICIONAL,
+            DetectorRostros.ModoEtapa.desdeConfiguracion("deteccion.etapa.perfil"));
+        assertEquals(DetectorRostros.ModoEtapa.CONDICIONAL,
+            DetectorRostros.ModoEtapa.desdeConfiguracion("deteccion.etapa.inexistente"), "Por defecto, condicional");
+
+        GestorConfiguracion.establecerValor("prueba.etapa.valida", "Siempre");
+        GestorConfiguracion.establecerValor("prueba.etapa.invalida", "a veces");
+        assertEquals(DetectorRostros.ModoEtapa.SIEMPRE, DetectorRostros.ModoEtapa.desdeConfiguracion("prueba.etapa.valida"));
+        assertEquals(DetectorRostros.ModoEtapa.CONDICIONAL, DetectorRostros.ModoEtapa.desdeConfiguracion("prueba.etapa.invalida"));
+    }
+
+    @Test
+    @DisplayName("🪜 Perfil solo sin frontal y ojos solo en el mejor rostro")
+    void testEtapasCondicionalesDeteccion() {
+        List<Rect> frontales = new ArrayList<>(List.of(new Rect(20, 20, 60, 60), new Rect(110, 110, 100, 100)));
+        Map<String, AtomicInteger> llamadas = new ConcurrentHashMap<>();
+        DetectorRostros detector = new DetectorRostros(new DetectorRostros.EjecutorCascadas() {
+            @Override
+            public boolean isDisponible(String cascada) {
+                return true;
+            }
+
+            @Override
+            public RectVector detectar(String cascada, Mat imagen, double factor, int minimoVecinos,
+                                       Size minimo, Size maximo) {
+                llamadas.computeIfAbsent(cascada, c -> new AtomicInteger()).incrementAndGet();
+                return RegistroClasificadores.ROSTRO_FRONTAL.equals(cascada)
+                    ? new RectVector(frontales.toArray(new Rect[0])) : new RectVector();
+            }
+        });
+        assertTrue(detector.isInicializado());
+        detector.setDetectorCambios(null);
+        detector.setPlanificadorDeteccion(null);
+        detector.setModoEtapa(DetectorRostros.Etapa.PERFIL, DetectorRostros.ModoEtapa.CONDICIONAL);
+        detector.setModoEtapa(DetectorRostros.Etapa.OJOS, DetectorRostros.ModoEtapa.CONDICIONAL);
+        detector.setModoEtapa(DetectorRostros.Etapa.SONRISA, DetectorRostros.ModoEtapa.CONDICIONAL);
+
+        Mat imagen = new Mat(240, 240, CV_8UC3, new Scalar(90, 110, 130, 0));
+        assertEquals(2, detector.detectarRostros(imagen).size());
+        assertNull(llamadas.get(RegistroClasificadores.ROSTRO_PERFIL), "La frontal encontró rostros: sin perfil");
+        assertEquals(1, llamadas.get(RegistroClasificadores.OJOS).get(), "Ojos solo en el mejor candidato");
+        assertNull(llamadas.get(RegistroClasificadores.SONRISA), "Sonrisa solo bajo demanda");
+        assertEquals(0, detector.getEjecuciones(DetectorRostros.Etapa.PERFIL));
+
+        detector.setModoEtapa(DetectorRostros.Etapa.OJOS, DetectorRostros.ModoEtapa.SIEMPRE);
+        detector.detectarRostros(imagen);
+        assertEquals(3, llamadas.get(RegistroClasificadores.OJOS).get(), "En modo siempre, ojos en cada rostro");
+
+        frontales.clear();
+        assertTrue(detector.detectarRostros(imagen).isEmpty());
+        assertEquals(1, llamadas.get(RegistroClasificadores.ROSTRO_PERFIL).get(), "Sin frontales se prueba el perfil");
+        assertEquals(3, llamadas.get(RegistroClasificadores.OJOS).get(), "Sin rostros no se buscan ojos");
+        imagen.close();
+    }
+}
@@ -0,0 +1,404 @@
+package com.reconocimiento.facial;
+
+import com.reconocimiento.facial.neural.ArchivoModelo;
+import com.reconocimiento.facial.neural.GaleriaPerfiles;
+import com.reconocimiento.facial.neural.IndiceHNSW;
+import com.reconocimiento.facial.neural.KernelesSimilitud;
+import com.reconocimiento.facial.neural.PreprocesadorImagen;
+import com.reconocimiento.facial.neural.RedNeuronalReconocimiento;
+import com.reconocimiento.facial.neural.RedNeuronalReconocimiento.TipoMotorInferencia;
+import com.reconocimiento.facial.utilidades.AlmacenGaleria;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.image.BufferedImage;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 🧪 PRUEBAS DE LA RED NEURONAL
+ * Verifican que los motores de inferencia producen características equivalentes
+ */
+public class PruebasRedNeuronalTest {
+
+    // Modelo de la red fuera del árbol del proyecto: las pruebas no tocan modelos/
+    @TempDir
+    static Path directorioModelo;
+
+    private static RedNeuronalReconocimiento red;
+
+    @BeforeAll
+    static void configurarPruebas() {
+        red = new RedNeuronalReconocimiento(null, archivoModelo()); // Sin galería en disco
+    }
+
+    static Path archivoModelo() {
+        return directorioModelo.resolve("red_neuronal.rnm");
+    }
+
+    /**
+     * Crear imagen sintética con un patrón que depende de la semilla
+     */
+    static BufferedImage crearImagen(int semilla) {
+        BufferedImage imagen = new BufferedImage(120, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = imagen.createGraphics();
+        g2d.setColor(new Color(60 + semilla * 13 % 120, 90, 140));
+        g2d.fillRect(0, 0, 120, 100);
+        g2d.setColor(Color.WHITE);
+        g2d.fillOval(20 + semilla % 30, 15, 60, 70);
+        g2d.setColor(Color.BLACK);
+        g2d.fillOval(40, 35 + semilla % 10, 8, 8);
+        g2d.fillOval(70, 35, 8, 8);
+        g2d.dispose();
+        return imagen;
+    }
+
+    @Test
+    @DisplayName("Motor plano float32 equivalente al motor clásico")
+    void testMotorPlanoEquivalente() {
+        BufferedImage imagen = crearImagen(3);
+
+        red.setMotorInferencia(TipoMotorInferencia.CLASICO);
+        double[] clasico = red.extraerCaracteristicas(imagen);
+
+        red.setMotorInferencia(TipoMotorInferencia.PLANO_FLOAT32);
+        double[] plano = red.extraerCaracteristicas(imagen);
+
+        assertEquals(clasico.length, plano.length, "Ambos motores deben producir 128 valores");
+        for (int i = 0; i < clasico.length; i++) {
+            assertEquals(clasico[i], plano[i], 1e-3, "Diferencia excesiva en la posición " + i);
+        }
+        assertTrue(red.getLatenciaPromedioMicros(TipoMotorInferencia.PLANO_FLOAT32) > 0.0,
+                   "Debe registrarse la latencia del motor plano");
+    }
+
+    @Test
+    @DisplayName("Extracción por lotes idéntica a la extracción individual")
+    void testExtraccionPorLotes() {
+        red.setMotorInferencia(TipoMotorInferencia.PLANO_FLOAT32);
+        List<BufferedImage> imagenes = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            imagenes.add(crearImagen(i));
+        }
+
+        List<double[]> lote = red.extraerCaracteristicasLote(imagenes);
+
+        assertEquals(imagenes.size(), lote.size(), "Debe haber un vector por imagen");
+        for (int n = 0; n < imagenes.size(); n++) {
+            double[] individual = red.extraerCaracteristicas(imagenes.get(n));
+            assertArrayEquals(individual, lote.get(n), 1e-6, "El lote difiere en la imagen " + n);
+        }
+    }
+
+    @Test
+    @DisplayName("Kernels de similitud coinciden con el cálculo directo")
+    void testKernelesSimilitud() {
+        // Longitud impar para ejercitar la cola escalar de la versión SIMD
+        double[] a = new double[131];
+        double[] b = new double[131];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = Math.sin(i * 0.37);
+            b[i] = Math.cos(i * 0.11) - 0.2;
+        }
+
+        double producto = 0, normaA = 0, normaB = 0, l2 = 0, manhattan = 0;
+        for (int i = 0; i < a.length; i++) {
+            producto += a[i] * b[i];
+            normaA += a[i] * a[i];
+            normaB += b[i] * b[i];
+            l2 += (a[i] - b[i]) * (a[i] - b[i]);
+            manhattan += Math.abs(a[i] - b[i]);
+        }
+
+        assertEquals(producto / (Math.sqrt(normaA) * Math.sqrt(normaB)),
+                     KernelesSimilitud.similitudCoseno(a, b), 1e-9);
+        assertEquals(Math.sqrt(l2), KernelesSimilitud.distanciaEuclidiana(a, b), 1e-9);
+        assertEquals(manhattan, KernelesSimilitud.distanciaManhattan(a, b), 1e-9);
+        assertThrows(IllegalArgumentException.class,
+                     () -> KernelesSimilitud.similitudCoseno(a, new double[3]));
+    }
+
+    @Test
+    @DisplayName("Galería contigua equivalente a la búsqueda exhaustiva")
+    void testGaleriaPerfiles() {
+        Random random = new Random(7);
+        GaleriaPerfiles galeria = new GaleriaPerfiles(128);
+        List<double[]> perfiles = new ArrayList<>();
+        for (int id = 0; id < 200; id++) {
+            double[] perfil = new double[128];
+            for (int i = 0; i < perfil.length; i++) {
+                perfil[i] = Math.tanh(random.nextGaussian());
+            }
+            perfiles.add(perfil);
+            galeria.agregarOActualizar(id, perfil);
+        }
+        assertTrue(galeria.eliminar(17), "El id 17 debe poder eliminarse");
+        assertFalse(galeria.eliminar(17), "El id 17 ya no debe existir");
+        assertEquals(199, galeria.getCantidad());
+
+        double[] consulta = perfiles.get(42).clone();
+        consulta[0] += 0.05;
+
+        int mejorId = -1;
+        double mejorConfianza = 0.0;
+        for (int id = 0; id < perfiles.size(); id++) {
+            if (id == 17) continue;
+            double coseno = KernelesSimilitud.similitudCoseno(consulta, perfiles.get(id));
+            double distancia = KernelesSimilitud.distanciaEuclidiana(consulta, perfiles.get(id));
+            double confianza = 0.7 * coseno + 0.3 / (1.0 + distancia);
+            if (confianza > mejorConfianza) {
+                mejorConfianza = confianza;
+                mejorId = id;
+            }
+        }
+
+        GaleriaPerfiles.Coincidencia coincidencia = galeria.buscarMejor(consulta);
+        assertNotNull(coincidencia);
+        assertEquals(mejorId, coincidencia.getIdUsuario());
+        assertEquals(mejorConfianza, coincidencia.getConfianza(), 1e-4);
+    }
+
+    @Test
+    @DisplayName("Galería: actualizaciones y bajas sin copiar el bloque completo")
+    void testGaleriaActualizacionesAmortizadas() {
+        GaleriaPerfiles galeria = new GaleriaPerfiles(4);
+        galeria.reservar(100);
+        long reservado = galeria.getTamanoBytes();
+        for (int id = 0; id < 100; id++) {
+            galeria.agregarOActualizar(id, new double[] { id + 1, 0, 0, 0 });
+        }
+        assertEquals(reservado, galeria.getTamanoBytes(), "La reserva debe evitar ampliaciones");
+
+        // Reemplazos repetidos del mismo id: nunca duplican resultados
+        for (int vuelta = 0; vuelta < 1000; vuelta++) {
+            galeria.agregarOActualizar(7, new double[] { 0, 0, vuelta + 1, 0 });
+        }
+        assertEquals(100, galeria.getCantidad());
+        assertEquals(7, galeria.buscarMejor(new double[] { 0, 0, 1, 0 }).getIdUsuario());
+        assertArrayEquals(new int[] { 7 }, galeria.buscarMasSimilares(new double[] { 0, 0, 1, 0 }, 1));
+        assertEquals(100, galeria.buscarMasSimilares(new double[] { 1, 0, 0, 0 }, 1000).length);
+
+        for (int id = 0; id < 100; id++) {
+            if (id != 7 && id != 50) {
+                assertTrue(galeria.eliminar(id));
+            }
+        }
+        assertEquals(2, galeria.getCantidad());
+        assertEquals(50, galeria.buscarMejor(new double[] { 1, 0, 0, 0 }).getIdUsuario());
+        assertTrue(galeria.eliminar(7));
+        assertTrue(galeria.eliminar(50));
+        assertTrue(galeria.estaVacia());
+        assertNull(galeria.buscarMejor(new double[] { 1, 0, 0, 0 }));
+    }
+
+    @Test
+    @DisplayName("Índice HNSW: recall, eliminación y persistencia")
+    void testIndiceHNSW(@TempDir Path directorio) throws Exception {
+        Random random = new Random(11);
+        GaleriaPerfiles galeria = new GaleriaPerfiles(128);
+        IndiceHNSW indice = new IndiceHNSW(128, 16, 100, 64);
+        for (int id = 0; id < 1000; id++) {
+            double[] perfil = new double[128];
+            for (int i = 0; i < perfil.length; i++) {
+                perfil[i] = random.nextGaussian();
+            }
+            galeria.agregarOActualizar(id, perfil);
+            indice.insertar(id, perfil);
+        }
+
+        int aciertos = 0;
+        int total = 0;
+        List<double[]> consultas = new ArrayList<>();
+        for (int q = 0; q < 50; q++) {
+            double[] consulta = new double[128];
+            for (int i = 0; i < consulta.length; i++) {
+                consulta[i] = random.nextGaussian();
+            }
+            consultas.add(consulta);
+            List<Integer> aproximados = new ArrayList<>();
+            indice.buscar(consulta, 10).forEach(r -> aproximados.add(r.getId()));
+            for (int id : galeria.buscarMasSimilares(consulta, 10)) {
+                total++;
+                if (aproximados.contains(id)) aciertos++;
+            }
+        }
+        assertTrue((double) aciertos / total >= 0.9, "Recall@10 insuficiente: " + aciertos + "/" + total);
+
+        int primero = indice.buscar(consultas.get(0), 1).get(0).getId();
+        assertTrue(indice.eliminar(primero));
+        assertNotEquals(primero, indice.buscar(consultas.get(0), 1).get(0).getId(),
+                        "Un id eliminado no debe devolverse");
+
+        Path archivo = directorio.resolve("indice.hnsw");
+        indice.guardar(archivo);
+        IndiceHNSW cargado = IndiceHNSW.cargar(archivo);
+        assertEquals(indice.getCantidad(), cargado.getCantidad());
+        for (double[] consulta : consultas) {
+            assertEquals(indice.buscar(consulta, 5).toString(), cargado.buscar(consulta, 5).toString());
+        }
+        assertFalse(Files.exists(directorio.resolve("indice.hnsw.tmp")), "El temporal se renombra al destino");
+
+        // Vecino fuera de rango: se rechaza al cargar, no durante una búsqueda
+        byte[] bytes = Files.readAllBytes(archivo);
+        int primerVecino = 9 * Integer.BYTES + Integer.BYTES + 1 + Integer.BYTES + 128 * Float.BYTES + Integer.BYTES;
+        ByteBuffer.wrap(bytes).putInt(primerVecino, 5000);
+        Path corrupto = directorio.resolve("corrupto.hnsw");
+        Files.write(corrupto, bytes);
+        IOException error = assertThrows(IOException.class, () -> IndiceHNSW.cargar(corrupto));
+        assertTrue(error.getMessage().contains("vecino 5000"), error.getMessage());
+
+        Path truncado = directorio.resolve("truncado.hnsw");
+        Files.write(truncado, Arrays.copyOf(Files.readAllBytes(archivo), bytes.length / 2));
+        assertThrows(IOException.class, () -> IndiceHNSW.cargar(truncado));
+        assertFalse(red.cargarIndiceAproximado(corrupto), "Un índice dañado se reconstruye desde la galería");
+    }
+
+    @Test
+    @DisplayName("Índice HNSW: reemplazos compactados y validación contra la galería")
+    void testIndiceHNSWReemplazos() {
+        Random random = new Random(13);
+        IndiceHNSW indice = new IndiceHNSW(16, 8, 50, 32);
+        Map<Integer, double[]> perfiles = new HashMap<>();
+        for (int vuelta = 0; vuelta < 20; vuelta++) {
+            for (int id = 0; id < 50; id++) {
+                double[] perfil = new double[16];
+                for (int i = 0; i < perfil.length; i++) {
+                    perfil[i] = random.nextGaussian();
+                }
+                perfiles.put(id, perfil);
+                indice.insertar(id, perfil);
+            }
+        }
+        assertEquals(50, indice.getCantidad());
+        assertTrue(indice.getEliminados() <= 50, "Los nodos reemplazados deben compactarse: " + indice);
+        assertEquals(7, indice.buscar(perfiles.get(7), 1).get(0).getId());
+
+        assertTrue(indice.coincideCon(perfiles));
+        perfiles.put(7, perfiles.get(8));
+        assertFalse(indice.coincideCon(perfiles), "Un vector distinto invalida el índice");
+        perfiles.remove(7);
+        assertFalse(indice.coincideCon(perfiles), "Un id de menos invalida el índice");
+    }
+
+    @Test
+    @DisplayName("Modelo persistido: vectores comparables entre instancias")
+    void testModeloPersistido(@TempDir Path directorio) throws Exception {
+        BufferedImage imagen = crearImagen(5);
+        red.setMotorInferencia(TipoMotorInferencia.PLANO_FLOAT32);
+        double[] original = red.extraerCaracteristicas(imagen);
+
+        // Una segunda instancia carga el mismo archivo de modelo
+        RedNeuronalReconocimiento otra = new RedNeuronalReconocimiento(null, archivoModelo());
+        assertEquals(red.getVersionModelo(), otra.getVersionModelo());
+        otra.setMotorInferencia(TipoMotorInferencia.PLANO_FLOAT32);
+        assertArrayEquals(original, otra.extraerCaracteristicas(imagen), 0.0);
+
+        assertEquals(archivoModelo(), otra.getArchivoModelo());
+        ArchivoModelo.ModeloCargado modelo = ArchivoModelo.cargar(archivoModelo());
+        Path copia = directorio.resolve("copia.rnm");
+        ArchivoModelo.guardar(copia, modelo.getVersionModelo(), modelo.getMotor());
+        ArchivoModelo.ModeloCargado recargado = ArchivoModelo.cargar(copia);
+        assertEquals(modelo.getVersionModelo(), recargado.getVersionModelo());
+        assertEquals(ArchivoModelo.calcularVersion(modelo.getMotor()),
+                     ArchivoModelo.calcularVersion(recargado.getMotor()));
+        assertEquals(red.getVersionModelo(),
+                     red.crearCaracteristicaFacial(1, imagen).getVersionAlgoritmo());
+    }
+
+    @Test
+    @DisplayName("Preprocesado directo sobre el raster independiente del formato")
+    void testPreprocesadorImagen() {
+        PreprocesadorImagen preprocesador = new PreprocesadorImagen(64);
+        BufferedImage rgb = crearImagen(2);
+        BufferedImage bgr = new BufferedImage(rgb.getWidth(), rgb.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        bgr.getGraphics().drawImage(rgb, 0, 0, null);
+
+        float[] desdeRgb = preprocesador.preprocesar(rgb, new float[64 * 64]);
+        float[] desdeBgr = preprocesador.preprocesar(bgr, new float[64 * 64]);
+        for (int i = 0; i < desdeRgb.length; i++) {
+            assertEquals(desdeRgb[i], desdeBgr[i], 1e-4, "Diferencia entre formatos en " + i);
+        }
+
+        double media = 0, cuadrados = 0;
+        for (float valor : desdeRgb) {
+            media += valor;
+            cuadrados += valor * valor;
+        }
+        media /= desdeRgb.length;
+        assertEquals(0.0, media, 1e-4, "La media debe ser 0");
+        assertEquals(1.0, Math.sqrt(cuadrados / desdeRgb.length - media * media), 1e-3, "La desviación debe ser 1");
+
+        // Una subimagen comparte el DataBuffer con desplazamiento
+        BufferedImage recorte = rgb.getSubimage(10, 5, 80, 80);
+        BufferedImage copia = new BufferedImage(80, 80, BufferedImage.TYPE_INT_RGB);
+        copia.getGraphics().drawImage(recorte, 0, 0, null);
+        assertArrayEquals(preprocesador.preprocesar(copia, new float[64 * 64]),
+                          preprocesador.preprocesar(recorte, new float[64 * 64]), 1e-6f);
+    }
+
+    @Test
+    @DisplayName("Galería persistente: WAL, instantánea y cola incompleta")
+    void testGaleriaPersistente(@TempDir Path directorio) throws Exception {
+        Path carpeta = directorio.resolve("neural");
+        RedNeuronalReconocimiento primera = new RedNeuronalReconocimiento(carpeta, archivoModelo());
+        for (int u = 0; u < 3; u++) {
+            List<BufferedImage> muestras = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                muestras.add(crearImagen(u * 10 + i));
+            }
+            assertTrue(primera.registrarUsuario("usuario" + u, muestras));
+        }
+        assertTrue(primera.eliminarUsuario("usuario1"));
+        primera.cerrarGaleria();
+
+        // Reinicio: solo el WAL, sin volver a extraer características
+        RedNeuronalReconocimiento segunda = new RedNeuronalReconocimiento(carpeta, archivoModelo());
+        assertEquals(2, segunda.getNumeroUsuariosRegistrados());
+        assertEquals("usuario2", segunda.reconocerUsuario(crearImagen(21)).orElseThrow().getNombreUsuario());
+        segunda.crearInstantaneaGaleria();
+        assertTrue(segunda.registrarUsuario("usuario3", List.of(crearImagen(30), crearImagen(31), crearImagen(32))));
+        segunda.cerrarGaleria();
+
+        // Escritura interrumpida al final del WAL: se descarta y el resto se recupera
+        Files.write(carpeta.resolve("galeria.wal"), new byte[] { 0, 0, 4, 0, 1, 2 }, StandardOpenOption.APPEND);
+        try (AlmacenGaleria almacen = new AlmacenGaleria(carpeta, 1000)) {
+            assertEquals(List.of(0, 2, 3), new ArrayList<>(almacen.obtenerEntradas().keySet()));
+            assertEquals("usuario3", almacen.obtenerEntradas().get(3).getNombre());
+            assertEquals(128, almacen.obtenerEntradas().get(3).getVector().length);
+        }
+
+        // La instantánea falla tras un WAL durable: la operación se confirma igualmente
+        Files.createDirectory(carpeta.resolve("galeria.snapshot.tmp"));
+        try (AlmacenGaleria almacen = new AlmacenGaleria(carpeta, 1)) {
+            almacen.guardar(4, "usuario4", new double[128]);
+        }
+        Files.delete(carpeta.resolve("galeria.snapshot.tmp"));
+
+        // Instantánea dañada: se aparta y se recupera lo que hay en el WAL, con persistencia activa
+        byte[] instantanea = Files.readAllBytes(carpeta.resolve("galeria.snapshot"));
+        instantanea[instantanea.length / 2] ^= 0x5A;
+        Files.write(carpeta.resolve("galeria.snapshot"), instantanea);
+        try (AlmacenGaleria almacen = new AlmacenGaleria(carpeta, 1000)) {
+            assertEquals(List.of(3, 4), new ArrayList<>(almacen.obtenerEntradas().keySet()));
+            assertTrue(Files.exists(carpeta.resolve("galeria.snapshot.corrupta")));
+            almacen.guardar(5, "usuario5", new double[128]);
+        }
+        try (AlmacenGaleria almacen = new AlmacenGaleria(carpeta, 1000)) {
+            assertEquals(List.of(3, 4, 5), new ArrayList<>(almacen.obtenerEntradas().keySet()));
+        }
+    }
+}